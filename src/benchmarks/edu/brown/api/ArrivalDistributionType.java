@@ -0,0 +1,32 @@
+package edu.brown.api;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How an open-loop client spaces out the intended send times of its txns.
+ * @see OpenLoopSchedule
+ */
+public enum ArrivalDistributionType {
+    /**
+     * Send a txn exactly every 1/${client.txnrate} seconds.
+     */
+    CONSTANT,
+    /**
+     * Exponentially distributed inter-arrival times with a mean
+     * of 1/${client.txnrate} seconds.
+     */
+    POISSON;
+    
+    private static final Map<String, ArrivalDistributionType> name_lookup = new HashMap<String, ArrivalDistributionType>();
+    static {
+        for (ArrivalDistributionType e : EnumSet.allOf(ArrivalDistributionType.class)) {
+            ArrivalDistributionType.name_lookup.put(e.name().toLowerCase(), e);
+        } // FOR
+    } // STATIC
+    
+    public static ArrivalDistributionType get(String name) {
+        return ArrivalDistributionType.name_lookup.get(name.toLowerCase());
+    }
+} // ENUM
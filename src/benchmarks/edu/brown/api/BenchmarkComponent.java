@@ -73,12 +73,14 @@ import org.voltdb.VoltSystemProcedure;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltTableRow;
 import org.voltdb.benchmark.BlockingClient;
+import org.voltdb.benchmark.OpenLoopClient;
 import org.voltdb.benchmark.Verification;
 import org.voltdb.benchmark.Verification.Expression;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Site;
 import org.voltdb.catalog.Table;
+import org.voltdb.client.BulkLoader;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.client.ClientResponse;
@@ -249,6 +251,12 @@ public abstract class BenchmarkComponent {
     final int m_txnRate;
     
     private final boolean m_blocking;
+    
+    /**
+     * If set, then the ControlWorker will submit txns according to an open-loop
+     * schedule and we will record service and response times for each txn
+     */
+    final ArrivalDistributionType m_openLoop;
 
     /**
      * Number of transactions to generate for every millisecond of time that
@@ -369,6 +377,7 @@ public abstract class BenchmarkComponent {
         m_txnRate = -1;
         m_isLoader = false;
         m_blocking = false;
+        m_openLoop = null;
         m_txnsPerMillisecond = 0;
         m_catalogPath = null;
         m_projectName = null;
@@ -582,6 +591,18 @@ public abstract class BenchmarkComponent {
         m_txnRate = (isLoader ? -1 : transactionRate);
         m_txnsPerMillisecond = (isLoader ? -1 : transactionRate / 1000.0);
         m_blocking = blocking;
+        if (isLoader == false && m_hstoreConf.client.openloop) {
+            m_openLoop = ArrivalDistributionType.get(m_hstoreConf.client.openloop_arrivals);
+            if (m_openLoop == null) {
+                throw new RuntimeException("Invalid open-loop arrival distribution '" +
+                                           m_hstoreConf.client.openloop_arrivals + "'");
+            } else if (m_txnRate <= 0) {
+                throw new RuntimeException("The open-loop client requires a positive txn rate " +
+                                           "[txnrate=" + m_txnRate + "]");
+            }
+        } else {
+            m_openLoop = null;
+        }
         m_tickInterval = tickInterval;
         m_noUploading = noUploading;
         m_noConnections = noConnections || (isLoader && m_noUploading);
@@ -795,7 +816,14 @@ public abstract class BenchmarkComponent {
                 statsSettings,
                 m_hstoreConf.client.shared_connection
         );
-        if (m_blocking) { //  && isLoader == false) {
+        if (m_openLoop != null) {
+            if (debug.val) 
+                LOG.debug(String.format("Using OpenLoopClient [arrivals=%s]", m_openLoop));
+            if (m_blocking) {
+                LOG.warn("Ignoring client.blocking because the open-loop client is enabled");
+            }
+            m_voltClient = new OpenLoopClient(new_client);
+        } else if (m_blocking) { //  && isLoader == false) {
             int concurrent = m_hstoreConf.client.blocking_concurrent;
             if (debug.val) 
                 LOG.debug(String.format("Using BlockingClient [concurrent=%d]",
@@ -955,6 +983,17 @@ public abstract class BenchmarkComponent {
                 } // SYNCH
             }
             
+            // SERVICE + RESPONSE TIMES
+            // These are only available if we're running with the OpenLoopClient
+            if (m_openLoop != null) {
+                int serviceTime = OpenLoopClient.getServiceTime();
+                int responseTime = OpenLoopClient.getResponseTime();
+                if (serviceTime >= 0 && responseTime >= 0) {
+                    this.recordTime(m_txnStats.serviceTimes, txn_idx, serviceTime);
+                    this.recordTime(m_txnStats.responseTimes, txn_idx, responseTime);
+                }
+            }
+            
             // RESPONSE ENTRIES
             if (m_enableResponseEntries) {
                 long timestamp = System.currentTimeMillis();
@@ -985,6 +1024,22 @@ public abstract class BenchmarkComponent {
         }
     }
     
+    private void recordTime(Map<Integer, ObjectHistogram<Integer>> timesMap, int txn_idx, int time) {
+        ObjectHistogram<Integer> times = timesMap.get(txn_idx);
+        if (times == null) {
+            synchronized (timesMap) {
+                times = timesMap.get(txn_idx);
+                if (times == null) {
+                    times = new ObjectHistogram<Integer>();
+                    timesMap.put(txn_idx, times);
+                }
+            } // SYNCH
+        }
+        synchronized (times) {
+            times.put(time);
+        } // SYNCH
+    }
+    
     // ----------------------------------------------------------------------------
     // PUBLIC UTILITY METHODS
     // ----------------------------------------------------------------------------
@@ -1024,6 +1079,10 @@ public abstract class BenchmarkComponent {
             try {
                 int tries = 3;
                 String procName = VoltSystemProcedure.procCallName(LoadMultipartitionTable.class);
+                if (m_hstoreConf.client.loader_partitioned) {
+                    cr = this.loadVoltTablePartitioned(tableName, vt);
+                    tries = 0;
+                }
                 while (tries-- > 0) {
                     try {
                         cr = m_voltClient.callProcedure(procName, tableName, vt);
@@ -1086,6 +1145,32 @@ public abstract class BenchmarkComponent {
         return (cr);
     }
     
+    /**
+     * Split the given VoltTable by partition and load each partition's rows
+     * directly at that partition with a single-partition transaction. The
+     * per-partition batches are sent to the cluster at the same time.
+     * @param tableName
+     * @param vt
+     * @return
+     */
+    private ClientResponse loadVoltTablePartitioned(String tableName, VoltTable vt) throws ProcCallException {
+        // There is nothing to send for an empty table
+        if (vt.getRowCount() == 0) return (m_dummyResponse);
+
+        BulkLoader loader = new BulkLoader(m_voltClient,
+                                           this.getCatalogContext(),
+                                           tableName,
+                                           vt.getRowCount(),
+                                           m_hstoreConf.client.loader_max_outstanding);
+        loader.load(vt);
+        loader.drain();
+        if (debug.val)
+            LOG.debug(String.format("%s: Loaded %d rows in %d batches [partitioned=%s, rejected=%d]",
+                      tableName.toUpperCase(), loader.getLoadedRowCount(), loader.getSentBatchCount(),
+                      loader.isPartitioned(), loader.getRejectedBatchCount()));
+        return (m_dummyResponse);
+    }
+    
     /**
      * Return an overridden transaction weight
      * @param txnName
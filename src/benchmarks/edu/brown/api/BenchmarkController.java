@@ -119,6 +119,8 @@ import edu.brown.api.results.ResultsPrinter;
 import edu.brown.api.results.ResultsUploader;
 import edu.brown.benchmark.AbstractProjectBuilder;
 import edu.brown.catalog.CatalogUtil;
+import edu.brown.catalog.ClusterConfiguration;
+import edu.brown.catalog.FixCatalog;
 import edu.brown.hstore.HStoreConstants;
 import edu.brown.hstore.HStoreThreadManager;
 import edu.brown.hstore.Hstoreservice.Status;
@@ -212,6 +214,18 @@ public class BenchmarkController {
     final AbstractProjectBuilder projectBuilder;
     final File jarFileName;
     
+    /**
+     * If true, then all of the HStoreSites and clients will be started as
+     * child processes on this machine instead of through SSH.
+     */
+    final boolean localCluster;
+    
+    /**
+     * The catalog jar that was rewritten so that all of the sites are on localhost.
+     * This is only used when localCluster is true.
+     */
+    private File localJarFileName;
+    
     /**
      * SiteId -> Set[Host, Port]
      */
@@ -282,6 +296,7 @@ public class BenchmarkController {
         this.m_config = config;
         this.self = Thread.currentThread();
         this.hstore_conf = HStoreConf.singleton();
+        this.localCluster = (config.localmode || hstore_conf.client.local_cluster);
         if (catalogContext != null) this.initializeCatalog(catalogContext);
         
         // Setup ProcessSetManagers...
@@ -435,9 +450,16 @@ public class BenchmarkController {
         for (String key : EXCLUDED_CLIENT_PARAMS)
             m_config.clientParameters.remove(key);
         
+        // Put all of the sites on localhost and tell the clients to use that catalog
+        if (this.localCluster) {
+            this.initializeLocalCluster();
+            m_config.clientParameters.put("CATALOG", this.localJarFileName.getAbsolutePath());
+            m_config.clientParameters.put("NUMPARTITIONS", Integer.toString(catalogContext.numberOfPartitions));
+        }
+        
         // Now figure out which hosts we really want to launch this mofo on
         Set<String> unique_hosts = new HashSet<String>();
-        if (m_config.useCatalogHosts == false) {
+        if (m_config.useCatalogHosts == false && this.localCluster == false) {
             if (debug.val) LOG.debug("Creating host information from BenchmarkConfig");
             m_launchHosts = new HashMap<Integer, Set<Pair<String,Integer>>>();
             int site_id = HStoreConstants.FIRST_PARTITION_ID;
@@ -467,7 +489,13 @@ public class BenchmarkController {
         }
 
         // copy the catalog to the servers, but don't bother in local mode
-        if (m_config.localmode == false) {
+        if (this.localCluster) {
+            // START THE SERVERS AS CHILD PROCESSES ON THIS MACHINE
+            if (m_config.noSites == false) {
+               this.startSites();
+            }
+        }
+        else {
             // HACK
             m_config.hosts = new String[unique_hosts.size()];
             unique_hosts.toArray(m_config.hosts);
@@ -512,13 +540,6 @@ public class BenchmarkController {
                this.startSites();
             }
             
-        } else {
-            // START A SERVER LOCALLY IN-PROCESS
-//            VoltDB.Configuration localconfig = new VoltDB.Configuration();
-//            localconfig.m_pathToCatalog = this.jarFileName.getAbsolutePath();
-//            m_localserver = null;//new ServerThread(localconfig);
-//            m_localserver.start();
-//            m_localserver.waitForInitialization();
         }
 
         
@@ -542,6 +563,61 @@ public class BenchmarkController {
         // registerInterest(uploader);
     }
     
+    /**
+     * Rewrite the catalog so that all of the HStoreSites are on localhost.
+     * Each site gets its own ports and a contiguous range of the catalog's partitions.
+     * We write this out to a separate jar so that we don't clobber the original one.
+     */
+    private void initializeLocalCluster() {
+        int num_partitions = catalogContext.numberOfPartitions;
+        int num_sites = hstore_conf.client.local_cluster_sites;
+        if (num_sites <= 0) num_sites = catalogContext.numberOfSites;
+        if (num_sites > num_partitions) {
+            LOG.warn(String.format("Cannot start %d HStoreSites for only %d partitions. " +
+                                   "Starting %d HStoreSites instead",
+                                   num_sites, num_partitions, num_partitions));
+            num_sites = num_partitions;
+        }
+        
+        ClusterConfiguration cc = new ClusterConfiguration();
+        int partition_id = 0;
+        for (int site_id = 0; site_id < num_sites; site_id++) {
+            // Spread the leftover partitions across the first few sites
+            int site_partitions = (num_partitions / num_sites) + (site_id < num_partitions % num_sites ? 1 : 0);
+            for (int i = 0; i < site_partitions; i++) {
+                cc.addPartition("localhost", site_id, partition_id++);
+            } // FOR
+        } // FOR
+        assert(partition_id == num_partitions);
+        Catalog catalog = FixCatalog.cloneCatalog(catalogContext.catalog, cc);
+        
+        String name = this.jarFileName.getName().replace(".jar", "") + "-local.jar";
+        this.localJarFileName = new File(this.jarFileName.getAbsoluteFile().getParentFile(), name);
+        try {
+            FileUtil.copyFile(this.jarFileName, this.localJarFileName);
+            CatalogUtil.updateCatalogInJar(this.localJarFileName, catalog);
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to create local cluster catalog '" + this.localJarFileName + "'", ex);
+        }
+        this.initializeCatalog(CatalogUtil.loadCatalogContextFromJar(this.localJarFileName));
+        LOG.info(String.format("Running local cluster with %d HStoreSite%s and %d partition%s [catalog=%s]",
+                               catalogContext.numberOfSites, (catalogContext.numberOfSites > 1 ? "s" : ""),
+                               catalogContext.numberOfPartitions, (catalogContext.numberOfPartitions > 1 ? "s" : ""),
+                               this.localJarFileName));
+    }
+    
+    /**
+     * Convert the given command into something that we can execute for the
+     * given host. If we're running a local cluster, then we just run the
+     * command with the shell on this machine. Otherwise we use SSH.
+     */
+    private String[] getCommand(String host, List<String> command) {
+        if (this.localCluster) {
+            return new String[]{ "/bin/sh", "-c", StringUtil.join(" ", command) };
+        }
+        return (SSHTools.convert(m_config.remoteUser, host, m_config.remotePath, m_config.sshOptions, command));
+    }
+    
     /**
      * Deploy the HStoreSites on the remote nodes
      */
@@ -577,6 +653,9 @@ public class BenchmarkController {
         siteBaseCommand.add("ant hstore-site");
         siteBaseCommand.add("-Dconf=" + m_config.hstore_conf_path);
         siteBaseCommand.add("-Dproject=" + this.projectBuilder.getProjectName());
+        if (this.localCluster) {
+            siteBaseCommand.add("-Djar=" + this.localJarFileName.getAbsolutePath());
+        }
         for (Entry<String, String> e : m_config.siteParameters.entrySet()) {
             String value = e.getValue();
             if (value.startsWith("\"") == false) {
@@ -618,7 +697,7 @@ public class BenchmarkController {
             List<String> siteCommand = new ArrayList<String>(siteBaseCommand);
             siteCommand.add("-Dsite.id=" + site_id);
 
-            String exec_command[] = SSHTools.convert(m_config.remoteUser, host, m_config.remotePath, m_config.sshOptions, siteCommand);
+            String exec_command[] = this.getCommand(host, siteCommand);
 			System.out.println("%%%%%%%%%%%host="+host+"%%%%%%%%%%%%%%%%%%%%");
             String fullCommand = StringUtil.join(" ", exec_command);
 			try{
@@ -926,7 +1005,7 @@ public class BenchmarkController {
                     
                     curClientArgs.add("ID=" + StringUtil.join(",", clientIds));
                     
-                    String args[] = SSHTools.convert(m_config.remoteUser, clientHost, m_config.remotePath, m_config.sshOptions, curClientArgs);
+                    String args[] = getCommand(clientHost, curClientArgs);
                     String fullCommand = StringUtil.join(" ", args);
     
                     resultsUploader.setCommandLineForClient(clientHostId, fullCommand);
@@ -1066,6 +1145,10 @@ public class BenchmarkController {
                 if (debug.val)
                     LOG.warn(String.format("Skipping duplicate file '%s' on client host '%s'",
                              local_file, clientHost));
+            } else if (this.localCluster) {
+                // The client is running on this machine, so it can just read the local file
+                remote_file = local_file;
+                files.put(remote_file, local_file);
             } else {
                 if (debug.val)
                     LOG.debug(String.format("Copying %s file '%s' to '%s' on client %s [clientId=%d]",
@@ -1614,6 +1697,12 @@ public class BenchmarkController {
                 LOG.debug(String.format("Retrieving %s file '%s' from %s",
                           MarkovGraphsContainer.class.getSimpleName(),
                           remote_path, HStoreThreadManager.formatSiteName(site_id)));
+            if (this.localCluster) {
+                // The site wrote it out on this machine, so we can read it directly
+                markovs.put(partition_id, remote_path);
+                files_to_remove.add(Pair.of((String)null, remote_path));
+                continue;
+            }
             SSHTools.copyFromRemote(outputDir, m_config.remoteUser, p.getFirst(), remote_path, m_config.sshOptions);
             File local_file = new File(outputDir + "/" + remote_path.getName());
             markovs.put(partition_id, local_file);
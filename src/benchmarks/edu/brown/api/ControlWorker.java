@@ -1,8 +1,12 @@
 package edu.brown.api;
 
 import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.Logger;
+import org.voltdb.benchmark.OpenLoopClient;
 import org.voltdb.client.Client;
 
 import edu.brown.logging.LoggerUtil;
@@ -57,6 +61,9 @@ class ControlWorker extends Thread {
                     cmp.m_sampler.start();
                 }
                 cmp.runLoop();
+            } else if (cmp.m_openLoop != null) {
+                if (debug.val) LOG.debug(String.format("Running open-loop [m_txnRate=%d, arrivals=%s]", cmp.m_txnRate, cmp.m_openLoop));
+                this.openLoopRunLoop();
             } else {
                 if (debug.val) LOG.debug(String.format("Running rate controlled [m_txnRate=%d, m_txnsPerMillisecond=%f]", cmp.m_txnRate, cmp.m_txnsPerMillisecond));
                 this.rateControlledRunLoop();
@@ -145,6 +152,77 @@ class ControlWorker extends Thread {
         } // WHILE
     }
  
+    /**
+     * Submit txns at the times dictated by an OpenLoopSchedule. Unlike
+     * rateControlledRunLoop(), we never skip ahead in the schedule when we fall
+     * behind (e.g., because of back pressure or a slow runOnce()). Every txn
+     * is stamped with the time that it should have been sent, so any time that
+     * it spent waiting to be sent will show up in its response time.
+     * @throws InterruptedException
+     */
+    private void openLoopRunLoop() throws InterruptedException {
+        final OpenLoopClient client = (OpenLoopClient)cmp.getClientHandle();
+        final Random rand = new Random();
+        OpenLoopSchedule schedule = new OpenLoopSchedule(cmp.m_openLoop, cmp.m_txnsPerMillisecond,
+                                                         rand, System.nanoTime());
+        final long maxPark = TimeUnit.MILLISECONDS.toNanos(25);
+        
+        boolean hadErrors = false;
+        boolean bp = false;
+        while (true) {
+            if (bp) {
+                if (this.profiling) this.block_time.start();
+                try {
+                    client.backpressureBarrier();
+                } finally {
+                    if (this.profiling) this.block_time.stop();
+                }
+                bp = false;
+            }
+            
+            // Check whether we are currently being paused
+            // We will block until we're allowed to go again. We have to start
+            // the schedule over again afterwards, otherwise all of the txns that
+            // should have been sent while we were paused would go out at once.
+            if (cmp.m_controlState == ControlState.PAUSED) {
+                if (debug.val) LOG.debug("Pausing until control lock is released");
+                cmp.m_pauseLock.acquire();
+                if (debug.val) LOG.debug("Control lock is released! Resuming execution! Tiger style!");
+                schedule = new OpenLoopSchedule(cmp.m_openLoop, cmp.m_txnsPerMillisecond,
+                                                rand, System.nanoTime());
+            }
+            assert(cmp.m_controlState != ControlState.PAUSED) : "Unexpected " + cmp.m_controlState;
+            
+            // Wait until the next txn is supposed to go out
+            long wait = schedule.peek() - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(Math.min(wait, maxPark));
+                if (Thread.interrupted()) throw new InterruptedException();
+                continue;
+            }
+            
+            // Send everything that we're behind on
+            if (this.profiling) execute_time.start();
+            try {
+                while (schedule.peek() <= System.nanoTime()) {
+                    client.setIntendedStartTime(schedule.peek());
+                    bp = !cmp.runOnce();
+                    if (bp || cmp.m_controlState != ControlState.RUNNING) {
+                        break;
+                    }
+                    schedule.next();
+                } // WHILE
+            } catch (final IOException e) {
+                if (hadErrors) return;
+                hadErrors = true;
+                LOG.error("Failed to execute transaction: " + e.getMessage(), e);
+                ThreadUtil.sleep(5000);
+            } finally {
+                if (this.profiling) execute_time.stop();
+            }
+        } // WHILE
+    }
+ 
     public void enableProfiling(boolean val) {
         this.profiling = val;
     }
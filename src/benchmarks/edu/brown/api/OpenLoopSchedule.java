@@ -0,0 +1,74 @@
+package edu.brown.api;
+
+import java.util.Random;
+
+/**
+ * Generates the intended send times for an open-loop client. The schedule
+ * only depends on the txn rate and the arrival distribution, not on when
+ * the cluster gets around to responding, so a client that falls behind will
+ * have a backlog of txns whose intended send times are already in the past.
+ * All times are in nanoseconds (i.e., System.nanoTime()).
+ */
+public class OpenLoopSchedule {
+
+    private final ArrivalDistributionType type;
+    private final double meanInterval;
+    private final Random rand;
+    private double next;
+    private long count = 0;
+
+    /**
+     * Constructor
+     * @param type
+     * @param txnsPerMillisecond
+     * @param rand
+     * @param start The intended send time of the first txn
+     */
+    public OpenLoopSchedule(ArrivalDistributionType type, double txnsPerMillisecond, Random rand, long start) {
+        assert(txnsPerMillisecond > 0) : "Invalid txn rate " + txnsPerMillisecond;
+        this.type = type;
+        this.meanInterval = 1000000d / txnsPerMillisecond;
+        this.rand = rand;
+        this.next = start;
+    }
+
+    public ArrivalDistributionType getType() {
+        return (this.type);
+    }
+
+    /**
+     * Return the intended send time of the next txn without advancing the schedule
+     */
+    public long peek() {
+        return ((long)this.next);
+    }
+
+    /**
+     * Return the intended send time of the next txn and advance the schedule
+     */
+    public long next() {
+        long intended = (long)this.next;
+        this.next += this.nextInterval();
+        this.count++;
+        return (intended);
+    }
+
+    /**
+     * Return the number of txns that have been scheduled so far
+     */
+    public long getCount() {
+        return (this.count);
+    }
+
+    private double nextInterval() {
+        switch (this.type) {
+            case POISSON: {
+                // Inverse transform of the exponential distribution
+                double u = 1.0 - this.rand.nextDouble(); // (0, 1]
+                return (-Math.log(u) * this.meanInterval);
+            }
+            default:
+                return (this.meanInterval);
+        } // SWITCH
+    }
+}
@@ -45,6 +45,15 @@ public class BenchmarkComponentResults implements JSONSerializable {
     public final Map<Integer, ObjectHistogram<Integer>> spLatencies = new HashMap<Integer, ObjectHistogram<Integer>>();
     public final Map<Integer, ObjectHistogram<Integer>> dtxnLatencies = new HashMap<Integer, ObjectHistogram<Integer>>();
     
+    /**
+     * Transaction Name Index -> Service Times + Response Times
+     * These are only collected when the client is running open-loop. The service time
+     * is measured from when the txn was actually sent, while the response time is
+     * measured from when the txn was supposed to be sent.
+     */
+    public final Map<Integer, ObjectHistogram<Integer>> serviceTimes = new HashMap<Integer, ObjectHistogram<Integer>>();
+    public final Map<Integer, ObjectHistogram<Integer>> responseTimes = new HashMap<Integer, ObjectHistogram<Integer>>();
+    
     public FastIntHistogram basePartitions = new FastIntHistogram(true);
     private boolean enableBasePartitions = false;
     
@@ -73,27 +82,10 @@ public class BenchmarkComponentResults implements JSONSerializable {
         copy.dtxns.setDebugLabels(this.transactions.getDebugLabels());
         copy.dtxns.put(this.dtxns);
         
-        copy.spLatencies.clear();
-        synchronized (this.spLatencies) {
-            for (Entry<Integer, ObjectHistogram<Integer>> e : this.spLatencies.entrySet()) {
-                ObjectHistogram<Integer> h = new ObjectHistogram<Integer>();
-                synchronized (e.getValue()) {
-                    h.put(e.getValue());
-                } // SYNCH
-                copy.spLatencies.put(e.getKey(), h);
-            } // FOR
-        } // SYNCH
-        
-        copy.dtxnLatencies.clear();
-        synchronized (this.dtxnLatencies) {
-            for (Entry<Integer, ObjectHistogram<Integer>> e : this.dtxnLatencies.entrySet()) {
-                ObjectHistogram<Integer> h = new ObjectHistogram<Integer>();
-                synchronized (e.getValue()) {
-                    h.put(e.getValue());
-                } // SYNCH
-                copy.dtxnLatencies.put(e.getKey(), h);
-            } // FOR
-        } // SYNCH
+        copyHistograms(this.spLatencies, copy.spLatencies);
+        copyHistograms(this.dtxnLatencies, copy.dtxnLatencies);
+        copyHistograms(this.serviceTimes, copy.serviceTimes);
+        copyHistograms(this.responseTimes, copy.responseTimes);
         
         copy.enableBasePartitions = this.enableBasePartitions;
         copy.basePartitions.put(this.basePartitions);
@@ -104,6 +96,20 @@ public class BenchmarkComponentResults implements JSONSerializable {
         return (copy);
     }
     
+    private static void copyHistograms(Map<Integer, ObjectHistogram<Integer>> src,
+                                       Map<Integer, ObjectHistogram<Integer>> dest) {
+        dest.clear();
+        synchronized (src) {
+            for (Entry<Integer, ObjectHistogram<Integer>> e : src.entrySet()) {
+                ObjectHistogram<Integer> h = new ObjectHistogram<Integer>();
+                synchronized (e.getValue()) {
+                    h.put(e.getValue());
+                } // SYNCH
+                dest.put(e.getKey(), h);
+            } // FOR
+        } // SYNCH
+    }
+    
     public boolean isBasePartitionsEnabled() {
         return (this.enableBasePartitions);
     }
@@ -126,6 +132,8 @@ public class BenchmarkComponentResults implements JSONSerializable {
         }
         this.spLatencies.clear();
         this.dtxnLatencies.clear();
+        this.serviceTimes.clear();
+        this.responseTimes.clear();
         this.basePartitions.clearValues();
         this.responseStatuses.clearValues();
     }
@@ -166,6 +174,8 @@ public class BenchmarkComponentResults implements JSONSerializable {
     public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
         this.spLatencies.clear();
         this.dtxnLatencies.clear();
+        this.serviceTimes.clear();
+        this.responseTimes.clear();
         Field fields[] = JSONUtil.getSerializableFields(this.getClass());
         JSONUtil.fieldsFromJSON(json_object, catalog_db, this, BenchmarkComponentResults.class, true, fields);
         assert(this.transactions != null);
@@ -65,6 +65,8 @@ public class BenchmarkResults {
         public final long dtxnCount;
         public final Histogram<Integer> spLatencies = new ObjectHistogram<Integer>();
         public final Histogram<Integer> dtxnLatencies = new ObjectHistogram<Integer>();
+        public final Histogram<Integer> serviceTimes = new ObjectHistogram<Integer>();
+        public final Histogram<Integer> responseTimes = new ObjectHistogram<Integer>();
         
         public Result(long timestamp, long benchmarkTimeDelta, long transactionCount, long specexecCount, long dtxnCount) {
             this.timestamp = timestamp;
@@ -292,6 +294,32 @@ public class BenchmarkResults {
         return this.getTransactionLatencies(txnName, true);
     }
     
+    /**
+     * Return the service times (i.e., from when the txn was actually sent) for all
+     * of the txns. This will be empty if the clients weren't running open-loop.
+     */
+    public Histogram<Integer> getAllServiceTimes() {
+        return this.getAllTimes(false);
+    }
+    /**
+     * Return the response times (i.e., from when the txn was supposed to be sent) for
+     * all of the txns. This will be empty if the clients weren't running open-loop.
+     */
+    public Histogram<Integer> getAllResponseTimes() {
+        return this.getAllTimes(true);
+    }
+    private Histogram<Integer> getAllTimes(boolean response) {
+        Histogram<Integer> times = new ObjectHistogram<Integer>();
+        for (Map<String, List<Result>> clientResults : data.values()) {
+            for (List<Result> txnResults : clientResults.values()) {
+                for (Result r : txnResults) {
+                    if (r != null) times.put(response ? r.responseTimes : r.serviceTimes);
+                } // FOR
+            } // FOR
+        } // FOR
+        return (times);
+    }
+    
     public Result[] getResultsForClientAndTransaction(String clientName, String txnName) {
         int intervals = getCompletedIntervalCount();
         
@@ -456,6 +484,18 @@ public class BenchmarkResults {
                         } // SYNCH
                     }
                 }
+                Histogram<Integer> times = cmpResults.serviceTimes.get(txnOffset);
+                if (times != null) {
+                    synchronized (times) {
+                        r.serviceTimes.put(times);
+                    } // SYNCH
+                }
+                times = cmpResults.responseTimes.get(txnOffset);
+                if (times != null) {
+                    synchronized (times) {
+                        r.responseTimes.put(times);
+                    } // SYNCH
+                }
                 results.add(r);
             } // FOR
             this.clientResultCount.put(clientName);
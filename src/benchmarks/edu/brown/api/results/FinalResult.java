@@ -18,6 +18,7 @@ import edu.brown.api.results.BenchmarkResults.Result;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.statistics.Histogram;
+import edu.brown.statistics.HistogramUtil;
 import edu.brown.statistics.ObjectHistogram;
 import edu.brown.utils.JSONSerializable;
 import edu.brown.utils.JSONUtil;
@@ -57,6 +58,24 @@ public class FinalResult implements JSONSerializable {
     public double dtxnMinLatency;
     public double dtxnMaxLatency;
     
+    /**
+     * Service + Response Times
+     * These are only available when the clients are running open-loop
+     */
+    public long openLoopTxnCount;
+    
+    public double serviceAvgTime;
+    public double service50thTime;
+    public double service99thTime;
+    public double service999thTime;
+    public double serviceMaxTime;
+    
+    public double responseAvgTime;
+    public double response50thTime;
+    public double response99thTime;
+    public double response999thTime;
+    public double responseMaxTime;
+    
     /** TransactionName -> Results */
     public final Map<String, EntityResult> txnResults = new HashMap<String, EntityResult>();
     /** ClientName -> Results */
@@ -169,6 +188,29 @@ public class FinalResult implements JSONSerializable {
             this.dtxnStdevLatency = x[i++];
         }
         
+        // SERVICE + RESPONSE TIMES
+        Histogram<Integer> times = results.getAllServiceTimes();
+        if (times.isEmpty() == false) {
+            double x[] = computeTimes(times);
+            int i = 0;
+            this.serviceAvgTime = x[i++];
+            this.service50thTime = x[i++];
+            this.service99thTime = x[i++];
+            this.service999thTime = x[i++];
+            this.serviceMaxTime = x[i++];
+        }
+        times = results.getAllResponseTimes();
+        if (times.isEmpty() == false) {
+            this.openLoopTxnCount = times.getSampleCount();
+            double x[] = computeTimes(times);
+            int i = 0;
+            this.responseAvgTime = x[i++];
+            this.response50thTime = x[i++];
+            this.response99thTime = x[i++];
+            this.response999thTime = x[i++];
+            this.responseMaxTime = x[i++];
+        }
+        
         // CLIENTS RESULTS
         for (String clientName : results.getClientNames()) {
             totalLatencies = results.getClientTotalLatencies(clientName);
@@ -181,6 +223,19 @@ public class FinalResult implements JSONSerializable {
         } // FOR
     }
     
+    /**
+     * [0] Average, [1] 50th, [2] 99th, [3] 99.9th, [4] Max
+     */
+    private static double[] computeTimes(Histogram<Integer> times) {
+        return new double[]{
+            HistogramUtil.sum(times) / (double)times.getSampleCount(),
+            HistogramUtil.percentile(times, 0.50),
+            HistogramUtil.percentile(times, 0.99),
+            HistogramUtil.percentile(times, 0.999),
+            times.getMaxValue()
+        };
+    }
+    
     public long getDuration() {
         return this.duration;
     }
@@ -228,6 +283,46 @@ public class FinalResult implements JSONSerializable {
         return this.totalMaxLatency;
     }
 
+    /**
+     * Return the number of txns that we have service and response times for.
+     * This will be zero if the clients were not running open-loop.
+     */
+    public long getOpenLoopTxnCount() {
+        return this.openLoopTxnCount;
+    }
+    
+    public double getServiceAvgTime() {
+        return this.serviceAvgTime;
+    }
+    public double getService50thTime() {
+        return this.service50thTime;
+    }
+    public double getService99thTime() {
+        return this.service99thTime;
+    }
+    public double getService999thTime() {
+        return this.service999thTime;
+    }
+    public double getServiceMaxTime() {
+        return this.serviceMaxTime;
+    }
+    
+    public double getResponseAvgTime() {
+        return this.responseAvgTime;
+    }
+    public double getResponse50thTime() {
+        return this.response50thTime;
+    }
+    public double getResponse99thTime() {
+        return this.response99thTime;
+    }
+    public double getResponse999thTime() {
+        return this.response999thTime;
+    }
+    public double getResponseMaxTime() {
+        return this.responseMaxTime;
+    }
+
     public EntityResult getTransactionResult(String txnName) {
         return this.txnResults.get(txnName);
     }
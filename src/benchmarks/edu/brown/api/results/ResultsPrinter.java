@@ -122,6 +122,14 @@ public class ResultsPrinter implements BenchmarkInterest {
         m.put("Transactions", txnInfo);
         m.put("Throughput", throughput.toString()); 
         m.put("Latency", latencies.toString());
+        if (fr.getOpenLoopTxnCount() > 0) {
+            m.put("Service Time", formatTimes(fr.getServiceAvgTime(), fr.getService50thTime(),
+                                              fr.getService99thTime(), fr.getService999thTime(),
+                                              fr.getServiceMaxTime()));
+            m.put("Response Time", formatTimes(fr.getResponseAvgTime(), fr.getResponse50thTime(),
+                                               fr.getResponse99thTime(), fr.getResponse999thTime(),
+                                               fr.getResponseMaxTime()));
+        }
         sb.append(StringUtil.formatMaps(m));
         sb.append("\n");
 
@@ -192,6 +200,21 @@ public class ResultsPrinter implements BenchmarkInterest {
         return (sb.toString());
     }
     
+    private static String formatTimes(double avg, double p50, double p99, double p999, double max) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(RESULT_FORMAT + " ms", avg))
+          .append(" [")
+          .append(String.format("50th:" + RESULT_FORMAT, p50))
+          .append(" / ")
+          .append(String.format("99th:" + RESULT_FORMAT, p99))
+          .append(" / ")
+          .append(String.format("99.9th:" + RESULT_FORMAT, p999))
+          .append(" / ")
+          .append(String.format("max:" + RESULT_FORMAT, max))
+          .append("]");
+        return (sb.toString());
+    }
+    
     private void makeRow(EntityResult er, String label, Object row[]) {
         
         int col_idx = 0;
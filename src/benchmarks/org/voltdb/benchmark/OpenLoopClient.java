@@ -0,0 +1,244 @@
+package org.voltdb.benchmark;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+
+import org.apache.log4j.Logger;
+import org.voltdb.StoredProcedureInvocationHints;
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ClientStatusListener;
+import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCallback;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.profilers.ProfileMeasurement;
+
+/**
+ * Client wrapper for open-loop load generation. The thread that submits txns
+ * tells us when each txn was supposed to be sent with setIntendedStartTime().
+ * When the response comes back, we compute both the service time (i.e., the
+ * roundtrip time from when the request actually went out) and the response time
+ * (i.e., the time from when the request should have gone out). The latter
+ * includes however long the txn was stuck waiting behind earlier txns in the
+ * client, so it doesn't hide stalls the way the roundtrip time does.
+ * <P>
+ * The timings are only available to the inner callback while it is running
+ * through getServiceTime() and getResponseTime().
+ */
+public class OpenLoopClient implements Client {
+    private static final Logger LOG = Logger.getLogger(OpenLoopClient.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+    
+    /**
+     * The timings for the response that is being processed by this thread.
+     * [0] Service Time (ms), [1] Response Time (ms)
+     */
+    private static final ThreadLocal<int[]> CALLBACK_TIMES = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return (new int[]{ -1, -1 });
+        }
+    };
+    
+    private final Client inner;
+    
+    /**
+     * The intended send time (System.nanoTime()) of the txns that are being
+     * submitted right now. Negative means that we should just use the current time.
+     */
+    private volatile long intendedStartTime = -1;
+    
+    private class OpenLoopCallback implements ProcedureCallback {
+        private final ProcedureCallback inner_callback;
+        private final long intended;
+        
+        public OpenLoopCallback(ProcedureCallback inner_callback, long intended) {
+            assert(inner_callback != null);
+            this.inner_callback = inner_callback;
+            this.intended = intended;
+        }
+        
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            int times[] = CALLBACK_TIMES.get();
+            times[0] = clientResponse.getClientRoundtrip();
+            times[1] = (int)((System.nanoTime() - this.intended) / 1000000l);
+            if (trace.val)
+                LOG.trace(String.format("Txn #%d [serviceTime=%d, responseTime=%d]",
+                          clientResponse.getTransactionId(), times[0], times[1]));
+            try {
+                this.inner_callback.clientCallback(clientResponse);
+            } finally {
+                times[0] = -1;
+                times[1] = -1;
+            }
+        }
+    }
+    
+    /**
+     * Constructor
+     * @param inner
+     */
+    public OpenLoopClient(Client inner) {
+        this.inner = inner;
+        if (debug.val) LOG.debug("Created new " + this.getClass().getSimpleName());
+    }
+
+    public Client getClient() {
+        return (this.inner);
+    }
+    
+    /**
+     * Set the intended send time (System.nanoTime()) for any txns that are
+     * submitted after this call. This should be invoked by the thread that is
+     * submitting txns before each txn is sent.
+     * @param nanos
+     */
+    public void setIntendedStartTime(long nanos) {
+        this.intendedStartTime = nanos;
+    }
+    
+    /**
+     * Return the time in milliseconds from when the request was actually sent
+     * until the response arrived. This is only valid from inside of a callback.
+     */
+    public static int getServiceTime() {
+        return (CALLBACK_TIMES.get()[0]);
+    }
+
+    /**
+     * Return the time in milliseconds from when the request was supposed to be
+     * sent until the response arrived. This is only valid from inside of a callback.
+     */
+    public static int getResponseTime() {
+        return (CALLBACK_TIMES.get()[1]);
+    }
+    
+    private ProcedureCallback wrap(ProcedureCallback callback) {
+        long intended = this.intendedStartTime;
+        if (intended < 0) intended = System.nanoTime();
+        return (new OpenLoopCallback(callback, intended));
+    }
+
+    @Override
+    public void addClientStatusListener(ClientStatusListener listener) {
+        this.inner.addClientStatusListener(listener);
+    }
+
+    @Override
+    public void backpressureBarrier() throws InterruptedException {
+        this.inner.backpressureBarrier();
+    }
+
+    @Override
+    public boolean blocking() {
+        return this.inner.blocking();
+    }
+
+    @Override
+    public int calculateInvocationSerializedSize(String procName, Object... parameters) {
+        return this.inner.calculateInvocationSerializedSize(procName, parameters);
+    }
+
+    @Override
+    public ClientResponse callProcedure(String procName, Object... parameters) throws IOException,
+            NoConnectionsException, ProcCallException {
+        return this.inner.callProcedure(procName, null, parameters);
+    }
+    
+    @Override
+    public ClientResponse callProcedure(String procName, StoredProcedureInvocationHints hints, Object... parameters) throws IOException, NoConnectionsException, ProcCallException {
+        return this.inner.callProcedure(procName, hints, parameters);
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters) throws IOException,
+            NoConnectionsException {
+        return this.inner.callProcedure(this.wrap(callback), procName, null, parameters);
+    }
+    
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, StoredProcedureInvocationHints hints, Object... parameters) throws IOException, NoConnectionsException {
+        return this.inner.callProcedure(this.wrap(callback), procName, hints, parameters);
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, int expectedSerializedSize, String procName,
+            StoredProcedureInvocationHints hints, Object... parameters) throws IOException, NoConnectionsException {
+        return this.inner.callProcedure(this.wrap(callback), expectedSerializedSize, procName, hints, parameters);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        this.inner.close();
+    }
+
+    @Override
+    public void configureBlocking(boolean blocking) {
+        this.inner.configureBlocking(blocking);
+    }
+    
+    @Override
+    public void createConnection(String host, int port) throws UnknownHostException, IOException {
+        this.inner.createConnection(host, port);
+    }
+
+    @Override
+    public void createConnection(Integer siteId, String host, int port, String username, String password) throws UnknownHostException,
+            IOException {
+        this.inner.createConnection(siteId, host, port, username, password);
+    }
+
+    @Override
+    public void drain() throws NoConnectionsException, InterruptedException {
+        this.inner.drain();
+    }
+
+    @Override
+    public String getBuildString() {
+        return this.inner.getBuildString();
+    }
+
+    @Override
+    public VoltTable getIOStats() {
+        return this.inner.getIOStats();
+    }
+
+    @Override
+    public VoltTable getIOStatsInterval() {
+        return this.inner.getIOStatsInterval();
+    }
+
+    @Override
+    public Object[] getInstanceId() {
+        return this.inner.getInstanceId();
+    }
+
+    @Override
+    public VoltTable getProcedureStats() {
+        return this.inner.getProcedureStats();
+    }
+
+    @Override
+    public VoltTable getProcedureStatsInterval() {
+        return this.inner.getProcedureStatsInterval();
+    }
+
+    @Override
+    public boolean removeClientStatusListener(ClientStatusListener listener) {
+        return this.inner.removeClientStatusListener(listener);
+    }
+    
+    @Override
+    public ProfileMeasurement getQueueTime() {
+        return this.inner.getQueueTime();
+    }
+}
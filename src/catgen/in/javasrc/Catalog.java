@@ -171,18 +171,13 @@ public class Catalog extends CatalogType {
         return sb.toString();
     }
 
+    /**
+     * Create an exact copy of this catalog, including all of the version numbers.
+     * The copy is built from a binary CatalogSnapshot of this catalog.
+     * @return The new catalog
+     */
     public Catalog deepCopy() {
-        Catalog copy = new Catalog();
-        // Note that CatalogType.deepCopy isn't called on the catalog node.
-        // need to fully compensate for that here.
-        copy.m_currentCatalogVersion = m_currentCatalogVersion;
-        copy.m_nodeVersion = m_nodeVersion;
-        copy.m_subTreeVersion = m_subTreeVersion;
-        copy.m_relativeIndex = 1;
-        copy.m_clusters.copyFrom(m_clusters);
-
-
-        return copy;
+        return CatalogSnapshot.deserialize(CatalogSnapshot.serialize(this));
     }
 
     @Override
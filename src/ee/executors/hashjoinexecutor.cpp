@@ -0,0 +1,242 @@
+/* Copyright (C) 2008 by H-Store Project
+ * Brown University
+ * Massachusetts Institute of Technology
+ * Yale University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <vector>
+#include <string>
+#include "boost/unordered_map.hpp"
+#include "hashjoinexecutor.h"
+#include "common/debuglog.h"
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "storage/tablefactory.h"
+#include "plannodes/hashjoinnode.h"
+
+namespace voltdb {
+
+// Defined in nestloopexecutor.cpp
+bool assignTupleValueIndex(AbstractExpression *ae,
+                           const std::string &oname,
+                           const std::string &iname);
+
+typedef boost::unordered_multimap<std::size_t, char*> HashJoinTable;
+
+static bool
+assignTupleValueIndexes(const AbstractExpression *expr,
+                        const std::string &oname,
+                        const std::string &iname)
+{
+    if (expr == NULL) return true;
+    if (expr->getExpressionType() == EXPRESSION_TYPE_VALUE_TUPLE) {
+        return assignTupleValueIndex(const_cast<AbstractExpression*>(expr), oname, iname);
+    }
+    return (assignTupleValueIndexes(expr->getLeft(), oname, iname) &&
+            assignTupleValueIndexes(expr->getRight(), oname, iname));
+}
+
+static inline std::size_t
+hashJoinKey(const TableTuple &tuple, const std::vector<int> &columns)
+{
+    std::size_t seed = 0;
+    for (int i = 0, cnt = (int)columns.size(); i < cnt; i++) {
+        tuple.getNValue(columns[i]).hashCombine(seed);
+    }
+    return seed;
+}
+
+void HashJoinExecutor::findKeyColumns(const AbstractExpression *expr) {
+    if (expr == NULL) return;
+
+    // Only the top-level conjuncts of the predicate can be used as keys
+    if (expr->getExpressionType() == EXPRESSION_TYPE_CONJUNCTION_AND) {
+        findKeyColumns(expr->getLeft());
+        findKeyColumns(expr->getRight());
+        return;
+    }
+    if (expr->getExpressionType() != EXPRESSION_TYPE_COMPARE_EQUAL ||
+        expr->getLeft() == NULL || expr->getRight() == NULL ||
+        expr->getLeft()->getExpressionType() != EXPRESSION_TYPE_VALUE_TUPLE ||
+        expr->getRight()->getExpressionType() != EXPRESSION_TYPE_VALUE_TUPLE) {
+        return;
+    }
+
+    const TupleValueExpression *left = dynamic_cast<const TupleValueExpression*>(expr->getLeft());
+    const TupleValueExpression *right = dynamic_cast<const TupleValueExpression*>(expr->getRight());
+    assert(left && right);
+    if (left->getTupleIndex() == right->getTupleIndex()) return;
+
+    const TupleValueExpression *outer = (left->getTupleIndex() == 0 ? left : right);
+    const TupleValueExpression *inner = (left->getTupleIndex() == 0 ? right : left);
+
+    // The hash values are only comparable if both columns have the same type
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    if (node->getInputTables()[0]->schema()->columnType(outer->getColumnId()) !=
+        node->getInputTables()[1]->schema()->columnType(inner->getColumnId())) {
+        return;
+    }
+    m_outerKeyColumns.push_back(outer->getColumnId());
+    m_innerKeyColumns.push_back(inner->getColumnId());
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstract_node, const catalog::Database* catalog_db, int* tempTableMemoryInBytes) {
+    VOLT_TRACE("init HashJoin Executor");
+    assert(tempTableMemoryInBytes);
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+
+    // produce the fully joined schema relying on a later projection
+    // to narrow the output later as required.
+    assert(node->getInputTables().size() == 2);
+    const TupleSchema *first = node->getInputTables()[0]->schema();
+    const TupleSchema *second = node->getInputTables()[1]->schema();
+    TupleSchema *schema = TupleSchema::createTupleSchema(first, second);
+
+    int combinedColumnCount = first->columnCount() + second->columnCount();
+    std::string *columnNames = new std::string[combinedColumnCount];
+    std::vector<int> outputColumnGuids;
+    int index = 0;
+
+    for (int ctr = 0; ctr < 2; ctr++) {
+        assert(node->getInputTables()[ctr]);
+        for (int col_ctr = 0, col_cnt = node->getInputTables()[ctr]->columnCount();
+             col_ctr < col_cnt;
+             col_ctr++, index++)
+        {
+            outputColumnGuids.
+                push_back(node->getChildren()[ctr]->getOutputColumnGuids()[col_ctr]);
+            columnNames[index] = node->getInputTables()[ctr]->columnName(col_ctr);
+        }
+    }
+
+    // Set the mapping of column names to column indexes in output tables
+    node->setOutputColumnGuids(outputColumnGuids);
+
+    // create the output table
+    node->setOutputTable(
+        TableFactory::getTempTable(
+            node->getInputTables()[0]->databaseId(), "temp", schema, columnNames, tempTableMemoryInBytes));
+    delete[] columnNames;
+
+    // Like the NestLoopExecutor, the first tuple passed to the predicate
+    // is always from the outer table and the second is from the inner table
+    if (!assignTupleValueIndexes(node->getPredicate(),
+                                 node->getInputTables()[0]->name(),
+                                 node->getInputTables()[1]->name())) {
+        return false;
+    }
+
+    // Pick out the equality clauses that we can use as the hash key.
+    // If there aren't any, then every tuple hashes to the same bucket
+    // and we end up doing a nested loop join.
+    m_outerKeyColumns.clear();
+    m_innerKeyColumns.clear();
+    findKeyColumns(node->getPredicate());
+    VOLT_DEBUG("HashJoin has %d key columns", (int)m_outerKeyColumns.size());
+
+    return true;
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params, ReadWriteTracker *tracker) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+    assert(node->getInputTables().size() == 2);
+
+    // output table must be a temp table
+    TempTable* output_table = dynamic_cast<TempTable*>(node->getOutputTable());
+    assert(output_table);
+
+    Table* outer_table = node->getInputTables()[0];
+    assert(outer_table);
+    Table* inner_table = node->getInputTables()[1];
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    //
+    // Join Expression
+    //
+    AbstractExpression *predicate = node->getPredicate();
+    if (predicate) {
+        predicate->substitute(params);
+        VOLT_TRACE ("predicate: %s", predicate == NULL ?
+                    "NULL" : predicate->debug(true).c_str());
+    }
+
+    // Build the hash table on whichever input is smaller
+    bool build_outer = (outer_table->activeTupleCount() < inner_table->activeTupleCount());
+    Table* build_table = (build_outer ? outer_table : inner_table);
+    Table* probe_table = (build_outer ? inner_table : outer_table);
+    const std::vector<int> &build_keys = (build_outer ? m_outerKeyColumns : m_innerKeyColumns);
+    const std::vector<int> &probe_keys = (build_outer ? m_innerKeyColumns : m_outerKeyColumns);
+
+    HashJoinTable hash_table((std::size_t)build_table->activeTupleCount());
+    TableTuple build_tuple(build_table->schema());
+    TableIterator build_iterator(build_table);
+    while (build_iterator.next(build_tuple)) {
+        hash_table.insert(std::make_pair(hashJoinKey(build_tuple, build_keys), build_tuple.address()));
+    }
+    VOLT_TRACE("Built HashJoin table on %s with %d tuples",
+               (build_outer ? "outer" : "inner"), (int)hash_table.size());
+
+    int outer_cols = outer_table->columnCount();
+    int inner_cols = inner_table->columnCount();
+    TableTuple probe_tuple(probe_table->schema());
+    TableTuple &outer_tuple = (build_outer ? build_tuple : probe_tuple);
+    TableTuple &inner_tuple = (build_outer ? probe_tuple : build_tuple);
+    TableTuple &joined = output_table->tempTuple();
+
+    TableIterator probe_iterator(probe_table);
+    while (probe_iterator.next(probe_tuple)) {
+        std::pair<HashJoinTable::const_iterator, HashJoinTable::const_iterator> range =
+            hash_table.equal_range(hashJoinKey(probe_tuple, probe_keys));
+        for (HashJoinTable::const_iterator it = range.first; it != range.second; ++it) {
+            build_tuple.move(it->second);
+
+            // The hash only tells us that the keys might match. The predicate
+            // takes care of collisions and any other non-key clauses.
+            if (predicate == NULL || predicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                for (int col_ctr = 0; col_ctr < outer_cols; col_ctr++) {
+                    joined.setNValue(col_ctr, outer_tuple.getNValue(col_ctr));
+                }
+                for (int col_ctr = 0; col_ctr < inner_cols; col_ctr++) {
+                    joined.setNValue(col_ctr + outer_cols, inner_tuple.getNValue(col_ctr));
+                }
+                output_table->insertTupleNonVirtual(joined);
+            }
+        }
+    }
+
+    return (true);
+}
+
+}
@@ -99,6 +99,8 @@ class TupleValueExpression : public AbstractExpression, public TupleValueExpress
         tuple_idx = idx;
     }
 
+    int getTupleIndex() const {return this->tuple_idx;}
+
   protected:
 
     int tuple_idx;           // which tuple. defaults to tuple1
@@ -2,10 +2,12 @@ package edu.brown.catalog;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
@@ -52,9 +54,9 @@ public abstract class CatalogKey {
     private static final String MULTIATTRIBUTE_DELIMITER = "#";
     private static final Pattern MULTIATTRIBUTE_DELIMITER_REGEX = Pattern.compile(Pattern.quote(MULTIATTRIBUTE_DELIMITER));
 
-    private static final Map<CatalogType, String> CACHE_CREATEKEY = new HashMap<CatalogType, String>();
-    private static final Map<Database, Map<String, CatalogType>> CACHE_GETFROMKEY = new HashMap<Database, Map<String, CatalogType>>();
-    private static final Map<String, String> CACHE_NAMEFROMKEY = new HashMap<String, String>();
+    private static final Map<CatalogType, String> CACHE_CREATEKEY = new ConcurrentHashMap<CatalogType, String>();
+    private static final ConcurrentHashMap<Database, Map<String, CatalogType>> CACHE_GETFROMKEY = new ConcurrentHashMap<Database, Map<String, CatalogType>>();
+    private static final Map<String, String> CACHE_NAMEFROMKEY = new ConcurrentHashMap<String, String>();
 
     public static class InvalidCatalogKey extends RuntimeException {
         private static final long serialVersionUID = 1L;
@@ -90,11 +92,11 @@ public abstract class CatalogKey {
     public static <T extends CatalogType> String createKey(T catalog_item) {
         // There is a 7x speed-up when we use the cache versus always
         // constructing a new key
+        if (catalog_item == null)
+            return (null);
         String ret = CACHE_CREATEKEY.get(catalog_item);
         if (ret != null)
             return (ret);
-        if (catalog_item == null)
-            return (null);
 
         JSONStringer stringer = new JSONStringer();
         try {
@@ -202,11 +204,15 @@ public abstract class CatalogKey {
         // Caching...
         Map<String, CatalogType> cache = CatalogKey.CACHE_GETFROMKEY.get(catalog_db);
         if (cache != null) {
-            if (cache.containsKey(key))
-                return (T) cache.get(key);
+            synchronized (cache) {
+                if (cache.containsKey(key))
+                    return (T) cache.get(key);
+            } // SYNCH
         } else {
-            cache = new HashMap<String, CatalogType>();
-            CatalogKey.CACHE_GETFROMKEY.put(catalog_db, cache);
+            // The values can be null, so we can't use a ConcurrentHashMap here
+            cache = Collections.synchronizedMap(new HashMap<String, CatalogType>());
+            Map<String, CatalogType> existing = CatalogKey.CACHE_GETFROMKEY.putIfAbsent(catalog_db, cache);
+            if (existing != null) cache = existing;
         }
 
         T catalog_item = null;
@@ -0,0 +1,70 @@
+package edu.brown.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.CatalogSnapshot;
+
+import edu.brown.profilers.ProfileMeasurement;
+import edu.brown.utils.ArgumentsParser;
+import edu.brown.utils.StringUtil;
+
+/**
+ * Compare how long it takes to load a catalog from its serialized text commands
+ * versus from a binary CatalogSnapshot. Also measures deep copies of the catalog.
+ */
+public class CatalogLoadBenchmark {
+
+    private static final int DEFAULT_ROUNDS = 20;
+
+    public static void main(String[] vargs) throws Exception {
+        ArgumentsParser args = ArgumentsParser.load(vargs);
+        args.require(ArgumentsParser.PARAM_CATALOG);
+        int rounds = DEFAULT_ROUNDS;
+        if (args.getOptParamCount() > 0) rounds = args.getIntOptParam(0);
+
+        Catalog catalog = args.catalog;
+        String commands = catalog.serialize();
+        byte snapshot[] = CatalogSnapshot.serialize(catalog);
+
+        ProfileMeasurement textLoad = new ProfileMeasurement("TEXT");
+        ProfileMeasurement snapshotLoad = new ProfileMeasurement("SNAPSHOT");
+        ProfileMeasurement snapshotSave = new ProfileMeasurement("SERIALIZE");
+        ProfileMeasurement deepCopy = new ProfileMeasurement("DEEPCOPY");
+
+        // Warm-up
+        for (int i = 0; i < 3; i++) {
+            new Catalog().execute(commands);
+            CatalogSnapshot.deserialize(snapshot);
+        } // FOR
+
+        for (int i = 0; i < rounds; i++) {
+            textLoad.start();
+            new Catalog().execute(commands);
+            textLoad.stop();
+
+            snapshotLoad.start();
+            CatalogSnapshot.deserialize(snapshot);
+            snapshotLoad.stop();
+
+            snapshotSave.start();
+            CatalogSnapshot.serialize(catalog);
+            snapshotSave.stop();
+
+            deepCopy.start();
+            catalog.deepCopy();
+            deepCopy.stop();
+        } // FOR
+
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("Rounds", rounds);
+        m.put("Text Size", StringUtil.formatSize(commands.length()));
+        m.put("Snapshot Size", StringUtil.formatSize(snapshot.length));
+        for (ProfileMeasurement pm : new ProfileMeasurement[]{ textLoad, snapshotLoad, snapshotSave, deepCopy }) {
+            m.put(pm.getName() + " (avg)", String.format("%.2f ms", pm.getAverageThinkTimeMS()));
+        } // FOR
+        m.put("Load Speed-up", String.format("%.2fx", textLoad.getAverageThinkTime() / snapshotLoad.getAverageThinkTime()));
+        System.out.println(StringUtil.formatMaps(m));
+    }
+}
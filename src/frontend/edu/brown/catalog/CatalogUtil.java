@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.commons.collections15.map.ListOrderedMap;
@@ -24,6 +25,7 @@ import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.CatalogMap;
+import org.voltdb.catalog.CatalogSnapshot;
 import org.voltdb.catalog.CatalogType;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Column;
@@ -244,7 +246,7 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
 
     }
 
-    private static final Map<Database, CatalogUtil.Cache> CACHE = new HashMap<Database, CatalogUtil.Cache>();
+    private static final ConcurrentHashMap<Database, CatalogUtil.Cache> CACHE = new ConcurrentHashMap<Database, CatalogUtil.Cache>();
 
     /**
      * Get the Cache handle for the Database catalog object If one doesn't exist
@@ -258,7 +260,8 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
         CatalogUtil.Cache ret = CACHE.get(catalog_db);
         if (ret == null) {
             ret = new CatalogUtil.Cache();
-            CACHE.put(catalog_db, ret);
+            CatalogUtil.Cache existing = CACHE.putIfAbsent(catalog_db, ret);
+            if (existing != null) ret = existing;
         }
         assert (ret != null) : "Failed to cache for " + catalog_item.fullName();
         return (ret);
@@ -329,8 +332,10 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
         
         Catalog catalog = null;
         String serializedCatalog = null;
+        byte catalogBytes[] = null;
         try {
-            serializedCatalog = JarReader.readFileFromJarfile(jar_path.getAbsolutePath(), CatalogUtil.CATALOG_FILENAME);
+            catalogBytes = JarReader.readFileFromJarAtURL(jar_path.getAbsolutePath(), CatalogUtil.CATALOG_FILENAME);
+            if (catalogBytes != null) serializedCatalog = new String(catalogBytes, "UTF-8");
         } catch (Exception ex) {
             ex.printStackTrace();
             return (null);
@@ -340,14 +345,46 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
         } else if (serializedCatalog.isEmpty()) {
             LOG.warn("The catalog file '" + CatalogUtil.CATALOG_FILENAME + "' in jar file '" + jar_path + "' is empty");
         } else {
-            catalog = new Catalog();
             if (debug.val)
                 LOG.debug("Extracted file '" + CatalogUtil.CATALOG_FILENAME + "' from jar file '" + jar_path + "'");
-            catalog.execute(serializedCatalog);
+            catalog = loadCatalogSnapshotFromJar(jar_path, catalogBytes);
+            if (catalog == null) {
+                catalog = new Catalog();
+                catalog.execute(serializedCatalog);
+            }
         }
         return (catalog);
     }
 
+    /**
+     * Load the catalog from the binary CatalogSnapshot in the given jar file.
+     * Returns null if the jar does not have a snapshot or if the snapshot was
+     * not created from the given serialized catalog (e.g., because somebody
+     * replaced the catalog file in the jar without updating the snapshot).
+     * @param jar_path
+     * @param catalogBytes The contents of the text catalog file in the jar
+     * @return
+     */
+    private static Catalog loadCatalogSnapshotFromJar(File jar_path, byte catalogBytes[]) {
+        byte snapshot[] = JarReader.readFileFromJarAtURL(jar_path.getAbsolutePath(), CatalogUtil.CATALOG_SNAPSHOT_FILENAME);
+        if (snapshot == null || snapshot.length == 0) {
+            return (null);
+        }
+        try {
+            if (CatalogSnapshot.getSourceChecksum(snapshot) != CatalogSnapshot.checksum(catalogBytes)) {
+                LOG.warn("The catalog snapshot '" + CatalogUtil.CATALOG_SNAPSHOT_FILENAME + "' in jar file '" +
+                         jar_path + "' is out of date. Loading catalog from '" + CatalogUtil.CATALOG_FILENAME + "'");
+                return (null);
+            }
+            if (debug.val)
+                LOG.debug("Loading catalog from snapshot '" + CatalogUtil.CATALOG_SNAPSHOT_FILENAME + "' in jar file '" + jar_path + "'");
+            return (CatalogSnapshot.deserialize(snapshot));
+        } catch (Exception ex) {
+            LOG.warn("Failed to load catalog snapshot '" + CatalogUtil.CATALOG_SNAPSHOT_FILENAME + "' from jar file '" + jar_path + "'", ex);
+        }
+        return (null);
+    }
+
     /**
      * Loads a serialized catalog specification from a text file and creates a
      * new Catalog object from it
@@ -415,10 +452,12 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
         for (int i = 0; i < files.size(); ++i) {
             String file = files.get(i);
             if (file.equals(CatalogUtil.CATALOG_FILENAME)) {
-                builder.addEntry(CatalogUtil.CATALOG_FILENAME,
-                                 catalog.serialize().getBytes());
+                byte catalogBytes[] = catalog.serialize().getBytes();
+                builder.addEntry(CatalogUtil.CATALOG_FILENAME, catalogBytes);
+                builder.addEntry(CatalogUtil.CATALOG_SNAPSHOT_FILENAME,
+                                 CatalogSnapshot.serialize(catalog, CatalogSnapshot.checksum(catalogBytes)));
             }
-            else {
+            else if (file.equals(CatalogUtil.CATALOG_SNAPSHOT_FILENAME) == false) {
                 builder.addEntry(file, bytes.get(i));
             }
         }
@@ -227,6 +227,13 @@ public class DesignerHints implements Cloneable, JSONSerializable {
     public double relaxation_factor_max = 0.5;
     public int relaxation_min_size = 5;
 
+    /**
+     * The number of relaxed neighborhoods that the LNSPartitioner will search
+     * at the same time on each restart. Each search gets its own copy of the
+     * catalog and cost model.
+     */
+    public int local_search_threads = 1;
+
     /**
      * If we were given a target PartitionPlan, then we will check whether every
      * new solution equals this plan. If it does, then we will halt. This is
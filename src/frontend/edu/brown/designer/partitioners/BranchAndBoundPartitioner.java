@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.log4j.Logger;
@@ -239,6 +240,45 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         }
     } // END CLASS
 
+    /**
+     * The lowest solution cost found so far by any of a group of searches that
+     * are running at the same time. Each search only accepts a new solution if it
+     * beats this cost, so one search finding a good solution lets the others
+     * prune their own trees sooner. Costs are never negative, so we can compare
+     * the raw bits of the doubles instead of taking a lock.
+     */
+    public static class SharedUpperBound {
+        private final AtomicLong bits;
+
+        public SharedUpperBound(double cost) {
+            assert (cost >= 0) : "Invalid cost: " + cost;
+            this.bits = new AtomicLong(Double.doubleToLongBits(cost));
+        }
+
+        public double get() {
+            return (Double.longBitsToDouble(this.bits.get()));
+        }
+
+        /**
+         * Lower the bound to the given cost. Returns true if the bound changed.
+         * @param cost
+         */
+        public boolean update(double cost) {
+            assert (cost >= 0) : "Invalid cost: " + cost;
+            long new_bits = Double.doubleToLongBits(cost);
+            while (true) {
+                long cur_bits = this.bits.get();
+                if (new_bits >= cur_bits) return (false);
+                if (this.bits.compareAndSet(cur_bits, new_bits)) return (true);
+            } // WHILE
+        }
+
+        @Override
+        public String toString() {
+            return (String.format("%.04f", this.get()));
+        }
+    } // END CLASS
+
     // --------------------------------------------------------------------------------------------
     // DATA MEMBERS
     // --------------------------------------------------------------------------------------------
@@ -246,6 +286,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
     protected StateVertex best_vertex = null;
     protected StateVertex upper_bounds_vertex = null;
     protected PartitionPlan upper_bounds_pplan = null;
+    protected SharedUpperBound shared_bound = null;
     protected final Map<CatalogType, WorkloadFilter> traversal_filters = new HashMap<CatalogType, WorkloadFilter>();
     protected TraverseThread thread = null;
 
@@ -298,6 +339,27 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         return (this.upper_bounds_vertex);
     }
 
+    /**
+     * Share the best cost found by this search with other searches that
+     * are running at the same time.
+     * @param shared_bound
+     */
+    public void setSharedUpperBound(SharedUpperBound shared_bound) {
+        this.shared_bound = shared_bound;
+    }
+
+    /**
+     * Returns the cost that a new solution has to beat. This is the lower of our
+     * own upper bounds and the best cost found by any concurrent search.
+     */
+    protected double getUpperBoundCost() {
+        double cost = this.upper_bounds_vertex.cost;
+        if (this.shared_bound != null) {
+            cost = Math.min(cost, this.shared_bound.get());
+        }
+        return (cost);
+    }
+
     // public void setTraversalAttributes(Map<String, List<String>> attributes,
     // int num_tables) {
     // this.base_traversal_attributes.clear();
@@ -1090,10 +1152,11 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 // (a) The current best solution is the start vertex
                 // (b) Or the current solution has a cost less than the current
                 // best solution
-                if (complete_solution && memory_exceeded == false && cost < BranchAndBoundPartitioner.this.upper_bounds_vertex.cost
+                if (complete_solution && memory_exceeded == false && cost < BranchAndBoundPartitioner.this.getUpperBoundCost()
                         && (BranchAndBoundPartitioner.this.best_vertex.isStartVertex() || cost < BranchAndBoundPartitioner.this.best_vertex.cost)) {
                     assert (best_vertex.cost > state.cost) : "Best=" + best_vertex.cost + ", Current=" + state.cost;
                     assert (upper_bounds_vertex.cost > state.cost) : "Upper=" + upper_bounds_vertex.cost + ", Current=" + state.cost;
+                    if (shared_bound != null) shared_bound.update(state.cost);
 
                     if (debug.val) {
                         LOG.debug("Old Solution:\n" + StringBoxUtil.box(best_vertex.toString()));
@@ -1158,7 +1221,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 // exhaustive flag is enabled
                 if (this.halt_search == false
                         && ((last_attribute && is_table && this.hints.greedy_search) || (this.hints.exhaustive_search == true) || (complete_solution == false && is_table
-                                && cost < BranchAndBoundPartitioner.this.best_vertex.cost && cost < BranchAndBoundPartitioner.this.upper_bounds_vertex.cost))) {
+                                && cost < BranchAndBoundPartitioner.this.best_vertex.cost && cost < BranchAndBoundPartitioner.this.getUpperBoundCost()))) {
 
                     // IMPORTANT: If this is the last table in our traversal,
                     // then we need to switch over
@@ -1225,7 +1288,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 // past our best cost
                 // our upper bounds, then keep going...
                 if (complete_solution == false && hints.enable_procparameter_search && (this.hints.greedy_search == true)
-                        || (local_best_vertex.cost < best_vertex.cost && local_best_vertex.cost < upper_bounds_vertex.cost)) {
+                        || (local_best_vertex.cost < best_vertex.cost && local_best_vertex.cost < getUpperBoundCost())) {
                     this.cp.update(current_proc);
                     this.traverse(local_best_vertex, idx + 1);
                     this.cp.reset(current_proc);
@@ -5,6 +5,7 @@ package edu.brown.designer.partitioners;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -24,6 +25,7 @@ import org.apache.log4j.Logger;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
+import org.voltdb.CatalogContext;
 import org.voltdb.catalog.CatalogType;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Database;
@@ -33,6 +35,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.Pair;
 
+import edu.brown.catalog.CatalogCloner;
 import edu.brown.catalog.CatalogKey;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.catalog.special.MultiColumn;
@@ -40,12 +43,15 @@ import edu.brown.catalog.special.MultiProcParameter;
 import edu.brown.catalog.special.NullProcParameter;
 import edu.brown.catalog.special.ReplicatedColumn;
 import edu.brown.costmodel.AbstractCostModel;
+import edu.brown.costmodel.SingleSitedCostModel;
+import edu.brown.costmodel.TimeIntervalCostModel;
 import edu.brown.designer.AccessGraph;
 import edu.brown.designer.Designer;
 import edu.brown.designer.DesignerHints;
 import edu.brown.designer.DesignerInfo;
 import edu.brown.designer.DesignerVertex;
 import edu.brown.designer.generators.AccessGraphGenerator;
+import edu.brown.designer.partitioners.BranchAndBoundPartitioner.SharedUpperBound;
 import edu.brown.designer.partitioners.plan.PartitionPlan;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
@@ -56,12 +62,15 @@ import edu.brown.rand.RandomDistribution;
 import edu.brown.statistics.Histogram;
 import edu.brown.statistics.ObjectHistogram;
 import edu.brown.statistics.TableStatistics;
+import edu.brown.utils.ClassUtil;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.JSONSerializable;
 import edu.brown.utils.JSONUtil;
 import edu.brown.utils.MathUtil;
+import edu.brown.utils.PartitionEstimator;
 import edu.brown.utils.StringBoxUtil;
 import edu.brown.utils.StringUtil;
+import edu.brown.utils.ThreadUtil;
 
 /**
  * Large-Neighborhood Search Partitioner
@@ -118,6 +127,13 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
     protected final Set<Collection<Table>> relaxed_sets = new HashSet<Collection<Table>>();
     protected transient BigInteger relaxed_sets_max = null;
 
+    /**
+     * When DesignerHints.local_search_threads is greater than one, these are
+     * the workers that search different relaxed neighborhoods at the same time.
+     * Each one has its own copy of the catalog.
+     */
+    protected final transient List<LocalSearchWorker> workers = new ArrayList<LocalSearchWorker>();
+
     // ----------------------------------------------------------------------------
     // PRE-COMPUTED CATALOG INFORMATION
     // ----------------------------------------------------------------------------
@@ -341,6 +357,51 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
             } // FOR
         } // FOR
 
+        // Set up our parallel local search workers
+        if (hints.local_search_threads > 1 && this.workers.isEmpty()) {
+            this.initLocalSearchWorkers(hints.local_search_threads);
+        }
+    }
+
+    /**
+     * Create the workers that we will use to search multiple relaxed
+     * neighborhoods in parallel. If we don't know how to make a copy of our
+     * cost model, then we'll fall back to the single-threaded search.
+     * 
+     * @param num_workers
+     * @throws Exception
+     */
+    protected void initLocalSearchWorkers(int num_workers) throws Exception {
+        if ((this.costmodel instanceof TimeIntervalCostModel<?> || this.costmodel instanceof SingleSitedCostModel) == false) {
+            LOG.warn(String.format("Unable to create copies of %s. Parallel local search is disabled",
+                                   this.costmodel.getClass().getSimpleName()));
+            return;
+        }
+        LOG.info(String.format("Creating %d parallel local search workers", num_workers));
+        for (int i = 0; i < num_workers; i++) {
+            this.workers.add(new LocalSearchWorker(i));
+        } // FOR
+    }
+
+    /**
+     * Create a new cost model of the same type as our cost model for the given
+     * catalog. Returns null if we don't know how to do that.
+     * 
+     * @param catalogContext
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    protected AbstractCostModel createWorkerCostModel(CatalogContext catalogContext) throws Exception {
+        if (this.costmodel instanceof TimeIntervalCostModel<?>) {
+            TimeIntervalCostModel<?> orig = (TimeIntervalCostModel<?>) this.costmodel;
+            Class<? extends AbstractCostModel> inner_class = (Class<? extends AbstractCostModel>) orig.getCostModel(0).getClass();
+            return (new TimeIntervalCostModel<AbstractCostModel>(catalogContext, inner_class, orig.getIntevalCount()));
+        } else if (this.costmodel instanceof SingleSitedCostModel) {
+            Constructor<? extends AbstractCostModel> constructor = ClassUtil.getConstructor(this.costmodel.getClass(), CatalogContext.class, PartitionEstimator.class);
+            return (constructor.newInstance(catalogContext, new PartitionEstimator(catalogContext)));
+        }
+        return (null);
     }
 
     /*
@@ -439,18 +500,26 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
             }
 
             this.total_search_time.start();
-            // IMPORTANT: Make sure that we are always start comparing swaps
-            // using the solution
-            // at the beginning of a restart (or the start of the search). We do
-            // *not* want to
-            // compare swaps using the global best cost
-            if (!this.relaxCurrentSolution(hints, this.restart_ctr++, table_attributes, proc_attributes)) {
-                LOG.debug("Halting LNS!");
-                break;
-            }
+            if (this.workers.isEmpty() == false) {
+                // Parallel Local Search!
+                if (this.parallelLocalSearch(hints) == false) {
+                    LOG.debug("Halting LNS!");
+                    break;
+                }
+            } else {
+                // IMPORTANT: Make sure that we are always start comparing swaps
+                // using the solution
+                // at the beginning of a restart (or the start of the search). We do
+                // *not* want to
+                // compare swaps using the global best cost
+                if (!this.relaxCurrentSolution(hints, this.restart_ctr++, table_attributes, proc_attributes)) {
+                    LOG.debug("Halting LNS!");
+                    break;
+                }
 
-            // Local Search!
-            this.localSearch(hints, table_attributes.asList(), proc_attributes.asList());
+                // Local Search!
+                this.localSearch(hints, table_attributes.asList(), proc_attributes.asList());
+            }
 
             // Sanity Check!
             if (this.restart_ctr % 3 == 0) {
@@ -733,19 +802,7 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
         // Calculate the number of backtracks and the local search time
         // we want to allow in this round.
         // -------------------------------
-        if (hints.enable_local_search_increase) {
-            if (this.last_halt_reason == HaltReason.BACKTRACK_LIMIT && this.last_backtrack_limit != null) {
-                // Give them more backtracks
-                this.last_backtrack_limit = this.last_backtrack_limit * hints.back_tracks_multiplier;
-                LOG.info(String.format("Increasing BackTrack limit from %d to %.02f", hints.limit_back_tracks, this.last_backtrack_limit));
-                hints.limit_back_tracks = (int) Math.round(this.last_backtrack_limit);
-            } else if (this.last_halt_reason == HaltReason.LOCAL_TIME_LIMIT && this.last_localtime_limit != null) {
-                // Give them more time
-                this.last_localtime_limit = this.last_localtime_limit * hints.local_time_multiplier;
-                LOG.info(String.format("Increasing LocalTime limit from %d to %.02f", hints.limit_local_time, this.last_localtime_limit));
-                hints.limit_local_time = (int) Math.round(this.last_localtime_limit);
-            }
-        }
+        this.updateLocalSearchLimits(hints);
 
         // -------------------------------
         // GO GO LOCAL SEARCH!!
@@ -791,6 +848,242 @@ public class LNSPartitioner extends AbstractPartitioner implements JSONSerializa
         return;
     }
 
+    /**
+     * If the last local search ran out of backtracks or time, then give the
+     * next one more of whichever one it ran out of.
+     * 
+     * @param hints
+     */
+    protected void updateLocalSearchLimits(final DesignerHints hints) {
+        if (hints.enable_local_search_increase == false)
+            return;
+        if (this.last_halt_reason == HaltReason.BACKTRACK_LIMIT && this.last_backtrack_limit != null) {
+            // Give them more backtracks
+            this.last_backtrack_limit = this.last_backtrack_limit * hints.back_tracks_multiplier;
+            LOG.info(String.format("Increasing BackTrack limit from %d to %.02f", hints.limit_back_tracks, this.last_backtrack_limit));
+            hints.limit_back_tracks = (int) Math.round(this.last_backtrack_limit);
+        } else if (this.last_halt_reason == HaltReason.LOCAL_TIME_LIMIT && this.last_localtime_limit != null) {
+            // Give them more time
+            this.last_localtime_limit = this.last_localtime_limit * hints.local_time_multiplier;
+            LOG.info(String.format("Increasing LocalTime limit from %d to %.02f", hints.limit_local_time, this.last_localtime_limit));
+            hints.limit_local_time = (int) Math.round(this.last_localtime_limit);
+        }
+    }
+
+    /**
+     * Parallel Local Search
+     * Relax a different neighborhood for each of our workers and search them
+     * all at the same time. The workers share the best cost that any of them
+     * has found so far so that they can prune their searches sooner. Returns
+     * false if there is nothing left to search.
+     * 
+     * @param hints
+     * @return
+     * @throws Exception
+     */
+    protected boolean parallelLocalSearch(final DesignerHints hints) throws Exception {
+        // -------------------------------
+        // Pick a different relaxation for each worker
+        // -------------------------------
+        final ListOrderedSet<Table> table_attributes = new ListOrderedSet<Table>();
+        final ListOrderedSet<Procedure> proc_attributes = new ListOrderedSet<Procedure>();
+        List<LocalSearchWorker> active = new ArrayList<LocalSearchWorker>();
+        for (LocalSearchWorker worker : this.workers) {
+            if (this.relaxCurrentSolution(hints, this.restart_ctr++, table_attributes, proc_attributes) == false) {
+                break;
+            }
+            worker.setNeighborhood(table_attributes.asList(), proc_attributes.asList());
+            active.add(worker);
+        } // FOR
+        if (active.isEmpty())
+            return (false);
+
+        this.updateLocalSearchLimits(hints);
+
+        // -------------------------------
+        // GO GO LOCAL SEARCH!!
+        // -------------------------------
+        SharedUpperBound shared_bound = new SharedUpperBound(this.best_cost);
+        long best_memory = (long) (this.best_memory * hints.max_memory_per_partition);
+        for (LocalSearchWorker worker : active) {
+            worker.prepare(hints, shared_bound, best_memory);
+        } // FOR
+        long start = System.currentTimeMillis();
+        ThreadUtil.runNewPool(active, active.size());
+        this.last_elapsed_time = Math.round((System.currentTimeMillis() - start) / 1000);
+
+        // -------------------------------
+        // Comparison with current best solution
+        // -------------------------------
+        LocalSearchWorker best_worker = null;
+        HaltReason halt_reason = HaltReason.EXHAUSTED_SEARCH;
+        long backtracks = 0;
+        for (LocalSearchWorker worker : active) {
+            if (best_worker == null || worker.state.getCost() < best_worker.state.getCost()) {
+                best_worker = worker;
+            }
+            if (worker.halt_reason == HaltReason.FOUND_TARGET) {
+                halt_reason = HaltReason.FOUND_TARGET;
+            } else if (worker.halt_reason != HaltReason.EXHAUSTED_SEARCH && halt_reason == HaltReason.EXHAUSTED_SEARCH) {
+                halt_reason = worker.halt_reason;
+            }
+            if (worker.backtrack_count != null) {
+                backtracks = Math.max(backtracks, worker.backtrack_count);
+            }
+        } // FOR
+        this.last_halt_reason = halt_reason;
+        this.last_backtrack_count = backtracks;
+
+        if (best_worker.state.getCost() < this.best_cost) {
+            LOG.info(String.format("New Best Solution Found from Parallel Local Search! [worker=%d]", best_worker.id));
+            this.best_solution = JSONUtil.fromJSONString(new PartitionPlan(), info.catalogContext.database, best_worker.result.toJSONString());
+            this.best_cost = best_worker.state.getCost();
+            this.best_memory = best_worker.state.getMemory() / (double) hints.max_memory_per_partition;
+            LOG.info("Best Solution Cost: " + String.format(DEBUG_COST_FORMAT, this.best_cost));
+            LOG.info("Best Solution Memory: " + String.format(DEBUG_COST_FORMAT, this.best_memory));
+            LOG.info("Best Solution:\n" + this.best_solution);
+        }
+        this.best_solution.apply(info.catalogContext.database);
+
+        // Our own cost model hasn't seen any of these changes
+        this.costmodel.clear(true);
+        return (true);
+    }
+
+    /**
+     * A LocalSearchWorker runs the BranchAndBoundPartitioner on one relaxed
+     * neighborhood against its own copy of the catalog. It keeps the same cost
+     * model for the entire search, so when the best solution changes between
+     * restarts we only have to throw away the cached estimates for the tables
+     * and procedures whose partitioning is different.
+     */
+    protected class LocalSearchWorker implements Runnable {
+        private final int id;
+        private final Database catalog_db;
+        private final DesignerInfo info;
+        private final AccessGraph agraph;
+
+        /** The solution that the cached cost model estimates are based on */
+        private PartitionPlan cached_solution = null;
+
+        // Input
+        private final List<Table> table_visit_order = new ArrayList<Table>();
+        private final List<Procedure> proc_visit_order = new ArrayList<Procedure>();
+        private DesignerHints hints;
+        private PartitionPlan upper_bounds;
+        private double upper_bounds_cost;
+        private long upper_bounds_memory;
+        private SharedUpperBound shared_bound;
+
+        // Output
+        private PartitionPlan result;
+        private BranchAndBoundPartitioner.StateVertex state;
+        private HaltReason halt_reason;
+        private Long backtrack_count;
+
+        public LocalSearchWorker(int id) throws Exception {
+            this.id = id;
+            DesignerInfo orig = LNSPartitioner.this.info;
+            Database clone_db = CatalogCloner.cloneDatabase(orig.catalogContext.database);
+            CatalogContext clone_catalogContext = new CatalogContext(clone_db.getCatalog());
+            this.catalog_db = clone_catalogContext.database;
+            this.info = new DesignerInfo(clone_catalogContext, orig.workload, orig.stats);
+            this.info.setCostModel(LNSPartitioner.this.createWorkerCostModel(clone_catalogContext));
+
+            AccessGraph first = new AccessGraph(this.catalog_db);
+            for (Procedure catalog_proc : this.catalog_db.getProcedures()) {
+                if (this.info.workload.getTraces(catalog_proc).isEmpty() == false) {
+                    new AccessGraphGenerator(this.info, catalog_proc).generate(first);
+                }
+            } // FOR
+            this.agraph = AccessGraphGenerator.convertToSingleColumnEdges(this.catalog_db, first);
+        }
+
+        /**
+         * Set the tables and procedures that this worker will relax in its
+         * next search. These are from the main catalog.
+         */
+        public void setNeighborhood(Collection<Table> tables, Collection<Procedure> procs) {
+            this.table_visit_order.clear();
+            for (Table catalog_tbl : tables) {
+                this.table_visit_order.add(this.catalog_db.getTables().get(catalog_tbl.getName()));
+            } // FOR
+            this.proc_visit_order.clear();
+            for (Procedure catalog_proc : procs) {
+                this.proc_visit_order.add(this.catalog_db.getProcedures().get(catalog_proc.getName()));
+            } // FOR
+        }
+
+        public void prepare(DesignerHints hints, SharedUpperBound shared_bound, long upper_bounds_memory) {
+            this.hints = hints.clone();
+            if (hints.target_plan != null) {
+                this.hints.target_plan = this.translate(hints.target_plan);
+            }
+            this.upper_bounds = this.translate(LNSPartitioner.this.best_solution);
+            this.upper_bounds_cost = LNSPartitioner.this.best_cost;
+            this.upper_bounds_memory = upper_bounds_memory;
+            this.shared_bound = shared_bound;
+            this.result = null;
+            this.state = null;
+            this.halt_reason = null;
+            this.backtrack_count = null;
+        }
+
+        private PartitionPlan translate(PartitionPlan pplan) {
+            return (JSONUtil.fromJSONString(new PartitionPlan(), this.catalog_db, pplan.toJSONString()));
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.search();
+            } catch (Exception ex) {
+                throw new RuntimeException(String.format("LocalSearchWorker #%d failed", this.id), ex);
+            }
+        }
+
+        private void search() throws Exception {
+            AbstractCostModel cost_model = this.info.getCostModel();
+            cost_model.applyDesignerHints(this.hints);
+
+            // Bring our catalog up to date with the current best solution and
+            // invalidate only the cached estimates for the things that changed
+            this.upper_bounds.apply(this.catalog_db);
+            if (this.cached_solution == null) {
+                cost_model.clear(true);
+            } else {
+                cost_model.invalidateCache(this.upper_bounds.getChangedEntries(this.cached_solution));
+            }
+            this.cached_solution = this.upper_bounds;
+
+            // Apply relaxation
+            for (Table catalog_tbl : this.table_visit_order) {
+                cost_model.invalidateCache(catalog_tbl);
+            } // FOR
+            for (Procedure catalog_proc : this.proc_visit_order) {
+                catalog_proc.setPartitionparameter(NullProcParameter.PARAM_IDX);
+                cost_model.invalidateCache(catalog_proc);
+            } // FOR
+
+            BranchAndBoundPartitioner local_search = new BranchAndBoundPartitioner(LNSPartitioner.this.designer, this.info, this.agraph, this.table_visit_order, this.proc_visit_order);
+            local_search.setUpperBounds(this.hints, this.upper_bounds, this.upper_bounds_cost, this.upper_bounds_memory);
+            local_search.setSharedUpperBound(this.shared_bound);
+            this.result = local_search.generate(this.hints);
+            this.state = local_search.getBestVertex();
+            this.halt_reason = local_search.halt_reason;
+            this.backtrack_count = local_search.getLastBackTrackCount();
+
+            // The search leaves the relaxed items in whatever state it last
+            // looked at, so we can't trust anything cached for them
+            for (Table catalog_tbl : this.table_visit_order) {
+                cost_model.invalidateCache(catalog_tbl);
+            } // FOR
+            for (Procedure catalog_proc : this.proc_visit_order) {
+                cost_model.invalidateCache(catalog_proc);
+            } // FOR
+        }
+    } // CLASS
+
     /**
      * @param hints
      * @param table_attributes
@@ -0,0 +1,247 @@
+package edu.brown.hstore;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.txns.LocalTransaction;
+import edu.brown.interfaces.Configurable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Per-partition admission control for new transaction requests.
+ * <p>
+ * Every base partition has its own admission window, which is the max number of
+ * txns for that partition that we will accept from clients before they finish.
+ * The PartitionExecutors report how long each txn waited before it started
+ * executing at its base partition. We follow CoDel and only look at the smallest
+ * queue delay that we saw in each interval: if even the best txn in the interval
+ * waited longer than the target delay, then the partition has a standing queue.
+ * When that happens we cut the partition's window in half and we check again
+ * after a shorter interval (interval / sqrt(# of congested intervals in a row)).
+ * Once the min delay goes back under the target, the window grows again by a fixed
+ * amount every interval (AIMD).
+ * <p>
+ * This means that a single hot partition only throttles the requests that
+ * want to run at that partition. All of the other partitions at this site keep
+ * accepting new txns at full speed.
+ */
+public class AdmissionController implements Configurable {
+    private static final Logger LOG = Logger.getLogger(AdmissionController.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * How much to shrink a partition's window after a congested interval
+     */
+    private static final double WINDOW_DECREASE = 0.5;
+
+    /**
+     * Internal state for a single partition
+     */
+    private class PartitionState {
+        private final int partition;
+        private final AtomicInteger inflight = new AtomicInteger(0);
+        private final AtomicLong admitted = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+        private volatile int window;
+
+        // The fields below are protected by the PartitionState's lock
+        private long intervalStart = -1;
+        private long intervalMinDelay = Long.MAX_VALUE;
+        private long lastMinDelay = 0;
+        private boolean dropping = false;
+        private int dropCount = 0;
+        private long congestionCount = 0;
+
+        private PartitionState(int partition, int window) {
+            this.partition = partition;
+            this.window = window;
+        }
+
+        private synchronized void sample(long delay, long now) {
+            if (this.intervalStart < 0) this.intervalStart = now;
+            if (delay < this.intervalMinDelay) this.intervalMinDelay = delay;
+
+            long interval = intervalLength;
+            if (this.dropping) {
+                interval = Math.max(1, (long)(interval / Math.sqrt(this.dropCount)));
+            }
+            if (now - this.intervalStart < interval) return;
+
+            // The interval is over, so now we get to decide whether this
+            // partition has a standing queue or not
+            int oldWindow = this.window;
+            this.lastMinDelay = this.intervalMinDelay;
+            if (this.intervalMinDelay > targetDelay) {
+                this.dropping = true;
+                this.dropCount++;
+                this.congestionCount++;
+                this.window = Math.max(minWindow, (int)(this.window * WINDOW_DECREASE));
+            } else {
+                this.dropping = false;
+                this.dropCount = 0;
+                this.window = Math.min(maxWindow, this.window + minWindow);
+            }
+            if (debug.val && oldWindow != this.window)
+                LOG.debug(String.format("Partition %d admission window %d -> %d " +
+                          "[minDelay=%dms, target=%dms, inflight=%d]",
+                          this.partition, oldWindow, this.window,
+                          this.lastMinDelay, targetDelay, this.inflight.get()));
+            this.intervalStart = now;
+            this.intervalMinDelay = Long.MAX_VALUE;
+        }
+
+        private synchronized void clamp() {
+            this.window = Math.max(minWindow, Math.min(maxWindow, this.window));
+        }
+    } // CLASS
+
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final PartitionState states[];
+    private final boolean nanoseconds;
+
+    private long targetDelay;
+    private long intervalLength;
+    private int minWindow;
+    private int maxWindow;
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param hstore_conf
+     * @param partitions The local partitions that we will control admission for
+     * @param numPartitions The total number of partitions in the cluster
+     */
+    public AdmissionController(HStoreConf hstore_conf, Iterable<Integer> partitions, int numPartitions) {
+        this.nanoseconds = hstore_conf.global.nanosecond_latencies;
+        this.states = new PartitionState[numPartitions];
+        this.updateConf(hstore_conf, null);
+        for (int partition : partitions) {
+            this.states[partition] = new PartitionState(partition, this.maxWindow);
+        } // FOR
+    }
+
+    @Override
+    public void updateConf(HStoreConf hstore_conf, String[] changed) {
+        this.targetDelay = hstore_conf.site.network_admission_target;
+        this.intervalLength = hstore_conf.site.network_admission_interval;
+        this.maxWindow = Math.max(1, hstore_conf.site.network_incoming_limit_txns);
+        this.minWindow = Math.max(1, Math.min(this.maxWindow, hstore_conf.site.network_admission_min_window));
+        for (PartitionState state : this.states) {
+            if (state != null) state.clamp();
+        } // FOR
+    }
+
+    // ----------------------------------------------------------------------------
+    // ADMISSION METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true if a new txn request whose base partition is the given
+     * partition can be accepted. If this returns true, then the caller
+     * must invoke {@link #release(int)} once the txn's response is sent back
+     * to the client.
+     * @param partition
+     * @return
+     */
+    public boolean admit(int partition) {
+        PartitionState state = this.states[partition];
+        if (state.inflight.incrementAndGet() > state.window) {
+            state.inflight.decrementAndGet();
+            state.rejected.incrementAndGet();
+            if (trace.val)
+                LOG.trace(String.format("Rejecting new txn request for partition %d " +
+                          "[window=%d, dropping=%s]",
+                          partition, state.window, state.dropping));
+            return (false);
+        }
+        state.admitted.incrementAndGet();
+        return (true);
+    }
+
+    /**
+     * Release the admission slot for a txn that was previously accepted
+     * by {@link #admit(int)}.
+     * @param partition
+     */
+    public void release(int partition) {
+        this.states[partition].inflight.decrementAndGet();
+    }
+
+    /**
+     * Record the time that the given txn spent waiting before it
+     * started executing at the given partition.
+     * @param partition
+     * @param ts
+     */
+    public void sample(int partition, LocalTransaction ts) {
+        long delay;
+        if (this.nanoseconds) {
+            delay = (System.nanoTime() - ts.getInitiateTime()) / 1000000l;
+        } else {
+            delay = System.currentTimeMillis() - ts.getInitiateTime();
+        }
+        this.sample(partition, delay, System.currentTimeMillis());
+    }
+
+    /**
+     * Record a queue delay for the given partition
+     * @param partition
+     * @param delay The queue delay in milliseconds
+     * @param now The current time in milliseconds
+     */
+    public void sample(int partition, long delay, long now) {
+        this.states[partition].sample(delay, now);
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATE ACCESS
+    // ----------------------------------------------------------------------------
+
+    public int getWindow(int partition) {
+        return (this.states[partition].window);
+    }
+    public int getInFlight(int partition) {
+        return (this.states[partition].inflight.get());
+    }
+    public boolean isDropping(int partition) {
+        PartitionState state = this.states[partition];
+        synchronized (state) {
+            return (state.dropping);
+        } // SYNCH
+    }
+    public long getLastMinDelay(int partition) {
+        PartitionState state = this.states[partition];
+        synchronized (state) {
+            return (state.lastMinDelay);
+        } // SYNCH
+    }
+    public long getCongestionCount(int partition) {
+        PartitionState state = this.states[partition];
+        synchronized (state) {
+            return (state.congestionCount);
+        } // SYNCH
+    }
+    public long getAdmittedCount(int partition) {
+        return (this.states[partition].admitted.get());
+    }
+    public long getRejectedCount(int partition) {
+        return (this.states[partition].rejected.get());
+    }
+    public long getTargetDelay() {
+        return (this.targetDelay);
+    }
+}
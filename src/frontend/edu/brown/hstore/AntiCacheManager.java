@@ -340,6 +340,8 @@ public class AntiCacheManager extends AbstractProcessingRunnable<AntiCacheManage
 
             if (debug.val) LOG.debug("restartin on local");
         	this.hstore_site.transactionInit(next.ts);	
+            TransactionEpochManager epochManager = this.hstore_site.getTransactionQueueManager().getEpochManager();
+            if (epochManager != null) epochManager.transactionSent(next.ts.getTransactionId());
         } else {
         	ee.antiCacheMergeBlocks(next.catalog_tbl);
         	RemoteTransaction ts = (RemoteTransaction) next.ts; 
@@ -431,6 +431,7 @@ public class ClientInterface implements Shutdownable, Configurable {
          * @param user Set of permissions associated with requests coming from this connection
          */
         public ClientInputHandler(String hostname) {
+            super(true);
             m_hostname = hostname;
         }
 
@@ -455,7 +456,9 @@ public class ClientInterface implements Shutdownable, Configurable {
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
             if (profiler != null) profiler.network_processing.start();
-            hstore_site.invocationQueue(message, this, c);
+            // The HStoreSite will hand the pooled buffer back once it has
+            // deserialized the request's ParameterSet
+            hstore_site.invocationQueue(this.claimMessage(), this, c);
             if (profiler != null) profiler.network_processing.stop();
         }
 
@@ -473,6 +476,7 @@ public class ClientInterface implements Shutdownable, Configurable {
 
         @Override
         public void stopped(Connection c) {
+            super.stopped(c);
             numConnections.decrementAndGet();
         }
 
@@ -590,6 +594,13 @@ public class ClientInterface implements Shutdownable, Configurable {
     private int maxPendingTxnCount;
     private final double maxPendingTxnCountRelease = 0.8;
     
+    /**
+     * If the HStoreSite is doing per-partition admission control, then
+     * we only block the network connections when we have too many bytes queued
+     * up. The number of pending txns is limited separately for each partition.
+     */
+    private final boolean admissionControl;
+    
     
     // ----------------------------------------------------------------------------
     // BACKPRESSURE OBSERVERS
@@ -671,6 +682,7 @@ public class ClientInterface implements Shutdownable, Configurable {
         
         this.maxPendingTxnBytes = (int)(hstore_conf.site.network_incoming_limit_bytes * num_partitions);
         this.maxPendingTxnCount = (int)(hstore_conf.site.network_incoming_limit_txns * num_partitions);
+        this.admissionControl = hstore_conf.site.network_admission_control;
         
         // Backpressure EventObservers
         this.onBackPressure.addObserver(this.onBackPressureObserver);
@@ -749,7 +761,8 @@ public class ClientInterface implements Shutdownable, Configurable {
                       pendingBytes, this.maxPendingTxnBytes, pendingTxns, this.maxPendingTxnCount,
                       (this.hadBackPressure ? " *THROTTLED*" : "")));
         
-        if (pendingBytes > this.maxPendingTxnBytes || pendingTxns > this.maxPendingTxnCount) {
+        if (pendingBytes > this.maxPendingTxnBytes ||
+            (this.admissionControl == false && pendingTxns > this.maxPendingTxnCount)) {
             if (!this.hadBackPressure) {
                 if (trace.val) LOG.trace("Incoming txn backpressure began");
                 this.hadBackPressure = true;
@@ -770,7 +783,7 @@ public class ClientInterface implements Shutdownable, Configurable {
                       (hadBackPressure ? " *THROTTLED*" : "")));
         
         if (pendingBytes < (this.maxPendingTxnBytes * this.maxPendingTxnBytesRelease) &&
-            pendingTxns < (this.maxPendingTxnCount * this.maxPendingTxnCountRelease))
+            (this.admissionControl || pendingTxns < (this.maxPendingTxnCount * this.maxPendingTxnCountRelease)))
         {
             if (this.hadBackPressure) {
                 if (trace.val) LOG.trace("Incoming txn backpressure ended");
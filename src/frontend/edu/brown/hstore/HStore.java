@@ -29,6 +29,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -52,6 +55,7 @@ import edu.brown.utils.ArgumentsParser;
 import edu.brown.utils.ClassUtil;
 import edu.brown.utils.PartitionEstimator;
 import edu.brown.utils.StringBoxUtil;
+import edu.brown.utils.StringUtil;
 import edu.brown.utils.ThreadUtil;
 import edu.brown.workload.Workload;
 
@@ -117,13 +121,18 @@ public abstract class HStore {
     /**
      * Initialize the HStore server.
      */
-    public synchronized static final HStoreSite initialize(CatalogContext catalogContext, int site_id, HStoreConf hstore_conf) {
+    public synchronized static final HStoreSite initialize(final CatalogContext catalogContext, int site_id, HStoreConf hstore_conf) {
+        // How long each start-up phase took (ms)
+        Map<String, Long> phases = new LinkedHashMap<String, Long>();
+        long phaseStart = System.currentTimeMillis();
+        
         singleton = new HStoreSite(site_id, catalogContext, hstore_conf);
+        phaseStart = addPhaseTime(phases, "HStoreSite", phaseStart);
         
         // For every partition in our local site, we want to setup a new ExecutionSite
         // Thankfully I had enough sense to have PartitionEstimator take in the local partition
         // as a parameter, so we can share a single instance across all ExecutionSites
-        PartitionEstimator p_estimator = singleton.getPartitionEstimator();
+        final PartitionEstimator p_estimator = singleton.getPartitionEstimator();
         
         // ----------------------------------------------------------------------------
         // MarkovGraphs
@@ -146,6 +155,7 @@ public abstract class HStore {
             } else if (debug.val) LOG.warn("The Markov Graphs file '" + path + "' does not exist");
             ThreadUtil.shutdownGlobalPool(); // HACK
         }
+        phaseStart = addPhaseTime(phases, "MarkovGraphs", phaseStart);
         
         // ----------------------------------------------------------------------------
         // ParameterMappings
@@ -162,12 +172,25 @@ public abstract class HStore {
                 }
             } else if (debug.val) LOG.warn("The ParameterMappings file '" + path + "' does not exist");
         }
+        phaseStart = addPhaseTime(phases, "ParameterMappings", phaseStart);
         
         // ----------------------------------------------------------------------------
         // PartitionExecutor Initialization
         // ----------------------------------------------------------------------------
+        
+        // All of our EEs get the same catalog, so we only need to serialize it once
+        final String serializedCatalog = catalogContext.catalog.serialize();
+        phaseStart = addPhaseTime(phases, "CatalogSerialize", phaseStart);
+        
+        final int num_partitions = singleton.getLocalPartitionIds().size();
+        final int local_partitions[] = singleton.getLocalPartitionIds().values();
+        final TransactionEstimator t_estimators[] = new TransactionEstimator[num_partitions];
+        final PartitionExecutor executors[] = new PartitionExecutor[num_partitions];
+        final long executorTimes[] = new long[num_partitions];
+        
         boolean first = true;
-        for (int local_partition : singleton.getLocalPartitionIds().values()) {
+        for (int i = 0; i < num_partitions; i++) {
+            int local_partition = local_partitions[i];
             MarkovGraphsContainer local_markovs = null;
             if (markovs != null) {
                 if (markovs.containsKey(MarkovUtil.GLOBAL_MARKOV_CONTAINER_ID)) {
@@ -197,26 +220,83 @@ public abstract class HStore {
             if (first && t_estimator != null)
                 LOG.info(String.format("All incoming txn requests will be processed with %s at this site",
                          t_estimator.getClass().getSimpleName()));
-
-            // setup the EE
-            if (debug.val)
-                LOG.debug(String.format("Creating %s for Partition #%02d",
-                          PartitionExecutor.class.getSimpleName(), local_partition));
-            PartitionExecutor executor = new PartitionExecutor(
-                                                local_partition,
-                                                singleton.getCatalogContext(),
+            t_estimators[i] = t_estimator;
+            first = false;
+        } // FOR
+        phaseStart = addPhaseTime(phases, "TransactionEstimators", phaseStart);
+        
+        // Setup the EEs. These are independent of each other, so we can 
+        // create them all at the same time if we're allowed to.
+        List<Runnable> runnables = new ArrayList<Runnable>();
+        for (int i = 0; i < num_partitions; i++) {
+            final int offset = i;
+            runnables.add(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    if (debug.val)
+                        LOG.debug(String.format("Creating %s for Partition #%02d",
+                                  PartitionExecutor.class.getSimpleName(), local_partitions[offset]));
+                    executors[offset] = new PartitionExecutor(
+                                                local_partitions[offset],
+                                                catalogContext,
                                                 BackendTarget.NATIVE_EE_JNI, // BackendTarget.NULL,
                                                 p_estimator,
-                                                t_estimator);
-            singleton.addPartitionExecutor(local_partition, executor);
-            first = false;
+                                                t_estimators[offset],
+                                                serializedCatalog);
+                    executorTimes[offset] = System.currentTimeMillis() - start;
+                }
+            });
+        } // FOR
+        boolean parallel = (hstore_conf.site.exec_parallel_bootstrap && num_partitions > 1);
+        if (parallel) {
+            ThreadUtil.runNewPool(runnables, Math.min(num_partitions, ThreadUtil.availableProcessors()));
+        } else {
+            for (Runnable r : runnables) {
+                r.run();
+            } // FOR
+        }
+        phaseStart = addPhaseTime(phases, "PartitionExecutors", phaseStart);
+        
+        // We have to add them to the HStoreSite in the same order every time
+        for (int i = 0; i < num_partitions; i++) {
+            assert(executors[i] != null) :
+                "Failed to create PartitionExecutor for partition #" + local_partitions[i];
+            singleton.addPartitionExecutor(local_partitions[i], executors[i]);
         } // FOR
         
         TheHashinator.initialize(catalogContext.catalog);
+        phaseStart = addPhaseTime(phases, "Finish", phaseStart);
+        
+        if (debug.val) {
+            for (int i = 0; i < num_partitions; i++) {
+                LOG.debug(String.format("PartitionExecutor for Partition #%02d was initialized in %.1f sec",
+                          local_partitions[i], executorTimes[i] / 1000d));
+            } // FOR
+        }
+        long total = 0;
+        for (long time : phases.values()) total += time;
+        Map<String, String> m = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, Long> e : phases.entrySet()) {
+            m.put(e.getKey(), String.format("%.1f sec", e.getValue() / 1000d));
+        } // FOR
+        LOG.info(String.format("Initialized %s with %d partitions in %.1f sec [parallel=%s]\n%s",
+                 singleton.getSiteName(), num_partitions, total / 1000d, parallel,
+                 StringUtil.formatMaps(m)));
         
         return (singleton);
     }
     
+    /**
+     * Record how long the given start-up phase took and return
+     * the start time for the next phase.
+     */
+    private static long addPhaseTime(Map<String, Long> phases, String name, long start) {
+        long now = System.currentTimeMillis();
+        phases.put(name, now - start);
+        return (now);
+    }
+    
     /**
      * Main Start-up Method
      * @param vargs
@@ -26,6 +26,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.exceptions.SerializableException;
 import org.voltdb.exceptions.ServerFaultException;
 import org.voltdb.messaging.FastSerializer;
+import org.voltdb.utils.ColumnarTableCodec;
 import org.voltdb.utils.EstTime;
 import org.voltdb.utils.Pair;
 
@@ -98,6 +99,7 @@ import edu.brown.hstore.util.TransactionCounter;
 import edu.brown.interfaces.Shutdownable;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.profilers.MetricsRegistry;
 import edu.brown.protorpc.NIOEventLoop;
 import edu.brown.protorpc.ProtoRpcChannel;
 import edu.brown.protorpc.ProtoRpcController;
@@ -128,6 +130,15 @@ public class HStoreCoordinator implements Shutdownable {
     private final CatalogContext catalogContext;
     private final Site catalog_site;
     private final int num_sites;
+    
+    /**
+     * Always-on counters for the txn requests that we get from remote sites.
+     * These will be null if the HStoreSite's MetricsRegistry is disabled.
+     */
+    private final MetricsRegistry.Counter metrics_initRequests;
+    private final MetricsRegistry.Counter metrics_workRequests;
+    private final MetricsRegistry.Counter metrics_prepareRequests;
+    private final MetricsRegistry.Counter metrics_finishRequests;
     private final int local_site_id;
     
     /** SiteId -> HStoreService */
@@ -181,6 +192,15 @@ public class HStoreCoordinator implements Shutdownable {
     private final TransactionPrefetchCallback transactionPrefetch_callback;
     private final PrefetchQueryPlanner prefetchPlanner;
     
+    // ----------------------------------------------------------------------------
+    // EPOCH-BASED ORDERING
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * This will be null if epoch-based ordering is disabled
+     */
+    private final TransactionEpochManager epochManager;
+    
     // ----------------------------------------------------------------------------
     // MESSENGER LISTENER THREAD
     // ----------------------------------------------------------------------------
@@ -295,6 +315,20 @@ public class HStoreCoordinator implements Shutdownable {
         this.local_site_id = this.catalog_site.getId();
         this.num_sites = this.hstore_site.getCatalogContext().numberOfSites;
         this.channels = new HStoreService[this.num_sites];
+        this.epochManager = this.hstore_site.getTransactionQueueManager().getEpochManager();
+        
+        MetricsRegistry metrics = this.hstore_site.getMetricsRegistry();
+        if (metrics != null) {
+            this.metrics_initRequests = metrics.counter("coordinator.init_requests");
+            this.metrics_workRequests = metrics.counter("coordinator.work_requests");
+            this.metrics_prepareRequests = metrics.counter("coordinator.prepare_requests");
+            this.metrics_finishRequests = metrics.counter("coordinator.finish_requests");
+        } else {
+            this.metrics_initRequests = null;
+            this.metrics_workRequests = null;
+            this.metrics_prepareRequests = null;
+            this.metrics_finishRequests = null;
+        }
 
         if (debug.val)
             LOG.debug(String.format("Local Partitions for Site #%d: %s",
@@ -357,6 +391,10 @@ public class HStoreCoordinator implements Shutdownable {
         // speculative queries and we actually have some in the catalog 
         PrefetchQueryPlanner tmpPlanner = null;
         if (hstore_conf.site.exec_prefetch_queries) {
+            // Pick out the queries that the MarkovEstimator is allowed to prefetch for us
+            if (hstore_conf.site.exec_prefetch_auto && hstore_conf.site.markov_enable) {
+                PrefetchQueryPlanner.markAutoPrefetchable(this.catalogContext);
+            }
             boolean has_prefetch = false;
             for (Procedure catalog_proc : this.catalogContext.procedures.values()) {
                 if (catalog_proc.getPrefetchable()) {
@@ -619,6 +657,7 @@ public class HStoreCoordinator implements Shutdownable {
     
         @Override
         public void transactionInit(RpcController controller, TransactionInitRequest request, RpcCallback<TransactionInitResponse> callback) {
+            if (metrics_initRequests != null) metrics_initRequests.increment();
             try {
                 transactionInit_handler.remoteQueue(controller, request, callback);
             } catch (Throwable ex) {
@@ -628,6 +667,7 @@ public class HStoreCoordinator implements Shutdownable {
         
         @Override
         public void transactionWork(RpcController controller, TransactionWorkRequest request, RpcCallback<TransactionWorkResponse> callback) {
+            if (metrics_workRequests != null) metrics_workRequests.increment();
             try {
                 transactionWork_handler.remoteHandler(controller, request, callback);
             } catch (Throwable ex) {
@@ -664,6 +704,7 @@ public class HStoreCoordinator implements Shutdownable {
         
         @Override
         public void transactionPrepare(RpcController controller, TransactionPrepareRequest request, RpcCallback<TransactionPrepareResponse> callback) {
+            if (metrics_prepareRequests != null) metrics_prepareRequests.increment();
             try {
                 transactionPrepare_handler.remoteQueue(controller, request, callback);
             } catch (Throwable ex) {
@@ -673,6 +714,7 @@ public class HStoreCoordinator implements Shutdownable {
         
         @Override
         public void transactionFinish(RpcController controller, TransactionFinishRequest request, RpcCallback<TransactionFinishResponse> callback) {
+            if (metrics_finishRequests != null) metrics_finishRequests.increment();
             try {
                 transactionFinish_handler.remoteQueue(controller, request, callback);
             } catch (Throwable ex) {
@@ -789,6 +831,10 @@ public class HStoreCoordinator implements Shutdownable {
             if (debug.val)
                 LOG.debug(String.format("heartbeat from %d at %d^^^^^^^^^^",
                           request.getSenderSite(), local_site_id));
+            // The sender's last closed epoch is piggybacked in the heartbeat
+            if (epochManager != null) {
+                epochManager.updateSiteWatermark(request.getSenderSite(), request.getLastTransactionId());
+            }
         	HeartbeatResponse.Builder builder = HeartbeatResponse.newBuilder()
                                                     .setSenderSite(local_site_id)
                                                     .setStatus(Status.OK);
@@ -910,6 +956,7 @@ public class HStoreCoordinator implements Shutdownable {
             if (builders == null) {
                 TransactionInitRequest.Builder builder = TransactionUtil.createTransactionInitBuilder(ts, fs); 
                 this.transactionInit_handler.sendMessages(ts, builder.build(), callback, ts.getPredictTouchedPartitions());
+                if (this.epochManager != null) this.epochManager.transactionSent(ts.getTransactionId());
                 return;
             }
             
@@ -965,6 +1012,9 @@ public class HStoreCoordinator implements Shutdownable {
             this.transactionInit_handler.sendMessages(ts, builder.build(), callback, ts.getPredictTouchedPartitions());
         }
         
+        // Now that every site knows about this txn, it can't hold back our epochs anymore
+        if (this.epochManager != null) this.epochManager.transactionSent(ts.getTransactionId());
+        
         // TODO(pavlo): Add the ability to allow a partition that rejects a InitRequest to send notifications
         //              about the rejection to the other partitions that are included in the InitRequest.
     }
@@ -1190,6 +1240,8 @@ public class HStoreCoordinator implements Shutdownable {
         
         Long txn_id = ts.getTransactionId();
         Set<Integer> fake_responses = null;
+        int compress_threshold = (hstore_conf.site.network_compress_tables ?
+                                        hstore_conf.site.network_compress_tables_threshold : -1);
         for (Site remote_site : this.catalogContext.sites.values()) {
             int dest_site_id = remote_site.getId();
             if (debug.val)
@@ -1217,7 +1269,7 @@ public class HStoreCoordinator implements Shutdownable {
                 ByteString bs = null;
                 byte bytes[] = null;
                 try {
-                    bytes = ByteBuffer.wrap(FastSerializer.serialize(vt)).array();
+                    bytes = ColumnarTableCodec.serialize(vt, compress_threshold);
                     bs = ByteString.copyFrom(bytes); 
                     if (debug.val)
                         LOG.debug(String.format("%s - Outbound data for partition #%d " +
@@ -1322,11 +1374,17 @@ public class HStoreCoordinator implements Shutdownable {
     
     /**
      * Send a heartbeat notification message to all the other sites in the cluster.
+     * If we are using epoch-based ordering, then the heartbeat will include
+     * the watermark for our last closed epoch.
      */
     public void sendHeartbeat() {
+        long watermark = -1;
+        if (this.epochManager != null) {
+            watermark = this.epochManager.closeLocalEpoch();
+        }
         HeartbeatRequest request = HeartbeatRequest.newBuilder()
                                     .setSenderSite(this.local_site_id)
-                                    .setLastTransactionId(-1) // FIXME
+                                    .setLastTransactionId(watermark)
                                     .build();
         for (int site_id = 0; site_id < this.num_sites; site_id++) {
             if (site_id == this.local_site_id) continue;
@@ -81,6 +81,7 @@ import org.voltdb.network.Connection;
 import org.voltdb.network.VoltNetwork;
 import org.voltdb.sysprocs.SnapshotSave;
 import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
 import org.voltdb.utils.EstTime;
 import org.voltdb.utils.EstTimeUpdater;
 import org.voltdb.utils.Pair;
@@ -104,12 +105,17 @@ import edu.brown.hstore.cmdlog.CommandLogWriter;
 import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.estimators.EstimatorState;
 import edu.brown.hstore.estimators.TransactionEstimator;
+import edu.brown.hstore.estimators.markov.MarkovEstimator;
+import edu.brown.hstore.estimators.markov.MarkovLearner;
 import edu.brown.hstore.estimators.remote.RemoteEstimator;
 import edu.brown.hstore.estimators.remote.RemoteEstimatorState;
 import edu.brown.hstore.internal.SetDistributedTxnMessage;
+import edu.brown.hstore.stats.AdmissionControllerStats;
 import edu.brown.hstore.stats.AntiCacheManagerProfilerStats;
 import edu.brown.hstore.stats.BatchPlannerProfilerStats;
+import edu.brown.hstore.stats.FragmentResultCacheStats;
 import edu.brown.hstore.stats.MarkovEstimatorProfilerStats;
+import edu.brown.hstore.stats.MetricsStats;
 import edu.brown.hstore.stats.PartitionExecutorProfilerStats;
 import edu.brown.hstore.stats.SiteProfilerStats;
 import edu.brown.hstore.stats.SpecExecProfilerStats;
@@ -120,6 +126,7 @@ import edu.brown.hstore.txns.AbstractTransaction;
 import edu.brown.hstore.txns.DependencyTracker;
 import edu.brown.hstore.txns.LocalTransaction;
 import edu.brown.hstore.txns.RemoteTransaction;
+import edu.brown.hstore.util.FragmentResultCache;
 import edu.brown.hstore.util.MapReduceHelperThread;
 import edu.brown.hstore.util.TransactionCounter;
 import edu.brown.interfaces.Configurable;
@@ -131,6 +138,8 @@ import edu.brown.logging.RingBufferAppender;
 import edu.brown.markov.EstimationThresholds;
 import edu.brown.plannodes.PlanNodeUtil;
 import edu.brown.profilers.HStoreSiteProfiler;
+import edu.brown.profilers.MetricsRegistry;
+import edu.brown.profilers.TransactionTracer;
 import edu.brown.statistics.FastIntHistogram;
 import edu.brown.utils.ClassUtil;
 import edu.brown.utils.CollectionUtil;
@@ -269,6 +278,37 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     private final VoltNetwork voltNetwork;
     private ClientInterface clientInterface;
     
+    /**
+     * Per-partition admission control for new txn requests.
+     * This will be null if it is disabled.
+     */
+    private final AdmissionController admissionController;
+    
+    /**
+     * Background thread that updates the MarkovGraphs used by our PartitionExecutors.
+     * This will be null if it is disabled.
+     */
+    private final MarkovLearner markovLearner;
+    
+    /**
+     * Records trace spans for a sample of txns.
+     * This will be null if it is disabled.
+     */
+    private final TransactionTracer txnTracer;
+    
+    /**
+     * Always-on counters, gauges, and histograms for this site.
+     * This will be null if it is disabled.
+     */
+    private final MetricsRegistry metrics;
+    
+    /**
+     * Site-wide cache for the results of read-only PlanFragments on
+     * replicated and rarely-updated tables.
+     * This will be null if it is disabled.
+     */
+    private final FragmentResultCache resultCache;
+    
     // ----------------------------------------------------------------------------
     // TRANSACTION COORDINATOR/PROCESSING THREADS
     // ----------------------------------------------------------------------------
@@ -312,7 +352,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
      * TransactionPreProcessor Threads
      */
     private List<TransactionPreProcessor> preProcessors = null;
-    private BlockingQueue<Pair<ByteBuffer, RpcCallback<ClientResponseImpl>>> preProcessorQueue = null;
+    private BlockingQueue<Pair<BBContainer, RpcCallback<ClientResponseImpl>>> preProcessorQueue = null;
     
     /**
      * TransactionPostProcessor Thread
@@ -561,6 +601,32 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // HStoreSite Thread Manager (this always get invoked first)
         this.threadManager = new HStoreThreadManager(this);
         
+        // Transaction Tracer
+        if (hstore_conf.site.txn_trace_sampling > 0) {
+            this.txnTracer = new TransactionTracer(this.site_id, hstore_conf);
+        } else {
+            this.txnTracer = null;
+        }
+        
+        // Metrics Registry
+        if (hstore_conf.site.metrics_enable) {
+            this.metrics = new MetricsRegistry();
+        } else {
+            this.metrics = null;
+        }
+        
+        // Fragment Result Cache
+        if (hstore_conf.site.exec_result_cache && hstore_conf.site.exec_readwrite_tracking) {
+            LOG.warn("Disabling the fragment result cache because read/write set tracking is enabled");
+        }
+        if (hstore_conf.site.exec_result_cache && hstore_conf.site.exec_readwrite_tracking == false) {
+            this.resultCache = new FragmentResultCache(this.catalogContext,
+                                                       hstore_conf.site.exec_result_cache_size * 1024l * 1024l,
+                                                       hstore_conf.site.exec_result_cache_tables.split(","));
+        } else {
+            this.resultCache = null;
+        }
+        
         // Distributed Transaction Queue Manager
         this.txnQueueManager = new TransactionQueueManager(this);
         
@@ -633,6 +699,13 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         this.voltNetwork = new VoltNetwork(this);
         this.clientInterface = new ClientInterface(this, this.catalog_site.getProc_port());
+        if (hstore_conf.site.network_admission_control) {
+            this.admissionController = new AdmissionController(hstore_conf,
+                                                               this.local_partitions,
+                                                               this.catalogContext.numberOfPartitions);
+        } else {
+            this.admissionController = null;
+        }
         
         // -------------------------------
         // TRANSACTION ESTIMATION
@@ -641,6 +714,13 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Transaction Properties Initializer
         this.txnInitializer = new TransactionInitializer(this);
         
+        // Markov Model Learner
+        if (hstore_conf.site.markov_enable && hstore_conf.site.markov_learning_background) {
+            this.markovLearner = new MarkovLearner(this);
+        } else {
+            this.markovLearner = null;
+        }
+        
         // CACHED MESSAGES
         this.REJECTION_MESSAGE = "Transaction was rejected by " + this.getSiteName();
         
@@ -713,6 +793,14 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             t.start();
         }
         
+        // Start MarkovLearner
+        if (this.markovLearner != null) {
+            t = new Thread(auxGroup, this.markovLearner);
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler(this.exceptionHandler);
+            t.start();
+        }
+        
         // TransactionPreProcessors
         if (this.preProcessors != null) {
             for (TransactionPreProcessor tpp : this.preProcessors) {
@@ -818,7 +906,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                 LOG.debug(String.format("Starting %d %s threads",
                           num_preProcessors, TransactionPreProcessor.class.getSimpleName()));
             this.preProcessors = new ArrayList<TransactionPreProcessor>();
-            this.preProcessorQueue = new LinkedBlockingQueue<Pair<ByteBuffer, RpcCallback<ClientResponseImpl>>>();
+            this.preProcessorQueue = new LinkedBlockingQueue<Pair<BBContainer, RpcCallback<ClientResponseImpl>>>();
             for (int i = 0; i < num_preProcessors; i++) {
                 TransactionPreProcessor t = new TransactionPreProcessor(this, this.preProcessorQueue);
                 this.preProcessors.add(t);
@@ -884,6 +972,18 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         statsSource = new BatchPlannerProfilerStats(this, this.catalogContext);
         this.statsAgent.registerStatsSource(SysProcSelector.PLANNERPROFILER, 0, statsSource);
         
+        // ADMISSION CONTROL
+        statsSource = new AdmissionControllerStats(this);
+        this.statsAgent.registerStatsSource(SysProcSelector.ADMISSIONCONTROL, 0, statsSource);
+        
+        // METRICS
+        statsSource = new MetricsStats(this);
+        this.statsAgent.registerStatsSource(SysProcSelector.METRICS, 0, statsSource);
+        
+        // FRAGMENT RESULT CACHE
+        statsSource = new FragmentResultCacheStats(this);
+        this.statsAgent.registerStatsSource(SysProcSelector.RESULTCACHE, 0, statsSource);
+        
     }
     
     // -------------------------------
@@ -1024,6 +1124,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         if (debug.val) LOG.debug("exec periodic interval");
         
         // Heartbeats
+        // If we are using epochs, then the heartbeats are how the other sites
+        // find out about our closed epochs, so we need to send them a lot more often
+        int heartbeatInterval = hstore_conf.site.network_heartbeats_interval;
+        if (this.txnQueueManager.getEpochManager() != null) {
+            heartbeatInterval = hstore_conf.site.queue_epoch_interval;
+        }
         this.threadManager.schedulePeriodicWork(new ExceptionHandlingRunnable() {
             @Override
             public void runImpl() {
@@ -1035,8 +1141,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                     ex.printStackTrace();
                 }
             }
-        }, hstore_conf.site.network_heartbeats_interval,
-           hstore_conf.site.network_heartbeats_interval, TimeUnit.MILLISECONDS);
+        }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
         if (debug.val) LOG.debug("heartbeat");
         
         // HStoreStatus
@@ -1048,7 +1153,35 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                 TimeUnit.MILLISECONDS);
         }
         if (debug.val) LOG.info("exec status enable");
-        
+
+        // Metrics Snapshots
+        if (this.metrics != null) {
+            this.metrics.gauge("site.inflight_txns", new MetricsRegistry.Gauge() {
+                @Override
+                public long getValue() {
+                    return (HStoreSite.this.inflight_txns.size());
+                }
+            });
+            final File metricsFile = (hstore_conf.site.metrics_export ?
+                    new File(FileUtil.realpath(hstore_conf.site.metrics_dir),
+                             String.format("metrics-%s.txt", this.getSiteName())) : null);
+            final String metricsPrefix = "hstore." + this.getSiteName();
+            this.threadManager.schedulePeriodicWork(new ExceptionHandlingRunnable() {
+                @Override
+                public void runImpl() {
+                    MetricsRegistry.Snapshot snapshot = HStoreSite.this.metrics.snapshot();
+                    if (metricsFile != null) {
+                        try {
+                            MetricsRegistry.export(metricsFile, metricsPrefix, snapshot);
+                        } catch (IOException ex) {
+                            LOG.warn("Failed to write metrics to " + metricsFile, ex);
+                        }
+                    }
+                }
+            }, hstore_conf.site.metrics_interval,
+               hstore_conf.site.metrics_interval, TimeUnit.MILLISECONDS);
+        }
+
         // AntiCache Memory Monitor
         if (debug.val) LOG.debug("about to starting memory monitor thread");
         if (this.anticacheManager != null) {
@@ -1120,6 +1253,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         // Update all our other boys
         this.clientInterface.updateConf(hstore_conf, null);
+        if (this.markovLearner != null) {
+            this.markovLearner.updateConf(hstore_conf, null);
+        }
+        if (this.admissionController != null) {
+            this.admissionController.updateConf(hstore_conf, null);
+        }
         this.txnQueueManager.updateConf(hstore_conf, null);
     }
     
@@ -1133,6 +1272,10 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         this.executors[partition] = executor;
         this.depTrackers[partition] = new DependencyTracker(executor);
         this.executors[partition].initHStoreSite(this);
+        
+        if (this.markovLearner != null && executor.getTransactionEstimator() instanceof MarkovEstimator) {
+            ((MarkovEstimator)executor.getTransactionEstimator()).setMarkovLearner(this.markovLearner);
+        }
     }
     
     /**
@@ -1151,6 +1294,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (TransactionIdManager t : this.txnIdManagers) {
             if (t != null) t.setTimeDelta(delta);
         } // FOR
+        TransactionEpochManager epochManager = this.txnQueueManager.getEpochManager();
+        if (epochManager != null) epochManager.setTimeDelta(delta);
+        if (this.txnTracer != null) this.txnTracer.setClockOffset(delta);
     }
     
     protected void setThresholds(EstimationThresholds thresholds) {
@@ -1301,6 +1447,21 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     public ClientInterface getClientInterface() {
         return (this.clientInterface);
     }
+    public AdmissionController getAdmissionController() {
+        return (this.admissionController);
+    }
+    public MarkovLearner getMarkovLearner() {
+        return (this.markovLearner);
+    }
+    public TransactionTracer getTransactionTracer() {
+        return (this.txnTracer);
+    }
+    public MetricsRegistry getMetricsRegistry() {
+        return (this.metrics);
+    }
+    public FragmentResultCache getFragmentResultCache() {
+        return (this.resultCache);
+    }
     public StatsAgent getStatsAgent() {
         return (this.statsAgent);
     }
@@ -1650,6 +1811,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         if (this.anticacheManager != null) {
             this.anticacheManager.prepareShutdown(error);
         }
+        if (this.markovLearner != null) {
+            this.markovLearner.prepareShutdown(error);
+        }
         for (TransactionCleaner t : this.txnCleaners) {
             t.prepareShutdown(error);
         } // FOR
@@ -1728,6 +1892,16 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         if (this.anticacheManager != null) {
             this.anticacheManager.shutdown();
         }
+        if (this.markovLearner != null) {
+            this.markovLearner.shutdown();
+        }
+        if (this.txnTracer != null) {
+            try {
+                this.txnTracer.export();
+            } catch (Throwable ex) {
+                LOG.error("Failed to write out transaction trace file", ex);
+            }
+        }
         for (TransactionCleaner t : this.txnCleaners) {
             t.shutdown();
         } // FOR
@@ -1789,15 +1963,23 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     // INCOMING INVOCATION HANDLER METHODS
     // ----------------------------------------------------------------------------
     
-    protected void invocationQueue(ByteBuffer buffer, ClientInputHandler handler, Connection c) {
-        int messageSize = buffer.capacity();
+    /**
+     * Queue up a new request that came in through the ClientInterface.
+     * The message's container will be discarded once the request's
+     * ParameterSet has been deserialized in invocationProcess() 
+     * @param message
+     * @param handler
+     * @param c
+     */
+    protected void invocationQueue(BBContainer message, ClientInputHandler handler, Connection c) {
+        int messageSize = message.b.capacity();
         RpcCallback<ClientResponseImpl> callback = new ClientResponseCallback(this.clientInterface, c, messageSize);
         this.clientInterface.increaseBackpressure(messageSize);
         
         if (this.preProcessorQueue != null) {
-            this.preProcessorQueue.add(Pair.of(buffer, callback));
+            this.preProcessorQueue.add(Pair.of(message, callback));
         } else {
-            this.invocationProcess(buffer, callback);
+            this.invocationProcess(message, callback);
         }
     }
     
@@ -1826,12 +2008,27 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         };
         
         if (this.preProcessorQueue != null) {
-            this.preProcessorQueue.add(Pair.of(buffer, wrapperCallback));
+            this.preProcessorQueue.add(Pair.<BBContainer, RpcCallback<ClientResponseImpl>>of(DBBPool.wrapBB(buffer), wrapperCallback));
         } else {
             this.invocationProcess(buffer, wrapperCallback);
         }
     }
     
+    /**
+     * Process a request whose buffer came from a pool. The container is
+     * discarded as soon as we are done with the request's buffer, which
+     * means that nothing in invocationProcess() can hold on to it.
+     * @param message
+     * @param clientCallback
+     */
+    public void invocationProcess(BBContainer message, RpcCallback<ClientResponseImpl> clientCallback) {
+        try {
+            this.invocationProcess(message.b, clientCallback);
+        } finally {
+            message.discard();
+        }
+    }
+    
     /**
      * This is the main method that takes in a ByteBuffer request from the client and queues
      * it up for execution. The clientCallback expects to get back a ClientResponse generated
@@ -1951,6 +2148,25 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             return;
         }
         
+        // -------------------------------
+        // ADMISSION CONTROL
+        // -------------------------------
+        // Only requests that came in through our ClientInterface will be throttled. 
+        // The callback will release the slot once the response goes back to the client
+        if (this.admissionController != null && sysproc == false &&
+            clientCallback instanceof ClientResponseCallback) {
+            if (this.admissionController.admit(base_partition) == false) {
+                if (hstore_conf.site.txn_counters) TransactionCounter.REJECTED.inc(catalog_proc);
+                this.responseError(client_handle,
+                                   Status.ABORT_REJECT,
+                                   this.REJECTION_MESSAGE + " - Partition " + base_partition + " is overloaded",
+                                   clientCallback,
+                                   timestamp);
+                return;
+            }
+            ((ClientResponseCallback)clientCallback).setAdmitted(this.admissionController, base_partition);
+        }
+        
         // 2012-12-24 - We always want the network threads to do the initialization
         if (trace.val)
             LOG.trace("Initializing transaction request using network processing thread");
@@ -2114,6 +2330,8 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         if (ts.isPredictSinglePartition()) {
             this.transactionInit(ts);
+            TransactionEpochManager epochManager = this.txnQueueManager.getEpochManager();
+            if (epochManager != null) epochManager.transactionSent(ts.getTransactionId());
         }
         else {
             LocalInitQueueCallback initCallback = (LocalInitQueueCallback)ts.getInitCallback();
@@ -2955,6 +3173,10 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         assert(ts.checkDeletableFlag()) :
             String.format("Trying to delete %s before it was marked as ready!", ts);
         
+        // Make sure that a txn that never got sent out doesn't hold back our epochs
+        TransactionEpochManager epochManager = this.txnQueueManager.getEpochManager();
+        if (epochManager != null) epochManager.transactionSent(txn_id);
+        
         // Clean-up any extra information that we may have for the txn
         TransactionEstimator t_estimator = null;
         EstimatorState t_state = ts.getEstimatorState(); 
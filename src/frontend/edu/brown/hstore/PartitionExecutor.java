@@ -46,6 +46,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
@@ -100,11 +101,11 @@ import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.jni.ExecutionEngineIPC;
 import org.voltdb.jni.ExecutionEngineJNI;
 import org.voltdb.jni.MockExecutionEngine;
-import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.SpecExecSchedulerPolicyType;
 import org.voltdb.types.SpeculationConflictCheckerType;
 import org.voltdb.types.SpeculationType;
+import org.voltdb.utils.ColumnarTableCodec;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.DBBPool.BBContainer;
 import org.voltdb.utils.Encoder;
@@ -159,6 +160,7 @@ import edu.brown.hstore.txns.PrefetchState;
 import edu.brown.hstore.txns.RemoteTransaction;
 import edu.brown.hstore.util.ArrayCache.IntArrayCache;
 import edu.brown.hstore.util.ArrayCache.LongArrayCache;
+import edu.brown.hstore.util.FragmentResultCache;
 import edu.brown.hstore.util.ParameterSetArrayCache;
 import edu.brown.hstore.util.TransactionCounter;
 import edu.brown.hstore.util.TransactionUndoTokenComparator;
@@ -166,10 +168,14 @@ import edu.brown.hstore.util.TransactionWorkRequestBuilder;
 import edu.brown.interfaces.Configurable;
 import edu.brown.interfaces.DebugContext;
 import edu.brown.interfaces.Shutdownable;
+import edu.brown.logging.FormattedMessage;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.markov.EstimationThresholds;
+import edu.brown.profilers.MetricsRegistry;
 import edu.brown.profilers.PartitionExecutorProfiler;
+import edu.brown.profilers.TransactionTracer;
+import edu.brown.profilers.TransactionTracer.Span;
 import edu.brown.protorpc.NullCallback;
 import edu.brown.statistics.FastIntHistogram;
 import edu.brown.utils.ClassUtil;
@@ -300,6 +306,27 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
     private TransactionQueueManager queueManager;
     private PartitionLockQueue lockQueue;
     private DependencyTracker depTracker;
+    private AdmissionController admissionController;
+    private TransactionTracer txnTracer;
+    
+    /**
+     * Always-on metrics for this partition.
+     * These will be null if the HStoreSite's MetricsRegistry is disabled.
+     */
+    private MetricsRegistry.Histogram metrics_execTime;
+    private MetricsRegistry.Histogram metrics_planTime;
+    
+    /**
+     * The HStoreSite's cache for read-only PlanFragment results.
+     * This will be null if it is disabled.
+     */
+    private FragmentResultCache resultCache;
+    
+    /**
+     * TransactionId -> TableIds of cacheable tables that the txn has modified at this partition.
+     * We have to tell the FragmentResultCache about these when the txn finishes.
+     */
+    private final Map<Long, BitSet> resultCacheWriters = new HashMap<Long, BitSet>();
     
     // ----------------------------------------------------------------------------
     // Work Queue
@@ -387,6 +414,20 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
      */
     private long lastCommittedUndoToken = -1l;
     
+    /**
+     * The number of distributed txns that could modify this partition that have
+     * been set as the current dtxn. Snapshot reads use this to check whether a
+     * dtxn acquired this partition's lock after they read from it.
+     */
+    private long snapshotDtxnEpoch = 0l;
+    
+    /**
+     * The number of batches executed at this partition that modified data.
+     * Snapshot reads use this to check whether they read the same state every
+     * time that they execute queries at this partition.
+     */
+    private long snapshotWriteEpoch = 0l;
+    
     // ARIES    
     private boolean m_ariesRecovery;    
      
@@ -731,6 +772,25 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                              final BackendTarget target,
                              final PartitionEstimator p_estimator,
                              final TransactionEstimator t_estimator) {
+        this(partitionId, catalogContext, target, p_estimator, t_estimator, null);
+    }
+    
+    /**
+     * Initialize the StoredProcedure runner and EE for this Site.
+     * @param partitionId
+     * @param catalogContext
+     * @param target
+     * @param p_estimator
+     * @param t_estimator
+     * @param serializedCatalog The serialized catalog to load into the EE. If this is null,
+     *                          then we will serialize the catalog ourselves. 
+     */
+    public PartitionExecutor(final int partitionId,
+                             final CatalogContext catalogContext,
+                             final BackendTarget target,
+                             final PartitionEstimator p_estimator,
+                             final TransactionEstimator t_estimator,
+                             final String serializedCatalog) {
         this.hstore_conf = HStoreConf.singleton();
         this.work_queue = new PartitionMessageQueue();
         this.backend_target = target;
@@ -813,7 +873,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                 
                 // Important: This has to be called *after* we initialize the anti-cache
                 //            and the storage information!
-                eeTemp.loadCatalog(catalogContext.catalog.serialize());
+                eeTemp.loadCatalog(serializedCatalog != null ? serializedCatalog : catalogContext.catalog.serialize());
                 this.lastTickTime = System.currentTimeMillis();
                 eeTemp.tick(this.lastTickTime, 0);
                 
@@ -834,7 +894,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                                                 this.site.getHost().getId(),
                                                 "localhost",
                                                 target);
-                eeTemp.loadCatalog(catalogContext.catalog.serialize());
+                eeTemp.loadCatalog(serializedCatalog != null ? serializedCatalog : catalogContext.catalog.serialize());
                 this.lastTickTime = System.currentTimeMillis();
                 eeTemp.tick(this.lastTickTime, 0);
             }
@@ -869,6 +929,28 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         this.thresholds = hstore_site.getThresholds();
         this.queueManager = hstore_site.getTransactionQueueManager();
         this.lockQueue = this.queueManager.getLockQueue(this.partitionId);
+        this.admissionController = hstore_site.getAdmissionController();
+        this.txnTracer = hstore_site.getTransactionTracer();
+        this.resultCache = hstore_site.getFragmentResultCache();
+        
+        MetricsRegistry metrics = hstore_site.getMetricsRegistry();
+        if (metrics != null) {
+            String prefix = "partition." + this.partitionId + ".";
+            this.metrics_execTime = metrics.histogram(prefix + "exec_time");
+            this.metrics_planTime = metrics.histogram(prefix + "plan_time");
+            metrics.gauge(prefix + "work_queue", new MetricsRegistry.Gauge() {
+                @Override
+                public long getValue() {
+                    return (PartitionExecutor.this.work_queue.size());
+                }
+            });
+            metrics.gauge(prefix + "lock_queue", new MetricsRegistry.Gauge() {
+                @Override
+                public long getValue() {
+                    return (PartitionExecutor.this.lockQueue.size());
+                }
+            });
+        }
         
         if (hstore_conf.site.exec_deferrable_queries) {
             tmp_def_txn = new LocalTransaction(hstore_site);
@@ -1162,6 +1244,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                         profiler.exec_time.start();
                         if (this.currentDtxn != null) profiler.sp2_time.stopIfStarted();
                     }
+                    long execStart = (this.metrics_execTime != null ? System.nanoTime() : 0);
                     try {
                         // -------------------------------
                         // TRANSACTIONAL WORK
@@ -1180,6 +1263,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                             profiler.exec_time.stopIfStarted();
                             if (this.currentDtxn != null) profiler.sp2_time.start();
                         }
+                        if (this.metrics_execTime != null) this.metrics_execTime.record(System.nanoTime() - execStart);
                     }
                     if (this.currentTxnId != null) this.lastExecutedTxnId = this.currentTxnId;
                 }
@@ -1403,7 +1487,10 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         }
                     
         if (debug.val)
-            LOG.debug(String.format("Processing %s at partition %d", work, this.partitionId));
+            LOG.debug(new FormattedMessage("Processing %s for txn #%d at partition %d",
+                      work.getClass().getSimpleName(), this.currentTxnId, this.partitionId));
+        final Long txnId = this.currentTxnId;
+        long traceStart = (this.txnTracer != null ? this.txnTracer.start(txnId) : TransactionTracer.NOT_SAMPLED);
         
         // -------------------------------
         // Start Transaction
@@ -1416,6 +1503,8 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             } finally {
                 if (hstore_conf.site.exec_profiling) profiler.txn_time.stopIfStarted();
             }
+            if (traceStart != TransactionTracer.NOT_SAMPLED)
+                this.txnTracer.stop(Span.EXEC, txnId, this.partitionId, traceStart);
         }
         // -------------------------------
         // Execute Query Plan Fragments
@@ -1447,6 +1536,13 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     LOG.trace(ts + " - Attached Parameters:\n" + StringUtil.join("\n", parameters));
             }
             
+            // Snapshot reads never become the current dtxn at this partition, 
+            // so we can execute them in between whatever else is running here
+            if (ts.isSnapshotReadPartition(this.partitionId)) {
+                this.processSnapshotWorkFragment(ts, fragment, parameters);
+                return;
+            }
+            
             // At this point we know that we are either the current dtxn or the current dtxn is null
             // We will allow any read-only transaction to commit if
             // (1) The WorkFragment for the remote txn is read-only
@@ -1482,6 +1578,8 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                               ts, this.currentDtxn);
             this.setExecutionMode(ts, newMode);
             this.processWorkFragment(ts, fragment, parameters);
+            if (traceStart != TransactionTracer.NOT_SAMPLED)
+                this.txnTracer.stop(Span.WORK, txnId, this.partitionId, traceStart);
         }
         // -------------------------------
         // Finish Transaction
@@ -1489,6 +1587,8 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         else if (work instanceof FinishTxnMessage) {
             FinishTxnMessage fTask = (FinishTxnMessage)work;
             this.finishDistributedTransaction(fTask.getTransaction(), fTask.getStatus());
+            if (traceStart != TransactionTracer.NOT_SAMPLED)
+                this.txnTracer.stop(Span.FINISH, txnId, this.partitionId, traceStart);
         }
         // -------------------------------
         // Prepare Transaction
@@ -1496,6 +1596,8 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         else if (work instanceof PrepareTxnMessage) {
             PrepareTxnMessage pTask = (PrepareTxnMessage)work;
             this.prepareTransaction(pTask.getTransaction(), pTask.getCallback());
+            if (traceStart != TransactionTracer.NOT_SAMPLED)
+                this.txnTracer.stop(Span.PREPARE, txnId, this.partitionId, traceStart);
         }
         // -------------------------------
         // Set Distributed Transaction 
@@ -1882,11 +1984,29 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         // Otherwise, we need to figure out whether we want to be a brave soul and 
         // not use undo logging at all
         else {
+            // If the txn already modified this partition without undo logging, then we
+            // can't start using it now because we wouldn't be able to roll everything back
+            if (lastUndoToken == HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN &&
+                    ts.isExecReadOnly(this.partitionId) == false) {
+                undoToken = HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN;
+            }
+            // If we know that the txn is never going to abort, then we don't
+            // need undo logging at all
+            else if ((lastUndoToken == HStoreConstants.NULL_UNDO_LOGGING_TOKEN ||
+                      lastUndoToken == HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN) &&
+                      this.canSkipUndoLogging(ts)) {
+                if (debug.val)
+                    LOG.debug(String.format("%s - Executing without undo logging at partition %d",
+                              ts, this.partitionId));
+                undoToken = HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN;
+            }
             // If one of the following conditions are true, then we need to get a new token:
             //  (1) If this our first time up at bat
-            //  (2) If we're a distributed transaction
-            //  (3) The force undo logging option is enabled
-            if (lastUndoToken == HStoreConstants.NULL_UNDO_LOGGING_TOKEN ||
+            //  (2) If we've only executed read-only queries without undo logging up until now
+            //  (3) If we're a distributed transaction
+            //  (4) The force undo logging option is enabled
+            else if (lastUndoToken == HStoreConstants.NULL_UNDO_LOGGING_TOKEN ||
+                    lastUndoToken == HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN ||
                     singlePartition == false ||
                     hstore_conf.site.exec_force_undo_logging_all) {
                 undoToken = this.getNextUndoToken();
@@ -1919,6 +2039,35 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         return (undoToken);
     }
     
+    /**
+     * Returns true if the given txn can execute its writes at this partition without
+     * undo logging. We can only do this for non-speculative single-partition txns
+     * that we predicted will never abort, and only if there isn't a distributed
+     * txn that other speculative txns could be depending on.
+     * <B>Note:</B> If a txn that was executed without undo logging aborts, then
+     * we have no choice but to crash. So the txn also must not have been routed by
+     * the TransactionEstimator (it could still get mispredicted) and the anti-cache must 
+     * be disabled (it aborts txns that touch evicted tuples).
+     * @param ts
+     * @return
+     */
+    private boolean canSkipUndoLogging(AbstractTransaction ts) {
+        if (hstore_conf.site.exec_force_undo_logging_all) return (false);
+        if (ts.isPredictSinglePartition() == false ||
+            ts.isSpeculative() ||
+            ts.isSysProc() ||
+            this.currentDtxn != null) {
+            return (false);
+        }
+        // This is for testing purposes only, so it's ok if it blows up
+        if (hstore_conf.site.exec_no_undo_logging_all) return (true);
+        
+        return (hstore_conf.site.exec_no_undo_logging &&
+                hstore_conf.site.anticache_enable == false &&
+                ts.isPredictAbortable() == false &&
+                ts.getEstimatorState() == null);
+    }
+    
     /**
      * Populate the provided inputs map with the VoltTables needed for the give 
      * input DependencyId. If the txn is a LocalTransaction, then we will
@@ -1999,6 +2148,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         // Check whether we should check for speculative txns to execute whenever this
         // dtxn is idle at this partition
         this.currentDtxn = ts;
+        if (ts.getProcedure().getReadonly() == false) this.snapshotDtxnEpoch++;
         if (hstore_conf.site.specexec_enable && ts.isSysProc() == false && this.specExecScheduler.isDisabled() == false) {
             this.specExecIgnoreCurrent = this.specExecChecker.shouldIgnoreTransaction(ts);
         } else {
@@ -2332,9 +2482,8 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             ByteString bs = result.getDepData(i);
             VoltTable vt = null;
             if (bs.isEmpty() == false) {
-                FastDeserializer fd = new FastDeserializer(bs.asReadOnlyByteBuffer());
                 try {
-                    vt = fd.readObject(VoltTable.class);
+                    vt = ColumnarTableCodec.deserialize(bs.asReadOnlyByteBuffer());
                     if (trace.val)
                         LOG.trace(String.format("Displaying results from partition %d for %s :: \n %s",
                                   result.getPartitionId(), ts, vt.toString()));                    
@@ -2466,6 +2615,13 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         }
         if (hstore_conf.site.exec_profiling) this.profiler.numTransactions++;
         
+        // Tell the AdmissionController how long this txn had to wait before
+        // it got to start. We skip restarted txns because their initiate time is
+        // from the first attempt.
+        if (this.admissionController != null && ts.getRestartCounter() == 0 && ts.isSysProc() == false) {
+            this.admissionController.sample(this.partitionId, ts);
+        }
+        
         // Make sure the dependency tracker knows about us
         if (ts.hasDependencyTracker()) this.depTracker.addTransaction(ts);
         
@@ -2642,6 +2798,37 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         return (false);
     }
 
+    /**
+     * Process a WorkFragment for a snapshot read txn that does not hold the lock for
+     * this partition. We will execute the WorkFragment right away against whatever
+     * is in the EE right now. If there is a dtxn or a speculative txn that could have 
+     * uncommitted changes at this partition, then the snapshot is no longer valid and the
+     * txn will be restarted when we get its 2PC:PREPARE.
+     * @param ts
+     * @param fragment
+     * @param allParameters
+     */
+    private void processSnapshotWorkFragment(AbstractTransaction ts, WorkFragment fragment, ParameterSet allParameters[]) {
+        assert(fragment.getReadOnly()) :
+            String.format("Trying to execute non-read-only %s for snapshot read %s at partition %d",
+                          fragment.getClass().getSimpleName(), ts, this.partitionId);
+        boolean clean = true;
+        if (this.currentDtxn != null) {
+            clean = this.currentDtxn.getProcedure().getReadonly();
+            for (LocalTransaction spec_ts : this.specExecBlocked) {
+                if (clean == false) break;
+                clean = spec_ts.isExecReadOnly(this.partitionId);
+            } // FOR
+        }
+        boolean valid = ts.markSnapshotRead(this.partitionId, this.snapshotDtxnEpoch, this.snapshotWriteEpoch, clean);
+        if (debug.val)
+            LOG.debug(String.format("%s - Executing snapshot read at partition %d " +
+                      "[currentDtxn=%s, clean=%s, valid=%s, dtxnEpoch=%d, writeEpoch=%d]",
+                      ts, this.partitionId, this.currentDtxn, clean, valid,
+                      this.snapshotDtxnEpoch, this.snapshotWriteEpoch));
+        this.processWorkFragment(ts, fragment, allParameters);
+    }
+
     /**
      * Process a WorkFragment for a transaction and execute it in this partition's underlying EE. 
      * @param ts
@@ -2663,8 +2850,8 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         boolean is_prefetch = fragment.getPrefetch();
         boolean is_readonly = fragment.getReadOnly();
         if (debug.val)
-            LOG.debug(String.format("%s - Executing %s [isBasePartition=%s, isRemote=%s, isPrefetch=%s, isReadOnly=%s, fragments=%s]",
-                      ts, fragment.getClass().getSimpleName(),
+            LOG.debug(new FormattedMessage("Txn #%d - Executing %s [isBasePartition=%s, isRemote=%s, isPrefetch=%s, isReadOnly=%s, fragments=%s]",
+                      ts.getTransactionId(), fragment.getClass().getSimpleName(),
                       is_basepartition, is_remote, is_prefetch, is_readonly,
                       fragment.getFragmentIdCount()));
         
@@ -3090,6 +3277,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         }
         
         ts.markExecNotReadOnly(this.partitionId);
+        this.snapshotWriteEpoch++;
         DependencySet result = null;
         try {
             result = volt_proc.executePlanFragment(ts.getTransactionId(),
@@ -3185,8 +3373,12 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     if (tableIds != null) ts.markTableIdsWritten(this.partitionId, tableIds);
                 }
             }
+            if (fragReadOnly == false && this.resultCache != null) {
+                this.resultCacheBeginWrite(ts, catalogContext.getWriteTableIds(Long.valueOf(fragmentIds[i])));
+            }
             readonly = readonly && fragReadOnly;
         }
+        if (readonly == false) this.snapshotWriteEpoch++;
         
         // Enable read/write set tracking
         if (hstore_conf.site.exec_readwrite_tracking && ts.hasExecutedWork(this.partitionId) == false) {
@@ -3228,16 +3420,26 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             if (trace.val)
                 LOG.trace(String.format("%s - Executing fragments %s at partition %d [undoToken=%d]",
                           ts, Arrays.toString(fragmentIds), this.partitionId, undoToken));
-            result = this.ee.executeQueryPlanFragmentsAndGetDependencySet(
-                            fragmentIds,
-                            batchSize,
-                            input_depIds,
-                            output_depIds,
-                            parameterSets,
-                            batchSize,
-                            txn_id.longValue(),
-                            this.lastCommittedTxnId.longValue(),
-                            undoToken);
+            if (this.resultCache != null) {
+                result = this.executeCachedPlanFragments(ts,
+                                                         undoToken,
+                                                         batchSize,
+                                                         fragmentIds,
+                                                         parameterSets,
+                                                         output_depIds,
+                                                         input_depIds);
+            } else {
+                result = this.ee.executeQueryPlanFragmentsAndGetDependencySet(
+                                fragmentIds,
+                                batchSize,
+                                input_depIds,
+                                output_depIds,
+                                parameterSets,
+                                batchSize,
+                                txn_id.longValue(),
+                                this.lastCommittedTxnId.longValue(),
+                                undoToken);
+            }
         } catch (AssertionError ex) {
             LOG.error("Fatal error when processing " + ts + "\n" + ts.debug());
             error = ex;
@@ -3278,6 +3480,132 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         return (result);
     }
     
+    /**
+     * Execute the given fragment tasks, but first check whether the FragmentResultCache
+     * already has the results for any of them. Only the fragments that were not in the
+     * cache are sent down to the EE. The results for any cacheable fragments that we did
+     * have to execute are then added to the cache.
+     * @param ts
+     * @param undoToken
+     * @param batchSize
+     * @param fragmentIds
+     * @param parameterSets
+     * @param output_depIds
+     * @param input_depIds
+     * @return
+     */
+    private DependencySet executeCachedPlanFragments(AbstractTransaction ts,
+                                                     long undoToken,
+                                                     int batchSize, 
+                                                     long fragmentIds[],
+                                                     ParameterSet parameterSets[],
+                                                     int output_depIds[],
+                                                     int input_depIds[]) {
+        VoltTable results[] = null;
+        long versions[][] = null;
+        int misses = 0;
+        for (int i = 0; i < batchSize; i++) {
+            if (input_depIds[i] != HStoreConstants.NULL_DEPENDENCY_ID ||
+                this.resultCache.isCacheable(fragmentIds[i]) == false) {
+                misses++;
+                continue;
+            }
+            VoltTable vt = this.resultCache.get(fragmentIds[i], this.partitionId, parameterSets[i]);
+            if (vt != null) {
+                if (results == null) results = new VoltTable[batchSize];
+                results[i] = vt;
+            } else {
+                if (versions == null) versions = new long[batchSize][];
+                versions[i] = this.resultCache.getVersions(fragmentIds[i]);
+                misses++;
+            }
+        } // FOR
+        if (trace.val && results != null)
+            LOG.trace(String.format("%s - Found %d cached fragment results at partition %d",
+                      ts, batchSize - misses, this.partitionId));
+        
+        // Nothing was in the cache, so we have to execute everything
+        if (results == null) {
+            DependencySet result = this.ee.executeQueryPlanFragmentsAndGetDependencySet(
+                                            fragmentIds,
+                                            batchSize,
+                                            input_depIds,
+                                            output_depIds,
+                                            parameterSets,
+                                            batchSize,
+                                            ts.getTransactionId().longValue(),
+                                            this.lastCommittedTxnId.longValue(),
+                                            undoToken);
+            if (versions != null && result != null) {
+                for (int i = 0; i < batchSize; i++) {
+                    if (versions[i] == null) continue;
+                    this.resultCache.put(fragmentIds[i], this.partitionId, parameterSets[i],
+                                         result.dependencies[i], versions[i]);
+                } // FOR
+            }
+            return (result);
+        }
+        
+        // Only send the fragments that we didn't find in the cache down to the EE 
+        if (misses > 0) {
+            long missFragmentIds[] = new long[misses];
+            ParameterSet missParams[] = new ParameterSet[misses];
+            int missOutputDepIds[] = new int[misses];
+            int missInputDepIds[] = new int[misses];
+            for (int i = 0, j = 0; i < batchSize; i++) {
+                if (results[i] != null) continue;
+                missFragmentIds[j] = fragmentIds[i];
+                missParams[j] = parameterSets[i];
+                missOutputDepIds[j] = output_depIds[i];
+                missInputDepIds[j] = input_depIds[i];
+                j++;
+            } // FOR
+            DependencySet result = this.ee.executeQueryPlanFragmentsAndGetDependencySet(
+                                            missFragmentIds,
+                                            misses,
+                                            missInputDepIds,
+                                            missOutputDepIds,
+                                            missParams,
+                                            misses,
+                                            ts.getTransactionId().longValue(),
+                                            this.lastCommittedTxnId.longValue(),
+                                            undoToken);
+            if (result == null) return (null);
+            for (int i = 0, j = 0; i < batchSize; i++) {
+                if (results[i] != null) continue;
+                results[i] = result.dependencies[j++];
+                if (versions != null && versions[i] != null) {
+                    this.resultCache.put(fragmentIds[i], this.partitionId, parameterSets[i],
+                                         results[i], versions[i]);
+                }
+            } // FOR
+        }
+        return (new DependencySet(Arrays.copyOf(output_depIds, batchSize), results));
+    }
+    
+    /**
+     * Tell the FragmentResultCache that the txn is about to modify any of
+     * the given tables that are cacheable at this partition.
+     * We only do this once per table per txn.
+     * @param ts
+     * @param tableIds
+     */
+    private void resultCacheBeginWrite(AbstractTransaction ts, int tableIds[]) {
+        if (tableIds == null) return;
+        BitSet tables = this.resultCacheWriters.get(ts.getTransactionId());
+        for (int tableId : tableIds) {
+            if (this.resultCache.isCacheableTable(tableId) == false) continue;
+            if (tables == null) {
+                tables = new BitSet();
+                this.resultCacheWriters.put(ts.getTransactionId(), tables);
+            }
+            if (tables.get(tableId) == false) {
+                tables.set(tableId);
+                this.resultCache.beginWrite(tableId);
+            }
+        } // FOR
+    }
+    
     /**
      * Load a VoltTable directly into the EE at this partition.
      * <B>NOTE:</B> This should only be invoked by a system stored procedure.
@@ -3302,6 +3630,10 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             LOG.debug(String.format("Loading %d row(s) into %s [txnId=%d]",
                       data.getRowCount(), table.getName(), ts.getTransactionId()));
         ts.markExecutedWork(this.partitionId);
+        this.snapshotWriteEpoch++;
+        if (this.resultCache != null) {
+            this.resultCacheBeginWrite(ts, new int[]{ table.getRelativeIndex() });
+        }
         this.ee.loadTable(table.getRelativeIndex(), data,
                           ts.getTransactionId(),
                           this.lastCommittedTxnId.longValue(),
@@ -3385,12 +3717,14 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         // At this point we have to calculate exactly what we need to do on each partition
         // for this batch. So somehow right now we need to fire this off to either our
         // local executor or to Evan's magical distributed transaction manager
+        long planStart = (this.metrics_planTime != null ? System.nanoTime() : 0);
         BatchPlanner.BatchPlan plan = planner.plan(ts.getTransactionId(),
                                                    this.partitionId,
                                                    ts.getPredictTouchedPartitions(), 
                                                    ts.getTouchedPartitions(),
                                                    batchParams);
         assert(plan != null);
+        if (this.metrics_planTime != null) this.metrics_planTime.record(System.nanoTime() - planStart);
         if (trace.val) {
             LOG.trace(ts + " - Touched Partitions: " + ts.getTouchedPartitions().values());
             LOG.trace(ts + " - Next BatchPlan:\n" + plan.toString());
@@ -3550,12 +3884,19 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         
         // Push dependencies back to the remote partition that needs it
         if (status == Status.OK) {
+            int compress_threshold = (hstore_conf.site.network_compress_tables ?
+                                            hstore_conf.site.network_compress_tables_threshold : -1);
             for (int i = 0, cnt = result.size(); i < cnt; i++) {
                 builder.addDepId(result.depIds[i]);
-                this.fs.clear();
                 try {
-                    result.dependencies[i].writeExternal(this.fs);
-                    ByteString bs = ByteString.copyFrom(this.fs.getBBContainer().b);
+                    ByteString bs = null;
+                    if (ColumnarTableCodec.shouldEncode(result.dependencies[i], compress_threshold)) {
+                        bs = ByteString.copyFrom(ColumnarTableCodec.encode(result.dependencies[i]));
+                    } else {
+                        this.fs.clear();
+                        result.dependencies[i].writeExternal(this.fs);
+                        bs = ByteString.copyFrom(this.fs.getBBContainer().b);
+                    }
                     builder.addDepData(bs);
                 } catch (Exception ex) {
                     throw new ServerFaultException(String.format("Failed to serialize output dependency %d for %s", result.depIds[i], ts), ex);
@@ -4474,6 +4815,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
             this.setExecutionMode(ts, newMode);
 
             if (hstore_conf.site.txn_profiling && ts.profiler != null) ts.profiler.startPostPrepare();
+            if (this.txnTracer != null) ts.setTracePrepare(this.txnTracer.start(ts.getTransactionId()));
             if (hstore_conf.site.exec_profiling) {
                 this.profiler.network_time.start();
                 this.profiler.sp3_local_time.start();
@@ -4549,7 +4891,20 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                 profiler.sp3_remote_time.start();
             }
             
-            if (hstore_conf.site.specexec_enable) {
+            // Snapshot reads don't hold the lock for this partition, so the only thing that
+            // we need to check is whether they read a consistent snapshot from it.
+            // Since they can't prepare early, we know that they've finished reading from 
+            // all of their other partitions by now.
+            if (ts.isSnapshotReadPartition(this.partitionId)) {
+                if (ts.isSnapshotValid(this.partitionId, this.snapshotDtxnEpoch) == false) {
+                    if (debug.val)
+                        LOG.debug(String.format("%s - Snapshot read is no longer valid at partition %d " +
+                                  "[dtxnEpoch=%d, writeEpoch=%d]",
+                                  ts, this.partitionId, this.snapshotDtxnEpoch, this.snapshotWriteEpoch));
+                    status = Status.ABORT_RESTART;
+                }
+            }
+            else if (hstore_conf.site.specexec_enable) {
                 // Check to see if there were any conflicts with the dtxn and any of its speculative
                 // txns at this partition. If there were, then we know that we can't commit the txn here.
                 if (this.specExecSkipAfter == false) {
@@ -4583,7 +4938,9 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     newMode = ExecutionMode.COMMIT_READONLY;
                 }
             }
-            if (this.currentDtxn != null) this.setExecutionMode(ts, newMode);
+            if (this.currentDtxn != null && ts.isSnapshotReadPartition(this.partitionId) == false) {
+                this.setExecutionMode(ts, newMode);
+            }
         }
         // It's ok if they try to prepare the txn twice. That might just mean that they never
         // got the acknowledgement back in time if they tried to send an early commit message.
@@ -4934,10 +5291,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     
                     // Make sure that we mark the dtxn as finished so that we don't
                     // try to do anything with it later on.
-                    if (hstore_conf.site.exec_readwrite_tracking)
-                        this.markTransactionFinished(ts);
-                    else
-                        ts.markFinished(this.partitionId);
+                    this.markTransactionFinished(ts);
                 
                     // Now make sure that all of the speculative txns are processed without 
                     // committing (since we just committed any change that they could have made
@@ -4946,10 +5300,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                     while ((spec_ts = this.specExecBlocked.pollFirst()) != null) {
                         ClientResponseImpl spec_cr = spec_ts.getClientResponse();
                         assert(spec_cr != null);
-                        if (hstore_conf.site.exec_readwrite_tracking) 
-                            this.markTransactionFinished(spec_ts);
-                        else
-                            spec_ts.markFinished(this.partitionId);
+                        this.markTransactionFinished(spec_ts);
                             
                         try {
                             if (trace.val)
@@ -5009,6 +5360,15 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
                 this.profiler.sp3_remote_time.stopIfStarted();
             }
         }
+        // Snapshot reads never hold the lock for this partition and they never
+        // modify anything, so there is nothing that we need to do in the EE
+        else if (ts.isSnapshotReadPartition(this.partitionId)) {
+            if (debug.val)
+                LOG.debug(String.format("%s - Finishing snapshot read at partition %d [status=%s]",
+                          ts, this.partitionId, status));
+            this.queueManager.lockQueueFinished(ts, status, this.partitionId);
+            this.markTransactionFinished(ts);
+        }
         // We were told told to finish a dtxn that is not the current one
         // at this partition. That's ok as long as it's aborting and not trying
         // to commit.
@@ -5053,6 +5413,15 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         if (hstore_conf.site.exec_readwrite_tracking && ts.hasExecutedWork(this.partitionId)) {
             this.ee.trackingFinish(ts.getTransactionId());
         }
+        // Any results for cacheable tables that this txn modified are now stale
+        if (this.resultCache != null && this.resultCacheWriters.isEmpty() == false) {
+            BitSet tables = this.resultCacheWriters.remove(ts.getTransactionId());
+            if (tables != null) {
+                for (int tableId = tables.nextSetBit(0); tableId >= 0; tableId = tables.nextSetBit(tableId+1)) {
+                    this.resultCache.finishWrite(tableId);
+                } // FOR
+            }
+        }
         ts.markFinished(this.partitionId);
     }
     
@@ -5078,10 +5447,7 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
         for (LocalTransaction ts : batch) {
             // Marking the txn as finished will prevent us from going down
             // into the EE to finish up the transaction.
-            if (hstore_conf.site.exec_readwrite_tracking)
-                this.markTransactionFinished(ts);
-            else
-                ts.markFinished(this.partitionId);
+            this.markTransactionFinished(ts);
             
             // Send out the ClientResponse to whomever wants it!
             if (debug.val)
@@ -5221,6 +5587,9 @@ public class PartitionExecutor implements Runnable, Configurable, Shutdownable {
     }
     
     public class Debug implements DebugContext {
+        public long calculateNextUndoToken(AbstractTransaction ts, boolean readOnly) {
+            return (PartitionExecutor.this.calculateNextUndoToken(ts, readOnly));
+        }
         public VoltProcedure getVoltProcedure(String procName) {
             Procedure proc = catalogContext.procedures.getIgnoreCase(procName);
             return (PartitionExecutor.this.getVoltProcedure(proc.getId()));
@@ -30,6 +30,10 @@ import edu.brown.utils.StringUtil;
  * also safe to run.</p>
  *
  * <p>This class manages all that state.</p>
+ *
+ * <p>If a TransactionEpochManager is given, then we don't wait for a txn's
+ * block time to pass. Instead a txn is safe to run once its epoch is
+ * closed at all of the sites in the cluster.</p>
  * 
  */
 public class PartitionLockQueue extends ThrottlingQueue<AbstractTransaction> {
@@ -63,6 +67,7 @@ public class PartitionLockQueue extends ThrottlingQueue<AbstractTransaction> {
 
     private final int partitionId;
     private int maxWaitTime;
+    private final TransactionEpochManager epochManager;
     
     private final ReentrantLock lock = new ReentrantLock(true);
     private final Condition isReady = lock.newCondition();
@@ -100,10 +105,24 @@ public class PartitionLockQueue extends ThrottlingQueue<AbstractTransaction> {
      * @param hstore_site
      */
     public PartitionLockQueue(int partitionId, int maxWaitTime, int throttle_threshold, double throttle_release) {
+        this(partitionId, maxWaitTime, throttle_threshold, throttle_release, null);
+    }
+    
+    /**
+     * Constructor
+     * @param partitionId
+     * @param maxWaitTime
+     * @param throttle_threshold
+     * @param throttle_release
+     * @param epochManager If not null, then txns are released when their epoch is closed
+     */
+    public PartitionLockQueue(int partitionId, int maxWaitTime, int throttle_threshold, double throttle_release,
+                              TransactionEpochManager epochManager) {
         super(new PriorityBlockingQueue<AbstractTransaction>(), throttle_threshold, throttle_release);
         
         this.partitionId = partitionId;
         this.maxWaitTime = maxWaitTime;
+        this.epochManager = epochManager;
         
         if (HStoreConf.singleton().site.queue_profiling) {
             this.profiler = new PartitionLockQueueProfiler();
@@ -440,6 +459,23 @@ public class PartitionLockQueue extends ThrottlingQueue<AbstractTransaction> {
     }
 
 
+    /**
+     * Let the queue know that the cluster-wide closed epoch has advanced
+     * so that it can release any txns that were waiting for it.
+     * It is safe to call this from any thread.
+     */
+    protected void epochClosed() {
+        assert(this.epochManager != null);
+        this.lock.lock();
+        try {
+            if (this.state == QueueState.BLOCKED_SAFETY || this.state == QueueState.BLOCKED_ORDERING) {
+                this.checkQueueState(false);
+            }
+        } finally {
+            this.lock.unlock();
+        } // SYNCH
+    }
+
     // ----------------------------------------------------------------------------
     // INTERNAL STATE CALCULATION
     // ----------------------------------------------------------------------------
@@ -455,6 +491,9 @@ public class PartitionLockQueue extends ThrottlingQueue<AbstractTransaction> {
      * @return
      */
     private QueueState checkQueueState(boolean afterRemoval) {
+        if (this.epochManager != null) {
+            return (this.checkEpochQueueState());
+        }
         if (trace.val && super.isEmpty() == false)
             LOG.trace(String.format("Partition %d :: checkQueueState(afterPoll=%s) [current=%s]",
                       this.partitionId, afterRemoval, this.state));
@@ -613,6 +652,56 @@ public class PartitionLockQueue extends ThrottlingQueue<AbstractTransaction> {
         return this.state;
     }
     
+    /**
+     * Figure out the next state when we are using epochs. The txn at the front of the
+     * queue is safe to run once its epoch is closed. Since nobody can send us a txn in a
+     * closed epoch anymore, we never have to wait for anything else.
+     * If the epoch is still open, then take() will sleep for one epoch interval and 
+     * check again, unless somebody calls epochClosed() before then.
+     * @return
+     */
+    private QueueState checkEpochQueueState() {
+        QueueState newState = QueueState.UNBLOCKED;
+        AbstractTransaction ts = super.peek();
+        Long txnId = null;
+        if (ts == null) {
+            newState = QueueState.BLOCKED_EMPTY;
+        }
+        else {
+            txnId = ts.getTransactionId();
+            // HACK: Ignore null txnIds
+            if (txnId == null) {
+                LOG.warn(String.format("Partition %d :: Uninitialized transaction handle %s", this.partitionId, ts));
+                return (this.state);
+            }
+            if (this.epochManager.isClosed(txnId.longValue()) == false) {
+                newState = QueueState.BLOCKED_SAFETY;
+                this.blockTimestamp = System.currentTimeMillis() + this.epochManager.getEpochInterval();
+                if (debug.val)
+                    LOG.debug(String.format("Partition %d :: txnId[%d] ==> %s (epoch=%d, closedEpoch=%d)",
+                              this.partitionId, txnId, newState,
+                              this.epochManager.getEpoch(txnId), this.epochManager.getClosedEpoch()));
+            }
+        }
+        if (txnId != null) this.lastSafeTxnId = txnId;
+        
+        if (newState != this.state) {
+            if (trace.val)
+                LOG.trace(String.format("Partition %d :: ORIG[%s]->NEW[%s] / LastSafeTxn:%d",
+                          this.partitionId, this.state, newState, this.lastSafeTxnId));
+            if (this.profiler != null) {
+                this.profiler.queueStates.get(this.state).stopIfStarted();
+                this.profiler.queueStates.get(newState).start();
+            }
+            this.state = newState;
+            this.isReady.signal();
+        }
+        else if (this.profiler != null) {
+            this.profiler.queueStates.get(this.state).restart();
+        }
+        return (this.state);
+    }
+    
     // ----------------------------------------------------------------------------
     // DEBUG METHODS
     // ----------------------------------------------------------------------------
@@ -0,0 +1,285 @@
+package edu.brown.hstore;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+import org.voltdb.TransactionIdManager;
+
+import edu.brown.interfaces.DebugContext;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.EventObservable;
+import edu.brown.utils.StringUtil;
+
+/**
+ * Keeps track of which transaction epochs are closed across the cluster.
+ * An epoch is a fixed-length window of the timestamps that are embedded in txnIds.
+ * <P>
+ * An HStoreSite closes an epoch once its clock has moved past the end of that epoch
+ * and it has sent out the TransactionInitRequests for every txn that it created
+ * in that epoch. Each HStoreSite includes the watermark for its last closed epoch
+ * in its heartbeats. Once an epoch is closed at every HStoreSite, no txn with an id
+ * in that epoch can still be on its way to a partition, so the PartitionLockQueues
+ * can release all of that epoch's txns in txnId order without waiting.
+ * @see HStoreConf.site.queue_epoch_ordering
+ */
+public class TransactionEpochManager {
+    private static final Logger LOG = Logger.getLogger(TransactionEpochManager.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * Special marker for when a site has not closed any epochs yet
+     */
+    public static final long NULL_EPOCH = -1l;
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL STATE
+    // ----------------------------------------------------------------------------
+
+    private final int localSiteId;
+    private final int epochInterval;
+
+    /**
+     * The last closed epoch at each HStoreSite
+     * <B>Note:</B> Do not manipulate this outside of a synchronized block.
+     */
+    private final long siteEpochs[];
+
+    /**
+     * The last epoch that is closed at all of the HStoreSites
+     */
+    private volatile long closedEpoch = NULL_EPOCH;
+
+    /**
+     * The txnIds of the local txns that have been created but whose
+     * TransactionInitRequests have not been sent out yet.
+     */
+    private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<Long>();
+
+    /**
+     * The TransactionInitializer holds the read lock while it creates a new txnId and
+     * adds it to our pending set. We hold the write lock when we close the local epoch
+     * so that we can't miss a txnId that was created before we looked at the clock.
+     */
+    private final ReentrantReadWriteLock registerLock = new ReentrantReadWriteLock();
+
+    /**
+     * Clock offset for this HStoreSite's TransactionIdManagers
+     */
+    private long timeDelta = 0;
+
+    /**
+     * Fired whenever the cluster-wide closed epoch advances.
+     */
+    private final EventObservable<Long> closedObservable = new EventObservable<Long>();
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param localSiteId
+     * @param numSites
+     * @param epochInterval The length of an epoch in milliseconds
+     */
+    public TransactionEpochManager(int localSiteId, int numSites, int epochInterval) {
+        assert(epochInterval > 0) : "Invalid epoch interval " + epochInterval;
+        this.localSiteId = localSiteId;
+        this.epochInterval = epochInterval;
+        this.siteEpochs = new long[numSites];
+        Arrays.fill(this.siteEpochs, NULL_EPOCH);
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    public int getEpochInterval() {
+        return (this.epochInterval);
+    }
+
+    /**
+     * Return the last epoch that is closed at all of the HStoreSites
+     * @return
+     */
+    public long getClosedEpoch() {
+        return (this.closedEpoch);
+    }
+
+    public EventObservable<Long> getClosedEpochObservable() {
+        return (this.closedObservable);
+    }
+
+    /**
+     * Return the epoch that the given txnId belongs to
+     * @param txnId
+     * @return
+     */
+    public long getEpoch(long txnId) {
+        return (TransactionIdManager.getTimestampFromTransactionId(txnId) / this.epochInterval);
+    }
+
+    /**
+     * Returns true if the given txnId belongs to an epoch that is closed at
+     * all of the HStoreSites in the cluster.
+     * @param txnId
+     * @return
+     */
+    public boolean isClosed(long txnId) {
+        return (this.getEpoch(txnId) <= this.closedEpoch);
+    }
+
+    /**
+     * This should not be invoked directly by anybody else at runtime
+     * @param delta
+     */
+    public void setTimeDelta(long delta) {
+        this.timeDelta = delta;
+    }
+
+    // ----------------------------------------------------------------------------
+    // LOCAL TRANSACTIONS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Must be called before creating a new txnId for a local txn.
+     * The caller must then always call finishRegistration()
+     */
+    public void beginRegistration() {
+        this.registerLock.readLock().lock();
+    }
+
+    /**
+     * Record that the given txnId has been created but not sent out yet.
+     * @param txnId May be null if the registration failed
+     */
+    public void finishRegistration(Long txnId) {
+        try {
+            if (txnId != null) this.pending.add(txnId);
+        } finally {
+            this.registerLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record that all of the TransactionInitRequests for the given local txn
+     * have been sent out, or that the txn has been deleted.
+     * @param txnId
+     */
+    public void transactionSent(Long txnId) {
+        if (txnId != null) this.pending.remove(txnId);
+    }
+
+    /**
+     * Figure out the last epoch that this HStoreSite will never create or
+     * send another txn for and return its watermark.
+     * @return The smallest txnId that this HStoreSite could still send out, or
+     *         NULL_EPOCH if it has not closed any epochs yet.
+     */
+    public long closeLocalEpoch() {
+        long epoch;
+        this.registerLock.writeLock().lock();
+        try {
+            long timestamp = System.currentTimeMillis() + this.timeDelta;
+            epoch = (timestamp / this.epochInterval) - 1;
+            if (this.pending.isEmpty() == false) {
+                epoch = Math.min(epoch, this.getEpoch(this.pending.first()) - 1);
+            }
+        } finally {
+            this.registerLock.writeLock().unlock();
+        }
+        this.updateSiteEpoch(this.localSiteId, epoch);
+        return (this.getWatermark(this.localSiteId));
+    }
+
+    // ----------------------------------------------------------------------------
+    // REMOTE SITES
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Return the watermark for the last closed epoch at the given site.
+     * This is the first txnId of the epoch after it.
+     * @param siteId
+     * @return
+     */
+    public synchronized long getWatermark(int siteId) {
+        long epoch = this.siteEpochs[siteId];
+        if (epoch == NULL_EPOCH) return (NULL_EPOCH);
+        return (TransactionIdManager.makeIdFromComponents((epoch + 1) * this.epochInterval, 0, 0));
+    }
+
+    /**
+     * Update the last closed epoch at the given site from a watermark that it sent us.
+     * @param siteId
+     * @param watermark
+     */
+    public void updateSiteWatermark(int siteId, long watermark) {
+        if (watermark < 0) return;
+        this.updateSiteEpoch(siteId, this.getEpoch(watermark) - 1);
+    }
+
+    private void updateSiteEpoch(int siteId, long epoch) {
+        long newClosed;
+        synchronized (this) {
+            // Epochs can never be reopened
+            if (epoch <= this.siteEpochs[siteId]) return;
+            this.siteEpochs[siteId] = epoch;
+
+            newClosed = Long.MAX_VALUE;
+            for (long e : this.siteEpochs) {
+                newClosed = Math.min(newClosed, e);
+            } // FOR
+            if (newClosed <= this.closedEpoch) return;
+            this.closedEpoch = newClosed;
+        } // SYNCH
+        if (trace.val)
+            LOG.trace(String.format("Closed epoch %d [site=%d]", newClosed, siteId));
+        this.closedObservable.notifyObservers(newClosed);
+    }
+
+    // ----------------------------------------------------------------------------
+    // DEBUG METHODS
+    // ----------------------------------------------------------------------------
+
+    public class Debug implements DebugContext {
+        public int getPendingCount() {
+            return (pending.size());
+        }
+        public long getSiteEpoch(int siteId) {
+            synchronized (TransactionEpochManager.this) {
+                return (siteEpochs[siteId]);
+            } // SYNCH
+        }
+    }
+
+    private TransactionEpochManager.Debug cachedDebugContext;
+    public TransactionEpochManager.Debug getDebugContext() {
+        if (this.cachedDebugContext == null) {
+            // We don't care if we're thread-safe here...
+            this.cachedDebugContext = new Debug();
+        }
+        return (this.cachedDebugContext);
+    }
+
+    public String debug() {
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("Epoch Interval", this.epochInterval + " ms");
+        m.put("Closed Epoch", this.closedEpoch);
+        synchronized (this) {
+            for (int i = 0; i < this.siteEpochs.length; i++) {
+                m.put(HStoreThreadManager.formatSiteName(i), this.siteEpochs[i]);
+            } // FOR
+        } // SYNCH
+        m.put("Pending Txns", this.pending.size());
+        return (StringUtil.formatMaps(m));
+    }
+}
@@ -45,15 +45,19 @@ import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.estimators.TransactionEstimator;
 import edu.brown.hstore.estimators.Estimate;
 import edu.brown.hstore.estimators.EstimatorState;
+import edu.brown.hstore.estimators.markov.MarkovEstimator;
 import edu.brown.hstore.estimators.markov.MarkovEstimatorState;
 import edu.brown.hstore.txns.AbstractTransaction;
 import edu.brown.hstore.txns.LocalTransaction;
 import edu.brown.hstore.txns.MapReduceTransaction;
 import edu.brown.hstore.txns.RemoteTransaction;
 import edu.brown.hstore.txns.TransactionUtil;
+import edu.brown.hstore.util.ProcedureAbortAnalyzer;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.markov.EstimationThresholds;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.containers.MarkovGraphsContainer;
 import edu.brown.profilers.ProfileMeasurement;
 import edu.brown.profilers.TransactionProfiler;
 import edu.brown.utils.EventObservable;
@@ -90,6 +94,7 @@ public class TransactionInitializer {
     private final PartitionSet local_partitions;
     private final TransactionEstimator t_estimators[];
     private final TransactionIdManager txnIdManagers[];
+    private final TransactionEpochManager epochManager;
     private final Random rng = new Random();
     private EstimationThresholds thresholds;
     
@@ -109,6 +114,7 @@ public class TransactionInitializer {
     private final boolean isMapReduce[];
     private final boolean isSysProc[];
     private final boolean isReadOnly[];
+    private final boolean isNonAborting[];
     private final int expectedParams[];
     
     // ----------------------------------------------------------------------------
@@ -130,6 +136,7 @@ public class TransactionInitializer {
         this.isMapReduce = new boolean[num_procs];
         this.isSysProc = new boolean[num_procs];
         this.isReadOnly = new boolean[num_procs];
+        this.isNonAborting = new boolean[num_procs];
         this.expectedParams = new int[num_procs];
         for (Procedure proc : this.catalogContext.procedures) {
             int id = proc.getId();
@@ -137,12 +144,23 @@ public class TransactionInitializer {
             this.isSysProc[id] = proc.getSystemproc();
             this.isReadOnly[id] = proc.getReadonly();
             this.expectedParams[id] = proc.getParameters().size();
+            
+            // We only need to figure out which procedures can abort if we're
+            // allowed to run txns without undo logging
+            if (hstore_conf.site.exec_no_undo_logging && this.isSysProc[id] == false) {
+                this.isNonAborting[id] = ProcedureAbortAnalyzer.isNonAborting(proc);
+                if (debug.val)
+                    LOG.debug(String.format("%s [nonAborting=%s]", proc.getName(), this.isNonAborting[id]));
+            } else {
+                this.isNonAborting[id] = false;
+            }
         } // FOR
         
         this.txnIdManagers = new TransactionIdManager[this.catalogContext.numberOfPartitions];
         for (int partition : this.local_partitions.values()) {
             this.txnIdManagers[partition] = hstore_site.getTransactionIdManager(partition);
         } // FOR
+        this.epochManager = hstore_site.getTransactionQueueManager().getEpochManager();
     }
     
     public synchronized EventObservable<LocalTransaction> getNewTxnObservable() {
@@ -473,6 +491,7 @@ public class TransactionInitializer {
         assert(oldTxnId != null);
         AbstractTransaction removed = this.inflight_txns.remove(oldTxnId);
         assert(ts == removed);
+        if (this.epochManager != null) this.epochManager.transactionSent(oldTxnId);
         
         Long newTxnId = this.registerTransaction(ts, base_partition);
         ts.setTransactionId(newTxnId);
@@ -490,6 +509,24 @@ public class TransactionInitializer {
      * @return
      */
     protected Long registerTransaction(AbstractTransaction ts, int base_partition) {
+        if (this.epochManager == null) {
+            return (this.generateTransactionId(ts, base_partition));
+        }
+        
+        // The TransactionEpochManager needs to know about this txn until 
+        // we have sent out its TransactionInitRequests. Otherwise it could close 
+        // the txn's epoch before the other sites know about it.
+        Long txn_id = null;
+        this.epochManager.beginRegistration();
+        try {
+            txn_id = this.generateTransactionId(ts, base_partition);
+        } finally {
+            this.epochManager.finishRegistration(txn_id);
+        }
+        return (txn_id);
+    }
+    
+    private Long generateTransactionId(AbstractTransaction ts, int base_partition) {
         TransactionIdManager idManager = this.txnIdManagers[base_partition]; 
         Long txn_id = idManager.getNextUniqueTransactionId();
         
@@ -534,6 +571,36 @@ public class TransactionInitializer {
              
     }
 
+    /**
+     * Returns true if the MarkovGraph for the given procedure at the base partition has seen
+     * enough txns to say that it basically never aborts. This is always false if the anti-cache
+     * is enabled, since any txn could then get aborted for touching evicted data.
+     * @param txn_id
+     * @param base_partition
+     * @param catalog_proc
+     * @param params
+     * @return
+     */
+    private boolean hasNegligibleAbortRate(Long txn_id, int base_partition, Procedure catalog_proc, ParameterSet params) {
+        if (hstore_conf.site.anticache_enable || this.thresholds == null) {
+            return (false);
+        }
+        TransactionEstimator t_estimator = this.t_estimators[base_partition];
+        if (t_estimator == null) {
+            PartitionExecutor executor = this.hstore_site.getPartitionExecutor(base_partition);
+            if (executor == null) return (false);
+            t_estimator = executor.getTransactionEstimator();
+            this.t_estimators[base_partition] = t_estimator;
+        }
+        if ((t_estimator instanceof MarkovEstimator) == false) {
+            return (false);
+        }
+        MarkovGraphsContainer markovs = ((MarkovEstimator)t_estimator).getMarkovGraphsContainer();
+        if (markovs == null) return (false);
+        MarkovGraph markov = markovs.getFromParams(txn_id, base_partition, params.toArray(), catalog_proc);
+        return (ProcedureAbortAnalyzer.isAbortProbabilityNegligible(markov, this.thresholds));
+    }
+    
     /**
      * Initialize the TransactionProfiler for the given txn handle.
      * Returns true if profiling is enabled for this txn.
@@ -626,6 +693,12 @@ public class TransactionInitializer {
                           catalog_proc.getName(), ts.getClientHandle(), catalog_proc.getSinglepartition()));
             if (catalog_proc.getSinglepartition()) {
                 predict_partitions = catalogContext.getPartitionSetSingleton(base_partition);
+                // The static analysis can't see runtime errors (e.g., the EE rejecting a query),
+                // so we also need the Markov models to tell us that this procedure basically never aborts
+                if (this.isNonAborting[procId] &&
+                    this.hasNegligibleAbortRate(txn_id, base_partition, catalog_proc, params)) {
+                    predict_abortable = false;
+                }
             } else {
                 predict_partitions = catalogContext.getAllPartitionIds();
             }
@@ -784,6 +857,19 @@ public class TransactionInitializer {
         if (hstore_conf.site.txn_profiling && ts.profiler != null) 
             ts.profiler.setSingledPartitioned(ts.isPredictSinglePartition());
         
+        // Read-only distributed txns can read from their remote partitions without
+        // locking them. We can't let them prepare early because the validation for
+        // a partition has to happen after they've read from all of the others.
+        // Note that restarted txns will always go through the lock queues.
+        if (hstore_conf.site.exec_snapshot_reads &&
+                this.isSysProc[procId] == false &&
+                this.isMapReduce[procId] == false &&
+                this.isReadOnly[procId] &&
+                ts.isPredictSinglePartition() == false) {
+            ts.setSnapshotRead(true);
+            ts.setAllowEarlyPrepare(false);
+        }
+        
         if (debug.val) {
             Map<String, Object> m = new LinkedHashMap<String, Object>();
             m.put("ClientHandle", client_handle);
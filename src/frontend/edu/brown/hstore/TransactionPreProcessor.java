@@ -1,10 +1,10 @@
 package edu.brown.hstore;
 
-import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.log4j.Logger;
 import org.voltdb.ClientResponseImpl;
+import org.voltdb.utils.DBBPool.BBContainer;
 import org.voltdb.utils.Pair;
 
 import com.google.protobuf.RpcCallback;
@@ -17,7 +17,7 @@ import edu.brown.logging.LoggerUtil.LoggerBoolean;
  * Special thread that will process txn invocations
  * @author pavlo
  */
-public class TransactionPreProcessor extends AbstractProcessingRunnable<Pair<ByteBuffer, RpcCallback<ClientResponseImpl>>> {
+public class TransactionPreProcessor extends AbstractProcessingRunnable<Pair<BBContainer, RpcCallback<ClientResponseImpl>>> {
     private static final Logger LOG = Logger.getLogger(TransactionPreProcessor.class);
     private static final LoggerBoolean debug = new LoggerBoolean();
     private static final LoggerBoolean trace = new LoggerBoolean();
@@ -26,7 +26,7 @@ public class TransactionPreProcessor extends AbstractProcessingRunnable<Pair<Byt
     }
     
     public TransactionPreProcessor(HStoreSite hstore_site,
-                                   BlockingQueue<Pair<ByteBuffer, RpcCallback<ClientResponseImpl>>> queue) {
+                                   BlockingQueue<Pair<BBContainer, RpcCallback<ClientResponseImpl>>> queue) {
         super(hstore_site,
               HStoreConstants.THREAD_NAME_PREPROCESSOR,
               queue,
@@ -34,7 +34,7 @@ public class TransactionPreProcessor extends AbstractProcessingRunnable<Pair<Byt
     }
     
     @Override
-    protected void processingCallback(Pair<ByteBuffer, RpcCallback<ClientResponseImpl>> next) {
+    protected void processingCallback(Pair<BBContainer, RpcCallback<ClientResponseImpl>> next) {
         this.hstore_site.invocationProcess(next.getFirst(), next.getSecond());
     }
 }
@@ -29,6 +29,8 @@ import edu.brown.interfaces.Shutdownable;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.profilers.TransactionQueueManagerProfiler;
+import edu.brown.profilers.TransactionTracer;
+import edu.brown.profilers.TransactionTracer.Span;
 import edu.brown.utils.EventObservable;
 import edu.brown.utils.EventObserver;
 import edu.brown.utils.ExceptionHandlingRunnable;
@@ -63,6 +65,7 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
     
     private final HStoreSite hstore_site;
     private final HStoreConf hstore_conf;
+    private final TransactionTracer txnTracer;
     private final PartitionSet localPartitions;
     private boolean stop = false;
     
@@ -92,6 +95,13 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
     private final Long[] lockQueueLastTxns;
 
     private final TransactionQueueManagerProfiler[] profilers;
+    
+    /**
+     * Keeps track of the closed epochs in the cluster when we are using epoch-based
+     * ordering for the lock queues. This will be null if it is disabled.
+     * @see HStoreConf.site.queue_epoch_ordering
+     */
+    private final TransactionEpochManager epochManager;
 
     // ----------------------------------------------------------------------------
     // TRANSACTIONS THAT NEED TO ADDED TO LOCK QUEUES
@@ -126,6 +136,7 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
     public TransactionQueueManager(HStoreSite hstore_site) {
         this.hstore_site = hstore_site;
         this.hstore_conf = hstore_site.getHStoreConf();
+        this.txnTracer = hstore_site.getTransactionTracer();
         
         CatalogContext catalogContext = hstore_site.getCatalogContext();
         this.localPartitions = hstore_site.getLocalPartitionIds();
@@ -136,12 +147,29 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
         this.restartQueue = new LinkedBlockingQueue<Pair<LocalTransaction,Status>>();
         this.profilers = new TransactionQueueManagerProfiler[catalogContext.numberOfPartitions];
         
+        // Epoch-based Ordering
+        if (hstore_conf.site.queue_epoch_ordering) {
+            this.epochManager = new TransactionEpochManager(hstore_site.getSiteId(),
+                                                            catalogContext.numberOfSites,
+                                                            hstore_conf.site.queue_epoch_interval);
+            this.epochManager.getClosedEpochObservable().addObserver(new EventObserver<Long>() {
+                public void update(EventObservable<Long> o, Long arg) {
+                    for (int partition : localPartitions.values()) {
+                        lockQueues[partition].epochClosed();
+                    } // FOR
+                };
+            });
+        } else {
+            this.epochManager = null;
+        }
+        
         // Initialize internal queues
         for (int partition : this.localPartitions.values()) {
             PartitionLockQueue queue = new PartitionLockQueue(partition,
                                                               hstore_conf.site.txn_incoming_delay,
                                                               this.initThrottleThreshold,
-                                                              this.initThrottleRelease);
+                                                              this.initThrottleRelease,
+                                                              this.epochManager);
             this.lockQueues[partition] = queue;
             this.lockQueueBarriers[partition] = new ReentrantLock(true);
             this.profilers[partition] = new TransactionQueueManagerProfiler();
@@ -326,6 +354,9 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
             LocalTransaction localTxn = (LocalTransaction)nextTxn;
             if (localTxn.profiler != null) localTxn.profiler.startQueueLock();
         }
+        if (this.txnTracer != null) {
+            this.txnTracer.stop(Span.INIT_QUEUE, nextTxn.getTransactionId(), -1, nextTxn.getTraceInitQueue());
+        }
         
         PartitionCountingCallback<AbstractTransaction> callback = nextTxn.getInitCallback();
         assert(callback.isInitialized()) :
@@ -345,6 +376,16 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
             // If this txn gets rejected when we try to insert it, then we 
             // just need to stop trying to add it to other partitions
             if (ret) {
+                // Snapshot reads don't need the lock for any partition other
+                // than their base partition, so we can release them right away
+                if (nextTxn.isSnapshotReadPartition(partition)) {
+                    if (trace.val)
+                        LOG.trace(String.format("Releasing snapshot read %s at partition %d without locking it",
+                                  nextTxn, partition));
+                    callback.run(partition);
+                    nextTxn.markReleased(partition);
+                    continue;
+                }
                 status = this.lockQueueInsert(nextTxn, partition, callback);
                 if (status != Status.OK) ret = false;
             // IMPORTANT: But we still need to go through and decrement the
@@ -372,6 +413,7 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
             LocalTransaction localTxn = (LocalTransaction)ts;
             if (localTxn.profiler != null) localTxn.profiler.startInitQueue();
         }
+        if (this.txnTracer != null) ts.setTraceInitQueue(this.txnTracer.start(ts.getTransactionId()));
         this.initQueue.add(ts);
  }
     
@@ -442,6 +484,7 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
                 // 2013-04-04
                 // I think that we don't need to hold the lockQueueBarrier for this part here,
                 // because the PartitionLockQueue will already have an internal lock...
+                if (this.txnTracer != null) ts.setTraceLockQueue(partition, this.txnTracer.start(txn_id));
                 ret = this.lockQueues[partition].offer(ts, ts.isSysProc());
             }
             if (ret == false) {
@@ -535,6 +578,9 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
             if (debug.val) 
                 LOG.debug(String.format("%s - Invoking %s.run() for partition %d",
                           nextTxn, nextTxn.getInitCallback().getClass().getSimpleName(), partition));
+            if (this.txnTracer != null) {
+                this.txnTracer.stop(Span.LOCK_WAIT, nextTxn.getTransactionId(), partition, nextTxn.getTraceLockQueue(partition));
+            }
             try {
                 nextTxn.getInitCallback().run(partition);
             } catch (NullPointerException ex) {
@@ -586,7 +632,10 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
         // Note that this is always thread-safe because we will release the lock
         // only if we are the current transaction at this partition
         boolean checkQueue = true;
-        if (this.lockQueueLastTxns[partition].equals(ts.getTransactionId())) {
+        if (ts.isSnapshotReadPartition(partition)) {
+            checkQueue = false;
+        }
+        else if (this.lockQueueLastTxns[partition].equals(ts.getTransactionId())) {
             if (trace.val)
                 LOG.trace(String.format("%s is the last txn released at partition %d",
                           ts, partition));
@@ -763,6 +812,15 @@ public class TransactionQueueManager extends ExceptionHandlingRunnable implement
         return (this.lockQueues[partition]);
     }
     
+    /**
+     * Returns the TransactionEpochManager for this HStoreSite.
+     * This will be null if epoch-based ordering is disabled.
+     * @return
+     */
+    public TransactionEpochManager getEpochManager() {
+        return (this.epochManager);
+    }
+    
     @Override
     public void prepareShutdown(boolean error) {
         // Nothing for now
@@ -9,7 +9,9 @@ import org.voltdb.network.Connection;
 
 import com.google.protobuf.RpcCallback;
 
+import edu.brown.hstore.AdmissionController;
 import edu.brown.hstore.ClientInterface;
+import edu.brown.hstore.HStoreConstants;
 
 /**
  * Thin wrapper to sent a ClientResponse back to the client over a Connection handle
@@ -21,18 +23,36 @@ public class ClientResponseCallback implements RpcCallback<ClientResponseImpl> {
     private final Connection conn;
     private final int messageSize;
     
+    /**
+     * If the request was accepted by the AdmissionController, then this is the
+     * base partition whose admission slot we need to give back
+     */
+    private AdmissionController admissionController;
+    private int admittedPartition = HStoreConstants.NULL_PARTITION_ID;
+    
     public ClientResponseCallback(ClientInterface clientInterface, Connection conn, int messageSize) {
         this.clientInterface = clientInterface;
         this.conn = conn;
         this.messageSize = messageSize;
     }
     
+    public void setAdmitted(AdmissionController admissionController, int partition) {
+        this.admissionController = admissionController;
+        this.admittedPartition = partition;
+    }
+    
     
     @Override
     public void run(ClientResponseImpl parameter) {
         // Always reduce backpressure before we throw the exception
-        boolean ret = this.conn.writeStream().enqueue(parameter);
+        // The ClientResponse will serialize itself directly into a pooled buffer
+        // when the network thread gets around to writing it out
+        boolean ret = this.conn.writeStream().enqueue(parameter.asDeferredSerialization());
         this.clientInterface.reduceBackpressure(this.messageSize);
+        if (this.admittedPartition != HStoreConstants.NULL_PARTITION_ID) {
+            this.admissionController.release(this.admittedPartition);
+            this.admittedPartition = HStoreConstants.NULL_PARTITION_ID;
+        }
         if (ret == false) {
             throw new ClientConnectionLostException(parameter.getTransactionId());
         }
@@ -14,6 +14,8 @@ import edu.brown.hstore.Hstoreservice.TransactionPrepareResponse;
 import edu.brown.hstore.txns.LocalTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.profilers.TransactionTracer;
+import edu.brown.profilers.TransactionTracer.Span;
 import edu.brown.utils.PartitionSet;
 
 /**
@@ -57,6 +59,7 @@ public class LocalPrepareCallback extends PartitionCountingCallback<LocalTransac
             this.ts.profiler.stopPostPrepare();
             this.ts.profiler.startPostFinish();
         }
+        this.tracePrepareWait();
 
         // Everybody returned ok, so we'll tell them to all commit right now
         // so that they can start executing other things
@@ -83,6 +86,7 @@ public class LocalPrepareCallback extends PartitionCountingCallback<LocalTransac
             this.ts.profiler.stopPostPrepare();
             this.ts.profiler.startPostFinish();
         }
+        this.tracePrepareWait();
         
         // We don't care whether our transaction was rejected or not because we 
         // know that we still need to call TransactionFinish, which will delete
@@ -101,6 +105,18 @@ public class LocalPrepareCallback extends PartitionCountingCallback<LocalTransac
         }
     }
     
+    /**
+     * Record how long the base partition waited for the 2PC:PREPARE acknowledgments
+     */
+    private void tracePrepareWait() {
+        long start = this.ts.getTracePrepare();
+        if (start != TransactionTracer.NOT_SAMPLED) {
+            TransactionTracer txnTracer = this.hstore_site.getTransactionTracer();
+            txnTracer.stop(Span.PREPARE_WAIT, this.ts.getTransactionId(), this.ts.getBasePartition(), start);
+            this.ts.setTracePrepare(TransactionTracer.NOT_SAMPLED);
+        }
+    }
+    
     // ----------------------------------------------------------------------------
     // RPC CALLBACK
     // ----------------------------------------------------------------------------
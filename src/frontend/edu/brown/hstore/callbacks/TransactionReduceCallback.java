@@ -5,7 +5,7 @@ import java.nio.ByteBuffer;
 import org.apache.log4j.Logger;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.VoltTable;
-import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.utils.ColumnarTableCodec;
 
 import edu.brown.hstore.HStoreSite;
 import edu.brown.hstore.Hstoreservice.Status;
@@ -109,7 +109,7 @@ public class TransactionReduceCallback extends AbstractTransactionCallback<MapRe
                 
                 VoltTable vt = null;
                 try {
-                    vt = FastDeserializer.deserialize(bs, VoltTable.class);
+                    vt = ColumnarTableCodec.deserialize(bs);
                 } catch (Exception ex) {
                     throw new RuntimeException("Unexpected error when deserializing VoltTable", ex);
                 }
@@ -56,7 +56,10 @@ import edu.brown.interfaces.Shutdownable;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.profilers.CommandLogWriterProfiler;
+import edu.brown.profilers.MetricsRegistry;
 import edu.brown.profilers.ProfileMeasurementUtil;
+import edu.brown.profilers.TransactionTracer;
+import edu.brown.profilers.TransactionTracer.Span;
 import edu.brown.utils.ExceptionHandlingRunnable;
 import edu.brown.utils.StringUtil;
 
@@ -89,12 +92,14 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
         protected RpcCallback<ClientResponseImpl> clientCallback;
         protected long initiateTime;
         protected int restartCounter;
+        protected long traceStart = TransactionTracer.NOT_SAMPLED;
 
         public LogEntry init(LocalTransaction ts, ClientResponseImpl cresponse) {
             this.cresponse = cresponse;
             this.clientCallback = ts.getClientCallback();
             this.initiateTime = ts.getInitiateTime();
             this.restartCounter = ts.getRestartCounter();
+            if (txnTracer != null) this.traceStart = txnTracer.start(ts.getTransactionId());
             return super.init(ts);
         }
 
@@ -105,6 +110,7 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
             this.clientCallback = null;
             this.initiateTime = -1;
             this.restartCounter = -1;
+            this.traceStart = TransactionTracer.NOT_SAMPLED;
         }
     }
 
@@ -175,6 +181,15 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
     private final HStoreSite hstore_site;
     private final HStoreConf hstore_conf;
     private final CatalogContext catalogContext;
+    private final TransactionTracer txnTracer;
+    
+    /**
+     * Always-on metrics for how much we write and how long it takes to get it to disk.
+     * These will be null if the HStoreSite's MetricsRegistry is disabled.
+     */
+    private final MetricsRegistry.Histogram metrics_batchSize;
+    private final MetricsRegistry.Histogram metrics_bytes;
+    private final MetricsRegistry.Histogram metrics_flushTime;
     private final File outputFile;
     private final FileChannel fstream;
 
@@ -215,6 +230,18 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
         this.hstore_site = hstore_site;
         this.hstore_conf = hstore_site.getHStoreConf();
         this.catalogContext = hstore_site.getCatalogContext();
+        this.txnTracer = hstore_site.getTransactionTracer();
+        
+        MetricsRegistry metrics = hstore_site.getMetricsRegistry();
+        if (metrics != null) {
+            this.metrics_batchSize = metrics.histogram("cmdlog.batch_size");
+            this.metrics_bytes = metrics.histogram("cmdlog.bytes");
+            this.metrics_flushTime = metrics.histogram("cmdlog.flush_time");
+        } else {
+            this.metrics_batchSize = null;
+            this.metrics_bytes = null;
+            this.metrics_flushTime = null;
+        }
         this.outputFile = outputFile;
         this.singletonSerializer = new FastSerializer(true, true);
         // this.group_commit_size = Math.max(1,
@@ -502,6 +529,11 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
         
         if (debug.val)
             LOG.debug(String.format("Writing out %d bytes for %d txns [batchCtr=%d]", compressed.limit(), txnCounter, this.commitBatchCounter));
+        long flushStart = (this.metrics_flushTime != null ? System.nanoTime() : 0);
+        if (this.metrics_bytes != null) {
+            this.metrics_batchSize.record(txnCounter);
+            this.metrics_bytes.record(compressed.limit());
+        }
         try {
             this.fstream.write(compressed);
             this.fstream.force(true);
@@ -510,6 +542,7 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
             String message = "Failed to group commit for buffer";
             throw new ServerFaultException(message, ex);
         }
+        if (this.metrics_flushTime != null) this.metrics_flushTime.record(System.nanoTime() - flushStart);
         if (hstore_conf.site.commandlog_profiling && profiler != null)
             ProfileMeasurementUtil.swap(profiler.writingTime, profiler.networkTime);
         try {
@@ -520,6 +553,10 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
                 for (int j = 0, size = buffer.size(); j < size; j++) {
                     WriterLogEntry entry = buffer.buffer[(start + j) % buffer.buffer.length];
                     if (entry.isInitialized()) {
+                        if (entry.traceStart != TransactionTracer.NOT_SAMPLED) {
+                            this.txnTracer.stop(Span.COMMAND_LOG, entry.getTransactionId(),
+                                                HStoreConstants.NULL_PARTITION_ID, entry.traceStart);
+                        }
                         if (this.usePostProcessor) {
                             hstore_site.responseQueue(entry.cresponse, entry.clientCallback, entry.initiateTime, entry.restartCounter);
                         } else {
@@ -596,6 +633,7 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
         // NO GROUP COMMIT -- FINISH AND RETURN TRUE
         // -------------------------------
         else { 
+            long traceStart = (this.txnTracer != null ? this.txnTracer.start(ts.getTransactionId()) : TransactionTracer.NOT_SAMPLED);
             try {
                 FastSerializer fs = this.singletonSerializer;
                 assert (fs != null);
@@ -603,13 +641,22 @@ public class CommandLogWriter extends ExceptionHandlingRunnable implements Shutd
                 this.singletonLogEntry.init(ts);
                 fs.writeObject(this.singletonLogEntry);
                 BBContainer b = fs.getBBContainer();
+                long flushStart = (this.metrics_flushTime != null ? System.nanoTime() : 0);
+                if (this.metrics_bytes != null) {
+                    this.metrics_batchSize.record(1);
+                    this.metrics_bytes.record(b.b.remaining());
+                }
                 this.fstream.write(b.b.asReadOnlyBuffer());
                 this.fstream.force(true);
+                if (this.metrics_flushTime != null) this.metrics_flushTime.record(System.nanoTime() - flushStart);
                 this.singletonLogEntry.finish();
             } catch (Exception e) {
                 String message = "Failed to write single log entry for " + ts.toString();
                 throw new ServerFaultException(message, e, ts.getTransactionId());
             }
+            if (traceStart != TransactionTracer.NOT_SAMPLED) {
+                this.txnTracer.stop(Span.COMMAND_LOG, ts.getTransactionId(), ts.getBasePartition(), traceStart);
+            }
         }
         
         return (sendResponse);
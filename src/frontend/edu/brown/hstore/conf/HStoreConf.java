@@ -130,6 +130,18 @@ public final class HStoreConf {
             experimental=true
         )
         public boolean nanosecond_latencies;
+        
+        @ConfigProperty(
+            description="Allow the query planner to use hash joins for equi-joins between two tables " +
+                        "that cannot use an index. When this is enabled, the planner also charges " +
+                        "nested loop joins for scanning the inner table once per outer tuple so that " +
+                        "its cost model can choose between the two. This changes the plans that are " +
+                        "chosen for existing multi-table queries. You must recompile the project's " +
+                        "catalog after changing this.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean hashjoin_enable;
 
     }
     
@@ -264,7 +276,12 @@ public final class HStoreConf {
         
         @ConfigProperty(
             description="If this feature is enabled, then those non-speculative single partition transactions that are " +
-                        "deemed to never abort will be executed without undo logging. Requires Markov model estimations.",
+                        "deemed to never abort will be executed without undo logging. A procedure is deemed to never " +
+                        "abort if (1) it is marked as single-partitioned with @ProcInfo and ${site.exec_voltdb_procinfo} " +
+                        "is enabled, (2) its Java code never creates an exception (e.g., VoltAbortException), " +
+                        "(3) none of its queries can violate a constraint, and (4) its Markov model has seen enough " +
+                        "txns to show that its abort probability is below the estimation abort threshold. " +
+                        "This is always disabled for txns when ${site.anticache_enable} is true.",
             defaultBoolean=false,
             experimental=true
         )
@@ -348,6 +365,15 @@ public final class HStoreConf {
         )
         public boolean exec_mispredict_crash;
         
+        @ConfigProperty(
+            description="If this enabled, then the HStoreSite will initialize the PartitionExecutors and their " +
+                        "ExecutionEngines for all of its local partitions at the same time when it starts up. " +
+                        "The catalog will only be serialized once for all of the partitions.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_parallel_bootstrap;
+        
         @ConfigProperty(
             description="If this enabled, HStoreSite will use a separate thread to process inbound requests " +
                         "from the clients.",
@@ -409,6 +435,19 @@ public final class HStoreConf {
         )
         public boolean exec_early_prepare;
 
+        @ConfigProperty(
+            description="If this parameter is enabled, then read-only distributed transactions will only " +
+                        "acquire the lock for their base partition. Their queries are executed at the other " +
+                        "partitions in between whatever else is running there against the last committed " +
+                        "state. Each partition checks at 2PC:PREPARE whether a distributed transaction " +
+                        "that could have modified it acquired its lock after the read-only transaction read " +
+                        "from it. If so, then the read-only transaction is restarted and will acquire all of its " +
+                        "locks like a normal distributed transaction.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_snapshot_reads;
+
         @ConfigProperty(
             description="Setting this configuration parameter to true allows clients to " +
                         "issue ad hoc query requests use the @AdHoc sysproc. This should be " +
@@ -427,6 +466,28 @@ public final class HStoreConf {
         )
         public boolean exec_prefetch_queries;
         
+        @ConfigProperty(
+            description="If this parameter and ${site.exec_prefetch_queries} are enabled, then the DBMS " +
+                        "will automatically choose which read-only queries to prefetch for distributed " +
+                        "transactions instead of only using the queries that are marked as prefetchable " +
+                        "in the catalog. A query is prefetched if it is in the transaction's initial " +
+                        "Markov path estimate, it will execute on a remote partition, and all of its " +
+                        "input parameters can be derived from the procedure's parameters using the " +
+                        "ParameterMappingsSet. This requires ${site.markov_enable}.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_prefetch_auto;
+        
+        @ConfigProperty(
+            description="The minimum confidence coefficient of a transaction's initial Markov path " +
+                        "estimate and the minimum ParameterMapping coefficient that are needed for the " +
+                        "DBMS to automatically prefetch a query.",
+            defaultDouble=0.9,
+            experimental=true
+        )
+        public double exec_prefetch_auto_threshold;
+        
         @ConfigProperty(
             description="If this parameter is enabled, then the DBMS will queue up any single-partitioned " +
                         "queries for later execution if they are marked as deferrable.",
@@ -456,6 +517,35 @@ public final class HStoreConf {
             experimental=true
         )
         public boolean exec_readwrite_tracking;
+        
+        @ConfigProperty(
+            description="Enable the site-wide cache for the results of read-only PlanFragments that " +
+                        "only access replicated tables or the tables listed in " +
+                        "${site.exec_result_cache_tables}. Cached results are invalidated whenever a " +
+                        "txn that modified one of those tables commits or aborts. " +
+                        "This cannot be used with ${site.exec_readwrite_tracking}.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean exec_result_cache;
+        
+        @ConfigProperty(
+            description="The maximum amount of memory (in MB) that the fragment result cache " +
+                        "can use for query results at each site. " +
+                        "Requires ${site.exec_result_cache}.",
+            defaultInt=64,
+            experimental=true
+        )
+        public int exec_result_cache_size;
+        
+        @ConfigProperty(
+            description="A comma-separated list of non-replicated tables that are rarely updated " +
+                        "and whose query results should also be cached. " +
+                        "Requires ${site.exec_result_cache}.",
+            defaultString="",
+            experimental=true
+        )
+        public String exec_result_cache_tables;
 
         // ----------------------------------------------------------------------------
         // Speculative Execution Options
@@ -841,6 +931,26 @@ public final class HStoreConf {
         )
         public boolean mr_reduce_blocking;
 
+        @ConfigProperty(
+                description="If set to true, then the output of the MAP phase at each partition will be " +
+                            "passed through the VoltMapReduceProcedure's combine() method before it is " +
+                            "shuffled to the other partitions. This is only used if the procedure " +
+                            "overrides combine().",
+                defaultBoolean=false,
+                experimental=true
+        )
+        public boolean mr_map_combine;
+
+        @ConfigProperty(
+                description="If set to true, then the REDUCE phase will group its input rows by key " +
+                            "with a hash table built directly over the VoltTable's buffer instead of " +
+                            "sorting the entire input table. Keys will be passed to reduce() in the " +
+                            "order that they first appear in the input rather than in sorted order.",
+                defaultBoolean=false,
+                experimental=true
+        )
+        public boolean mr_reduce_hash_grouping;
+
         // ----------------------------------------------------------------------------
         // Networking Options
         // ----------------------------------------------------------------------------
@@ -873,7 +983,26 @@ public final class HStoreConf {
             experimental=false
         )
         public int network_startup_retries;
-        
+
+        @ConfigProperty(
+            description="If this parameter is set to true, then VoltTables that are sent to other " +
+                        "HStoreSites (e.g., WorkResults, SendData, MapReduce shuffles) that are larger " +
+                        "than ${site.network_compress_tables_threshold} will be converted into a compressed " +
+                        "columnar format with dictionary-encoded strings and delta-encoded integers. " +
+                        "Sites can always decode these tables, regardless of this setting.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean network_compress_tables;
+
+        @ConfigProperty(
+            description="The minimum size in bytes of a VoltTable before it will be compressed when " +
+                        "${site.network_compress_tables} is enabled.",
+            defaultInt=65536,
+            experimental=true
+        )
+        public int network_compress_tables_threshold;
+
         @ConfigProperty(
             description="Max size of queued transactions before an HStoreSite will stop accepting new requests " +
                         "from clients and will block the network connections.",
@@ -899,7 +1028,47 @@ public final class HStoreConf {
             experimental=false
         )
         public long network_incoming_limit_bytes;
-        
+
+        @ConfigProperty(
+            description="If this parameter is set to true, then the HStoreSite will throttle new requests " +
+                        "separately for each base partition based on how long txns are waiting before they " +
+                        "start executing at that partition. Requests for a partition with a standing queue " +
+                        "are rejected without blocking the network connections. " +
+                        "The global byte limit in ${site.network_incoming_limit_bytes} is still enforced, but " +
+                        "${site.network_incoming_limit_txns} is used as the max admission window per partition.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean network_admission_control;
+
+        @ConfigProperty(
+            description="The target queue delay (in milliseconds) for admission control. If the smallest " +
+                        "queue delay at a partition stays above this value for an entire interval, then " +
+                        "its admission window will be reduced. " +
+                        "Requires ${site.network_admission_control}.",
+            defaultInt=5,
+            experimental=true
+        )
+        public int network_admission_target;
+
+        @ConfigProperty(
+            description="How often (in milliseconds) the admission controller will check a partition's " +
+                        "queue delay and update its admission window. " +
+                        "Requires ${site.network_admission_control}.",
+            defaultInt=100,
+            experimental=true
+        )
+        public int network_admission_interval;
+
+        @ConfigProperty(
+            description="The smallest admission window for a partition. This is also the amount that a " +
+                        "partition's window grows by after each interval without a standing queue. " +
+                        "Requires ${site.network_admission_control}.",
+            defaultInt=10,
+            experimental=true
+        )
+        public int network_admission_min_window;
+
         // ----------------------------------------------------------------------------
         // Transaction Execution Options
         // ----------------------------------------------------------------------------
@@ -935,6 +1104,71 @@ public final class HStoreConf {
         )
         public double txn_profiling_sample;
         
+        @ConfigProperty(
+            description="Record per-transaction trace spans (e.g., waiting in the lock queues, executing " +
+                        "WorkFragments, 2PC, command logging) for one out of every N transactions. " +
+                        "Every HStoreSite samples the same transactions, so the trace files that they " +
+                        "write to ${site.txn_trace_dir} when they shut down can be merged together with " +
+                        "edu.brown.profilers.TransactionTracer. Set to zero to disable tracing.",
+            defaultInt=0,
+            experimental=false
+        )
+        public int txn_trace_sampling;
+        
+        @ConfigProperty(
+            description="The max number of trace spans to keep in memory for each thread. Once a thread's " +
+                        "buffer is full, its oldest spans are overwritten. " +
+                        "Note that the ${site.txn_trace_sampling} parameter must also be enabled.",
+            defaultInt=65536,
+            experimental=false
+        )
+        public int txn_trace_buffer_size;
+        
+        @ConfigProperty(
+            description="The directory where each HStoreSite will write its transaction trace file. " +
+                        "Note that the ${site.txn_trace_sampling} parameter must also be enabled.",
+            defaultString="${global.log_dir}/traces",
+            experimental=false
+        )
+        public String txn_trace_dir;
+
+        @ConfigProperty(
+            description="Enable the HStoreSite's metrics registry. These are lock-free counters, gauges, " +
+                        "and histograms that are updated by the PartitionExecutors, the HStoreCoordinator, " +
+                        "and the CommandLogWriter. Unlike the other profiling options, these are cheap " +
+                        "enough to leave on all of the time. " +
+                        "The last snapshot of the metrics can be retrieved using the @Statistics sysproc.",
+            defaultBoolean=true,
+            experimental=false
+        )
+        public boolean metrics_enable;
+
+        @ConfigProperty(
+            description="How often the HStoreSite will take a snapshot of its metrics registry (in milliseconds). " +
+                        "Note that the ${site.metrics_enable} parameter must also be enabled.",
+            defaultInt=10000,
+            experimental=false
+        )
+        public int metrics_interval;
+
+        @ConfigProperty(
+            description="Append every snapshot of the HStoreSite's metrics registry to a plain-text file " +
+                        "in ${site.metrics_dir}. Each line of the file has the format " +
+                        "'<metric> <value> <timestamp>' so that it can be fed into Graphite. " +
+                        "Note that the ${site.metrics_enable} parameter must also be enabled.",
+            defaultBoolean=false,
+            experimental=false
+        )
+        public boolean metrics_export;
+
+        @ConfigProperty(
+            description="The directory where each HStoreSite will write its metrics file. " +
+                        "Note that the ${site.metrics_export} parameter must also be enabled.",
+            defaultString="${global.log_dir}/metrics",
+            experimental=false
+        )
+        public String metrics_dir;
+
         @ConfigProperty(
             description="Enable transaction execution mode counting. This will cause the HStoreSite to keep " +
                         "track of various properties about tranasctions, such as the number that were speculatively " +
@@ -990,7 +1224,29 @@ public final class HStoreConf {
             experimental=false
         )
         public boolean queue_profiling;
-        
+
+        @ConfigProperty(
+            description="If set to true, then the PartitionLockQueue will not use ${site.txn_incoming_delay} " +
+                        "to decide when it is safe to release a transaction. Instead, txns are grouped " +
+                        "into epochs based on the timestamp in their txnIds, and the HStoreSites exchange " +
+                        "the last epoch that they have closed in their heartbeat messages. Once an epoch " +
+                        "is closed at every HStoreSite, all of the txns in that epoch are released in " +
+                        "txnId order. Note that this will stall all txns if any HStoreSite stops " +
+                        "sending heartbeats.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean queue_epoch_ordering;
+
+        @ConfigProperty(
+            description="The length of each epoch in milliseconds when ${site.queue_epoch_ordering} " +
+                        "is enabled. The HStoreSites will send heartbeats at this interval instead of " +
+                        "${site.network_heartbeats_interval}.",
+            defaultInt=10,
+            experimental=true
+        )
+        public int queue_epoch_interval;
+
         @ConfigProperty(
             description="The initial throttling threshold for the PartitionLockQueue.",
             defaultDouble=1.0,
@@ -1087,6 +1343,27 @@ public final class HStoreConf {
         )
         public boolean markov_learning_enable;
         
+        @ConfigProperty(
+            description="If this parameter is set to true, then the MarkovEstimators will not update the " +
+                        "hit counters in their Markov models when a transaction finishes. Instead, they will " +
+                        "send the path that the transaction took to a separate learner thread at the HStoreSite. " +
+                        "This thread will periodically recompute the models' probabilities and then swap them in " +
+                        "so that the PartitionExecutors never stall while this happens. " +
+                        "See ${site.markov_learning_interval}.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean markov_learning_background;
+        
+        @ConfigProperty(
+            description="How often (in milliseconds) the background Markov learner thread will recompute " +
+                        "the probabilities for the models that were used since the last time. " +
+                        "See ${site.markov_learning_background}.",
+            defaultInt=5000,
+            experimental=true
+        )
+        public int markov_learning_interval;
+        
         @ConfigProperty(
             description="If this parameter is set to true, then the PartitionExecutor will use its " +
                         "TransactionEstimator to calculate updated estimates after a single-partition " +
@@ -1359,6 +1636,15 @@ public final class HStoreConf {
         )
         public boolean pool_profiling;
         
+        @ConfigProperty(
+            description="The max number of idle objects that each thread will keep in its own local cache for " +
+                        "the transaction state object pools. Threads only access the pool's shared queue when " +
+                        "their local cache is empty or full. Set to zero to disable thread-local caching.",
+            defaultInt=16,
+            experimental=false
+        )
+        public int pool_magazine_size;
+        
 //        @ConfigProperty(
 //            description="Whether to enable object pooling for AbstractTransaction handles. This includes" +
 //                        "all local transactions, remote transactions, and MapReduce transactions.",
@@ -1454,6 +1740,27 @@ public final class HStoreConf {
             experimental=false
         )
         public String hosts;
+        
+        @ConfigProperty(
+            description="Run the entire benchmark on the local machine without using SSH. " +
+                        "The BenchmarkController will rewrite the catalog so that all of its HStoreSites " +
+                        "are on localhost with their own ports, and then start each HStoreSite and each " +
+                        "client host in ${client.hosts} as a separate child JVM. The sites still " +
+                        "communicate with each other over the loopback interface, so this can be used " +
+                        "to measure distributed transactions on a single machine.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean local_cluster;
+        
+        @ConfigProperty(
+            description="When ${client.local_cluster} is enabled, this is the number of HStoreSites " +
+                        "to start. The catalog's partitions are divided up evenly among them. " +
+                        "If this is less than one, then the number of sites in the catalog is used.",
+            defaultInt=-1,
+            experimental=true
+        )
+        public int local_cluster_sites;
 
         @ConfigProperty(
             description="The number of txns that client process submits (per second). The underlying " +
@@ -1564,6 +1871,27 @@ public final class HStoreConf {
         )
         public int blocking_concurrent;
         
+        @ConfigProperty(
+            description="Whether to generate load with an open-loop schedule. When this is true, then each " +
+                        "client thread will submit transactions at the times dictated by ${client.txnrate} " +
+                        "and ${client.openloop_arrivals}, regardless of whether earlier transactions have " +
+                        "completed. Latencies are measured from when each transaction was supposed to be " +
+                        "sent rather than when it actually was, and the results will include both the " +
+                        "service time and response time distributions. This disables ${client.blocking}.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean openloop;
+        
+        @ConfigProperty(
+            description="When ${client.openloop} is enabled, this controls how the intended send times of " +
+                        "transactions are spaced out.",
+            defaultString="CONSTANT",
+            experimental=true,
+            enumOptions="edu.brown.api.ArrivalDistributionType"
+        )
+        public String openloop_arrivals;
+        
         @ConfigProperty(
             description="When this parameter is enabled, the benchmark's loaders will only be " +
                         "allowed to load tables into the database cluster one at a time. This is " +
@@ -1573,6 +1901,24 @@ public final class HStoreConf {
         )
         public boolean blocking_loader;
 
+        @ConfigProperty(
+            description="When this parameter is enabled, the benchmark's loaders will split the rows " +
+                        "for partitioned tables on the client side and then load each partition's rows " +
+                        "using a single-partition @LoadPartitionTable txn instead of a distributed " +
+                        "@LoadMultipartitionTable txn.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean loader_partitioned;
+
+        @ConfigProperty(
+            description="The max number of per-partition batches that a loader thread can have " +
+                        "outstanding at the same time when ${client.loader_partitioned} is enabled.",
+            defaultInt=16,
+            experimental=true
+        )
+        public int loader_max_outstanding;
+
         @ConfigProperty(
             description="The scaling factor determines how large to make the target benchmark's data set. " +
                         "A scalefactor greater than one makes the data set larger, while less than one " +
@@ -239,7 +239,7 @@ public class MarkovEstimate implements Poolable, DynamicTransactionEstimate {
     }
     
     protected void incrementTouchedCounter(PartitionSet partitions) {
-        for (int partition : partitions) {
+        for (int partition = partitions.nextPartition(0); partition != -1; partition = partitions.nextPartition(partition+1)) {
             this.touched.put(partition);
         } // FOR
     }
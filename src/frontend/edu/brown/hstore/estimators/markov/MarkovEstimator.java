@@ -22,10 +22,12 @@ import edu.brown.graphs.GraphvizExport;
 import edu.brown.hstore.Hstoreservice.Status;
 import edu.brown.hstore.estimators.EstimatorState;
 import edu.brown.hstore.estimators.TransactionEstimator;
+import edu.brown.hstore.specexec.PrefetchQueryPlanner;
 import edu.brown.hstore.txns.TransactionUtil;
 import edu.brown.interfaces.DebugContext;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.CompiledMarkovGraph;
 import edu.brown.markov.MarkovEdge;
 import edu.brown.markov.MarkovGraph;
 import edu.brown.markov.MarkovGraphTimes;
@@ -99,6 +101,12 @@ public class MarkovEstimator extends TransactionEstimator {
     
     private final MarkovEstimatorProfiler profiler;
     
+    /**
+     * If this is set, then we will send completed paths to this learner
+     * instead of updating the MarkovGraphs' counters ourselves
+     */
+    private MarkovLearner learner;
+    
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
     // ----------------------------------------------------------------------------
@@ -128,13 +136,14 @@ public class MarkovEstimator extends TransactionEstimator {
         if (debug.val)
             LOG.debug("Creating MarkovPathEstimator Object Pool");
         TypedPoolableObjectFactory<MarkovPathEstimator> m_factory = new MarkovPathEstimator.Factory(this.catalogContext, this.p_estimator);
-        this.pathEstimatorsPool = new TypedObjectPool<MarkovPathEstimator>(m_factory, hstore_conf.site.pool_pathestimators_idle);
+        this.pathEstimatorsPool = new TypedObjectPool<MarkovPathEstimator>(m_factory, hstore_conf.site.pool_pathestimators_idle,
+                                                                 hstore_conf.site.pool_magazine_size);
         
         if (debug.val)
             LOG.debug("Creating MarkovEstimatorState Object Pool");
         TypedPoolableObjectFactory<MarkovEstimatorState> s_factory = new MarkovEstimatorState.Factory(this.catalogContext);
         int num_idle = (int)(hstore_conf.site.network_incoming_limit_txns * hstore_conf.site.pool_scale_factor); 
-        this.statesPool = new TypedObjectPool<MarkovEstimatorState>(s_factory, num_idle);
+        this.statesPool = new TypedObjectPool<MarkovEstimatorState>(s_factory, num_idle, hstore_conf.site.pool_magazine_size);
         
         if (hstore_conf.site.markov_profiling) {
             this.profiler = new MarkovEstimatorProfiler();
@@ -150,6 +159,12 @@ public class MarkovEstimator extends TransactionEstimator {
     public void enableGraphRecomputes() {
        this.enable_recomputes = true;
     }
+    public void setMarkovLearner(MarkovLearner learner) {
+        this.learner = learner;
+    }
+    public MarkovLearner getMarkovLearner() {
+        return (this.learner);
+    }
     public MarkovGraphsContainer getMarkovGraphsContainer() {
         return (this.markovs);
     }
@@ -224,19 +239,38 @@ public class MarkovEstimator extends TransactionEstimator {
         // Update EstimatorState.prefetch any time we transition to a MarkovVertex where the
         // underlying Statement catalog object was marked as prefetchable
         // Do we want to put this traversal above?
+        // If we are automatically selecting the queries to prefetch, then we only want to do
+        // this when we're confident in the initial path and we know how to get the query's
+        // input parameters for the invocation that we're going to prefetch
         if (hstore_conf.site.exec_prefetch_queries) {
-            for (MarkovVertex vertex : initialEst.getMarkovPath()) {
-                Statement statement = (Statement) vertex.getCatalogItem();
-                if (statement.getPrefetchable()) {
-                    if (debug.val)
-                        LOG.debug(String.format("%s - Checking whether we can prefetch %s on partitions %s",
-                                 TransactionUtil.formatTxnName(catalog_proc, txn_id),
-                                 statement.fullName(), vertex.getPartitions()));
-                    if (vertex.getPartitions().isEmpty() == false && vertex.getPartitions().get() != base_partition) {
-                        state.addPrefetchableStatement(vertex.getCountedStatement());
+            boolean auto = hstore_conf.site.exec_prefetch_auto;
+            double threshold = hstore_conf.site.exec_prefetch_auto_threshold;
+            if (auto && initialEst.getConfidenceCoefficient() < threshold) {
+                if (debug.val)
+                    LOG.debug(String.format("%s - Not prefetching queries because the initial estimate's " +
+                              "confidence is below the threshold [confidence=%.03f, threshold=%.03f]",
+                              TransactionUtil.formatTxnName(catalog_proc, txn_id),
+                              initialEst.getConfidenceCoefficient(), threshold));
+            }
+            else {
+                for (MarkovVertex vertex : initialEst.getMarkovPath()) {
+                    Statement statement = (Statement) vertex.getCatalogItem();
+                    if (statement.getPrefetchable()) {
+                        if (debug.val)
+                            LOG.debug(String.format("%s - Checking whether we can prefetch %s on partitions %s",
+                                     TransactionUtil.formatTxnName(catalog_proc, txn_id),
+                                     statement.fullName(), vertex.getPartitions()));
+                        if (vertex.getPartitions().isEmpty() == false && vertex.getPartitions().get() != base_partition) {
+                            if (auto && PrefetchQueryPlanner.canPrefetch(this.catalogContext,
+                                                                         vertex.getCountedStatement(),
+                                                                         threshold) == false) {
+                                continue;
+                            }
+                            state.addPrefetchableStatement(vertex.getCountedStatement());
+                        }
                     }
-                }
-            } // FOR
+                } // FOR
+            }
         }
         
         // We want to add the estimate to the state down here after we have initialized
@@ -367,7 +401,9 @@ public class MarkovEstimator extends TransactionEstimator {
         
         // Once the workload shifts we detect it and trigger this method. Recomputes
         // the graph with the data we collected with the current workload method.
-        if (this.enable_recomputes && markov.shouldRecompute(this.txn_count.get(), RECOMPUTE_TOLERANCE)) {
+        // If we have a MarkovLearner, then it will take care of this for us
+        if (this.enable_recomputes && this.learner == null &&
+            markov.shouldRecompute(this.txn_count.get(), RECOMPUTE_TOLERANCE)) {
             markov.calculateProbabilities(catalogContext.getAllPartitionIds());
         }
         
@@ -428,8 +464,13 @@ public class MarkovEstimator extends TransactionEstimator {
             // Update counters
             // We want to update the counters for the entire path right here so that
             // nobody gets incomplete numbers if they recompute probabilities
-            for (MarkovVertex v : state.actual_path) v.incrementInstanceHits();
-            for (MarkovEdge e : state.actual_path_edges) e.incrementInstanceHits();
+            // If we have a MarkovLearner, then we will let it do this in the background
+            if (this.learner != null) {
+                this.learner.queue(markov, state.actual_path, state.actual_path_edges);
+            } else {
+                for (MarkovVertex v : state.actual_path) v.incrementInstanceHits();
+                for (MarkovEdge e : state.actual_path_edges) e.incrementInstanceHits();
+            }
             if (this.enable_recomputes) {
                 this.markovTimes.addInstanceTime(next_v, txn_id, state.getExecutionTimeOffset(end_time));
             }
@@ -633,46 +674,65 @@ public class MarkovEstimator extends TransactionEstimator {
         MarkovVertex next_v = null;
         MarkovEdge next_e = null;
         
-        // Synchronize on the single vertex so that it's more fine-grained than the entire graph
-        synchronized (current) {
-            Collection<MarkovEdge> edges = markov.getOutEdges(current);
-            if (edges != null) {
-                if (debug.val)
-                    LOG.debug(String.format("Examining %d edges from %s for txn #%d",
-                              edges.size(), current, state.getTransactionId())); 
-                for (MarkovEdge e : edges) {
-                    MarkovVertex v = markov.getDest(e);
-                    if (v.isEqual(catalog_stmt, partitions, touchedPartitions, queryCounter)) {
-                        if (debug.val)
-                            LOG.debug("Found next vertex " + v + " for Txn #" + state.getTransactionId());
-                        next_v = v;
-                        next_e = e;
-                        break;
-                    }
-                } // FOR
+        // Check the compiled version of the graph first. We don't need a lock for this
+        // because it will never change. If the edge was added after the graph was
+        // compiled, then we'll fall back to looking at the graph itself.
+        CompiledMarkovGraph compiled = markov.getCompiledGraph();
+        if (compiled != null) {
+            int idx = compiled.indexOf(current);
+            if (idx != -1) {
+                int offset = compiled.findEdge(idx, catalog_stmt, queryCounter, partitions, touchedPartitions);
+                if (offset != -1) {
+                    next_v = compiled.getEdgeTargetVertex(offset);
+                    next_e = compiled.getEdge(offset);
+                    if (debug.val)
+                        LOG.debug("Found next vertex " + next_v + " in compiled graph for Txn #" + state.getTransactionId());
+                }
             }
+        }
         
-            // If we fail to find the next vertex, that means we have to dynamically create a new 
-            // one. The graph is self-managed, so we don't need to worry about whether 
-            // we need to recompute probabilities.
-            if (next_v == null) {
-                next_v = new MarkovVertex(catalog_stmt,
-                                          MarkovVertex.Type.QUERY,
-                                          queryCounter,
-                                          partitions,
-                                          touchedPartitions);
-                assert(markov.containsVertex(current)) :
-                    String.format("%s does not have current vertex %s for %s",
-                                  markov, current,
-                                  TransactionUtil.formatTxnName(markov.getProcedure(), state.getTransactionId())); 
-                markov.addVertex(next_v);
-                next_e = markov.addToEdge(current, next_v);
-                if (debug.val)
-                    LOG.debug(String.format("Created new edge from %s to new vertex %s for txn #%d", 
-                              state.getCurrent(), next_v, state.getTransactionId()));
-                // assert(state.getCurrent().getPartitions().size() <= touchedPartitions.size());
-            }
-        } // SYNCH
+        if (next_v == null) {
+            // Synchronize on the single vertex so that it's more fine-grained than the entire graph
+            synchronized (current) {
+                Collection<MarkovEdge> edges = markov.getOutEdges(current);
+                if (edges != null) {
+                    if (debug.val)
+                        LOG.debug(String.format("Examining %d edges from %s for txn #%d",
+                                  edges.size(), current, state.getTransactionId())); 
+                    for (MarkovEdge e : edges) {
+                        MarkovVertex v = markov.getDest(e);
+                        if (v.isEqual(catalog_stmt, partitions, touchedPartitions, queryCounter)) {
+                            if (debug.val)
+                                LOG.debug("Found next vertex " + v + " for Txn #" + state.getTransactionId());
+                            next_v = v;
+                            next_e = e;
+                            break;
+                        }
+                    } // FOR
+                }
+        
+                // If we fail to find the next vertex, that means we have to dynamically create a new 
+                // one. The graph is self-managed, so we don't need to worry about whether 
+                // we need to recompute probabilities.
+                if (next_v == null) {
+                    next_v = new MarkovVertex(catalog_stmt,
+                                              MarkovVertex.Type.QUERY,
+                                              queryCounter,
+                                              partitions,
+                                              touchedPartitions);
+                    assert(markov.containsVertex(current)) :
+                        String.format("%s does not have current vertex %s for %s",
+                                      markov, current,
+                                      TransactionUtil.formatTxnName(markov.getProcedure(), state.getTransactionId())); 
+                    markov.addVertex(next_v);
+                    next_e = markov.addToEdge(current, next_v);
+                    if (debug.val)
+                        LOG.debug(String.format("Created new edge from %s to new vertex %s for txn #%d", 
+                                  state.getCurrent(), next_v, state.getTransactionId()));
+                    // assert(state.getCurrent().getPartitions().size() <= touchedPartitions.size());
+                }
+            } // SYNCH
+        }
         
         if (current.isStartVertex() && next_v.isCommitVertex()) {
             throw new ServerFaultException("Trying to connect START->COMMIT", state.getTransactionId());
@@ -0,0 +1,315 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.voltdb.CatalogContext;
+
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.HStoreThreadManager;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.interfaces.Configurable;
+import edu.brown.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.utils.ExceptionHandlingRunnable;
+import edu.brown.utils.ThreadUtil;
+
+/**
+ * Background thread that keeps the MarkovGraphs at this site up-to-date.
+ * <p>
+ * When a txn finishes, its MarkovEstimator hands us the path that it took through
+ * its MarkovGraph instead of updating the graph's counters itself. We are the only
+ * thread that touches the hit counters, so the PartitionExecutors never have to wait
+ * for us. Every site.markov_learning_interval ms we recompute the probabilities
+ * for the graphs that were used since the last round. The new probability tables are
+ * built in shadow vertices and then swapped into the graph in one pass, which
+ * means that the estimators keep using the old probabilities until the new ones are ready.
+ * <p>
+ * Note that new vertices and edges are still added to the graphs by the estimators
+ * when they are running, since they need them to keep track of where each txn is.
+ */
+public class MarkovLearner extends ExceptionHandlingRunnable implements Shutdownable, Configurable {
+    private static final Logger LOG = Logger.getLogger(MarkovLearner.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * The max number of paths that can be waiting in our queue. If we are
+     * so far behind that we hit this, then we will drop new paths on the floor.
+     */
+    private static final int MAX_PENDING = 100000;
+
+    /**
+     * How long to sleep when there is nothing in our queue (ms)
+     */
+    private static final int IDLE_SLEEP = 5;
+
+    /**
+     * How long to wait for the learner thread to flush its queue when
+     * we are shutting down (ms)
+     */
+    private static final int SHUTDOWN_WAIT = 5000;
+
+    /**
+     * Compact record of the path that a completed txn took through a MarkovGraph
+     */
+    protected static class CompletedPath {
+        private final MarkovGraph markov;
+        private final MarkovVertex vertices[];
+        private final MarkovEdge edges[];
+
+        private CompletedPath(MarkovGraph markov, List<MarkovVertex> vertices, List<MarkovEdge> edges) {
+            this.markov = markov;
+            this.vertices = vertices.toArray(new MarkovVertex[vertices.size()]);
+            this.edges = edges.toArray(new MarkovEdge[edges.size()]);
+        }
+    } // CLASS
+
+    // ----------------------------------------------------------------------------
+    // DATA MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final HStoreSite hstore_site;
+    private final CatalogContext catalogContext;
+    private final Queue<CompletedPath> queue = new ConcurrentLinkedQueue<CompletedPath>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /**
+     * The graphs that have new hits since the last time that we published them.
+     * This is only used by the learner thread.
+     */
+    private final Set<MarkovGraph> dirty = Collections.newSetFromMap(new IdentityHashMap<MarkovGraph, Boolean>());
+
+    private volatile long interval;
+    private volatile boolean stop = false;
+    private volatile Thread self;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile long processed = 0;
+    private volatile long publishCount = 0;
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param hstore_site
+     */
+    public MarkovLearner(HStoreSite hstore_site) {
+        this(hstore_site, hstore_site.getCatalogContext(), hstore_site.getHStoreConf());
+    }
+
+    /**
+     * Constructor for testing. The learner will not be able to run in its own thread.
+     * @param catalogContext
+     * @param hstore_conf
+     */
+    protected MarkovLearner(CatalogContext catalogContext, HStoreConf hstore_conf) {
+        this(null, catalogContext, hstore_conf);
+    }
+
+    private MarkovLearner(HStoreSite hstore_site, CatalogContext catalogContext, HStoreConf hstore_conf) {
+        this.hstore_site = hstore_site;
+        this.catalogContext = catalogContext;
+        this.updateConf(hstore_conf, null);
+    }
+
+    @Override
+    public void updateConf(HStoreConf hstore_conf, String[] changed) {
+        this.interval = Math.max(1, hstore_conf.site.markov_learning_interval);
+    }
+
+    // ----------------------------------------------------------------------------
+    // RUNTIME METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Queue the path for a completed txn. This is non-blocking and is safe to call
+     * from any thread. The lists are copied, so the caller is allowed to reuse them.
+     * @param markov
+     * @param vertices
+     * @param edges
+     * @return false if the path was dropped because the learner is too far behind
+     *         or is shutting down
+     */
+    public boolean queue(MarkovGraph markov, List<MarkovVertex> vertices, List<MarkovEdge> edges) {
+        if (this.stop) {
+            this.dropped.incrementAndGet();
+            return (false);
+        }
+        if (this.pending.incrementAndGet() > MAX_PENDING) {
+            this.pending.decrementAndGet();
+            this.dropped.incrementAndGet();
+            if (trace.val)
+                LOG.trace(String.format("Dropping path for %s because the queue is full", markov));
+            return (false);
+        }
+        this.queue.offer(new CompletedPath(markov, vertices, edges));
+        return (true);
+    }
+
+    @Override
+    public void runImpl() {
+        this.self = Thread.currentThread();
+        if (this.hstore_site != null) {
+            this.self.setName(HStoreThreadManager.getThreadName(this.hstore_site, HStoreConstants.THREAD_NAME_MARKOVLEARNER));
+            this.hstore_site.getThreadManager().registerProcessingThread();
+        }
+        if (debug.val)
+            LOG.debug(String.format("Starting %s [interval=%dms]", this.getClass().getSimpleName(), this.interval));
+
+        try {
+            long nextPublish = System.currentTimeMillis() + this.interval;
+            while (this.stop == false) {
+                int ctr = this.processQueue();
+                long now = System.currentTimeMillis();
+                if (now >= nextPublish) {
+                    this.publish();
+                    nextPublish = now + this.interval;
+                }
+                if (ctr == 0) ThreadUtil.sleep(IDLE_SLEEP);
+            } // WHILE
+            
+            // Don't lose the paths for the txns that finished right before we were stopped
+            this.flush();
+        } finally {
+            this.finished.countDown();
+        }
+    }
+
+    /**
+     * Apply all of the paths that are waiting in our queue to their graphs.
+     * This should only be called by the learner thread.
+     * @return The number of paths that were processed
+     */
+    protected int processQueue() {
+        int ctr = 0;
+        CompletedPath path = null;
+        while ((path = this.queue.poll()) != null) {
+            this.pending.decrementAndGet();
+            for (MarkovVertex v : path.vertices) v.incrementInstanceHits();
+            for (MarkovEdge e : path.edges) e.incrementInstanceHits();
+            this.dirty.add(path.markov);
+            ctr++;
+        } // WHILE
+        this.processed += ctr;
+        return (ctr);
+    }
+
+    /**
+     * Recompute the probabilities of all the graphs that have been updated since the
+     * last time that this was invoked and make them visible to the estimators.
+     * This should only be called by the learner thread.
+     * @return The number of graphs that were published
+     */
+    protected int publish() {
+        int ctr = 0;
+        Iterator<MarkovGraph> it = this.dirty.iterator();
+        while (it.hasNext()) {
+            MarkovGraph markov = it.next();
+            // If an estimator added a new vertex or edge while we were in the middle
+            // of recomputing, then we'll just try again in the next round.
+            if (markov.calculateShadowProbabilities(this.catalogContext.getAllPartitionIds()) == false) {
+                if (debug.val)
+                    LOG.debug(String.format("%s was modified while recomputing its probabilities. " +
+                              "Will retry in next round", markov));
+                continue;
+            }
+            it.remove();
+            ctr++;
+        } // WHILE
+        this.publishCount += ctr;
+        if (debug.val && ctr > 0)
+            LOG.debug(String.format("Published %d updated MarkovGraphs [processed=%d, dropped=%d]",
+                      ctr, this.processed, this.dropped.get()));
+        return (ctr);
+    }
+
+    /**
+     * Apply all of the paths that are still waiting in our queue and then publish
+     * every graph that has new hits. This is only invoked when we are shutting down.
+     */
+    protected synchronized void flush() {
+        int processed = this.processQueue();
+        int published = this.publish();
+        if (this.dirty.isEmpty() == false) {
+            LOG.warn(String.format("Failed to publish %d MarkovGraphs before shutting down", this.dirty.size()));
+        }
+        if (debug.val)
+            LOG.debug(String.format("Flushed %s [processed=%d, published=%d]",
+                      this.getClass().getSimpleName(), processed, published));
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATE ACCESS
+    // ----------------------------------------------------------------------------
+
+    public int getPendingCount() {
+        return (this.pending.get());
+    }
+    public long getProcessedCount() {
+        return (this.processed);
+    }
+    public long getDroppedCount() {
+        return (this.dropped.get());
+    }
+    public long getPublishCount() {
+        return (this.publishCount);
+    }
+
+    // ----------------------------------------------------------------------------
+    // SHUTDOWN METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void prepareShutdown(boolean error) {
+        this.stop = true;
+        
+        // Wait for the learner thread to flush whatever is left in its queue.
+        // If it was never started, then we'll just do it ourselves
+        Thread t = this.self;
+        if (t == null) {
+            this.flush();
+        } else if (t != Thread.currentThread()) {
+            try {
+                if (this.finished.await(SHUTDOWN_WAIT, TimeUnit.MILLISECONDS) == false) {
+                    LOG.warn(String.format("Timed out waiting for %s to flush its queue [pending=%d]",
+                             this.getClass().getSimpleName(), this.pending.get()));
+                }
+            } catch (InterruptedException ex) {
+                // Ignore
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.stop = true;
+        if (this.self != null) this.self.interrupt();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.stop);
+    }
+}
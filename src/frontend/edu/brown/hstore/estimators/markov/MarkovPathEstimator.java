@@ -1,5 +1,6 @@
 package edu.brown.hstore.estimators.markov;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -27,6 +28,7 @@ import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.mappings.ParameterMapping;
 import edu.brown.mappings.ParameterMappingsSet;
+import edu.brown.markov.CompiledMarkovGraph;
 import edu.brown.markov.MarkovEdge;
 import edu.brown.markov.MarkovGraph;
 import edu.brown.markov.MarkovVertex;
@@ -116,6 +118,8 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
     private final PartitionSet past_partitions = new PartitionSet();
     private final SortedSet<MarkovEdge> candidate_edges = new TreeSet<MarkovEdge>();
     private final Collection<CountedStatement> next_statements = new HashSet<CountedStatement>();
+    private final List<MarkovEdge> next_edges = new ArrayList<MarkovEdge>();
+    private final List<MarkovVertex> next_vertices = new ArrayList<MarkovVertex>();
     
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
@@ -242,17 +246,46 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
         
         // At our current vertex we need to gather all of our neighbors
         // and get unique Statements that we could be executing next
-        Collection<MarkovVertex> next_vertices = markov.getSuccessors(element);
-        if (next_vertices == null || next_vertices.isEmpty()) {
+        // We'll use the compiled graph if our vertex is in there and it has all of its
+        // edges. Otherwise we have to go to the real graph because the vertex or its 
+        // edges were added after it was compiled
+        this.next_edges.clear();
+        this.next_vertices.clear();
+        CompiledMarkovGraph compiled = markov.getCompiledGraph();
+        int element_idx = (compiled != null ? compiled.indexOf(element) : -1);
+        int edge_offset = -1;
+        if (element_idx != -1) {
+            Collection<MarkovEdge> out_edges = markov.getOutEdges(element);
+            if (out_edges == null || out_edges.size() != compiled.getEdgeEnd(element_idx) - compiled.getEdgeStart(element_idx)) {
+                element_idx = -1;
+            }
+        }
+        if (element_idx != -1) {
+            edge_offset = compiled.getEdgeStart(element_idx);
+            for (int offset = edge_offset, end = compiled.getEdgeEnd(element_idx); offset < end; offset++) {
+                this.next_edges.add(compiled.getEdge(offset));
+                this.next_vertices.add(compiled.getEdgeTargetVertex(offset));
+            } // FOR
+        } else {
+            Collection<MarkovEdge> out_edges = markov.getOutEdges(element);
+            if (out_edges != null) {
+                for (MarkovEdge e : out_edges) {
+                    this.next_edges.add(e);
+                    this.next_vertices.add(markov.getDest(e));
+                } // FOR
+            }
+        }
+        if (this.next_vertices.isEmpty()) {
             if (debug.val) LOG.debug("No succesors were found for " + element + ". Halting traversal");
             return;
         }
-        if (trace.val) LOG.trace("Successors: " + next_vertices);
+        if (trace.val) LOG.trace("Successors: " + this.next_vertices);
         
         // Step #1
         // Get all of the unique Statement+StatementInstanceIndex pairs for the vertices
         // that are adjacent to our current vertex
-        for (MarkovVertex next : next_vertices) {
+        for (int i = 0, cnt = this.next_vertices.size(); i < cnt; i++) {
+            MarkovVertex next = this.next_vertices.get(i);
             Statement next_catalog_stmt = next.getCatalogItem();
             int next_catalog_stmt_index = next.getQueryCounter();
             
@@ -271,7 +304,7 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
             
             // Check whether it's COMMIT/ABORT
             if (next.isCommitVertex() || next.isAbortVertex()) {
-                MarkovEdge candidate = markov.findEdge(element, next);
+                MarkovEdge candidate = this.next_edges.get(i);
                 assert(candidate != null);
                 this.candidate_edges.add(candidate);
             } else {
@@ -403,16 +436,20 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
                     candidate_edge = null;
                     if (trace.val)
                         LOG.trace("Partitions:" + this.stmt_partitions + " / Past:" + this.past_partitions);
-                    for (MarkovVertex next_v : next_vertices) {
+                    for (int i = 0, cnt = this.next_vertices.size(); i < cnt; i++) {
+                        MarkovVertex next_v = this.next_vertices.get(i);
                         if (trace.val) LOG.trace("Checking whether " + next_v + " is the correct transition");
-                        if (next_v.isEqual(catalog_stmt, this.stmt_partitions, this.past_partitions, catalog_stmt_index, true)) {
+                        boolean match;
+                        if (edge_offset != -1) {
+                            match = compiled.isEdgeTarget(edge_offset + i, catalog_stmt, catalog_stmt_index,
+                                                          this.stmt_partitions, this.past_partitions, true);
+                        } else {
+                            match = next_v.isEqual(catalog_stmt, this.stmt_partitions, this.past_partitions, catalog_stmt_index, true);
+                        }
+                        if (match) {
                             // BINGO!!!
                             assert(candidate_edge == null);
-                            try {
-                                candidate_edge = markov.findEdge(element, next_v);
-                            } catch (NullPointerException ex) {
-                                continue;
-                            }
+                            candidate_edge = this.next_edges.get(i);
                             assert(candidate_edge != null);
                             this.candidate_edges.add(candidate_edge);
                             if (trace.val)
@@ -485,8 +522,7 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
             else {
                 if (trace.val)
                     LOG.trace("No candidate edges were found. Force travesal flag is set to true, so taking all");
-                Collection<MarkovEdge> out_edges = markov.getOutEdges(element);
-                if (out_edges != null) this.candidate_edges.addAll(out_edges);
+                this.candidate_edges.addAll(this.next_edges);
             }
             num_candidates = this.candidate_edges.size();
             was_forced = true;
@@ -597,7 +633,8 @@ public class MarkovPathEstimator extends VertexTreeWalker<MarkovVertex, MarkovEd
         } // FOR
         // Make sure that we update our probabilities for any partition that we've touched
         // in the past but are not touching for this query
-        for (int partition : vertex.getPastPartitions()) {
+        PartitionSet past_partitions = vertex.getPastPartitions();
+        for (int partition : past_partitions.values()) {
             if (partitions.contains(partition) == false) {
                 if (estimate.isDoneProbabilitySet(partition) == false) {
                     estimate.setDoneProbability(partition, vertex.getDoneProbability(partition));
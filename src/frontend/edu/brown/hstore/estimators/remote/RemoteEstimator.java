@@ -35,7 +35,7 @@ public class RemoteEstimator extends TransactionEstimator {
         if (debug.val) LOG.debug("Creating RemoteEstimatorState Object Pool");
         TypedPoolableObjectFactory<RemoteEstimatorState> s_factory = new RemoteEstimatorState.Factory(this.catalogContext);
         int num_idle = (int)(hstore_conf.site.network_incoming_limit_txns * hstore_conf.site.pool_scale_factor);
-        this.statesPool = new TypedObjectPool<RemoteEstimatorState>(s_factory, num_idle);
+        this.statesPool = new TypedObjectPool<RemoteEstimatorState>(s_factory, num_idle, hstore_conf.site.pool_magazine_size);
     }
 
     public void processQueryEstimate(RemoteEstimatorState state, QueryEstimate query_est, int partition) {
@@ -4,7 +4,7 @@ import java.nio.ByteBuffer;
 
 import org.apache.log4j.Logger;
 import org.voltdb.VoltTable;
-import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.utils.ColumnarTableCodec;
 
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
@@ -80,7 +80,7 @@ public class SendDataHandler extends AbstractTransactionHandler<SendDataRequest,
             // Deserialize the VoltTable object for the given byte array
             VoltTable vt = null;
             try {
-                vt = FastDeserializer.deserialize(data, VoltTable.class);
+                vt = ColumnarTableCodec.deserialize(data);
             } catch (Exception ex) {
                 LOG.warn("Unexpected error when deserializing VoltTable", ex);
             }
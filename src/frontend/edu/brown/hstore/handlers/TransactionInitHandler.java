@@ -110,6 +110,7 @@ public class TransactionInitHandler extends AbstractTransactionHandler<Transacti
                                                           procParams,
                                                           request.getBasePartition(),
                                                           request.getProcedureId());
+            if (request.getSnapshotRead()) ts.setSnapshotRead(true);
             
             // Make sure that we initialize the RemoteTransactionInitCallback too!
             RemoteInitQueueCallback initCallback = ts.getInitCallback();
@@ -5,7 +5,7 @@ import java.io.IOException;
 import org.apache.log4j.Logger;
 import org.voltdb.VoltTable;
 import org.voltdb.exceptions.ServerFaultException;
-import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.utils.ColumnarTableCodec;
 
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
@@ -36,8 +36,6 @@ public class TransactionPrefetchHandler extends AbstractTransactionHandler<Trans
         LoggerUtil.attachObserver(LOG, debug, trace);
     }
     
-    private final FastDeserializer fds = new FastDeserializer();
-    
     public TransactionPrefetchHandler(HStoreSite hstore_site, HStoreCoordinator hstore_coord) {
         super(hstore_site, hstore_coord);
     }
@@ -90,8 +88,7 @@ public class TransactionPrefetchHandler extends AbstractTransactionHandler<Trans
                 
                 VoltTable vt = null;
                 try {
-                    this.fds.setBuffer(result.getDepData(i).asReadOnlyByteBuffer());
-                    vt = this.fds.readObject(VoltTable.class);
+                    vt = ColumnarTableCodec.deserialize(result.getDepData(i).asReadOnlyByteBuffer());
                 } catch (IOException ex) {
                     throw new RuntimeException(ex);
                 }
@@ -91,7 +91,8 @@ public class PrefetchQueryPlanner {
                 // are mapped to one of the Procedure's ProcParameter
                 boolean valid = true;
                 for (StmtParameter catalog_param : catalog_stmt.getParameters().values()) {
-                    if (catalog_param.getProcparameter() == null) {
+                    if (catalog_param.getProcparameter() == null &&
+                        hasParameterMapping(catalogContext, catalog_stmt, 0, catalog_param, 0d) == false) {
                         LOG.warn(String.format("Unable to mark %s as prefetchable because %s is not " +
                         		 "mapped to a ProcParameter",
                                  catalog_stmt.fullName(), catalog_param.fullName()));
@@ -119,6 +120,85 @@ public class PrefetchQueryPlanner {
         }
     }
 
+    // ----------------------------------------------------------------------------
+    // AUTOMATIC PREFETCH SELECTION
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Mark every Statement in the catalog that we could automatically prefetch
+     * as prefetchable. These are read-only Statements on non-replicated tables where
+     * we have a ParameterMapping for all of the StmtParameters of the first invocation.
+     * Whether we actually prefetch one of them for a particular txn is decided at
+     * runtime by the MarkovEstimator using canPrefetch().
+     * @param catalogContext
+     * @return The number of Statements that were marked as prefetchable
+     */
+    public static int markAutoPrefetchable(CatalogContext catalogContext) {
+        if (catalogContext.paramMappings == null) {
+            LOG.warn("Unable to automatically select prefetchable queries without a ParameterMappingSet");
+            return (0);
+        }
+        int stmt_ctr = 0;
+        for (Procedure catalog_proc : catalogContext.procedures.values()) {
+            if (catalog_proc.getSystemproc() || catalog_proc.getMapreduce()) continue;
+            
+            for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
+                if (catalog_stmt.getPrefetchable()) continue;
+                if (catalog_stmt.getReadonly() == false || catalog_stmt.getReplicatedonly()) continue;
+                
+                boolean valid = true;
+                for (StmtParameter catalog_param : catalog_stmt.getParameters().values()) {
+                    if (hasParameterMapping(catalogContext, catalog_stmt, 0, catalog_param, 0d) == false) {
+                        valid = false;
+                        break;
+                    }
+                } // FOR
+                if (valid) {
+                    if (debug.val)
+                        LOG.debug("Automatically marking " + catalog_stmt.fullName() + " as prefetchable");
+                    catalog_stmt.setPrefetchable(true);
+                    catalog_proc.setPrefetchable(true);
+                    stmt_ctr++;
+                }
+            } // FOR (statement)
+        } // FOR (procedure)
+        if (debug.val)
+            LOG.debug(String.format("Automatically marked %d Statements as prefetchable", stmt_ctr));
+        return (stmt_ctr);
+    }
+    
+    /**
+     * Returns true if we can derive all of the input parameters for the given
+     * CountedStatement from the txn's procedure parameters using
+     * ParameterMappings whose coefficient is at least the given threshold.
+     * @param catalogContext
+     * @param counted_stmt
+     * @param threshold
+     * @return
+     */
+    public static boolean canPrefetch(CatalogContext catalogContext, CountedStatement counted_stmt, double threshold) {
+        if (catalogContext.paramMappings == null) return (false);
+        for (StmtParameter catalog_param : counted_stmt.statement.getParameters().values()) {
+            if (hasParameterMapping(catalogContext, counted_stmt.statement,
+                                    counted_stmt.counter, catalog_param, threshold) == false) {
+                return (false);
+            }
+        } // FOR
+        return (true);
+    }
+    
+    private static boolean hasParameterMapping(CatalogContext catalogContext,
+                                               Statement catalog_stmt,
+                                               int counter,
+                                               StmtParameter catalog_param,
+                                               double threshold) {
+        if (catalogContext.paramMappings == null) return (false);
+        Collection<ParameterMapping> pmSets = catalogContext.paramMappings.get(catalog_stmt, counter, catalog_param);
+        if (pmSets == null || pmSets.isEmpty()) return (false);
+        ParameterMapping pm = CollectionUtil.first(pmSets);
+        return (pm.statement_index == counter && pm.coefficient >= threshold);
+    }
+
     /**
      * Initialize a new cached BatchPlanner that is specific to the prefetch batch. 
      * @param catalog_proc
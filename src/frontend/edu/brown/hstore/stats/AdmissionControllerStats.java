@@ -0,0 +1,83 @@
+package edu.brown.hstore.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.SysProcSelector;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+import edu.brown.hstore.AdmissionController;
+import edu.brown.hstore.HStoreSite;
+
+/**
+ * Per-partition state of the HStoreSite's AdmissionController.
+ * This will not return any rows if admission control is disabled.
+ */
+public class AdmissionControllerStats extends StatsSource {
+
+    private final HStoreSite hstore_site;
+
+    public AdmissionControllerStats(HStoreSite hstore_site) {
+        super(SysProcSelector.ADMISSIONCONTROL.name(), false);
+        this.hstore_site = hstore_site;
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        if (hstore_site.getAdmissionController() == null) {
+            return (Collections.emptyList().iterator());
+        }
+        final Iterator<Integer> it = hstore_site.getLocalPartitionIds().iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            @Override
+            public Object next() {
+                return it.next();
+            }
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo("PARTITION", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("WINDOW", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("INFLIGHT", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("THROTTLED", VoltType.TINYINT));
+        columns.add(new VoltTable.ColumnInfo("MIN_QUEUE_DELAY", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("TARGET_QUEUE_DELAY", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("CONGESTED_INTERVALS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("ADMITTED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("REJECTED", VoltType.BIGINT));
+    }
+
+    @Override
+    protected synchronized void updateStatsRow(Object rowKey, Object[] rowValues) {
+        int partition = (Integer)rowKey;
+        AdmissionController controller = hstore_site.getAdmissionController();
+
+        int offset = this.columnNameToIndex.get("PARTITION");
+        rowValues[offset++] = partition;
+        rowValues[offset++] = controller.getWindow(partition);
+        rowValues[offset++] = controller.getInFlight(partition);
+        rowValues[offset++] = (byte)(controller.isDropping(partition) ? 1 : 0);
+        rowValues[offset++] = controller.getLastMinDelay(partition);
+        rowValues[offset++] = controller.getTargetDelay();
+        rowValues[offset++] = controller.getCongestionCount(partition);
+        rowValues[offset++] = controller.getAdmittedCount(partition);
+        rowValues[offset++] = controller.getRejectedCount(partition);
+
+        super.updateStatsRow(rowKey, rowValues);
+    }
+}
@@ -0,0 +1,70 @@
+package edu.brown.hstore.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.SysProcSelector;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.util.FragmentResultCache;
+
+/**
+ * Hit rates and memory usage for the HStoreSite's FragmentResultCache.
+ * This will not return any rows if the cache is disabled.
+ */
+public class FragmentResultCacheStats extends StatsSource {
+
+    private final HStoreSite hstore_site;
+
+    public FragmentResultCacheStats(HStoreSite hstore_site) {
+        super(SysProcSelector.RESULTCACHE.name(), false);
+        this.hstore_site = hstore_site;
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        if (hstore_site.getFragmentResultCache() == null) {
+            return (Collections.emptyList().iterator());
+        }
+        return (Collections.<Object>singletonList(hstore_site.getSiteId()).iterator());
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo("ENTRIES", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("BYTES", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("MAX_BYTES", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("HITS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("MISSES", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("HIT_RATE", VoltType.FLOAT));
+        columns.add(new VoltTable.ColumnInfo("INSERTS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("REJECTED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("EVICTIONS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("INVALIDATIONS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected synchronized void updateStatsRow(Object rowKey, Object[] rowValues) {
+        FragmentResultCache cache = hstore_site.getFragmentResultCache();
+
+        int offset = this.columnNameToIndex.get("ENTRIES");
+        rowValues[offset++] = cache.size();
+        rowValues[offset++] = cache.getBytes();
+        rowValues[offset++] = cache.getMaxBytes();
+        rowValues[offset++] = cache.getHits();
+        rowValues[offset++] = cache.getMisses();
+        rowValues[offset++] = cache.getHitRate();
+        rowValues[offset++] = cache.getInserts();
+        rowValues[offset++] = cache.getRejected();
+        rowValues[offset++] = cache.getEvictions();
+        rowValues[offset++] = cache.getInvalidations();
+
+        super.updateStatsRow(rowKey, rowValues);
+    }
+}
@@ -0,0 +1,81 @@
+package edu.brown.hstore.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.SysProcSelector;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.profilers.MetricsRegistry;
+
+/**
+ * The last snapshot of the HStoreSite's MetricsRegistry.
+ * This will not return any rows if the registry is disabled.
+ */
+public class MetricsStats extends StatsSource {
+
+    private final HStoreSite hstore_site;
+
+    public MetricsStats(HStoreSite hstore_site) {
+        super(SysProcSelector.METRICS.name(), false);
+        this.hstore_site = hstore_site;
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        MetricsRegistry metrics = hstore_site.getMetricsRegistry();
+        if (metrics == null) {
+            return (Collections.emptyList().iterator());
+        }
+        final Iterator<MetricsRegistry.Row> it = metrics.getLastSnapshot().rows.iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            @Override
+            public Object next() {
+                return it.next();
+            }
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo("NAME", VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo("TYPE", VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo("VALUE", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("INTERVAL", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("MEAN", VoltType.FLOAT));
+        columns.add(new VoltTable.ColumnInfo("P50", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P99", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("MAX", VoltType.BIGINT));
+    }
+
+    @Override
+    protected synchronized void updateStatsRow(Object rowKey, Object[] rowValues) {
+        MetricsRegistry.Row row = (MetricsRegistry.Row)rowKey;
+
+        int offset = this.columnNameToIndex.get("NAME");
+        rowValues[offset++] = row.name;
+        rowValues[offset++] = row.type.name();
+        rowValues[offset++] = row.value;
+        rowValues[offset++] = row.interval;
+        rowValues[offset++] = row.mean;
+        rowValues[offset++] = row.p50;
+        rowValues[offset++] = row.p99;
+        rowValues[offset++] = row.max;
+
+        super.updateStatsRow(rowKey, rowValues);
+    }
+}
@@ -60,6 +60,7 @@ import edu.brown.interfaces.DebugContext;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.pools.Poolable;
+import edu.brown.profilers.TransactionTracer;
 import edu.brown.utils.PartitionSet;
 import edu.brown.utils.StringUtil;
 
@@ -97,6 +98,12 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
     private boolean readonly;
     private boolean allow_early_prepare = true;
     
+    /**
+     * If this flag is true, then this read-only distributed txn does not
+     * acquire the locks for any partition except for its base partition.
+     */
+    private boolean snapshot_read = false;
+    
     protected Long txn_id = null;
     protected Long last_txn_id = null; // FOR DEBUGGING
     protected long client_handle;
@@ -242,6 +249,28 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
      * PartitionId -> TableId
      */
     protected final boolean writeTables[][];
+    
+    /**
+     * The PartitionExecutor's dtxn and write epochs when this snapshot txn
+     * first read from each local partition
+     */
+    private final long snapshot_dtxnEpoch[];
+    private final long snapshot_writeEpoch[];
+    /**
+     * Whether all of the snapshot reads at each local partition
+     * have seen the same committed state
+     */
+    private final boolean snapshot_valid[];
+    
+    /**
+     * TransactionTracer timestamps for when this txn was added to the
+     * HStoreSite's init queue and to each partition's lock queue, and when
+     * the base partition sent out the 2PC:PREPARE messages.
+     */
+    private long trace_initQueue = TransactionTracer.NOT_SAMPLED;
+    private long trace_prepare = TransactionTracer.NOT_SAMPLED;
+    private final long trace_lockQueue[];
+    
     /**
      * The table that this txn needs to merge the results for in the EE
      * before it starts executing
@@ -281,6 +310,14 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
         this.readTables = new boolean[numPartitions][];
         this.writeTables = new boolean[numPartitions][];
         
+        this.snapshot_dtxnEpoch = new long[numPartitions];
+        this.snapshot_writeEpoch = new long[numPartitions];
+        this.snapshot_valid = new boolean[numPartitions];
+        this.trace_lockQueue = new long[numPartitions];
+        
+        Arrays.fill(this.snapshot_dtxnEpoch, -1l);
+        Arrays.fill(this.snapshot_writeEpoch, -1l);
+        Arrays.fill(this.snapshot_valid, true);
         Arrays.fill(this.exec_firstUndoToken, HStoreConstants.NULL_UNDO_LOGGING_TOKEN);
         Arrays.fill(this.exec_lastUndoToken, HStoreConstants.NULL_UNDO_LOGGING_TOKEN);
         Arrays.fill(this.exec_readOnly, true);
@@ -365,6 +402,7 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
         this.predict_tState = null;
         
         this.allow_early_prepare = true;
+        this.snapshot_read = false;
         this.pending_error = null;
         this.status = null;
         this.parameters = null;
@@ -383,6 +421,10 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
             this.exec_firstUndoToken[partition] = HStoreConstants.NULL_UNDO_LOGGING_TOKEN;
             this.exec_lastUndoToken[partition] = HStoreConstants.NULL_UNDO_LOGGING_TOKEN;
             this.exec_noUndoBuffer[partition] = false;
+            this.snapshot_dtxnEpoch[partition] = -1l;
+            this.snapshot_writeEpoch[partition] = -1l;
+            this.snapshot_valid[partition] = true;
+            this.trace_lockQueue[partition] = TransactionTracer.NOT_SAMPLED;
             
             if (this.readTables[partition] != null) Arrays.fill(this.readTables[partition], false);
             if (this.writeTables[partition] != null) Arrays.fill(this.writeTables[partition], false);
@@ -392,6 +434,8 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
             LOG.debug(String.format("Finished txn #%d and cleaned up internal state [hashCode=%d, finished=%s]",
                       this.txn_id, this.hashCode(), Arrays.toString(this.finished)));
         
+        this.trace_initQueue = TransactionTracer.NOT_SAMPLED;
+        this.trace_prepare = TransactionTracer.NOT_SAMPLED;
         this.deletable.lazySet(false);
         this.catalog_proc = null;
         this.sysproc = false;
@@ -741,6 +785,70 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
         this.allow_early_prepare = enable;
     }
     
+    /**
+     * Returns true if this read-only distributed txn only holds the lock
+     * for its base partition and reads from its other partitions without
+     * acquiring their locks. 
+     */
+    public final boolean isSnapshotRead() {
+        return (this.snapshot_read);
+    }
+    
+    public final void setSnapshotRead(boolean enable) {
+        assert(enable == false || this.readonly) :
+            "Trying to enable snapshot reads for non-read-only " + this;
+        this.snapshot_read = enable;
+    }
+    
+    /**
+     * Returns true if this txn is reading from the given partition without
+     * holding its lock.
+     * @param partition
+     */
+    public final boolean isSnapshotReadPartition(int partition) {
+        return (this.snapshot_read && this.base_partition != partition);
+    }
+    
+    /**
+     * Record that this snapshot txn is about to read from the given partition.
+     * The epochs are the PartitionExecutor's counters for the number of distributed txns
+     * that could have modified the partition and the number of modifying batches that
+     * were executed at the partition. If either of them changed since the first time that this 
+     * txn read from the partition, or if the partition has uncommitted changes right now, then
+     * this txn is no longer reading from a consistent snapshot.
+     * Returns true if the snapshot at this partition is still valid.
+     * @param partition
+     * @param dtxnEpoch
+     * @param writeEpoch
+     * @param clean Whether the partition does not have any uncommitted changes
+     */
+    public final boolean markSnapshotRead(int partition, long dtxnEpoch, long writeEpoch, boolean clean) {
+        if (clean == false) {
+            this.snapshot_valid[partition] = false;
+        }
+        else if (this.snapshot_dtxnEpoch[partition] == -1l) {
+            this.snapshot_dtxnEpoch[partition] = dtxnEpoch;
+            this.snapshot_writeEpoch[partition] = writeEpoch;
+        }
+        else if (this.snapshot_dtxnEpoch[partition] != dtxnEpoch ||
+                 this.snapshot_writeEpoch[partition] != writeEpoch) {
+            this.snapshot_valid[partition] = false;
+        }
+        return (this.snapshot_valid[partition]);
+    }
+    
+    /**
+     * Returns true if this snapshot txn did not see any changes at the
+     * given partition since it first read from it. This must be checked after
+     * the txn has finished reading from all of its partitions.
+     * @param partition
+     * @param dtxnEpoch The PartitionExecutor's current dtxn epoch
+     */
+    public final boolean isSnapshotValid(int partition, long dtxnEpoch) {
+        return (this.snapshot_valid[partition] &&
+                (this.snapshot_dtxnEpoch[partition] == -1l || this.snapshot_dtxnEpoch[partition] == dtxnEpoch));
+    }
+    
     // ----------------------------------------------------------------------------
     // CALLBACK METHODS
     // ----------------------------------------------------------------------------
@@ -1265,6 +1373,29 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
         assert(this.prefetch != null);
         this.prefetch.partitions.add(partition);
     }
+    
+    // ----------------------------------------------------------------------------
+    // TRACING
+    // ----------------------------------------------------------------------------
+    
+    public final void setTraceInitQueue(long timestamp) {
+        this.trace_initQueue = timestamp;
+    }
+    public final long getTraceInitQueue() {
+        return (this.trace_initQueue);
+    }
+    public final void setTraceLockQueue(int partition, long timestamp) {
+        this.trace_lockQueue[partition] = timestamp;
+    }
+    public final long getTraceLockQueue(int partition) {
+        return (this.trace_lockQueue[partition]);
+    }
+    public final void setTracePrepare(long timestamp) {
+        this.trace_prepare = timestamp;
+    }
+    public final long getTracePrepare() {
+        return (this.trace_prepare);
+    }
 
     
     // ----------------------------------------------------------------------------
@@ -1310,6 +1441,7 @@ public abstract class AbstractTransaction implements Poolable, Comparable<Abstra
         m.put("Hash Code", this.hashCode());
         m.put("Pending Error", this.pending_error);
         m.put("Allow Early Prepare", this.allow_early_prepare);
+        m.put("Snapshot Read", this.snapshot_read);
         maps.add(m);
         
         // Predictions
@@ -4,7 +4,6 @@ import org.apache.log4j.Logger;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.ParameterSet;
 import org.voltdb.VoltTable;
-import org.voltdb.VoltTableRow;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Table;
 
@@ -171,7 +170,9 @@ public class MapReduceTransaction extends LocalTransaction {
             assert(this.mapEmit != null): "mapEmit has not been initialized\n ";
             assert(this.reduceEmit != null): "reduceEmit has not been initialized\n ";
             this.mapOutput[partition] = CatalogUtil.getVoltTable(this.mapEmit);
-            this.reduceInput[partition] = CatalogUtil.getVoltTable(this.mapEmit);
+            // The ReduceInput table only lives as long as this txn, so we can take
+            // its buffers from the pool and give them back in finish()
+            this.reduceInput[partition] = CatalogUtil.getVoltTable(this.mapEmit, hstore_site.getBufferPool());
             this.reduceOutput[partition] = CatalogUtil.getVoltTable(this.reduceEmit);
             
         } // FOR
@@ -239,6 +240,14 @@ public class MapReduceTransaction extends LocalTransaction {
         
         
         if(debug.val) LOG.debug("<MapReduceTransaction> this.reduceWrapper_callback.finish().......................");
+        if (this.reduceInput != null) {
+            for (int partition : this.hstore_site.getLocalPartitionIds()) {
+                if (this.reduceInput[partition] != null) {
+                    this.reduceInput[partition].discardBuffer();
+                    this.reduceInput[partition] = null;
+                }
+            } // FOR
+        }
         this.mapEmit = null;
         this.reduceEmit = null;
         this.mapOutput = null;
@@ -262,9 +271,7 @@ public class MapReduceTransaction extends LocalTransaction {
         if (debug.val)
             LOG.debug(String.format("<StoreData, change to ReduceInputTable> to Partition:%d>\n %s",partition,vt));
         while (vt.advanceRow()) {
-            VoltTableRow row = vt.fetchRow(vt.getActiveRowIndex());
-            assert(row != null);
-            input.add(row);
+            input.add(vt);
         }
         vt.resetRowPosition();
         
@@ -455,6 +462,17 @@ public class MapReduceTransaction extends LocalTransaction {
         return this.mapOutput[partition];
     }
     
+    /**
+     * Replace the MapOutput table for the given partition. This is used when
+     * the MAP output is passed through a combiner before the SHUFFLE phase.
+     * @param partition
+     * @param vt
+     */
+    public void setMapOutputByPartition(int partition, VoltTable vt) {
+        assert(vt != null);
+        this.mapOutput[partition] = vt;
+    }
+    
     public VoltTable getReduceInputByPartition ( int partition ) {
         if (debug.val) LOG.debug("Trying to getReduceInputByPartition: [ " + partition + " ]");
         return this.reduceInput[partition];
@@ -45,6 +45,9 @@ public abstract class TransactionUtil {
                                                         .setProcedureId(ts.getProcedure().getId())
                                                         .setBasePartition(ts.getBasePartition())
                                                         .addAllPartitions(ts.getPredictTouchedPartitions());
+        if (ts.isSnapshotRead()) {
+            builder.setSnapshotRead(true);
+        }
         if (paramsSerializer != null) {
             FastSerializer fs = paramsSerializer;
             try {
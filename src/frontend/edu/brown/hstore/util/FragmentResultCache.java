@@ -0,0 +1,511 @@
+package edu.brown.hstore.util;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.log4j.Logger;
+import org.voltdb.CatalogContext;
+import org.voltdb.ParameterSet;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.catalog.Table;
+
+import edu.brown.catalog.PlanFragmentIdGenerator;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Site-wide cache of the output of read-only PlanFragments that only touch
+ * replicated tables (or tables that the user has said are rarely updated).
+ * Unlike the QueryCache, the results stored here can be used by any txn
+ * at any of the site's partitions.
+ * <P>
+ * Every cacheable table has a version number. An entry remembers the versions
+ * of its tables from when its fragment was executed, and we throw it out on the
+ * next lookup if any of them have changed. A txn that executes a write fragment
+ * against a cacheable table registers itself as a writer for that table
+ * at that partition. We will not use or store any results for that table until
+ * all of its writers have finished, and each writer bumps the table's version
+ * when it commits or aborts.
+ * <P>
+ * The cache is bounded by the total size of the results that it holds. It evicts
+ * the least recently used entry, but only if a TinyLFU frequency sketch says that
+ * the new result has been requested more often than the entry that it would replace.
+ * This keeps one-off lookups from pushing out the hot rows of a lookup table.
+ */
+public class FragmentResultCache {
+    private static final Logger LOG = Logger.getLogger(FragmentResultCache.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * Rough number of bytes that each entry costs us on top of its result
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * The number of counters in each row of the frequency sketch
+     */
+    private static final int SKETCH_WIDTH = 1 << 14;
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL CACHE MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private static final class Key {
+        private final long fragmentId;
+        private final int partitionId;
+        private final Object params[];
+        private final int hash;
+
+        private Key(long fragmentId, int partitionId, Object params[]) {
+            this.fragmentId = fragmentId;
+            this.partitionId = partitionId;
+            this.params = params;
+            int h = Arrays.deepHashCode(params);
+            h = 31 * h + (int)(fragmentId ^ (fragmentId >>> 32));
+            h = 31 * h + partitionId;
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.hash);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return (true);
+            if ((obj instanceof Key) == false) return (false);
+            Key other = (Key)obj;
+            return (this.hash == other.hash &&
+                    this.fragmentId == other.fragmentId &&
+                    this.partitionId == other.partitionId &&
+                    Arrays.deepEquals(this.params, other.params));
+        }
+    } // CLASS
+
+    private static final class Entry {
+        private final Key key;
+        private final ByteBuffer result;
+        private final int tableIds[];
+        private final long versions[];
+        private final int size;
+
+        private Entry(Key key, ByteBuffer result, int tableIds[], long versions[]) {
+            this.key = key;
+            this.result = result;
+            this.tableIds = tableIds;
+            this.versions = versions;
+            this.size = result.limit() + ENTRY_OVERHEAD;
+        }
+    } // CLASS
+
+    /**
+     * Count-min sketch of how often each key has been requested.
+     * The counters are halved every once in a while so that keys that
+     * used to be popular will eventually age out.
+     */
+    protected static final class FrequencySketch {
+        private static final int SEEDS[] = { 0x97cb3127, 0x9e3779b9, 0x7f4a7c15, 0x5bd1e995 };
+        private final byte table[][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        protected FrequencySketch(int width) {
+            assert(Integer.bitCount(width) == 1);
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+            h ^= (h >>> 16);
+            return (h & this.mask);
+        }
+
+        protected void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < this.table.length; row++) {
+                int idx = this.index(hash, row);
+                if (this.table[row][idx] < 15) {
+                    this.table[row][idx]++;
+                    added = true;
+                }
+            } // FOR
+            if (added && ++this.additions >= this.sampleSize) {
+                this.reset();
+            }
+        }
+
+        protected int frequency(int hash) {
+            int freq = Integer.MAX_VALUE;
+            for (int row = 0; row < this.table.length; row++) {
+                freq = Math.min(freq, this.table[row][this.index(hash, row)]);
+            } // FOR
+            return (freq);
+        }
+
+        private void reset() {
+            for (byte counters[] : this.table) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] = (byte)(counters[i] >> 1);
+                } // FOR
+            } // FOR
+            this.additions /= 2;
+        }
+    } // CLASS
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    private final CatalogContext catalogContext;
+    private final long maxBytes;
+
+    /**
+     * TableId -> Whether the table is cacheable
+     */
+    private final boolean cacheableTables[];
+
+    /**
+     * TableId -> Whether the table is replicated
+     */
+    private final boolean replicatedTables[];
+
+    /**
+     * TableId -> Version Number
+     */
+    private final AtomicLongArray versions;
+
+    /**
+     * TableId -> Number of partitions with uncommitted writes
+     */
+    private final AtomicIntegerArray writers;
+
+    /**
+     * PlanFragmentId -> Whether its results can be cached
+     */
+    private final ConcurrentHashMap<Long, Boolean> cacheableFragments = new ConcurrentHashMap<Long, Boolean>();
+
+    /**
+     * Key -> Entry (in access order)
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(1024, 0.75f, true);
+    private final FrequencySketch sketch = new FrequencySketch(SKETCH_WIDTH);
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long inserts = 0;
+    private long rejected = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * Constructor
+     * @param catalogContext
+     * @param maxBytes The maximum number of bytes of results to keep around
+     * @param tableNames Additional non-replicated tables whose results can be cached
+     */
+    public FragmentResultCache(CatalogContext catalogContext, long maxBytes, String...tableNames) {
+        this.catalogContext = catalogContext;
+        this.maxBytes = maxBytes;
+
+        int numTables = catalogContext.numberOfTables + 1;
+        this.cacheableTables = new boolean[numTables];
+        this.replicatedTables = new boolean[numTables];
+        this.versions = new AtomicLongArray(numTables);
+        this.writers = new AtomicIntegerArray(numTables);
+
+        for (Table catalog_tbl : catalogContext.getDataTables()) {
+            if (catalog_tbl.getIsreplicated()) {
+                this.cacheableTables[catalog_tbl.getRelativeIndex()] = true;
+                this.replicatedTables[catalog_tbl.getRelativeIndex()] = true;
+            }
+        } // FOR
+        for (String tableName : tableNames) {
+            tableName = tableName.trim();
+            if (tableName.isEmpty()) continue;
+            Table catalog_tbl = catalogContext.getTableByName(tableName);
+            if (catalog_tbl == null) {
+                LOG.warn("Unknown table '" + tableName + "' for the fragment result cache");
+                continue;
+            }
+            this.cacheableTables[catalog_tbl.getRelativeIndex()] = true;
+        } // FOR
+        if (debug.val)
+            LOG.debug(String.format("Initialized FragmentResultCache [maxBytes=%d, tables=%s]",
+                      maxBytes, Arrays.toString(this.cacheableTables)));
+    }
+
+    // ----------------------------------------------------------------------------
+    // CACHEABILITY
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true if the results of queries on the given table can be cached.
+     * @param tableId
+     */
+    public boolean isCacheableTable(int tableId) {
+        return (this.cacheableTables[tableId]);
+    }
+
+    /**
+     * Returns true if the given PlanFragment is read-only and only reads
+     * from cacheable tables.
+     * @param fragmentId
+     */
+    public boolean isCacheable(long fragmentId) {
+        if (PlanFragmentIdGenerator.isPlanFragmentReadOnly(fragmentId) == false) {
+            return (false);
+        }
+        Long key = Long.valueOf(fragmentId);
+        Boolean ret = this.cacheableFragments.get(key);
+        if (ret == null) {
+            int tableIds[] = this.catalogContext.getReadTableIds(key);
+            ret = (tableIds != null && tableIds.length > 0);
+            if (ret) {
+                for (int tableId : tableIds) {
+                    if (this.cacheableTables[tableId] == false) {
+                        ret = false;
+                        break;
+                    }
+                } // FOR
+            }
+            this.cacheableFragments.put(key, ret);
+        }
+        return (ret.booleanValue());
+    }
+
+    /**
+     * Returns the partition id to use in the given fragment's cache key.
+     * Results for fragments that only read replicated tables are the same
+     * at every partition, so they can all share the same entry.
+     */
+    private int getKeyPartition(int tableIds[], int partitionId) {
+        for (int tableId : tableIds) {
+            if (this.replicatedTables[tableId] == false) return (partitionId);
+        } // FOR
+        return (HStoreConstants.NULL_PARTITION_ID);
+    }
+
+    // ----------------------------------------------------------------------------
+    // WRITE TRACKING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * A txn is about to modify the given table at one of our partitions.
+     * This must be called before the write fragment is executed and each
+     * call must be followed by exactly one call to finishWrite()
+     * once the txn has committed or aborted at that partition.
+     * @param tableId
+     */
+    public void beginWrite(int tableId) {
+        this.writers.incrementAndGet(tableId);
+    }
+
+    /**
+     * A txn that modified the given table at one of our partitions has
+     * either committed or aborted. Any results from before now are stale.
+     * @param tableId
+     */
+    public void finishWrite(int tableId) {
+        // We have to bump the version *before* we drop the writer count so that
+        // nobody can slip in and use an old entry
+        this.versions.incrementAndGet(tableId);
+        int ret = this.writers.decrementAndGet(tableId);
+        assert(ret >= 0) : "Unexpected writer count for tableId #" + tableId;
+    }
+
+    /**
+     * Get the current versions for the tables read by the given fragment.
+     * This must be invoked before the fragment is executed and then passed
+     * into put() afterwards. Returns null if somebody is in the middle of
+     * writing to one of the tables, which means that we should not cache the
+     * fragment's result.
+     * @param fragmentId
+     */
+    public long[] getVersions(long fragmentId) {
+        int tableIds[] = this.catalogContext.getReadTableIds(Long.valueOf(fragmentId));
+        long ret[] = new long[tableIds.length];
+        for (int i = 0; i < tableIds.length; i++) {
+            if (this.writers.get(tableIds[i]) > 0) return (null);
+            ret[i] = this.versions.get(tableIds[i]);
+        } // FOR
+        return (ret);
+    }
+
+    private boolean isValid(int tableIds[], long expected[]) {
+        for (int i = 0; i < tableIds.length; i++) {
+            if (this.writers.get(tableIds[i]) > 0 ||
+                this.versions.get(tableIds[i]) != expected[i]) {
+                return (false);
+            }
+        } // FOR
+        return (true);
+    }
+
+    // ----------------------------------------------------------------------------
+    // API
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Return the cached result for the given fragment and parameters, or null
+     * if we don't have a valid one. The returned VoltTable shares its data with
+     * the cache entry, so it must not be modified.
+     * @param fragmentId
+     * @param partitionId
+     * @param params
+     */
+    public synchronized VoltTable get(long fragmentId, int partitionId, ParameterSet params) {
+        int tableIds[] = this.catalogContext.getReadTableIds(Long.valueOf(fragmentId));
+        Key key = new Key(fragmentId, this.getKeyPartition(tableIds, partitionId), params.toArray());
+        this.sketch.increment(key.hash);
+
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return (null);
+        }
+        if (this.isValid(entry.tableIds, entry.versions) == false) {
+            if (trace.val)
+                LOG.trace(String.format("Invalidating stale result for fragment #%d", fragmentId));
+            this.remove(entry);
+            this.invalidations++;
+            this.misses++;
+            return (null);
+        }
+        this.hits++;
+        return (PrivateVoltTableFactory.createVoltTableFromBuffer(entry.result.duplicate(), true));
+    }
+
+    /**
+     * Store the result of a fragment that we just executed.
+     * @param fragmentId
+     * @param partitionId
+     * @param params
+     * @param result
+     * @param versions The table versions from getVersions() before the fragment was executed
+     * @return True if the result was added to the cache
+     */
+    public synchronized boolean put(long fragmentId, int partitionId, ParameterSet params, VoltTable result, long versions[]) {
+        int tableIds[] = this.catalogContext.getReadTableIds(Long.valueOf(fragmentId));
+
+        // Make sure that nobody modified the tables while we were executing
+        if (this.isValid(tableIds, versions) == false) {
+            return (false);
+        }
+
+        Key key = new Key(fragmentId, this.getKeyPartition(tableIds, partitionId), copyParams(params.toArray()));
+        Entry entry = new Entry(key, result.getTableDataReference(), tableIds, versions);
+        if (entry.size > this.maxBytes) {
+            this.rejected++;
+            return (false);
+        }
+        Entry old = this.entries.get(key);
+        if (old != null) this.remove(old);
+
+        // TinyLFU Admission
+        // Only evict entries that have been requested less often than the new one
+        int freq = this.sketch.frequency(key.hash);
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (this.bytes + entry.size > this.maxBytes) {
+            Entry victim = it.next();
+            if (this.sketch.frequency(victim.key.hash) > freq) {
+                this.rejected++;
+                return (false);
+            }
+            it.remove();
+            this.bytes -= victim.size;
+            this.evictions++;
+        } // WHILE
+
+        this.entries.put(key, entry);
+        this.bytes += entry.size;
+        this.inserts++;
+        return (true);
+    }
+
+    private void remove(Entry entry) {
+        this.entries.remove(entry.key);
+        this.bytes -= entry.size;
+    }
+
+    /**
+     * Make a copy of the given parameters so that the txn can't
+     * change our key out from underneath us
+     */
+    private static Object[] copyParams(Object params[]) {
+        Object copy[] = params.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] != null && copy[i].getClass().isArray()) {
+                int length = Array.getLength(copy[i]);
+                Object arr = Array.newInstance(copy[i].getClass().getComponentType(), length);
+                System.arraycopy(copy[i], 0, arr, 0, length);
+                copy[i] = arr;
+            }
+        } // FOR
+        return (copy);
+    }
+
+    /**
+     * Remove all of the entries in the cache
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATISTICS
+    // ----------------------------------------------------------------------------
+
+    public synchronized int size() {
+        return (this.entries.size());
+    }
+    public synchronized long getBytes() {
+        return (this.bytes);
+    }
+    public long getMaxBytes() {
+        return (this.maxBytes);
+    }
+    public synchronized long getHits() {
+        return (this.hits);
+    }
+    public synchronized long getMisses() {
+        return (this.misses);
+    }
+    public synchronized double getHitRate() {
+        long total = this.hits + this.misses;
+        return (total > 0 ? this.hits / (double)total : 0d);
+    }
+    public synchronized long getInserts() {
+        return (this.inserts);
+    }
+    public synchronized long getRejected() {
+        return (this.rejected);
+    }
+    public synchronized long getEvictions() {
+        return (this.evictions);
+    }
+    public synchronized long getInvalidations() {
+        return (this.invalidations);
+    }
+    public long getVersion(int tableId) {
+        return (this.versions.get(tableId));
+    }
+
+}
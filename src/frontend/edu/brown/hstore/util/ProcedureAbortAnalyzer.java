@@ -0,0 +1,369 @@
+package edu.brown.hstore.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.ColumnRef;
+import org.voltdb.catalog.Index;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.Table;
+import org.voltdb.types.QueryType;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.markov.EstimationThresholds;
+import edu.brown.markov.MarkovGraph;
+
+/**
+ * Static analysis that figures out whether a stored procedure can abort on its own.
+ * A procedure is non-aborting if (1) its control code never creates an exception
+ * (i.e., no VoltAbortExceptions or other user aborts) and (2) none of its Statements
+ * can fail because of a constraint violation. The PartitionExecutor can run
+ * non-aborting single-partition txns without undo logging.
+ * <P>
+ * For (1) we look at the bytecode of the procedure's class, its nested classes,
+ * its superclasses, and any class in the same benchmark package that it calls.
+ * This cannot catch runtime errors (e.g., a NullPointerException), so it must
+ * be combined with the abort probabilities from the Markov models.
+ * @see ProcedureAbortAnalyzer#isAbortProbabilityNegligible(MarkovGraph, EstimationThresholds)
+ */
+public abstract class ProcedureAbortAnalyzer {
+    private static final Logger LOG = Logger.getLogger(ProcedureAbortAnalyzer.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static final String PROCEDURES_PACKAGE = ".procedures";
+    private static final String ASSERTION_ERROR = AssertionError.class.getName().replace('.', '/');
+    
+    /**
+     * An assert in the procedure's code can only abort the txn if asserts are enabled
+     */
+    private static final boolean ASSERTS_ENABLED;
+    static {
+        boolean asserts = false;
+        assert(asserts = true);
+        ASSERTS_ENABLED = asserts;
+    }
+
+    // Constant pool tags
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Integer = 3;
+    private static final int CONSTANT_Float = 4;
+    private static final int CONSTANT_Long = 5;
+    private static final int CONSTANT_Double = 6;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_String = 8;
+    private static final int CONSTANT_Fieldref = 9;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_InterfaceMethodref = 11;
+    private static final int CONSTANT_NameAndType = 12;
+    private static final int CONSTANT_MethodHandle = 15;
+    private static final int CONSTANT_MethodType = 16;
+    private static final int CONSTANT_InvokeDynamic = 18;
+
+    /**
+     * Returns true if the given Procedure can never abort on its own.
+     * This is always false for sysprocs and MapReduce procedures.
+     * @param catalog_proc
+     * @return
+     */
+    public static boolean isNonAborting(Procedure catalog_proc) {
+        return (canUserAbort(catalog_proc) == false && canViolateConstraints(catalog_proc) == false);
+    }
+
+    /**
+     * Returns true if the given Procedure's control code could throw an exception
+     * that it created itself (e.g., a VoltAbortException). If we are unable
+     * to get the bytecode for the Procedure, then we will assume that it can abort.
+     * @param catalog_proc
+     * @return
+     */
+    public static boolean canUserAbort(Procedure catalog_proc) {
+        if (catalog_proc.getSystemproc() || catalog_proc.getMapreduce() || catalog_proc.getHasjava() == false) {
+            return (true);
+        }
+        String className = catalog_proc.getClassname();
+        String packagePrefix = toInternalName(getPackageRoot(className)) + "/";
+
+        Set<String> visited = new HashSet<String>();
+        List<String> next = new ArrayList<String>();
+        next.add(toInternalName(className));
+        while (next.isEmpty() == false) {
+            String internalName = next.remove(next.size() - 1);
+            if (visited.add(internalName) == false) continue;
+
+            ClassInfo info = null;
+            try {
+                info = readClass(internalName);
+            } catch (IOException ex) {
+                LOG.warn(String.format("Unable to read bytecode for %s. Assuming that %s can abort",
+                         internalName, catalog_proc.getName()), ex);
+                return (true);
+            }
+            if (info == null) {
+                if (debug.val)
+                    LOG.debug(String.format("Unable to find bytecode for %s. Assuming that %s can abort",
+                              internalName, catalog_proc.getName()));
+                return (true);
+            }
+            for (String exceptionClass : info.constructed) {
+                if (ASSERTS_ENABLED == false && exceptionClass.equals(ASSERTION_ERROR)) continue;
+                if (isThrowable(exceptionClass)) {
+                    if (debug.val)
+                        LOG.debug(String.format("%s can abort because %s creates a %s",
+                                  catalog_proc.getName(), internalName, exceptionClass));
+                    return (true);
+                }
+            } // FOR
+
+            // Keep going with the classes that are part of this benchmark,
+            // including the superclass if it's not VoltProcedure
+            for (String ref : info.referenced) {
+                if (ref.startsWith(packagePrefix) || ref.startsWith(internalName + "$")) {
+                    next.add(ref);
+                }
+            } // FOR
+            if (info.superName != null && info.superName.startsWith(packagePrefix)) {
+                next.add(info.superName);
+            }
+        } // WHILE
+        return (false);
+    }
+
+    /**
+     * Returns true if any of the Procedure's Statements could fail because of a
+     * constraint violation. This is any INSERT or UPDATE that writes to a column
+     * that is part of a unique index, is not nullable, or is a VARCHAR that could
+     * overflow.
+     * @param catalog_proc
+     * @return
+     */
+    public static boolean canViolateConstraints(Procedure catalog_proc) {
+        for (Statement catalog_stmt : catalog_proc.getStatements()) {
+            if (canViolateConstraints(catalog_stmt)) {
+                if (debug.val)
+                    LOG.debug(String.format("%s can abort because %s could violate a constraint",
+                              catalog_proc.getName(), catalog_stmt.fullName()));
+                return (true);
+            }
+        } // FOR
+        return (false);
+    }
+
+    /**
+     * Returns true if the given Statement could fail because of a constraint violation.
+     * @param catalog_stmt
+     * @return
+     */
+    public static boolean canViolateConstraints(Statement catalog_stmt) {
+        QueryType qtype = QueryType.get(catalog_stmt.getQuerytype());
+        if (qtype != QueryType.INSERT && qtype != QueryType.UPDATE) {
+            return (false);
+        }
+        for (Table catalog_tbl : CatalogUtil.getReferencedTables(catalog_stmt)) {
+            Collection<Column> columns = null;
+            if (qtype == QueryType.INSERT) {
+                columns = catalog_tbl.getColumns();
+            } else {
+                columns = new ArrayList<Column>();
+                for (Column catalog_col : CatalogUtil.getModifiedColumns(catalog_stmt)) {
+                    if (catalog_col.getParent().equals(catalog_tbl)) columns.add(catalog_col);
+                } // FOR
+            }
+            for (Column catalog_col : columns) {
+                if (catalog_col.getNullable() == false ||
+                    VoltType.get((byte)catalog_col.getType()) == VoltType.STRING) {
+                    return (true);
+                }
+            } // FOR
+            for (Index catalog_idx : catalog_tbl.getIndexes()) {
+                if (catalog_idx.getUnique() == false) continue;
+                for (ColumnRef catalog_colref : catalog_idx.getColumns()) {
+                    if (columns.contains(catalog_colref.getColumn())) {
+                        return (true);
+                    }
+                } // FOR
+            } // FOR
+        } // FOR
+        return (false);
+    }
+
+    /**
+     * Returns true if the given MarkovGraph has seen enough txns to say that its
+     * procedure basically never aborts. We need to have seen at least 1/abort-threshold
+     * txns, so that a single abort would have put it over the threshold.
+     * @param markov
+     * @param thresholds
+     * @return
+     */
+    public static boolean isAbortProbabilityNegligible(MarkovGraph markov, EstimationThresholds thresholds) {
+        if (markov == null) return (false);
+        float threshold = thresholds.getAbortThreshold();
+        if (threshold <= 0) return (false);
+        
+        long total = markov.getStartVertex().getTotalHits();
+        if (total < Math.ceil(1.0d / threshold)) {
+            if (trace.val)
+                LOG.trace(String.format("Not enough txns in %s to estimate abort probability [total=%d]",
+                          markov, total));
+            return (false);
+        }
+        long aborts = markov.getAbortVertex().getTotalHits();
+        return ((aborts / (double)total) < threshold);
+    }
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+
+    private static String toInternalName(String className) {
+        return (className.replace('.', '/'));
+    }
+
+    /**
+     * Return the benchmark package for the given class. If the class is
+     * in a "procedures" package, then we will use its parent package.
+     * @param className
+     * @return
+     */
+    private static String getPackageRoot(String className) {
+        int idx = className.lastIndexOf('.');
+        String pkg = (idx == -1 ? "" : className.substring(0, idx));
+        if (pkg.endsWith(PROCEDURES_PACKAGE)) {
+            pkg = pkg.substring(0, pkg.length() - PROCEDURES_PACKAGE.length());
+        }
+        return (pkg);
+    }
+
+    private static boolean isThrowable(String internalName) {
+        try {
+            Class<?> clazz = Class.forName(internalName.replace('/', '.'), false,
+                                           ProcedureAbortAnalyzer.class.getClassLoader());
+            return (Throwable.class.isAssignableFrom(clazz));
+        } catch (Throwable ex) {
+            // If we can't load it, then we have to assume the worst
+            return (true);
+        }
+    }
+
+    /**
+     * The parts of a class file that we care about
+     */
+    protected static class ClassInfo {
+        String superName;
+        /** Classes whose constructor is invoked */
+        final Set<String> constructed = new HashSet<String>();
+        /** Classes whose fields or methods are referenced */
+        final Set<String> referenced = new HashSet<String>();
+    }
+
+    /**
+     * Read the constant pool of the given class out of its class file.
+     * Returns null if the class file does not exist.
+     * @param internalName
+     * @return
+     * @throws IOException
+     */
+    protected static ClassInfo readClass(String internalName) throws IOException {
+        InputStream is = ProcedureAbortAnalyzer.class.getClassLoader().getResourceAsStream(internalName + ".class");
+        if (is == null) return (null);
+
+        DataInputStream in = new DataInputStream(is);
+        try {
+            if (in.readInt() != 0xCAFEBABE) {
+                throw new IOException("Invalid class file for " + internalName);
+            }
+            in.readUnsignedShort(); // minor
+            in.readUnsignedShort(); // major
+
+            int count = in.readUnsignedShort();
+            String utf8[] = new String[count];
+            int classNames[] = new int[count];
+            int memberClass[] = new int[count];
+            int memberNameType[] = new int[count];
+            int nameTypeName[] = new int[count];
+            List<Integer> refs = new ArrayList<Integer>();
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_Utf8:
+                        utf8[i] = in.readUTF();
+                        break;
+                    case CONSTANT_Class:
+                        classNames[i] = in.readUnsignedShort();
+                        break;
+                    case CONSTANT_Fieldref:
+                    case CONSTANT_Methodref:
+                    case CONSTANT_InterfaceMethodref:
+                        memberClass[i] = in.readUnsignedShort();
+                        memberNameType[i] = in.readUnsignedShort();
+                        refs.add(i);
+                        break;
+                    case CONSTANT_NameAndType:
+                        nameTypeName[i] = in.readUnsignedShort();
+                        in.readUnsignedShort();
+                        break;
+                    case CONSTANT_Integer:
+                    case CONSTANT_Float:
+                    case CONSTANT_InvokeDynamic:
+                        in.readInt();
+                        break;
+                    case CONSTANT_Long:
+                    case CONSTANT_Double:
+                        in.readLong();
+                        i++; // These take up two slots
+                        break;
+                    case CONSTANT_String:
+                    case CONSTANT_MethodType:
+                        in.readUnsignedShort();
+                        break;
+                    case CONSTANT_MethodHandle:
+                        in.readUnsignedByte();
+                        in.readUnsignedShort();
+                        break;
+                    default:
+                        throw new IOException(String.format("Unexpected constant pool tag %d in %s", tag, internalName));
+                } // SWITCH
+            } // FOR
+
+            ClassInfo info = new ClassInfo();
+            for (int i : refs) {
+                String owner = utf8[classNames[memberClass[i]]];
+                String name = utf8[nameTypeName[memberNameType[i]]];
+                if (owner == null || owner.startsWith("[")) continue;
+                if (name.equals("<init>")) {
+                    info.constructed.add(owner);
+                }
+                info.referenced.add(owner);
+            } // FOR
+
+            in.readUnsignedShort(); // access flags
+            in.readUnsignedShort(); // this class
+            int superIdx = in.readUnsignedShort();
+            if (superIdx != 0) {
+                info.superName = utf8[classNames[superIdx]];
+                if (info.superName.equals(toInternalName(VoltProcedure.class.getName()))) {
+                    info.superName = null;
+                }
+            }
+            return (info);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package edu.brown.logging;
+
+/**
+ * A log message whose String.format() call is put off until somebody actually
+ * needs the text. Pass one of these to a Logger instead of calling String.format()
+ * directly so that the RingBufferAppender's background thread does the formatting
+ * instead of the thread that is logging.
+ * <P>
+ * The arguments are kept as-is and are not converted to Strings until the message
+ * is rendered. This means that the caller must not pass in anything that could change
+ * (or get recycled back into an object pool) after the message is logged. Pass the
+ * txnId instead of the txn handle, for example.
+ */
+public final class FormattedMessage {
+
+    private final String format;
+    private final Object args[];
+    private String message;
+
+    public FormattedMessage(String format, Object...args) {
+        this.format = format;
+        this.args = args;
+    }
+
+    public String getFormat() {
+        return (this.format);
+    }
+
+    public Object[] getArguments() {
+        return (this.args);
+    }
+
+    @Override
+    public String toString() {
+        if (this.message == null) {
+            this.message = String.format(this.format, this.args);
+        }
+        return (this.message);
+    }
+}
@@ -1,22 +1,35 @@
 package edu.brown.logging;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Category;
+import org.apache.log4j.FileAppender;
 import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LocationInfo;
 import org.apache.log4j.spi.LoggerRepository;
 import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
 
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.StringUtil;
@@ -24,24 +37,86 @@ import edu.brown.utils.StringUtil;
 /**
  * An appender that stores LoggingEvents in a ringbuffer (in-memory)
  * and allows to retrieve the latest log messages.
+ * <P>
+ * The ring is a fixed array of mutable records that is allocated up front. A thread
+ * that logs a message claims the next position in the log with an atomic increment,
+ * marks the record in that position's slot as busy, copies the event into it, and then
+ * publishes it by setting the record's sequence. So unlike the other log4j appenders,
+ * threads do not wait on each other unless one of them laps another that is still in
+ * the middle of writing the same slot. Readers check the sequence before and after
+ * they copy a record, so they never use a record that was changed while they were
+ * reading it. The message object is not rendered when it is stored (see FormattedMessage).
+ * <P>
+ * If there are any appenders attached to this one (or if the File option is set),
+ * then a background thread will drain the new records from the ring in batches and
+ * hand them to those appenders. Records that get overwritten before the background
+ * thread reaches them are dropped and counted in getDroppedLines().
  * @author rschwarzkopf
  * @author pavlo
  * http://ds.informatik.uni-marburg.de/~fallenbeck/ICSd/javadoc/0.9.16/de/fb12/ics/logging/RingbufferAppender.html
  */
-public class RingBufferAppender extends AppenderSkeleton {
+public class RingBufferAppender extends AppenderSkeleton implements AppenderAttachable {
     private static final Logger LOG = Logger.getLogger(RingBufferAppender.class);
-    
+
     private static final int DEFAULT_SIZE = 1000;
-    
-    private LoggingEvent[] eventRing;
-    private int currentPosition;
-    private long counter;
+    private static final long DEFAULT_FLUSH_INTERVAL = 100; // ms
+
+    /**
+     * Sequence value of a slot that has never been written
+     */
+    private static final long EMPTY = -1;
+    /**
+     * Sequence value of a slot that a thread is in the middle of writing
+     */
+    private static final long BUSY = -2;
+
+    /**
+     * A single slot in the ring. The sequence is set to the position of the record
+     * in the log once all of the other fields have been written. The other fields are
+     * volatile too so that a reader that sees any part of a newer write is guaranteed
+     * to also see that the sequence has changed when it checks it again.
+     */
+    private static final class LogRecord {
+        private final AtomicLong sequence = new AtomicLong(EMPTY);
+        private volatile String fqn;
+        private volatile Category logger;
+        private volatile long timestamp;
+        private volatile Level level;
+        private volatile Object message;
+        private volatile String threadName;
+        private volatile ThrowableInformation throwable;
+        private volatile LocationInfo location;
+    } // CLASS
+
+    /**
+     * A FileAppender that lets us flush once after each batch instead of after every event.
+     */
+    private static final class BatchFileAppender extends FileAppender {
+        private BatchFileAppender(Layout layout, String filename) throws IOException {
+            super(layout, filename, true);
+            this.setImmediateFlush(false);
+        }
+        private void flush() {
+            if (this.qw != null) this.qw.flush();
+        }
+    } // CLASS
+
+    private LogRecord[] eventRing;
+    private final AtomicLong nextSequence = new AtomicLong(0);
     private int stackOffset = -1;
-    
+
     private boolean useFastLocation = false;
     private boolean storeLocation = false;
     private boolean storeThreadName = false;
-    
+
+    // Background draining
+    private final AppenderAttachableImpl appenders = new AppenderAttachableImpl();
+    private String fileName = null;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private Thread drainThread = null;
+    private long drainSequence = 0;
+    private final AtomicLong dropped = new AtomicLong(0);
+
     /**
      * Create an appender instance.
      * @param bufferSize The size of the ringbuffer.
@@ -49,21 +124,24 @@ public class RingBufferAppender extends AppenderSkeleton {
     public RingBufferAppender() {
         this.init(DEFAULT_SIZE);
     }
-    
+
     public RingBufferAppender(int size) {
         this.init(size);
     }
-    
+
     private void init(int size) {
-        this.eventRing = new LoggingEvent[size];
-        this.currentPosition = -1;
-        this.counter = 0;
+        this.eventRing = new LogRecord[size];
+        for (int i = 0; i < size; i++) {
+            this.eventRing[i] = new LogRecord();
+        } // FOR
+        this.nextSequence.set(0);
+        this.drainSequence = 0;
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("Initialized appender with new buffer [size=%d, useFastLocation=%s, storeLocation=%s, storeThreadName=%s, layout=%s]",
                                     size, this.useFastLocation, this.storeLocation, this.storeThreadName,
                                     (this.getLayout() != null ? this.getLayout().getClass().getSimpleName() : null)));
     }
-    
+
     public void setUseFastLocation(boolean val) {
         this.useFastLocation = val;
     }
@@ -73,7 +151,7 @@ public class RingBufferAppender extends AppenderSkeleton {
     public void setStoreThreadName(boolean val) {
         this.storeThreadName = val;
     }
-    
+
     public void setSize(int size) {
         this.init(size);
     }
@@ -84,94 +162,270 @@ public class RingBufferAppender extends AppenderSkeleton {
     public int getSize() {
         return this.eventRing.length;
     }
-                 
+
+    /**
+     * Have the background thread write out all of the log messages
+     * to the given file using this appender's layout.
+     * @param fileName
+     */
+    public void setFile(String fileName) {
+        this.fileName = fileName;
+    }
+    public String getFile() {
+        return (this.fileName);
+    }
+    /**
+     * How long the background thread waits between batches (in milliseconds)
+     * @param interval
+     */
+    public void setFlushInterval(long interval) {
+        this.flushInterval = interval;
+    }
+    public long getFlushInterval() {
+        return (this.flushInterval);
+    }
+
+    @Override
+    public void activateOptions() {
+        super.activateOptions();
+        if (this.fileName != null) {
+            try {
+                BatchFileAppender fileAppender = new BatchFileAppender(this.getLayout(), this.fileName);
+                fileAppender.setName(this.getName() + "-file");
+                this.addAppender(fileAppender);
+            } catch (IOException ex) {
+                LOG.error("Failed to open log file " + this.fileName, ex);
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // APPENDING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * This is the same as AppenderSkeleton.doAppend() except that
+     * it is not synchronized.
+     */
+    @Override
+    public void doAppend(LoggingEvent event) {
+        if (this.closed) return;
+        if (this.isAsSevereAsThreshold(event.getLevel()) == false) return;
+        Filter f = this.getFirstFilter();
+        while (f != null) {
+            int decision = f.decide(event);
+            if (decision == Filter.DENY) return;
+            if (decision == Filter.ACCEPT) break;
+            f = f.getNext();
+        } // WHILE
+        this.append(event);
+    }
+
     @Override
     protected void append(LoggingEvent event) {
         if (this.useFastLocation) {
             if (this.stackOffset < 0) this.stackOffset = FastLoggingEvent.getStackOffset(event);
-            event = new FastLoggingEvent(event, this.stackOffset); 
+            event = new FastLoggingEvent(event, this.stackOffset);
         }
-        if (this.storeLocation) event.getLocationInformation();
-        if (this.storeThreadName) event.getThreadName();
+
+        long sequence = this.nextSequence.getAndIncrement();
+        LogRecord record = this.eventRing[(int)(sequence % this.eventRing.length)];
         
-        int position = -1;
-        synchronized (this) {
-            this.currentPosition = position = ++this.currentPosition % this.eventRing.length;
-            this.counter++;
-        } // SYNCH
-        this.eventRing[position] = event;
-//        assert(event.getLoggerName().contains("Handler") == false) : event;
+        // Claim the slot so that nobody else can write to it while we are.
+        // If another thread has already lapped us and stored a newer record
+        // in our slot, then we will just let ours get dropped.
+        while (true) {
+            long current = record.sequence.get();
+            if (current >= sequence) return;
+            if (current == BUSY) {
+                Thread.yield();
+                continue;
+            }
+            if (record.sequence.compareAndSet(current, BUSY)) break;
+        } // WHILE
+        record.fqn = event.getFQNOfLoggerClass();
+        record.logger = event.getLogger();
+        record.timestamp = event.getTimeStamp();
+        record.level = event.getLevel();
+        record.message = event.getMessage();
+        record.throwable = event.getThrowableInformation();
+        record.threadName = (this.storeThreadName ? event.getThreadName() : null);
+        record.location = (this.storeLocation ? event.getLocationInformation() : null);
+        record.sequence.set(sequence);
+    }
+
+    /**
+     * Make a new LoggingEvent from the record at the given position in the log.
+     * Returns null if that record has been overwritten or hasn't been written yet.
+     */
+    private LoggingEvent getLogEvent(long sequence) {
+        LogRecord record = this.eventRing[(int)(sequence % this.eventRing.length)];
+        if (record.sequence.get() != sequence) return (null);
+        LoggingEvent event = new LoggingEvent(record.fqn,
+                                              record.logger,
+                                              record.timestamp,
+                                              record.level,
+                                              record.message,
+                                              record.threadName,
+                                              record.throwable,
+                                              null,
+                                              record.location,
+                                              null);
+        // Make sure that it didn't get overwritten while we were copying it
+        if (record.sequence.get() != sequence) return (null);
+        return (event);
     }
 
     @Override
     public void close() {
+        if (this.closed) return;
+        this.closed = true;
+        Thread t = this.drainThread;
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join();
+            } catch (InterruptedException ex) {
+                // Ignore
+            }
+        }
+        this.drain();
+        this.appenders.removeAllAppenders();
+
         // free memory
-        for (int i = 0; i < this.eventRing.length; i++)
-            this.eventRing[i] = null;
+        for (int i = 0; i < this.eventRing.length; i++) {
+            this.eventRing[i].sequence.set(EMPTY);
+            this.eventRing[i].message = null;
+        } // FOR
     }
 
     @Override
     public boolean requiresLayout() {
         return true;
     }
-    
+
     /**
      * Returns the number of lines logged since ICS startup
      * @return  Number of lines logged
      */
     public long getLoggedLines() {
-        return this.counter;
+        return this.nextSequence.get();
     }
-    
+
+    /**
+     * Returns the number of lines that were overwritten before the
+     * background thread could pass them to the attached appenders.
+     * @return
+     */
+    public long getDroppedLines() {
+        return this.dropped.get();
+    }
+
     public LoggingEvent[] getLogEvents() {
-        // create a snapshot by copying the complete storage
-        LoggingEvent[] events = new LoggingEvent[this.eventRing.length];
-        System.arraycopy(this.eventRing, 0, events, 0, this.eventRing.length);
-        
-        // store the index of the next element to be stored in the rrStorage
-        // this should be the oldest entry
-        int nextEntryIndex = (this.currentPosition + 1) % this.eventRing.length;
-        
-        LoggingEvent[] sortedEvents;
-        if (events[nextEntryIndex] == null) {
-            // event entry has not yet been filled completely, start at zero
-            sortedEvents = new LoggingEvent[nextEntryIndex];
-            for (int i = 0; i < sortedEvents.length; i++) {
-                sortedEvents[i] = events[i];
-            }
-            
-        // the storage position might have changed between copying the array and
-        // calculating the next entry index, compare with oldest entry
-        } else {
-            // find the oldest entry by comparing the timestamps
-            int oldestEntryIndex = -1;
-            long oldestEntryTimestamp = Long.MAX_VALUE;
-            LoggingEvent entry;
-            long entryTimestamp;
-            for (int entryIndex = 0; entryIndex < events.length; entryIndex++) {
-                // FIXME <= ? start at the nextEntryIndex? Maybe backwards?
-                if ((entry = events[entryIndex]) != null && (entryTimestamp = entry.getTimeStamp()) < oldestEntryTimestamp) {
-                    oldestEntryIndex = entryIndex;
-                    oldestEntryTimestamp = entryTimestamp;
-                }
-            } // FOR
-            
-            // if the next entry index and oldest entry index are different and have the same timestamp
-            // (which only happens if much logging is done), use the next entry index
-            if (nextEntryIndex != oldestEntryIndex && oldestEntryTimestamp == events[nextEntryIndex].getTimeStamp())
-                oldestEntryIndex = nextEntryIndex;
-            
-            // sort the events into a new array
-            //  LoggingEvent[] sortedEvents = new LoggingEvent[events.length];
-            sortedEvents = new LoggingEvent[events.length];
-            for (int i = 0; i < sortedEvents.length; i++) {
-                sortedEvents[i] = events[oldestEntryIndex++ % events.length];
+        long last = this.nextSequence.get();
+        long first = Math.max(0, last - this.eventRing.length);
+        List<LoggingEvent> events = new ArrayList<LoggingEvent>((int)(last - first));
+        for (long sequence = first; sequence < last; sequence++) {
+            LoggingEvent event = this.getLogEvent(sequence);
+            if (event != null) events.add(event);
+        } // FOR
+        return (events.toArray(new LoggingEvent[events.size()]));
+    }
+
+    // ----------------------------------------------------------------------------
+    // BACKGROUND DRAINING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Pass all of the records that have been logged since the last call
+     * to the attached appenders. Returns the number of records passed along.
+     * @return
+     */
+    public synchronized int drain() {
+        long last = this.nextSequence.get();
+        long oldest = last - this.eventRing.length;
+        if (this.drainSequence < oldest) {
+            this.dropped.addAndGet(oldest - this.drainSequence);
+            this.drainSequence = oldest;
+        }
+        int count = 0;
+        while (this.drainSequence < last) {
+            LogRecord record = this.eventRing[(int)(this.drainSequence % this.eventRing.length)];
+            // The thread that claimed this slot hasn't finished writing it yet
+            // (EMPTY and BUSY are both less than any real position)
+            if (record.sequence.get() < this.drainSequence) break;
+
+            LoggingEvent event = this.getLogEvent(this.drainSequence);
+            if (event != null) {
+                this.appenders.appendLoopOnAppenders(event);
+                count++;
+            } else {
+                this.dropped.incrementAndGet();
             }
+            this.drainSequence++;
+        } // WHILE
+        Enumeration<?> e = this.appenders.getAllAppenders();
+        if (count > 0 && e != null) {
+            while (e.hasMoreElements()) {
+                Object o = e.nextElement();
+                if (o instanceof BatchFileAppender) ((BatchFileAppender)o).flush();
+            } // WHILE
         }
-        // throw away the old array
-        events = null;
-        
-        return (sortedEvents);
+        return (count);
+    }
+
+    private synchronized void startDrainThread() {
+        if (this.drainThread != null) return;
+        this.drainSequence = this.nextSequence.get();
+        this.drainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long sleep = TimeUnit.MILLISECONDS.toNanos(RingBufferAppender.this.flushInterval);
+                while (RingBufferAppender.this.closed == false) {
+                    LockSupport.parkNanos(sleep);
+                    if (Thread.interrupted()) break;
+                    try {
+                        RingBufferAppender.this.drain();
+                    } catch (Throwable ex) {
+                        LOG.error("Unexpected error while draining " + RingBufferAppender.this.getName(), ex);
+                    }
+                } // WHILE
+            }
+        });
+        this.drainThread.setName(this.getClass().getSimpleName() + "-" + this.getName());
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    @Override
+    public void addAppender(Appender newAppender) {
+        this.appenders.addAppender(newAppender);
+        this.startDrainThread();
+    }
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Enumeration getAllAppenders() {
+        return (this.appenders.getAllAppenders());
+    }
+    @Override
+    public Appender getAppender(String name) {
+        return (this.appenders.getAppender(name));
+    }
+    @Override
+    public boolean isAttached(Appender appender) {
+        return (this.appenders.isAttached(appender));
+    }
+    @Override
+    public void removeAllAppenders() {
+        this.appenders.removeAllAppenders();
+    }
+    @Override
+    public void removeAppender(Appender appender) {
+        this.appenders.removeAppender(appender);
+    }
+    @Override
+    public void removeAppender(String name) {
+        this.appenders.removeAppender(name);
     }
 
     public String[] getLogMessages() {
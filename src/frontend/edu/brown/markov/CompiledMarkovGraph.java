@@ -0,0 +1,292 @@
+package edu.brown.markov;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import org.voltdb.catalog.Statement;
+
+import edu.brown.utils.PartitionSet;
+
+/**
+ * Frozen, array-based version of a MarkovGraph that is used on the estimation
+ * hot path. The vertices are numbered from zero and the outbound edges are stored
+ * in compressed sparse row (CSR) layout: the edges for vertex <i>v</i> are at offsets
+ * [edgeOffsets[v], edgeOffsets[v+1]) of the edge arrays. Each vertex's edges are sorted
+ * by their probability (highest first), which is the same order that MarkovEdge's
+ * compareTo() uses.
+ * <p>
+ * Each vertex's Statement is stored as its relative index in the Procedure so that
+ * we never need to call Statement.equals() when looking for the next vertex.
+ * <p>
+ * The index of each MarkovVertex is stored in an open-addressing hash table keyed on the
+ * vertices' identity hash codes, so looking up a vertex does not box anything.
+ * <p>
+ * A CompiledMarkovGraph is never modified after it is created. The MarkovGraph that
+ * it came from marks it as stale whenever its structure or probabilities change and
+ * builds a new one the next time it is needed (at most once per compile interval).
+ * @see MarkovGraph#getCompiledGraph()
+ */
+public class CompiledMarkovGraph {
+
+    /**
+     * Marker for a vertex that does not have a Statement (START, COMMIT, ABORT)
+     */
+    public static final int NULL_STATEMENT = -1;
+
+    private final MarkovGraph markov;
+    private final int version;
+
+    // VERTICES
+    private final MarkovVertex vertices[];
+    private final int vertexStatements[];
+    private final int vertexCounters[];
+    private final PartitionSet vertexPartitions[];
+    private final PartitionSet vertexPastPartitions[];
+    
+    // VERTEX INDEX
+    private final MarkovVertex indexKeys[];
+    private final int indexValues[];
+    private final int indexMask;
+
+    // EDGES
+    private final int edgeOffsets[];
+    private final int edgeTargets[];
+    private final MarkovEdge edges[];
+    private final float edgeProbabilities[];
+
+    /**
+     * Constructor
+     * This should only be invoked by the MarkovGraph. If somebody modifies the graph
+     * while we are copying it, then this will throw a ConcurrentModificationException.
+     * @param markov
+     * @param version The MarkovGraph's version when we started copying it
+     */
+    protected CompiledMarkovGraph(MarkovGraph markov, int version) {
+        this.markov = markov;
+        this.version = version;
+
+        Collection<MarkovVertex> all_vertices = markov.getVertices();
+        int num_vertices = all_vertices.size();
+        this.vertices = new MarkovVertex[num_vertices];
+        this.vertexStatements = new int[num_vertices];
+        this.vertexCounters = new int[num_vertices];
+        this.vertexPartitions = new PartitionSet[num_vertices];
+        this.vertexPastPartitions = new PartitionSet[num_vertices];
+        
+        // Keep the hash table at most half full
+        int capacity = Integer.highestOneBit(Math.max(num_vertices, 1)) << 2;
+        this.indexKeys = new MarkovVertex[capacity];
+        this.indexValues = new int[capacity];
+        this.indexMask = capacity - 1;
+
+        // The START vertex is always the first one so that we can find it
+        // without a look-up
+        int idx = 0;
+        if (markov.isInitialized()) {
+            this.addVertex(markov.getStartVertex(), idx++);
+        }
+        for (MarkovVertex v : all_vertices) {
+            if (this.indexOf(v) == -1) {
+                if (idx == num_vertices) {
+                    throw new ConcurrentModificationException("New vertex " + v + " was added to " + markov);
+                }
+                this.addVertex(v, idx++);
+            }
+        } // FOR
+        if (idx != num_vertices) {
+            throw new ConcurrentModificationException("Vertices were removed from " + markov);
+        }
+
+        // Build the CSR edge arrays
+        this.edgeOffsets = new int[num_vertices + 1];
+        List<List<MarkovEdge>> out_edges = new ArrayList<List<MarkovEdge>>(num_vertices);
+        int num_edges = 0;
+        for (int v = 0; v < num_vertices; v++) {
+            Collection<MarkovEdge> edges = markov.getOutEdges(this.vertices[v]);
+            List<MarkovEdge> sorted = null;
+            if (edges == null || edges.isEmpty()) {
+                sorted = Collections.emptyList();
+            } else {
+                sorted = new ArrayList<MarkovEdge>(edges);
+                Collections.sort(sorted);
+            }
+            out_edges.add(sorted);
+            this.edgeOffsets[v] = num_edges;
+            num_edges += sorted.size();
+        } // FOR
+        this.edgeOffsets[num_vertices] = num_edges;
+
+        this.edgeTargets = new int[num_edges];
+        this.edges = new MarkovEdge[num_edges];
+        this.edgeProbabilities = new float[num_edges];
+        for (int v = 0; v < num_vertices; v++) {
+            int offset = this.edgeOffsets[v];
+            for (MarkovEdge e : out_edges.get(v)) {
+                // The edge could point to a vertex that was added after we copied the vertices
+                int target = this.indexOf(markov.getDest(e));
+                if (target == -1) {
+                    throw new ConcurrentModificationException("Missing destination vertex for " + e);
+                }
+                this.edgeTargets[offset] = target;
+                this.edges[offset] = e;
+                this.edgeProbabilities[offset] = e.getProbability();
+                offset++;
+            } // FOR
+        } // FOR
+    }
+
+    private void addVertex(MarkovVertex v, int idx) {
+        this.vertices[idx] = v;
+        int slot = this.slot(v);
+        while (this.indexKeys[slot] != null) {
+            slot = (slot + 1) & this.indexMask;
+        } // WHILE
+        this.indexKeys[slot] = v;
+        this.indexValues[slot] = idx;
+        if (v.isQueryVertex()) {
+            this.vertexStatements[idx] = ((Statement)v.getCatalogItem()).getRelativeIndex();
+        } else {
+            this.vertexStatements[idx] = NULL_STATEMENT;
+        }
+        this.vertexCounters[idx] = v.counter;
+        this.vertexPartitions[idx] = v.partitions;
+        this.vertexPastPartitions[idx] = v.past_partitions;
+    }
+
+    private int slot(MarkovVertex v) {
+        int h = System.identityHashCode(v);
+        h ^= (h >>> 16);
+        return (h & this.indexMask);
+    }
+
+    // ----------------------------------------------------------------------------
+    // VERTEX METHODS
+    // ----------------------------------------------------------------------------
+
+    public MarkovGraph getMarkovGraph() {
+        return (this.markov);
+    }
+
+    /**
+     * The version of the MarkovGraph that this was compiled from
+     */
+    public int getVersion() {
+        return (this.version);
+    }
+
+    public int getVertexCount() {
+        return (this.vertices.length);
+    }
+
+    public MarkovVertex getVertex(int idx) {
+        return (this.vertices[idx]);
+    }
+
+    /**
+     * Returns the index of the given MarkovVertex in this compiled graph.
+     * Returns -1 if the vertex was added to the MarkovGraph after this
+     * compiled graph was created.
+     * @param v
+     * @return
+     */
+    public int indexOf(MarkovVertex v) {
+        if (this.vertices.length > 0 && this.vertices[0] == v) return (0);
+        for (int slot = this.slot(v); this.indexKeys[slot] != null; slot = (slot + 1) & this.indexMask) {
+            if (this.indexKeys[slot] == v) return (this.indexValues[slot]);
+        } // FOR
+        return (-1);
+    }
+
+    // ----------------------------------------------------------------------------
+    // EDGE METHODS
+    // ----------------------------------------------------------------------------
+
+    public int getEdgeCount() {
+        return (this.edges.length);
+    }
+
+    /**
+     * The offset of the first outbound edge for the given vertex
+     */
+    public int getEdgeStart(int vertex) {
+        return (this.edgeOffsets[vertex]);
+    }
+
+    /**
+     * The offset after the last outbound edge for the given vertex
+     */
+    public int getEdgeEnd(int vertex) {
+        return (this.edgeOffsets[vertex+1]);
+    }
+
+    public MarkovEdge getEdge(int offset) {
+        return (this.edges[offset]);
+    }
+
+    public float getEdgeProbability(int offset) {
+        return (this.edgeProbabilities[offset]);
+    }
+
+    /**
+     * Return the index of the destination vertex for the edge at the given offset
+     */
+    public int getEdgeTarget(int offset) {
+        return (this.edgeTargets[offset]);
+    }
+
+    public MarkovVertex getEdgeTargetVertex(int offset) {
+        return (this.vertices[this.edgeTargets[offset]]);
+    }
+
+    /**
+     * Returns true if the destination vertex of the edge at the given offset
+     * is for the given Statement invocation. This is the same as MarkovVertex.isEqual()
+     * @param offset
+     * @param catalog_stmt
+     * @param counter
+     * @param partitions
+     * @param past_partitions
+     * @param use_past_partitions
+     * @return
+     */
+    public boolean isEdgeTarget(int offset, Statement catalog_stmt, int counter,
+                                PartitionSet partitions, PartitionSet past_partitions,
+                                boolean use_past_partitions) {
+        int target = this.edgeTargets[offset];
+        return (this.vertexCounters[target] == counter &&
+                this.vertexStatements[target] == catalog_stmt.getRelativeIndex() &&
+                this.vertexPartitions[target].equals(partitions) &&
+                (use_past_partitions == false || this.vertexPastPartitions[target].equals(past_partitions)));
+    }
+
+    /**
+     * Find the offset of the outbound edge from the given vertex whose destination
+     * is the vertex for the given Statement invocation. Returns -1 if there is no such edge.
+     * @param vertex
+     * @param catalog_stmt
+     * @param counter
+     * @param partitions
+     * @param past_partitions
+     * @return
+     */
+    public int findEdge(int vertex, Statement catalog_stmt, int counter,
+                        PartitionSet partitions, PartitionSet past_partitions) {
+        for (int offset = this.edgeOffsets[vertex], end = this.edgeOffsets[vertex+1]; offset < end; offset++) {
+            if (this.isEdgeTarget(offset, catalog_stmt, counter,
+                                  partitions, past_partitions, MarkovGraph.USE_PAST_PARTITIONS)) {
+                return (offset);
+            }
+        } // FOR
+        return (-1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{%s, version=%d, vertices=%d, edges=%d}",
+                             this.getClass().getSimpleName(), this.markov, this.version,
+                             this.vertices.length, this.edges.length);
+    }
+}
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,6 +39,8 @@ import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProjectType;
 import edu.brown.workload.QueryTrace;
 import edu.brown.workload.TransactionTrace;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
 
 /**
  * Markov Model Graph
@@ -70,6 +73,12 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
      */
     public static final int MIN_HITS_FOR_NO_ABORT = 5;
     
+    /**
+     * The default minimum amount of time (in ms) between recompiling a graph
+     * @see MarkovGraph#getCompiledGraph()
+     */
+    public static final long DEFAULT_COMPILE_INTERVAL = 1000;
+    
     // ----------------------------------------------------------------------------
     // INSTANCE DATA MEMBERS
     // ----------------------------------------------------------------------------
@@ -159,6 +168,24 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
     private transient final Map<Statement, Collection<MarkovVertex>> cache_stmtVertices = new HashMap<Statement, Collection<MarkovVertex>>();
     private transient final Map<MarkovVertex, Collection<MarkovVertex>> cache_getSuccessors = new ConcurrentHashMap<MarkovVertex, Collection<MarkovVertex>>();
     
+    /**
+     * The frozen version of this graph that is used by the estimators at runtime.
+     * It is stale whenever its version is not the same as compile_version.
+     */
+    private transient volatile CompiledMarkovGraph cache_compiled = null;
+    /**
+     * Incremented every time that the graph is modified.
+     */
+    private transient final AtomicInteger compile_version = new AtomicInteger(0);
+    /**
+     * The last time that we tried to compile this graph
+     */
+    private transient volatile long compile_lastAttempt = 0;
+    /**
+     * The minimum amount of time (in ms) between recompiling this graph
+     */
+    private transient long compile_interval = DEFAULT_COMPILE_INTERVAL;
+    
     public void buildCache() {
         for (Statement catalog_stmt : this.catalog_proc.getStatements().values()) {
             if (this.cache_stmtVertices.containsKey(catalog_stmt) == false)
@@ -173,6 +200,71 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
     }
     
     
+    /**
+     * Return the CompiledMarkovGraph for this graph. If the graph was modified since
+     * the last time that it was compiled, then we will build a new one. But we will only
+     * do this once per compile interval, so the caller may get back a compiled graph that
+     * is missing the latest vertices, edges, or probabilities. This can return null if 
+     * the graph has never been compiled successfully.
+     * @return
+     */
+    public CompiledMarkovGraph getCompiledGraph() {
+        CompiledMarkovGraph compiled = this.cache_compiled;
+        if (compiled != null && compiled.getVersion() == this.compile_version.get()) {
+            return (compiled);
+        }
+        
+        long now = System.currentTimeMillis();
+        if (now - this.compile_lastAttempt < this.compile_interval) {
+            return (compiled);
+        }
+        synchronized (this) {
+            compiled = this.cache_compiled;
+            if (compiled != null && (compiled.getVersion() == this.compile_version.get() ||
+                                     now - this.compile_lastAttempt < this.compile_interval)) {
+                return (compiled);
+            }
+            this.compile_lastAttempt = now;
+            
+            // The txns that modify the graph only lock the vertices that they are
+            // changing, so somebody could change the graph out from under us while
+            // we are compiling it. If that happens, then we'll get an exception or the
+            // version will be different, and we'll just try again in the next interval.
+            int version = this.compile_version.get();
+            CompiledMarkovGraph new_compiled = null;
+            try {
+                new_compiled = new CompiledMarkovGraph(this, version);
+            } catch (RuntimeException ex) {
+                if (debug.val)
+                    LOG.debug(String.format("%s was modified while it was being compiled", this), ex);
+                return (compiled);
+            }
+            if (debug.val)
+                LOG.debug("Compiled " + new_compiled);
+            // Even if the graph changed while we were compiling it, the new one is still
+            // closer to the real graph than the old one. Its version will be stale,
+            // so we'll compile it again in the next interval.
+            this.cache_compiled = new_compiled;
+        } // SYNCH
+        return (this.cache_compiled);
+    }
+    
+    /**
+     * Mark the CompiledMarkovGraph for this graph as stale
+     */
+    protected void invalidateCompiledGraph() {
+        this.compile_version.incrementAndGet();
+    }
+    
+    /**
+     * Set the minimum amount of time (in ms) that we will wait after 
+     * compiling this graph before we compile it again.
+     * @param interval
+     */
+    public void setCompileInterval(long interval) {
+        this.compile_interval = interval;
+    }
+    
     // ----------------------------------------------------------------------------
     // DATA MEMBER METHODS
     // ----------------------------------------------------------------------------
@@ -211,6 +303,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
     public boolean addVertex(MarkovVertex v) {
         boolean ret = super.addVertex(v);
         if (ret) {
+            this.invalidateCompiledGraph();
             if (v.isQueryVertex()) {
                 Collection<MarkovVertex> stmt_vertices = this.cache_stmtVertices.get(v.getCatalogItem());
                 if (stmt_vertices == null) {
@@ -228,6 +321,30 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         return (ret);
     }
 
+    @Override
+    public boolean addEdge(MarkovEdge e, Pair<? extends MarkovVertex> endpoints, EdgeType edgeType) {
+        boolean ret = super.addEdge(e, endpoints, edgeType);
+        if (ret) {
+            this.invalidateCompiledGraph();
+            this.cache_getSuccessors.remove(endpoints.getFirst());
+        }
+        return (ret);
+    }
+    
+    @Override
+    public boolean removeEdge(MarkovEdge e) {
+        boolean ret = super.removeEdge(e);
+        if (ret) this.invalidateCompiledGraph();
+        return (ret);
+    }
+    
+    @Override
+    public boolean removeVertex(MarkovVertex v) {
+        boolean ret = super.removeVertex(v);
+        if (ret) this.invalidateCompiledGraph();
+        return (ret);
+    }
+    
     /**
      * For the given Vertex type, return the special vertex
      * @param vtype - the Vertex type (cannot be a regular query)
@@ -350,13 +467,7 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         for (MarkovVertex v : this.getVertices()) {
             v.resetAllProbabilities();
         } // FOR
-        
-        for (MarkovVertex v : this.getVertices()) {
-            v.applyInstanceHitsToTotalHits();
-        }
-        for (MarkovEdge e : this.getEdges()) {
-            e.applyInstanceHitsToTotalHits();
-        }
+        this.applyInstanceHits();
         
         // We first need to calculate the edge probabilities because the probabilities
         // at each vertex are going to be derived from these
@@ -365,8 +476,64 @@ public class MarkovGraph extends AbstractDirectedGraph<MarkovVertex, MarkovEdge>
         // Then traverse the graph and calculate the vertex probability tables
         this.calculateVertexProbabilities(partitions);
         
+        // The edge probabilities in the compiled graph are now stale
+        this.invalidateCompiledGraph();
         this.recompute_count++;
     }
+    
+    /**
+     * Calculate the probabilities for this graph while other threads are still using it.
+     * This is the same as calculateProbabilities() except that the new vertex probability
+     * tables are computed off to the side in shadow vertices. Once all of them are ready,
+     * we swap them into the real vertices. This means that nobody will ever see a vertex
+     * whose probabilities were reset but not recomputed yet.
+     * <p>
+     * The estimators can still add new vertices and edges to the graph while this is
+     * running, since they only lock the vertices that they are modifying. If that 
+     * happens, then we will throw away the shadow vertices without publishing them
+     * and return false. The caller should try again later.
+     * @param partitions
+     * @return true if the new probabilities were published
+     */
+    public synchronized boolean calculateShadowProbabilities(PartitionSet partitions) {
+        int version = this.compile_version.get();
+        Map<MarkovVertex, MarkovVertex> shadows = null;
+        try {
+            this.applyInstanceHits();
+            this.calculateEdgeProbabilities();
+            
+            if (trace.val) LOG.trace("Calculating shadow Vertex probabilities for " + this);
+            shadows = new MarkovProbabilityCalculator(this, partitions).calculateShadows();
+        } catch (RuntimeException ex) {
+            if (debug.val)
+                LOG.debug(String.format("%s was modified while recomputing its probabilities", this), ex);
+            return (false);
+        }
+        if (version != this.compile_version.get()) {
+            if (debug.val)
+                LOG.debug(String.format("%s was modified while recomputing its probabilities", this));
+            return (false);
+        }
+        
+        for (Entry<MarkovVertex, MarkovVertex> e : shadows.entrySet()) {
+            e.getKey().publishProbabilities(e.getValue());
+        } // FOR
+        this.invalidateCompiledGraph();
+        this.recompute_count++;
+        return (true);
+    }
+    
+    /**
+     * Apply the instancehits to the totalhits for each graph element
+     */
+    private void applyInstanceHits() {
+        for (MarkovVertex v : this.getVertices()) {
+            v.applyInstanceHitsToTotalHits();
+        } // FOR
+        for (MarkovEdge e : this.getEdges()) {
+            e.applyInstanceHitsToTotalHits();
+        } // FOR
+    }
 
     /**
      * Calculate vertex probabilities
@@ -1,6 +1,8 @@
 package edu.brown.markov;
 
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -33,6 +35,12 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
     private final PartitionSet all_partitions;
     private MarkovEstimate markov_est;
     
+    /**
+     * If this is not null, then we will write the new probabilities into these 
+     * shadow vertices instead of the real vertices in the graph
+     */
+    private Map<MarkovVertex, MarkovVertex> shadows;
+    
     public MarkovProbabilityCalculator(MarkovGraph markov, PartitionSet all_partitions) {
         super(markov, TraverseOrder.LONGEST_PATH, Direction.REVERSE);
         this.all_partitions = all_partitions;
@@ -52,6 +60,39 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
         this.traverse(((MarkovGraph)this.getGraph()).getCommitVertex());
     }
     
+    /**
+     * Calculate the probabilities for all of the vertices in the graph without
+     * modifying them. Returns a map from each vertex that we visited to a 
+     * shadow vertex that contains its new probabilities.
+     * @return
+     */
+    public Map<MarkovVertex, MarkovVertex> calculateShadows() {
+        Map<MarkovVertex, MarkovVertex> ret = new IdentityHashMap<MarkovVertex, MarkovVertex>();
+        this.shadows = ret;
+        try {
+            this.calculate(null);
+        } finally {
+            this.shadows = null;
+        }
+        return (ret);
+    }
+    
+    /**
+     * Returns the vertex that holds the probabilities that we are computing
+     * for the given vertex. 
+     * @param v
+     * @return
+     */
+    private MarkovVertex getProbabilities(MarkovVertex v) {
+        if (this.shadows == null) return (v);
+        MarkovVertex shadow = this.shadows.get(v);
+        if (shadow == null) {
+            shadow = v.createShadow();
+            this.shadows.put(v, shadow);
+        }
+        return (shadow);
+    }
+    
     @Override
     protected void callback_first(MarkovVertex element) {
         super.callback_first(element);
@@ -74,7 +115,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
     protected void callback(MarkovVertex element) {
         MarkovGraph markov = (MarkovGraph)this.getGraph();
         // HACK
-        final DynamicTransactionEstimate est = (this.markov_est != null ? this.markov_est : element);
+        final DynamicTransactionEstimate est = (this.markov_est != null ? this.markov_est : this.getProbabilities(element));
         final Type vtype = element.getType();
         
         if (debug.val) {
@@ -119,6 +160,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                 MarkovVertex successor = markov.getDest(e);
                 assert(successor != null) :
                     "Null successor for " + e.debug(markov);
+                final MarkovVertex successorProbs = this.getProbabilities(successor);
 //                assert(successor.isSinglePartitionProbabilitySet()) :
 //                    "Setting " + element + " BEFORE " + successor;
                 assert(successor.isStartVertex() == false) :
@@ -141,7 +183,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                 // We need to have seen at least this number of hits before we will use a 
                 // different probability that a transaction could abort
                 if (element.getTotalHits() >= MarkovGraph.MIN_HITS_FOR_NO_ABORT) {
-                    est.addAbortProbability(edgeProbability * successor.getAbortProbability());
+                    est.addAbortProbability(edgeProbability * successorProbs.getAbortProbability());
                 } else {
                     est.setAbortProbability(1.0f);
                 }
@@ -153,11 +195,11 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                         LOG.trace(String.format("****** PARTITION %02d [accessed=%s]",
                                   partition, accessed));
                     
-                    assert(successor.isDoneProbabilitySet(partition)) : 
+                    assert(successorProbs.isDoneProbabilitySet(partition)) : 
                         "Setting " + element + " BEFORE " + successor;
 //                    assert(successor.isReadOnlyProbabilitySet(partition)) : 
 //                        "Setting " + element + " BEFORE " + successor;
-                    assert(successor.isWriteProbabilitySet(partition)) : 
+                    assert(successorProbs.isWriteProbabilitySet(partition)) : 
                         "Setting " + element + " BEFORE " + successor;
                     
                     // The successor accesses this partition
@@ -184,7 +226,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                                 LOG.debug(String.format("%s does not modify partition %d. " +
                                 		  "Setting WRITE probability based on children",
                                           element, partition));
-                            est.addWriteProbability(partition, edgeProbability * successor.getWriteProbability(partition));
+                            est.addWriteProbability(partition, edgeProbability * successorProbs.getWriteProbability(partition));
                         }
                     }
                     // This successor doesn't access this partition, so we are going to use 
@@ -196,7 +238,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                         // DONE
                         before = est.getDoneProbability(partition);
                         try {
-                            est.addDoneProbability(partition, (edgeProbability * successor.getDoneProbability(partition)));
+                            est.addDoneProbability(partition, (edgeProbability * successorProbs.getDoneProbability(partition)));
                         } catch (Throwable ex) {
                             LOG.warn(String.format("Failed to set FINISH probability for %s [partition=%d / edge=%s / successor=%s / before=%f]",
                                                    est, partition, e, successor, before), ex);
@@ -204,7 +246,7 @@ public class MarkovProbabilityCalculator extends VertexTreeWalker<MarkovVertex,
                         // WRITE
                         before = est.getWriteProbability(partition);
                         try {
-                            est.addWriteProbability(partition, (edgeProbability * successor.getWriteProbability(partition)));
+                            est.addWriteProbability(partition, (edgeProbability * successorProbs.getWriteProbability(partition)));
                         } catch (Throwable ex) {
                             LOG.warn(String.format("Failed to set WRITE probability for %s [partition=%d / edge=%s / successor=%s / before=%f]",
                                                    est, partition, e, successor, before), ex);
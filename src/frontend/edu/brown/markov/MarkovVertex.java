@@ -150,8 +150,10 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
 
     /**
      * Mapping from Probability type to another map from partition id
+     * This is volatile so that a new table can be swapped in by another thread
+     * @see MarkovVertex#publishProbabilities(MarkovVertex)
      */
-    public float probabilities[][];
+    public volatile float probabilities[][];
     
     // ----------------------------------------------------------------------------
     // TRANSIENT DATA MEMBERS
@@ -563,6 +565,27 @@ public class MarkovVertex extends AbstractVertex implements MarkovHitTrackable,
         } // FOR
     }
     
+    /**
+     * Create a new vertex with empty probability tables that can be used to
+     * compute new probabilities for this vertex without modifying this vertex's
+     * current tables. The shadow vertex should never be added to a graph.
+     * @return
+     */
+    protected MarkovVertex createShadow() {
+        return (new MarkovVertex((Statement)this.getCatalogItem(), this.type));
+    }
+    
+    /**
+     * Replace this vertex's probability tables with the tables from
+     * the given shadow vertex. Anybody that reads this vertex's probabilities
+     * will either see the old tables or the new ones, but never a mix of both.
+     * @param shadow
+     */
+    protected void publishProbabilities(MarkovVertex shadow) {
+        assert(shadow != this);
+        this.probabilities = shadow.probabilities;
+    }
+    
     // ----------------------------------------------------------------------------
     // SINGLE-SITED PROBABILITY
     // ----------------------------------------------------------------------------
@@ -23,6 +23,7 @@ import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
 import org.voltdb.plannodes.AggregatePlanNode;
 import org.voltdb.plannodes.DistinctPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.LimitPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
@@ -128,8 +129,9 @@ public abstract class PlanOptimizerUtil {
                         if (debug.val)
                             LOG.debug("Updating the list of tables joined at " + element);
 
-                        // We don't NestLoopPlanNode for now
+                        // We don't NestLoopPlanNode or HashJoinPlanNode for now
                         assert ((element instanceof NestLoopPlanNode) == false);
+                        assert ((element instanceof HashJoinPlanNode) == false);
 
                         // Get target table of inline scan
                         Collection<AbstractScanPlanNode> inline_nodes = element.getInlinePlanNodes(AbstractScanPlanNode.class);
@@ -875,7 +877,7 @@ public abstract class PlanOptimizerUtil {
         // NEST LOOP
         // --------------------------------------------
         if (node.getChildPlanNodeCount() > 1) {
-            assert (node instanceof NestLoopPlanNode);
+            assert (node instanceof NestLoopPlanNode || node instanceof HashJoinPlanNode);
             inner_node = node.getChild(1);
             if (debug.val)
                 LOG.debug("Calculating INNER offsets from child node: " + inner_node);
@@ -1102,7 +1104,7 @@ public abstract class PlanOptimizerUtil {
         new PlanNodeTreeWalker(false) {
             @Override
             protected void callback(AbstractPlanNode element) {
-                if (element instanceof NestLoopPlanNode || element instanceof NestLoopIndexPlanNode) {
+                if (element instanceof NestLoopPlanNode || element instanceof NestLoopIndexPlanNode || element instanceof HashJoinPlanNode) {
                     // Make sure the column reference offsets of the output
                     // column are consecutive
                     // If it doesn't match, then we'll have to make a new
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections15.set.ListOrderedSet;
 import org.apache.log4j.Logger;
@@ -33,6 +34,7 @@ import org.voltdb.plannodes.AbstractScanPlanNode;
 import org.voltdb.plannodes.AggregatePlanNode;
 import org.voltdb.plannodes.DeletePlanNode;
 import org.voltdb.plannodes.DistinctPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.InsertPlanNode;
 import org.voltdb.plannodes.LimitPlanNode;
@@ -89,26 +91,26 @@ public abstract class PlanNodeUtil {
     /**
      * PlanFragmentId -> AbstractPlanNode
      */
-    private static final Map<String, AbstractPlanNode> CACHE_DESERIALIZE_FRAGMENT = new HashMap<String, AbstractPlanNode>();
+    private static final Map<String, AbstractPlanNode> CACHE_DESERIALIZE_FRAGMENT = new ConcurrentHashMap<String, AbstractPlanNode>();
 
     /**
      * Procedure.Statement -> AbstractPlanNode
      */
-    private static final Map<String, AbstractPlanNode> CACHE_DESERIALIZE_SP_STATEMENT = new HashMap<String, AbstractPlanNode>();
-    private static final Map<String, AbstractPlanNode> CACHE_DESERIALIZE_MP_STATEMENT = new HashMap<String, AbstractPlanNode>();
+    private static final Map<String, AbstractPlanNode> CACHE_DESERIALIZE_SP_STATEMENT = new ConcurrentHashMap<String, AbstractPlanNode>();
+    private static final Map<String, AbstractPlanNode> CACHE_DESERIALIZE_MP_STATEMENT = new ConcurrentHashMap<String, AbstractPlanNode>();
 
     /**
      * Statement -> Sorted List of PlanFragments
      */
-    private static final Map<Statement, List<PlanFragment>> CACHE_SORTED_SP_FRAGMENTS = new HashMap<Statement, List<PlanFragment>>();
-    private static final Map<Statement, List<PlanFragment>> CACHE_SORTED_MP_FRAGMENTS = new HashMap<Statement, List<PlanFragment>>();
+    private static final Map<Statement, List<PlanFragment>> CACHE_SORTED_SP_FRAGMENTS = new ConcurrentHashMap<Statement, List<PlanFragment>>();
+    private static final Map<Statement, List<PlanFragment>> CACHE_SORTED_MP_FRAGMENTS = new ConcurrentHashMap<Statement, List<PlanFragment>>();
 
-    private static final Map<Statement, Collection<Column>> CACHE_OUTPUT_COLUMNS = new HashMap<Statement, Collection<Column>>();
+    private static final Map<Statement, Collection<Column>> CACHE_OUTPUT_COLUMNS = new ConcurrentHashMap<Statement, Collection<Column>>();
 
     /**
-     * 
+     * StmtParameter -> Column (the Column can be null)
      */
-    private static final Map<String, String> CACHE_STMTPARAMETER_COLUMN = new HashMap<String, String>();
+    private static final Map<String, String> CACHE_STMTPARAMETER_COLUMN = Collections.synchronizedMap(new HashMap<String, String>());
 
     // ------------------------------------------------------------
     // UTILITY METHODS
@@ -236,7 +238,8 @@ public abstract class PlanNodeUtil {
             // JOINS
             // ---------------------------------------------------
             case NESTLOOP:
-            case NESTLOOPINDEX: {
+            case NESTLOOPINDEX:
+            case HASHJOIN: {
                 AbstractJoinPlanNode cast_node = (AbstractJoinPlanNode) node;
                 if (cast_node.getPredicate() != null)
                     exps.add(cast_node.getPredicate());
@@ -326,7 +329,8 @@ public abstract class PlanNodeUtil {
                     }
                     // JOINS
                     case NESTLOOP:
-                    case NESTLOOPINDEX: {
+                    case NESTLOOPINDEX:
+                    case HASHJOIN: {
                         AbstractJoinPlanNode cast_node = (AbstractJoinPlanNode) node;
                         exps.add(cast_node.getPredicate());
                         break;
@@ -762,6 +766,10 @@ public abstract class PlanNodeUtil {
         } else if (node instanceof NestLoopPlanNode) {
             // Nothing
 
+            // HashJoinPlanNode
+        } else if (node instanceof HashJoinPlanNode) {
+            // Nothing
+
         } else if (node instanceof OrderByPlanNode) {
             OrderByPlanNode cast_node = (OrderByPlanNode) node;
             sb.append(inner_spacer).append(PlanNodeUtil.debugOutputColumns("SortColumns", cast_node.getSortColumnGuids(), line_spacer));
@@ -1,5 +1,7 @@
 package edu.brown.pools;
 
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -10,11 +12,22 @@ import org.apache.commons.pool.PoolUtils;
 import org.apache.commons.pool.PoolableObjectFactory;
 import org.apache.log4j.Logger;
 
+import edu.brown.interfaces.DebugContext;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 
 /**
  * Based on org.apache.commons.pool.impl.StackObjectPool
+ * <P>
+ * If the pool is created with a magazine size greater than zero, then each thread
+ * gets its own small stack of idle objects (its "magazine"). Threads borrow from
+ * and return to their own magazine without any synchronization, and only touch the
+ * shared queue (the "depot") when their magazine is empty or full. In this mode
+ * the cap on sleeping instances only applies to the depot, so the total
+ * number of idle objects can be up to maxIdle + (# of threads * magazineSize).
+ * The magazines of threads that have died are drained back into the depot
+ * the next time that a new thread registers with the pool or the pool's
+ * stats are computed.
  * @author pavlo
  * @param <T>
  */
@@ -63,6 +76,58 @@ public class FastObjectPool<T> extends BaseObjectPool {
      */
     private final AtomicInteger numInactive = new AtomicInteger(0);
     
+    /**
+     * The max number of objects in each thread's magazine.
+     * If this is zero, then all threads go directly to the shared pool.
+     */
+    private final int magazineSize;
+    
+    /**
+     * Each thread's local stack of idle objects
+     */
+    private final ThreadLocal<Magazine> magazine;
+    
+    /**
+     * All of the magazines that have been created for this pool.
+     * This is used to compute the active/idle counts and to find the
+     * magazines of dead threads so that we can reclaim them.
+     */
+    private final Queue<Magazine> magazines = new ConcurrentLinkedQueue<Magazine>();
+    
+    /**
+     * A stack of idle objects that is only ever used by a single thread.
+     * The counters are only updated by the owning thread, so other
+     * threads may see slightly stale values when computing stats.
+     */
+    private final class Magazine {
+        private final WeakReference<Thread> owner;
+        private final Object items[];
+        private int size = 0;
+        private int numActive = 0;
+        
+        private Magazine(Thread owner, int capacity) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.items = new Object[capacity];
+        }
+        /**
+         * Seeing that the owner is no longer alive guarantees that we
+         * also see all of the changes that it made to this magazine.
+         */
+        private boolean isOrphaned() {
+            Thread t = this.owner.get();
+            return (t == null || t.isAlive() == false);
+        }
+        @SuppressWarnings("unchecked")
+        private T pop() {
+            T obj = (T)this.items[--this.size];
+            this.items[this.size] = null;
+            return (obj);
+        }
+        private void push(Object obj) {
+            this.items[this.size++] = obj;
+        }
+    } // CLASS
+    
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
     // ----------------------------------------------------------------------------
@@ -76,9 +141,68 @@ public class FastObjectPool<T> extends BaseObjectPool {
     }
 
     public FastObjectPool(PoolableObjectFactory factory, int maxIdle, int initIdleCapacity) {
+        this(factory, maxIdle, initIdleCapacity, 0);
+    }
+    
+    /**
+     * @param factory
+     * @param maxIdle The max number of idle objects to keep in the shared pool
+     * @param initIdleCapacity
+     * @param magazineSize The max number of idle objects to cache per thread.
+     *                     If this is zero, then thread-local caching is disabled. 
+     */
+    public FastObjectPool(PoolableObjectFactory factory, int maxIdle, int initIdleCapacity, int magazineSize) {
         this.factory = factory;
         maxSleeping = (maxIdle < 0 ? DEFAULT_MAX_SLEEPING : maxIdle);
         pool = new ConcurrentLinkedQueue<T>();
+        
+        this.magazineSize = Math.max(0, magazineSize);
+        if (this.magazineSize > 0) {
+            this.magazine = new ThreadLocal<Magazine>() {
+                @Override
+                protected Magazine initialValue() {
+                    FastObjectPool.this.pruneMagazines();
+                    Magazine m = new Magazine(Thread.currentThread(), FastObjectPool.this.magazineSize);
+                    FastObjectPool.this.magazines.add(m);
+                    return (m);
+                }
+            };
+        } else {
+            this.magazine = null;
+        }
+    }
+    
+    /**
+     * Returns the max number of idle objects that each thread will cache locally.
+     * If this is zero, then thread-local caching is disabled.
+     */
+    public int getMagazineSize() {
+        return (this.magazineSize);
+    }
+    
+    /**
+     * Get the next idle object for the current thread. If the thread's magazine
+     * is empty, then we will move up to half a magazine's worth of objects
+     * out of the shared pool into it. Returns null if there are no idle objects. 
+     */
+    private T pollIdle(Magazine m) {
+        if (m == null) {
+            T obj = this.pool.poll();
+            if (obj != null) this.numInactive.decrementAndGet();
+            return (obj);
+        }
+        if (m.size == 0) {
+            int refill = Math.max(1, this.magazineSize / 2);
+            int moved = 0;
+            T obj = null;
+            while (moved < refill && (obj = this.pool.poll()) != null) {
+                m.push(obj);
+                moved++;
+            } // WHILE
+            if (moved == 0) return (null);
+            this.numInactive.addAndGet(-moved);
+        }
+        return (m.pop());
     }
     
     @SuppressWarnings("unchecked")
@@ -86,7 +210,8 @@ public class FastObjectPool<T> extends BaseObjectPool {
     public T borrowObject() throws Exception {
         assertOpen();
         boolean newlyCreated = false;
-        T obj = this.pool.poll();
+        Magazine m = (this.magazine != null ? this.magazine.get() : null);
+        T obj = this.pollIdle(m);
         if (obj == null) {
             if (null == this.factory) {
                 throw new NoSuchElementException();
@@ -98,9 +223,6 @@ public class FastObjectPool<T> extends BaseObjectPool {
                 newlyCreated = true;
             }
         }
-        else {
-            this.numInactive.decrementAndGet();
-        }
         assert(obj != null);
         try {
             this.factory.activateObject(obj);
@@ -123,7 +245,11 @@ public class FastObjectPool<T> extends BaseObjectPool {
                     ex.getMessage());
             }
         }
-        this.numActive.incrementAndGet();
+        if (m != null) {
+            m.numActive++;
+        } else {
+            this.numActive.incrementAndGet();
+        }
         
         if (debug.val)
             LOG.debug(String.format("Retrieved %s from ObjectPool [hashCode=%d]",
@@ -146,6 +272,11 @@ public class FastObjectPool<T> extends BaseObjectPool {
             success = false;
         }
 
+        if (this.magazine != null) {
+            this.returnToMagazine(this.magazine.get(), t, success);
+            return;
+        }
+
         boolean shouldDestroy = !success;
         this.numActive.decrementAndGet();
         int poolSize = this.numInactive.incrementAndGet();
@@ -172,9 +303,79 @@ public class FastObjectPool<T> extends BaseObjectPool {
         }
     }
     
+    /**
+     * Put a passivated object back into the current thread's magazine. If the
+     * magazine is full, then we will first move half of it out to the shared pool.
+     * Any objects that do not fit in the shared pool are destroyed.
+     */
+    private void returnToMagazine(Magazine m, T t, boolean success) {
+        m.numActive--;
+        if (success == false) {
+            this.destroy(t);
+            return;
+        }
+        if (m.size == this.magazineSize) {
+            int spill = Math.max(1, this.magazineSize / 2);
+            for (int i = 0; i < spill; i++) {
+                T obj = m.pop();
+                if (this.numInactive.incrementAndGet() > maxSleeping) {
+                    this.numInactive.decrementAndGet();
+                    this.destroy(obj);
+                } else {
+                    this.pool.offer(obj);
+                }
+            } // FOR
+        }
+        if (debug.val)
+            LOG.debug(String.format("Returning %s back to ObjectPool [hashCode=%d]",
+                      t.getClass().getSimpleName(), t.hashCode()));
+        m.push(t);
+    }
+    
+    /**
+     * Remove the magazines of any threads that are no longer alive. Their idle
+     * objects are moved into the shared pool (or destroyed if it is full), and
+     * their active counts are folded into the shared counter since those
+     * objects may still be returned by other threads. 
+     */
+    private void pruneMagazines() {
+        Iterator<Magazine> it = this.magazines.iterator();
+        while (it.hasNext()) {
+            Magazine m = it.next();
+            if (m.isOrphaned() == false) continue;
+            // Only one thread gets to reclaim each magazine
+            if (this.magazines.remove(m) == false) continue;
+            if (debug.val)
+                LOG.debug(String.format("Reclaiming magazine from dead thread [idle=%d, active=%d]",
+                          m.size, m.numActive));
+            this.numActive.addAndGet(m.numActive);
+            while (m.size > 0) {
+                T obj = m.pop();
+                if (this.numInactive.incrementAndGet() > maxSleeping) {
+                    this.numInactive.decrementAndGet();
+                    this.destroy(obj);
+                } else {
+                    this.pool.offer(obj);
+                }
+            } // WHILE
+        } // WHILE
+    }
+    
+    private void destroy(Object obj) {
+        try {
+            this.factory.destroyObject(obj);
+        } catch(Exception e) {
+            // ignored
+        }
+    }
+    
     @Override
     public void invalidateObject(Object obj) throws Exception {
-        this.numActive.decrementAndGet();
+        if (this.magazine != null) {
+            this.magazine.get().numActive--;
+        } else {
+            this.numActive.decrementAndGet();
+        }
         if (null != factory) {
             this.factory.destroyObject(obj);
         }
@@ -187,7 +388,12 @@ public class FastObjectPool<T> extends BaseObjectPool {
      * @return the number of instances currently idle in this pool
      */
     public int getNumIdle() {
-        return this.numInactive.get();
+        if (this.magazine != null) this.pruneMagazines();
+        int total = this.numInactive.get();
+        for (Magazine m : this.magazines) {
+            total += m.size;
+        } // FOR
+        return (total);
     }
 
     /**
@@ -196,15 +402,28 @@ public class FastObjectPool<T> extends BaseObjectPool {
      * @return the number of instances currently borrowed from this pool
      */
     public int getNumActive() {
-        return this.numActive.get();
+        if (this.magazine != null) this.pruneMagazines();
+        int total = this.numActive.get();
+        for (Magazine m : this.magazines) {
+            total += m.numActive;
+        } // FOR
+        return (total);
     }
 
     /**
      * Clears any objects sitting idle in the pool. Silently swallows any
      * exceptions thrown by {@link PoolableObjectFactory#destroyObject(Object)}.
+     * If thread-local caching is enabled, then this only clears the
+     * current thread's magazine. Other threads keep their idle objects.
      */
     public void clear() {
         if (null != factory) {
+            if (this.magazine != null) {
+                Magazine m = this.magazine.get();
+                while (m.size > 0) {
+                    this.destroy(m.pop());
+                } // WHILE
+            }
             T t = null;
             while ((t = this.pool.poll()) != null) {
                 try {
@@ -226,5 +445,24 @@ public class FastObjectPool<T> extends BaseObjectPool {
     public PoolableObjectFactory getFactory() {
         return this.factory;
     }
+    
+    // ----------------------------------------------------------------------------
+    // DEBUG METHODS
+    // ----------------------------------------------------------------------------
+
+    public class Debug implements DebugContext {
+        public int getMagazineCount() {
+            return (magazines.size());
+        }
+    }
+    
+    private FastObjectPool<T>.Debug cachedDebugContext;
+    public FastObjectPool<T>.Debug getDebugContext() {
+        if (this.cachedDebugContext == null) {
+            // We don't care if we're thread-safe here...
+            this.cachedDebugContext = new Debug();
+        }
+        return (this.cachedDebugContext);
+    }
 
 }
@@ -48,6 +48,15 @@ public class TypedObjectPool<T extends Poolable> extends FastObjectPool<T> {
         super(factory, idle);
     }
 
+    /**
+     * @param factory
+     * @param idle
+     * @param magazineSize The number of idle objects to cache per thread (zero to disable)
+     */
+    public TypedObjectPool(TypedPoolableObjectFactory<T> factory, int idle, int magazineSize) {
+        super(factory, idle, 0, magazineSize);
+    }
+
     @Override
     public T borrowObject() throws Exception {
         T t = (T) super.borrowObject();
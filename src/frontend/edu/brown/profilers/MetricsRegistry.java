@@ -0,0 +1,433 @@
+package edu.brown.profilers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * A set of named counters, gauges, and histograms that are cheap enough to
+ * leave enabled all of the time. Unlike the AbstractProfiler classes, nothing
+ * here ever takes a lock or allocates memory when it is updated. Each counter
+ * and histogram is split into stripes that are picked by the updating thread's
+ * id so that the different threads at a site do not fight over the same
+ * cache line. The stripes are only added together when somebody takes a snapshot.
+ * <P>
+ * The metrics should be looked up once (e.g., in a constructor) and then
+ * kept in a field, since the lookup by name is not free.
+ */
+public class MetricsRegistry {
+    private static final Logger LOG = Logger.getLogger(MetricsRegistry.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug);
+    }
+
+    public enum MetricType {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM;
+    }
+
+    /**
+     * The number of longs between each stripe so that they
+     * end up on different cache lines.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * The number of buckets in a Histogram. Bucket i holds the values
+     * that need exactly i bits (i.e., bucket zero is only for zero).
+     */
+    public static final int NUM_BUCKETS = Long.SIZE + 1;
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    // ----------------------------------------------------------------------------
+    // METRICS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static final class Counter {
+        private final AtomicLongArray cells;
+        private final int mask;
+
+        private Counter(int stripes) {
+            this.cells = new AtomicLongArray(stripes * PADDING);
+            this.mask = stripes - 1;
+        }
+        public void increment() {
+            this.add(1);
+        }
+        public void add(long delta) {
+            int stripe = (int)Thread.currentThread().getId() & this.mask;
+            this.cells.addAndGet(stripe * PADDING, delta);
+        }
+        public long get() {
+            long total = 0;
+            for (int i = 0, cnt = this.cells.length(); i < cnt; i += PADDING) {
+                total += this.cells.get(i);
+            } // FOR
+            return (total);
+        }
+    } // CLASS
+
+    /**
+     * A value that is computed when a snapshot is taken, such as the size of a queue.
+     */
+    public interface Gauge {
+        public long getValue();
+    }
+
+    /**
+     * Counts values in buckets whose sizes grow by powers of two. This means that
+     * the percentiles that it reports are only accurate to within a factor of two,
+     * but recording a value is just a couple of atomic increments.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets;
+        private final AtomicLongArray sums;
+        private final AtomicLong max = new AtomicLong(0);
+        private final int mask;
+        private final int stride;
+
+        private Histogram(int stripes) {
+            this.stride = NUM_BUCKETS + (PADDING - (NUM_BUCKETS % PADDING));
+            this.buckets = new AtomicLongArray(stripes * this.stride);
+            this.sums = new AtomicLongArray(stripes * PADDING);
+            this.mask = stripes - 1;
+        }
+
+        /**
+         * Record a new value. Negative values are counted as zero.
+         * @param value
+         */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            int stripe = (int)Thread.currentThread().getId() & this.mask;
+            this.buckets.incrementAndGet((stripe * this.stride) + getBucket(value));
+            this.sums.addAndGet(stripe * PADDING, value);
+
+            // The max only changes a few times, so this is usually just a read
+            long current = this.max.get();
+            while (value > current) {
+                if (this.max.compareAndSet(current, value)) break;
+                current = this.max.get();
+            } // WHILE
+        }
+
+        /**
+         * Returns the number of values in each bucket
+         * @return
+         */
+        public long[] getBuckets() {
+            long totals[] = new long[NUM_BUCKETS];
+            for (int offset = 0, cnt = this.buckets.length(); offset < cnt; offset += this.stride) {
+                for (int i = 0; i < NUM_BUCKETS; i++) {
+                    totals[i] += this.buckets.get(offset + i);
+                } // FOR
+            } // FOR
+            return (totals);
+        }
+        public long getSum() {
+            long total = 0;
+            for (int i = 0, cnt = this.sums.length(); i < cnt; i += PADDING) {
+                total += this.sums.get(i);
+            } // FOR
+            return (total);
+        }
+        public long getMax() {
+            return (this.max.get());
+        }
+    } // CLASS
+
+    /**
+     * Returns the Histogram bucket for the given non-negative value
+     * @param value
+     * @return
+     */
+    public static int getBucket(long value) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Returns the largest value that can be stored in the given Histogram bucket
+     * @param bucket
+     * @return
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket >= Long.SIZE - 1) return (Long.MAX_VALUE);
+        return ((1l << bucket) - 1);
+    }
+
+    /**
+     * Returns the upper bound of the bucket that contains the given percentile (0.0 - 1.0)
+     * @param buckets
+     * @param percentile
+     * @return
+     */
+    public static long getPercentile(long buckets[], double percentile) {
+        long total = 0;
+        for (long b : buckets) total += b;
+        if (total == 0) return (0);
+
+        long target = (long)Math.ceil(total * percentile);
+        if (target < 1) target = 1;
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) return (getBucketUpperBound(i));
+        } // FOR
+        return (getBucketUpperBound(buckets.length - 1));
+    }
+
+    // ----------------------------------------------------------------------------
+    // SNAPSHOTS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * The values of a single metric at the time that a snapshot was taken.
+     * For counters and gauges, only VALUE and INTERVAL are set. For histograms,
+     * VALUE is the number of values that were recorded.
+     */
+    public static final class Row {
+        public final String name;
+        public final MetricType type;
+        public final long value;
+        public final long interval;
+        public final double mean;
+        public final long p50;
+        public final long p99;
+        public final long max;
+
+        private Row(String name, MetricType type, long value, long interval,
+                    double mean, long p50, long p99, long max) {
+            this.name = name;
+            this.type = type;
+            this.value = value;
+            this.interval = interval;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+        @Override
+        public String toString() {
+            return String.format("%s[%s]=%d", this.name, this.type, this.value);
+        }
+    } // CLASS
+
+    /**
+     * All of the metrics in the registry at a point in time.
+     */
+    public static final class Snapshot {
+        public final long timestamp;
+        public final List<Row> rows;
+
+        private Snapshot(long timestamp, List<Row> rows) {
+            this.timestamp = timestamp;
+            this.rows = Collections.unmodifiableList(rows);
+        }
+        public Row get(String name) {
+            for (Row row : this.rows) {
+                if (row.name.equals(name)) return (row);
+            } // FOR
+            return (null);
+        }
+    } // CLASS
+
+    // ----------------------------------------------------------------------------
+    // INSTANCE MEMBERS
+    // ----------------------------------------------------------------------------
+
+    private final int stripes;
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+    /**
+     * The value of each metric in the last snapshot, used to compute the INTERVAL column
+     */
+    private final Map<String, Long> lastValues = new HashMap<String, Long>();
+    private volatile Snapshot lastSnapshot = null;
+
+    public MetricsRegistry() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes The number of stripes per metric. This will be rounded up to the next power of two.
+     */
+    public MetricsRegistry(int stripes) {
+        assert(stripes > 0);
+        int s = 1;
+        while (s < stripes) s <<= 1;
+        this.stripes = s;
+    }
+
+    /**
+     * Get the Counter with the given name, creating it if it does not exist.
+     * @param name
+     * @return
+     */
+    public Counter counter(String name) {
+        Counter c = this.counters.get(name);
+        if (c == null) {
+            Counter newCounter = new Counter(this.stripes);
+            c = this.counters.putIfAbsent(name, newCounter);
+            if (c == null) c = newCounter;
+        }
+        return (c);
+    }
+
+    /**
+     * Get the Histogram with the given name, creating it if it does not exist.
+     * @param name
+     * @return
+     */
+    public Histogram histogram(String name) {
+        Histogram h = this.histograms.get(name);
+        if (h == null) {
+            Histogram newHistogram = new Histogram(this.stripes);
+            h = this.histograms.putIfAbsent(name, newHistogram);
+            if (h == null) h = newHistogram;
+        }
+        return (h);
+    }
+
+    /**
+     * Register a Gauge with the given name. This will replace any
+     * existing Gauge with the same name.
+     * @param name
+     * @param gauge
+     */
+    public void gauge(String name, Gauge gauge) {
+        this.gauges.put(name, gauge);
+    }
+
+    public int getStripeCount() {
+        return (this.stripes);
+    }
+
+    /**
+     * Collect the current values of all of the metrics. The new snapshot
+     * will be returned by getLastSnapshot() until the next one is taken.
+     * @return
+     */
+    public synchronized Snapshot snapshot() {
+        List<Row> rows = new ArrayList<Row>();
+        for (Map.Entry<String, Counter> e : this.counters.entrySet()) {
+            long value = e.getValue().get();
+            rows.add(new Row(e.getKey(), MetricType.COUNTER, value, this.computeInterval(e.getKey(), value),
+                             0d, 0l, 0l, 0l));
+        } // FOR
+        for (Map.Entry<String, Gauge> e : this.gauges.entrySet()) {
+            long value = e.getValue().getValue();
+            rows.add(new Row(e.getKey(), MetricType.GAUGE, value, this.computeInterval(e.getKey(), value),
+                             0d, 0l, 0l, 0l));
+        } // FOR
+        for (Map.Entry<String, Histogram> e : this.histograms.entrySet()) {
+            Histogram h = e.getValue();
+            long buckets[] = h.getBuckets();
+            long count = 0;
+            for (long b : buckets) count += b;
+            double mean = (count > 0 ? h.getSum() / (double)count : 0d);
+            rows.add(new Row(e.getKey(), MetricType.HISTOGRAM, count, this.computeInterval(e.getKey(), count),
+                             mean, getPercentile(buckets, 0.50), getPercentile(buckets, 0.99), h.getMax()));
+        } // FOR
+        Collections.sort(rows, new Comparator<Row>() {
+            @Override
+            public int compare(Row r0, Row r1) {
+                return r0.name.compareTo(r1.name);
+            }
+        });
+        this.lastSnapshot = new Snapshot(System.currentTimeMillis(), rows);
+        return (this.lastSnapshot);
+    }
+
+    private long computeInterval(String name, long value) {
+        Long last = this.lastValues.put(name, value);
+        return (last != null ? value - last.longValue() : value);
+    }
+
+    /**
+     * Returns the last snapshot that was taken. If there hasn't been
+     * one yet, then a new one will be taken.
+     * @return
+     */
+    public Snapshot getLastSnapshot() {
+        Snapshot s = this.lastSnapshot;
+        if (s == null) s = this.snapshot();
+        return (s);
+    }
+
+    // ----------------------------------------------------------------------------
+    // EXPORT
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Append the given snapshot to a file in the Graphite plain-text format
+     * (i.e., one "<prefix>.<metric> <value> <seconds>" line per value).
+     * @param file
+     * @param prefix
+     * @param snapshot
+     * @throws IOException
+     */
+    public static void export(File file, String prefix, Snapshot snapshot) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && parent.exists() == false) parent.mkdirs();
+        Writer out = new BufferedWriter(new FileWriter(file, true));
+        try {
+            export(out, prefix, snapshot);
+        } finally {
+            out.close();
+        }
+        if (debug.val)
+            LOG.debug(String.format("Wrote %d metrics to %s", snapshot.rows.size(), file));
+    }
+
+    public static void export(Writer out, String prefix, Snapshot snapshot) throws IOException {
+        long seconds = snapshot.timestamp / 1000;
+        for (Row row : snapshot.rows) {
+            String name = prefix + "." + row.name;
+            switch (row.type) {
+                case HISTOGRAM:
+                    writeLine(out, name + ".count", Long.toString(row.value), seconds);
+                    writeLine(out, name + ".mean", String.format("%.2f", row.mean), seconds);
+                    writeLine(out, name + ".p50", Long.toString(row.p50), seconds);
+                    writeLine(out, name + ".p99", Long.toString(row.p99), seconds);
+                    writeLine(out, name + ".max", Long.toString(row.max), seconds);
+                    break;
+                default:
+                    writeLine(out, name, Long.toString(row.value), seconds);
+            } // SWITCH
+        } // FOR
+    }
+
+    private static void writeLine(Writer out, String name, String value, long seconds) throws IOException {
+        out.write(name);
+        out.write(' ');
+        out.write(value);
+        out.write(' ');
+        out.write(Long.toString(seconds));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,370 @@
+package edu.brown.profilers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import edu.brown.hstore.HStoreThreadManager;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.StringUtil;
+
+/**
+ * Records timestamped spans for a sample of individual transactions so that we
+ * can see where a single slow distributed transaction spent its time across
+ * all of the sites in the cluster. Unlike the TransactionProfiler, nothing gets
+ * aggregated here.
+ * <P>
+ * Whether a txn is sampled is determined only by its txnId, so every HStoreSite makes
+ * the same decision for the same txn without having to send anything extra in the
+ * coordinator messages. Each thread writes its spans into its own fixed-size ring
+ * buffer, so recording never blocks and old spans are overwritten once the buffer fills.
+ * <P>
+ * Each HStoreSite writes out its spans as a Chrome trace file (chrome://tracing) when
+ * it shuts down. The main() method merges the files from multiple sites into a single
+ * trace and prints out the slowest sampled transactions.
+ */
+public class TransactionTracer {
+    private static final Logger LOG = Logger.getLogger(TransactionTracer.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * The different parts of a txn's life that we record spans for.
+     */
+    public enum Span {
+        /** Waiting in the HStoreSite's init queue before being added to the lock queues */
+        INIT_QUEUE,
+        /** Waiting in a partition's lock queue */
+        LOCK_WAIT,
+        /** Executing the txn's control code at its base partition */
+        EXEC,
+        /** Executing a WorkFragment at a partition */
+        WORK,
+        /** Waiting for all of the partitions to respond to the 2PC PREPARE (base partition only) */
+        PREPARE_WAIT,
+        /** Processing the 2PC PREPARE at a partition */
+        PREPARE,
+        /** Processing the 2PC FINISH at a partition */
+        FINISH,
+        /** Waiting for the txn's entry to be flushed to the command log */
+        COMMAND_LOG,
+        ;
+        private static final Span values[] = values();
+    }
+
+    /**
+     * Value returned by start() when a txn is not being sampled.
+     */
+    public static final long NOT_SAMPLED = 0l;
+
+    /**
+     * A single-writer ring buffer of spans for one thread.
+     */
+    private static final class TraceBuffer {
+        private final String threadName;
+        private final long threadId;
+        private final long txnIds[];
+        private final long starts[];
+        private final long stops[];
+        private final int partitions[];
+        private final byte spans[];
+        /** The total number of spans ever written to this buffer */
+        private final AtomicLong count = new AtomicLong(0);
+
+        private TraceBuffer(Thread thread, int capacity) {
+            this.threadName = thread.getName();
+            this.threadId = thread.getId();
+            this.txnIds = new long[capacity];
+            this.starts = new long[capacity];
+            this.stops = new long[capacity];
+            this.partitions = new int[capacity];
+            this.spans = new byte[capacity];
+        }
+
+        private void add(Span span, long txnId, int partition, long start, long stop) {
+            long c = this.count.get();
+            int idx = (int)(c % this.txnIds.length);
+            this.txnIds[idx] = txnId;
+            this.starts[idx] = start;
+            this.stops[idx] = stop;
+            this.partitions[idx] = partition;
+            this.spans[idx] = (byte)span.ordinal();
+            this.count.lazySet(c + 1);
+        }
+    } // CLASS
+
+    private final int site_id;
+    private final int sampling;
+    private final int bufferSize;
+    private final String outputDir;
+
+    /**
+     * The System.nanoTime() when this tracer was created and the matching
+     * wall-clock time. All of our spans are stored relative to the former.
+     */
+    private final long baseNanoTime;
+    private final long baseEpochMicros;
+
+    /**
+     * The number of milliseconds that we need to add to our clock
+     * to line it up with the other sites in the cluster.
+     */
+    private volatile long clockOffset = 0;
+
+    private final Queue<TraceBuffer> buffers = new ConcurrentLinkedQueue<TraceBuffer>();
+    private final ThreadLocal<TraceBuffer> localBuffer = new ThreadLocal<TraceBuffer>() {
+        @Override
+        protected TraceBuffer initialValue() {
+            TraceBuffer b = new TraceBuffer(Thread.currentThread(), bufferSize);
+            buffers.add(b);
+            return (b);
+        }
+    };
+
+    // ----------------------------------------------------------------------------
+    // INITIALIZATION
+    // ----------------------------------------------------------------------------
+
+    public TransactionTracer(int site_id, HStoreConf hstore_conf) {
+        this(site_id, hstore_conf.site.txn_trace_sampling, hstore_conf.site.txn_trace_buffer_size, hstore_conf.site.txn_trace_dir);
+    }
+
+    /**
+     * @param site_id
+     * @param sampling Trace one out of every N txns
+     * @param bufferSize The max number of spans to keep per thread
+     * @param outputDir Where to write the trace file when the site shuts down
+     */
+    public TransactionTracer(int site_id, int sampling, int bufferSize, String outputDir) {
+        assert(sampling > 0);
+        assert(bufferSize > 0);
+        this.site_id = site_id;
+        this.sampling = sampling;
+        this.bufferSize = bufferSize;
+        this.outputDir = outputDir;
+        this.baseNanoTime = System.nanoTime();
+        this.baseEpochMicros = System.currentTimeMillis() * 1000l;
+    }
+
+    /**
+     * Set the number of milliseconds that this site's clock is behind the
+     * reference site in the cluster.
+     * @param offset
+     */
+    public void setClockOffset(long offset) {
+        this.clockOffset = offset;
+    }
+
+    // ----------------------------------------------------------------------------
+    // RECORDING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true if the txn with the given id should be traced.
+     * Every site will return the same answer for the same txnId.
+     * @param txnId
+     * @return
+     */
+    public boolean isSampled(Long txnId) {
+        if (txnId == null) return (false);
+        long h = txnId.longValue() * 0x9E3779B97F4A7C15l;
+        return ((h >>> 33) % this.sampling == 0);
+    }
+
+    /**
+     * Start a new span for the given txn. Returns NOT_SAMPLED if the txn
+     * is not being traced, otherwise the timestamp to pass to stop().
+     * @param txnId
+     * @return
+     */
+    public long start(Long txnId) {
+        if (this.isSampled(txnId) == false) return (NOT_SAMPLED);
+        return (this.now());
+    }
+
+    /**
+     * Record a span for the given txn that began at the timestamp returned
+     * by start() and ends right now. Does nothing if start is NOT_SAMPLED.
+     * @param span
+     * @param txnId
+     * @param partition The partition that this span is for, or -1 for the whole site
+     * @param start
+     */
+    public void stop(Span span, Long txnId, int partition, long start) {
+        if (start == NOT_SAMPLED) return;
+        this.localBuffer.get().add(span, txnId.longValue(), partition, start, this.now());
+    }
+
+    private long now() {
+        // Add one so that we never return NOT_SAMPLED
+        return (System.nanoTime() - this.baseNanoTime + 1);
+    }
+
+    // ----------------------------------------------------------------------------
+    // EXPORT
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Write all of the spans that are currently in our buffers out to
+     * the given file in the Chrome trace event format.
+     * Returns the number of spans written.
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public int export(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && parent.exists() == false) parent.mkdirs();
+
+        long offset = this.baseEpochMicros + (this.clockOffset * 1000l);
+        String siteName = HStoreThreadManager.formatSiteName(this.site_id);
+        int total = 0;
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write("{\"traceEvents\":[\n");
+            out.write(String.format("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":%d,\"args\":{\"name\":%s}}",
+                                    this.site_id, JSONObject.quote(siteName)));
+            for (TraceBuffer b : this.buffers) {
+                out.write(String.format(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":%d,\"tid\":%d,\"args\":{\"name\":%s}}",
+                                        this.site_id, b.threadId, JSONObject.quote(b.threadName)));
+
+                // The owning thread may still be writing while we do this, so we
+                // skip anything that could have been overwritten while we were reading
+                long last = b.count.get();
+                long first = Math.max(0, last - b.txnIds.length);
+                int capacity = b.txnIds.length;
+                long txnIds[] = new long[capacity];
+                long starts[] = new long[capacity];
+                long stops[] = new long[capacity];
+                int partitions[] = new int[capacity];
+                byte spans[] = new byte[capacity];
+                for (long i = first; i < last; i++) {
+                    int idx = (int)(i % capacity);
+                    txnIds[idx] = b.txnIds[idx];
+                    starts[idx] = b.starts[idx];
+                    stops[idx] = b.stops[idx];
+                    partitions[idx] = b.partitions[idx];
+                    spans[idx] = b.spans[idx];
+                } // FOR
+                first = Math.max(first, b.count.get() - capacity + 1);
+
+                for (long i = first; i < last; i++) {
+                    int idx = (int)(i % capacity);
+                    out.write(String.format(",\n{\"name\":\"%s\",\"cat\":\"txn\",\"ph\":\"X\",\"pid\":%d,\"tid\":%d," +
+                                            "\"ts\":%d,\"dur\":%d,\"args\":{\"txnId\":%d,\"partition\":%d}}",
+                                            Span.values[spans[idx]].name(), this.site_id, b.threadId,
+                                            offset + (starts[idx] / 1000l),
+                                            Math.max(0, (stops[idx] - starts[idx]) / 1000l),
+                                            txnIds[idx], partitions[idx]));
+                    total++;
+                } // FOR
+            } // FOR
+            out.write("\n]}\n");
+        } finally {
+            out.close();
+        }
+        if (debug.val)
+            LOG.debug(String.format("Wrote %d txn trace spans to %s", total, file));
+        return (total);
+    }
+
+    /**
+     * Write out all of the spans to this site's trace file in the output directory.
+     */
+    public File export() throws IOException {
+        File file = new File(FileUtil.realpath(this.outputDir),
+                             String.format("txntrace-%s.json", HStoreThreadManager.formatSiteName(this.site_id)));
+        int total = this.export(file);
+        LOG.info(String.format("Wrote %d txn trace spans to %s", total, file));
+        return (file);
+    }
+
+    // ----------------------------------------------------------------------------
+    // MERGING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Combine the trace files written out by multiple HStoreSites into a single
+     * Chrome trace file and print out the sampled txns with the longest traces.
+     * <PRE>
+     * TransactionTracer &lt;output.json&gt; &lt;site-trace.json&gt; [&lt;site-trace.json&gt; ...]
+     * </PRE>
+     * @param vargs
+     * @throws Exception
+     */
+    public static void main(String[] vargs) throws Exception {
+        if (vargs.length < 2) {
+            System.err.println("USAGE: " + TransactionTracer.class.getSimpleName() +
+                               " <output> <input> [<input> ...]");
+            System.exit(1);
+        }
+        File output = new File(vargs[0]);
+        JSONArray merged = new JSONArray();
+        final Map<Long, long[]> txnExtents = new HashMap<Long, long[]>();
+        for (int i = 1; i < vargs.length; i++) {
+            JSONObject json = new JSONObject(FileUtil.readFile(vargs[i]));
+            JSONArray events = json.getJSONArray("traceEvents");
+            for (int j = 0, cnt = events.length(); j < cnt; j++) {
+                JSONObject event = events.getJSONObject(j);
+                merged.put(event);
+                if (event.getString("ph").equals("X") == false) continue;
+
+                // Keep track of the first and last timestamp of each txn
+                long txnId = event.getJSONObject("args").getLong("txnId");
+                long start = event.getLong("ts");
+                long stop = start + event.getLong("dur");
+                long extent[] = txnExtents.get(txnId);
+                if (extent == null) {
+                    txnExtents.put(txnId, new long[]{ start, stop });
+                } else {
+                    extent[0] = Math.min(extent[0], start);
+                    extent[1] = Math.max(extent[1], stop);
+                }
+            } // FOR
+        } // FOR
+
+        JSONObject json = new JSONObject();
+        json.put("traceEvents", merged);
+        FileUtil.writeStringToFile(output, json.toString());
+
+        List<Long> txnIds = new ArrayList<Long>(txnExtents.keySet());
+        Collections.sort(txnIds, new Comparator<Long>() {
+            @Override
+            public int compare(Long o1, Long o2) {
+                long e1[] = txnExtents.get(o1);
+                long e2[] = txnExtents.get(o2);
+                return Long.valueOf(e2[1] - e2[0]).compareTo(e1[1] - e1[0]);
+            }
+        });
+        Map<String, Object> m = new LinkedHashMap<String, Object>();
+        m.put("Output", output.getAbsolutePath());
+        m.put("Sampled Txns", txnIds.size());
+        for (int i = 0, cnt = Math.min(10, txnIds.size()); i < cnt; i++) {
+            long extent[] = txnExtents.get(txnIds.get(i));
+            m.put("Txn #" + txnIds.get(i), String.format("%.3f ms", (extent[1] - extent[0]) / 1000d));
+        } // FOR
+        System.out.println(StringUtil.formatMaps(m));
+    }
+}
@@ -150,6 +150,30 @@ public abstract class HistogramUtil {
         return (total);
     }
 
+    /**
+     * Return the smallest value in the histogram such that at least the given
+     * fraction of the samples are less than or equal to it (i.e., the nearest-rank
+     * percentile). Returns null if the histogram is empty.
+     * @param h
+     * @param percentile A value in the range (0.0, 1.0]
+     * @return
+     */
+    public static <T extends Number & Comparable<T>> T percentile(Histogram<T> h, double percentile) {
+        assert(percentile > 0 && percentile <= 1.0) : "Invalid percentile " + percentile;
+        long total = h.getSampleCount();
+        if (total == 0) return (null);
+        long rank = (long)Math.ceil(percentile * total);
+        
+        long seen = 0;
+        T last = null;
+        for (T val : new TreeSet<T>(h.values())) {
+            seen += h.get(val, 0l);
+            last = val;
+            if (seen >= rank) break;
+        } // FOR
+        return (last);
+    }
+
     public static <T extends Number> double stdev(Histogram<T> h) {
         double values[] = new double[h.getSampleCount()];
         int idx = 0;
@@ -28,6 +28,7 @@ package edu.brown.utils;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
@@ -314,6 +315,23 @@ public abstract class FileUtil {
         return (bytes);
     }
     
+    /**
+     * Copy the contents of the source file into the destination file.
+     * If the destination file already exists, it will be overwritten.
+     * @param source
+     * @param dest
+     * @throws IOException
+     */
+    public static void copyFile(File source, File dest) throws IOException {
+        byte bytes[] = readBytesFromFile(source.getAbsolutePath());
+        FileOutputStream out = new FileOutputStream(dest);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+    
     /**
      * Recursively delete all of the contents of the given directory
      * @param path
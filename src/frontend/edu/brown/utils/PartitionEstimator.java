@@ -73,6 +73,7 @@ import edu.brown.catalog.special.VerticalPartitionColumn;
 import edu.brown.hashing.AbstractHasher;
 import edu.brown.hashing.DefaultHasher;
 import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.plannodes.PlanNodeUtil;
@@ -259,6 +260,9 @@ public class PartitionEstimator {
 
     /**
      * PartitionSet pool used by calculatePartitionsForCache
+     * The HStoreSite's PartitionEstimator is used by all of its threads,
+     * so each thread gets its own local cache of idle objects.
+     * @see HStoreConf.site.pool_magazine_size
      */
     private final FastObjectPool<PartitionSet> partitionSetPool = new FastObjectPool<PartitionSet>(new BasePoolableObjectFactory() {
         @Override
@@ -269,7 +273,7 @@ public class PartitionEstimator {
         public void passivateObject(Object obj) throws Exception {
             ((PartitionSet)obj).clear();
         };
-    }, 100);
+    }, 100, 0, HStoreConf.singleton(true).site.pool_magazine_size);
 
     /**
      * PartitionSet[4] pool used by calculatePartitionsForCache.
@@ -291,7 +295,7 @@ public class PartitionEstimator {
             PartitionSet sets[] = (PartitionSet[])obj;
             for (PartitionSet s : sets) s.clear();
         };
-    }, 1000);
+    }, 1000, 0, HStoreConf.singleton(true).site.pool_magazine_size);
 
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
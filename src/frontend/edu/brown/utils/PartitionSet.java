@@ -27,9 +27,10 @@ package edu.brown.utils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
 
 import org.json.JSONArray;
@@ -47,13 +48,36 @@ import edu.brown.hstore.HStoreConstants;
 /**
  * Container class that represents a list of partitionIds
  * This is the fastest way to represent a list of partitions in the system.
+ * <P>
+ * The partition ids are packed into an array of longs (one bit per partition),
+ * so the set algebra methods that take another PartitionSet (addAll, retainAll,
+ * removeAll, containsAll, intersects) work a whole word at a time and modify
+ * this set in place. If you are on the txn execution path, you should iterate
+ * over the partitions with either values() or the nextPartition() cursor
+ * instead of the Iterator so that you don't have to box every partition id:
+ * <pre>
+ * for (int p = pset.nextPartition(0); p != -1; p = pset.nextPartition(p+1)) { ... }
+ * </pre>
  * @author pavlo
  */
 public class PartitionSet implements Collection<Integer>, JSONSerializable, FastSerializable {
     
-    private final BitSet inner = new BitSet();
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+    
+    /**
+     * Most clusters have less than 64 partitions, so we start with one word
+     */
+    private long words[] = new long[1];
     private boolean contains_null = false;
     private int[] values = null;
+    
+    /**
+     * If this is true, then nobody is allowed to modify this PartitionSet.
+     * This is for the sets that are shared by everyone (e.g., the single-partition
+     * sets in CatalogContext). We only check this with asserts.
+     */
+    private boolean immutable = false;
 
     // ----------------------------------------------------------------------------
     // CONSTRUCTORS
@@ -94,9 +118,38 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
      * @param partitions
      */
     public PartitionSet(PartitionSet partitions) {
+        this.words = new long[Math.max(1, partitions.wordsInUse())];
         this.addAll(partitions);
     }
     
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+    
+    private static int wordIndex(int partition) {
+        return (partition >> ADDRESS_BITS_PER_WORD);
+    }
+    
+    private void ensureCapacity(int wordIndex) {
+        if (wordIndex >= this.words.length) {
+            this.words = Arrays.copyOf(this.words, Math.max(2 * this.words.length, wordIndex + 1));
+        }
+    }
+    
+    /**
+     * Return the number of words up to and including the last one that is not zero
+     */
+    private int wordsInUse() {
+        int i = this.words.length - 1;
+        while (i >= 0 && this.words[i] == 0) i--;
+        return (i + 1);
+    }
+    
+    private void modified() {
+        assert(this.immutable == false) : "Trying to modify an immutable PartitionSet " + this;
+        this.values = null;
+    }
+    
     // ----------------------------------------------------------------------------
     // API METHODS
     // ----------------------------------------------------------------------------
@@ -109,19 +162,42 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
      */
     public final int[] values() {
         if (this.values == null) {
-            int remaining = this.inner.cardinality();
-            int size = remaining + (this.contains_null ? 1 : 0);
-            this.values = new int[size];
+            int size = this.size();
+            int arr[] = new int[size];
             int idx = 0;
             if (this.contains_null) {
-                this.values[idx++] = HStoreConstants.NULL_PARTITION_ID;
+                arr[idx++] = HStoreConstants.NULL_PARTITION_ID;
             }
-            for (int i = 0; idx < size; i++) {
-                if (this.inner.get(i)) this.values[idx++] = i;
+            for (int p = this.nextPartition(0); p != -1; p = this.nextPartition(p+1)) {
+                arr[idx++] = p;
             } // FOR
+            this.values = arr;
         }
         return (this.values);
     }
+    
+    /**
+     * Return the first partition id in this set that is greater than or equal to
+     * the given partition id. Returns -1 if there isn't one. The NULL_PARTITION_ID
+     * is never returned by this method, so you will want to check for it separately
+     * with contains() if you care about it.
+     * @param fromPartition
+     * @return
+     */
+    public int nextPartition(int fromPartition) {
+        assert(fromPartition >= 0) : "Invalid partition " + fromPartition;
+        int u = wordIndex(fromPartition);
+        if (u >= this.words.length) return (-1);
+        long word = this.words[u] & (-1l << fromPartition);
+        while (true) {
+            if (word != 0) {
+                return ((u * BITS_PER_WORD) + Long.numberOfTrailingZeros(word));
+            }
+            if (++u == this.words.length) return (-1);
+            word = this.words[u];
+        } // WHILE
+    }
+    
     /**
      * Return first partition found in this PartitionSet. This is primarily
      * useful for single-partition txns when you just want the only partition in
@@ -130,54 +206,116 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
      * @throws IndexOutOfBoundsException
      */
     public int get() throws IndexOutOfBoundsException {
-        for (int partition = 0, cnt = this.inner.size(); partition < cnt; partition++) {
-            if (this.inner.get(partition)) return (partition);
-        } // FOR
+        int partition = this.nextPartition(0);
+        if (partition != -1) return (partition);
         if (this.contains_null) return HStoreConstants.NULL_PARTITION_ID;
         throw new IndexOutOfBoundsException();
     }
     
+    /**
+     * Returns true if this PartitionSet has at least one partition in common
+     * with the given PartitionSet.
+     * @param partitions
+     * @return
+     */
+    public boolean intersects(PartitionSet partitions) {
+        if (this.contains_null && partitions.contains_null) return (true);
+        for (int i = Math.min(this.words.length, partitions.words.length) - 1; i >= 0; i--) {
+            if ((this.words[i] & partitions.words[i]) != 0) return (true);
+        } // FOR
+        return (false);
+    }
+    
+    /**
+     * Mark this PartitionSet as immutable and return it.
+     * This is only meant for sets that are shared (e.g., the single-partition sets
+     * in CatalogContext). Trying to modify them afterwards will trip an assert.
+     * @return
+     */
+    public PartitionSet setImmutable() {
+        this.immutable = true;
+        this.values(); // Make sure that nobody needs to write to the cache later
+        return (this);
+    }
+    public boolean isImmutable() {
+        return (this.immutable);
+    }
+    
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof PartitionSet) {
-            return this.inner.equals(((PartitionSet)obj).inner);
+        if (obj == this) {
+            return (true);
+        }
+        else if (obj instanceof PartitionSet) {
+            PartitionSet other = (PartitionSet)obj;
+            if (this.contains_null != other.contains_null) return (false);
+            long a[] = this.words;
+            long b[] = other.words;
+            if (a.length > b.length) {
+                long temp[] = a;
+                a = b;
+                b = temp;
+            }
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != b[i]) return (false);
+            } // FOR
+            for (int i = a.length; i < b.length; i++) {
+                if (b[i] != 0) return (false);
+            } // FOR
+            return (true);
         }
         else if (obj instanceof Collection<?>) {
             Collection<?> other = (Collection<?>)obj;
-            if (this.inner.size() != other.size()) return (false);
+            if (this.size() != other.size()) return (false);
             return (this.containsAll(other));
         }
         return (false);
     }
     @Override
     public int hashCode() {
-        return this.inner.hashCode();
+        // Same as java.util.BitSet
+        long h = 1234;
+        for (int i = this.wordsInUse(); --i >= 0; ) {
+            h ^= this.words[i] * (i + 1);
+        } // FOR
+        int hash = (int)((h >> 32) ^ h);
+        return (this.contains_null ? ~hash : hash);
     }
     @Override
     public String toString() {
-        String s = this.inner.toString(); 
-        // HACK
+        StringBuilder sb = new StringBuilder("{");
+        String add = "";
         if (this.contains_null) {
-            s = s.substring(0, 1) +
-                HStoreConstants.NULL_PARTITION_ID + ", " +
-                s.substring(1);
+            sb.append(HStoreConstants.NULL_PARTITION_ID);
+            add = ", ";
         }
-        return (s);
+        for (int p = this.nextPartition(0); p != -1; p = this.nextPartition(p+1)) {
+            sb.append(add).append(p);
+            add = ", ";
+        } // FOR
+        return (sb.append("}").toString());
     }
     @Override
     public int size() {
-        return (this.contains_null ? 1 : 0) + this.inner.cardinality();
-        // return (this.values().length);
+        int cnt = (this.contains_null ? 1 : 0);
+        for (int i = 0; i < this.words.length; i++) {
+            cnt += Long.bitCount(this.words[i]);
+        } // FOR
+        return (cnt);
     }
     @Override
     public void clear() {
+        this.modified();
         this.contains_null = false;
-        this.inner.clear();
-        this.values = null;
+        Arrays.fill(this.words, 0l);
     }
     @Override
     public boolean isEmpty() {
-        return (this.contains_null == false && this.inner.isEmpty());
+        if (this.contains_null) return (false);
+        for (int i = 0; i < this.words.length; i++) {
+            if (this.words[i] != 0) return (false);
+        } // FOR
+        return (true);
     }
     @Override
     public boolean contains(Object o) {
@@ -193,14 +331,15 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         if (partition == HStoreConstants.NULL_PARTITION_ID) {
             return (this.contains_null);
         }
-        return (this.inner.get(partition));
+        int u = wordIndex(partition);
+        return (u < this.words.length && (this.words[u] & (1l << partition)) != 0);
     }
     @Override
     public Object[] toArray() {
-        int length = this.inner.cardinality();
+        int length = this.size();
         Object arr[] = new Object[length];
         int idx = 0;
-        for (Integer partition : this) {
+        for (int partition : this.values()) {
             arr[idx++] = partition;
         }
         return (arr);
@@ -208,13 +347,13 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     @SuppressWarnings("unchecked")
     @Override
     public <T> T[] toArray(T[] a) {
-        int length = this.inner.cardinality();
+        int length = this.size();
         if (a.length != length) {
             a = (T[])new Object[length];
         }
         int idx = 0;
-        for (Integer partition : this) {
-            a[idx++] = (T)partition;
+        for (int partition : this.values()) {
+            a[idx++] = (T)Integer.valueOf(partition);
         } // FOR
         return (a);
     }
@@ -223,12 +362,14 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (this.add(e.intValue()));
     }
     public boolean add(int partition) {
+        this.modified();
         if (partition == HStoreConstants.NULL_PARTITION_ID) {
             this.contains_null = true;
         } else {
-            this.inner.set(partition);
+            int u = wordIndex(partition);
+            this.ensureCapacity(u);
+            this.words[u] |= (1l << partition);
         }
-        this.values = null;
         return (true);
     }
     @Override
@@ -240,19 +381,22 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (false);
     }
     public boolean remove(int partition) {
+        this.modified();
         boolean ret = false;
         if (partition == HStoreConstants.NULL_PARTITION_ID) {
             ret = this.contains_null;
             this.contains_null = false;
-        } else if (this.inner.get(partition)) {
+        } else if (this.contains(partition)) {
             ret = true;
-            this.inner.set(partition, false);            
+            this.words[wordIndex(partition)] &= ~(1l << partition);
         }
-        this.values = null;
         return (ret);
     }
     @Override
     public boolean containsAll(Collection<?> c) {
+        if (c instanceof PartitionSet) {
+            return (this.containsAll((PartitionSet)c));
+        }
         for (Object o : c) {
             if (this.contains(o) == false) {
                 return (false);
@@ -261,14 +405,12 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         return (true);
     }
     public boolean containsAll(PartitionSet partitions) {
-        if (this.contains_null != partitions.contains_null) return (false);
-        if (this.inner.intersects(partitions.inner)) {
-            for (int partition = 0, cnt = partitions.inner.size(); partition < cnt; partition++) {
-                if (partitions.inner.get(partition) && this.inner.get(partition) == false) return (false);
-            } // FOR
-            return (true);
-        }
-        return (false);
+        if (partitions.contains_null && this.contains_null == false) return (false);
+        for (int i = 0; i < partitions.words.length; i++) {
+            long word = (i < this.words.length ? this.words[i] : 0l);
+            if ((partitions.words[i] & ~word) != 0) return (false);
+        } // FOR
+        return (true);
     }
     public boolean addAll(int partitions[]) {
         boolean ret = true;
@@ -279,19 +421,35 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     }
     @Override
     public boolean addAll(Collection<? extends Integer> partitions) {
+        if (partitions instanceof PartitionSet) {
+            return (this.addAll((PartitionSet)partitions));
+        }
         boolean ret = true;
         for (Integer partition : partitions) {
             ret = this.add(partition.intValue()) && ret;
         } // FOR
         return (ret);
     }
+    /**
+     * In-place union
+     * @param partitions
+     * @return
+     */
     public boolean addAll(PartitionSet partitions) {
+        this.modified();
         if (partitions.contains_null) this.contains_null = true;
-        this.inner.or(partitions.inner);
+        int inUse = partitions.wordsInUse();
+        if (inUse > 0) this.ensureCapacity(inUse - 1);
+        for (int i = 0; i < inUse; i++) {
+            this.words[i] |= partitions.words[i];
+        } // FOR
         return (true);
     }
     @Override
     public boolean removeAll(Collection<?> c) {
+        if (c instanceof PartitionSet) {
+            return (this.removeAll((PartitionSet)c));
+        }
         boolean ret = false;
         for (Object o : c) {
             if (o instanceof Number) {
@@ -300,30 +458,55 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
         } // FOR
         return (ret);
     }
+    /**
+     * In-place difference
+     * Returns true if this PartitionSet was modified
+     * @param partitions
+     * @return
+     */
     public boolean removeAll(PartitionSet partitions) {
+        this.modified();
         boolean ret = false;
-        if (partitions.contains_null) {
-            ret = this.contains_null;
-            this.contains_null = false;
-        }
-        if (this.inner.intersects(partitions.inner)) {
-            this.inner.andNot(partitions.inner);
+        if (partitions.contains_null && this.contains_null) {
             ret = true;
+            this.contains_null = false;
         }
+        for (int i = Math.min(this.words.length, partitions.words.length) - 1; i >= 0; i--) {
+            long word = this.words[i];
+            if ((word & partitions.words[i]) != 0) {
+                this.words[i] = word & ~partitions.words[i];
+                ret = true;
+            }
+        } // FOR
         return (ret);
     }
     @Override
     public boolean retainAll(Collection<?> c) {
-        for (Integer partition : this) {
+        if (c instanceof PartitionSet) {
+            return (this.retainAll((PartitionSet)c));
+        }
+        for (int partition : this.values()) {
             if (c.contains(partition) == false) {
                 this.remove(partition);
             }
         } // FOR
         return (true);
     }
+    /**
+     * In-place intersection
+     * @param partitions
+     * @return
+     */
     public boolean retainAll(PartitionSet partitions) {
-        if (this.contains_null != partitions.contains_null) this.contains_null = false;
-        this.inner.and(partitions.inner);
+        this.modified();
+        if (partitions.contains_null == false) this.contains_null = false;
+        int common = Math.min(this.words.length, partitions.words.length);
+        for (int i = 0; i < common; i++) {
+            this.words[i] &= partitions.words[i];
+        } // FOR
+        for (int i = common; i < this.words.length; i++) {
+            this.words[i] = 0;
+        } // FOR
         return (true);
     }
     @Override
@@ -390,32 +573,22 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     // ----------------------------------------------------------------------------
     
     private class Itr implements Iterator<Integer> {
-        int idx = 0;
-        boolean shown_null = false;
-        boolean need_seek = true;
+        boolean shown_null = (contains_null == false);
+        int next = nextPartition(0);
         @Override
         public boolean hasNext() {
-            this.need_seek = false;
-            if (contains_null && this.shown_null == false) {
-                return (true);
-            }
-            for (int cnt = inner.size(); this.idx < cnt; this.idx++) {
-                if (inner.get(this.idx)) {
-                    return (true);
-                }
-            } // FOR
-            return (false);
+            return (this.shown_null == false || this.next != -1);
         }
         @Override
         public Integer next() {
-            if (this.need_seek) {
-                if (this.hasNext() == false) return (null);
-            }
-            if (contains_null && this.shown_null == false) {
+            if (this.shown_null == false) {
                 this.shown_null = true;
                 return (HStoreConstants.NULL_PARTITION_ID);
             }
-            return Integer.valueOf(this.idx++);
+            if (this.next == -1) throw new NoSuchElementException();
+            int ret = this.next;
+            this.next = nextPartition(ret + 1);
+            return Integer.valueOf(ret);
         }
         @Override
         public void remove() {
@@ -442,9 +615,9 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     @Override
     public void writeExternal(FastSerializer out) throws IOException {
         out.writeBoolean(this.contains_null);
-        out.writeShort(this.inner.cardinality());
-        for (Integer partition : this) {
-            out.writeInt(partition.intValue());
+        out.writeShort(this.size() - (this.contains_null ? 1 : 0));
+        for (int p = this.nextPartition(0); p != -1; p = this.nextPartition(p+1)) {
+            out.writeInt(p);
         } // FOR
     }
     
@@ -467,7 +640,7 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     @Override
     public void toJSON(JSONStringer stringer) throws JSONException {
         stringer.key("P").array();
-        for (Integer partition : this) {
+        for (int partition : this.values()) {
             stringer.value(partition);
         } // FOR
         stringer.endArray();
@@ -477,7 +650,7 @@ public class PartitionSet implements Collection<Integer>, JSONSerializable, Fast
     public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
         JSONArray json_arr = json_object.getJSONArray("P");
         for (int i = 0, cnt = json_arr.length(); i < cnt; i++) {
-            this.inner.set(json_arr.getInt(i));
+            this.add(json_arr.getInt(i));
         }
     }
 }
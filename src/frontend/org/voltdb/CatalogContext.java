@@ -192,6 +192,11 @@ public class CatalogContext {
             this.partitionIdCollection.add(this.partitionIdArray[p]);
             this.partitionSiteXref[part.getId()] = ((Site)part.getParent()).getId();
         } // FOR
+        // These are shared by everyone, so nobody is allowed to change them
+        for (PartitionSet ps : this.partitionSingletons) {
+            if (ps != null) ps.setImmutable();
+        } // FOR
+        this.partitionIdCollection.setImmutable();
         
         // ------------------------------------------------------------
         // TABLES
@@ -337,6 +342,7 @@ public class CatalogContext {
     
     /**
      * Return all the partition ids in this H-Store database cluster
+     * The returned PartitionSet is immutable.
      */
     public PartitionSet getAllPartitionIds() {
         return (this.partitionIdCollection);
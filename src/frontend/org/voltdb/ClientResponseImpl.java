@@ -27,6 +27,9 @@ import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializable;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.SpeculationType;
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
+import org.voltdb.utils.DeferredSerialization;
 
 import edu.brown.hstore.HStoreConstants;
 import edu.brown.hstore.Hstoreservice.Status;
@@ -367,6 +370,104 @@ public class ClientResponseImpl implements FastSerializable, ClientResponse {
         }
     }
     
+    // ----------------------------------------------------------------------------
+    // NETWORK SERIALIZATION METHODS
+    // ----------------------------------------------------------------------------
+    
+    /**
+     * Returns a DeferredSerialization that will write this response directly into
+     * a buffer from the network thread's pool when it is sent out.
+     * Use this with NIOWriteStream.enqueue() instead of passing in the response itself.
+     * @see ClientResponseImpl#serialize(DBBPool)
+     */
+    public DeferredSerialization asDeferredSerialization() {
+        return new DeferredSerialization() {
+            @Override
+            public BBContainer serialize(DBBPool pool) throws IOException {
+                return (ClientResponseImpl.this.serialize(pool));
+            }
+            @Override
+            public void cancel() {
+                // Nothing to release until we've been serialized
+            }
+        };
+    }
+    
+    /**
+     * Serialize this response directly into a buffer from the given pool.
+     * The output is the same as writeObjectForMessaging() but we compute the exact
+     * size up front so that we don't need a FastSerializer that has to keep
+     * checking whether it needs to grow.
+     * @param pool
+     */
+    public BBContainer serialize(DBBPool pool) throws IOException {
+        assert setProperly;
+        // The debug handle is only used for testing, so we'll just let
+        // the FastSerializer take care of it
+        if (this.debug != null) {
+            FastSerializer fs = new FastSerializer(pool);
+            return (fs.writeObjectForMessaging(this));
+        }
+        
+        final byte statusBytes[] = (statusString != null ? statusString.getBytes("UTF-8") : null);
+        final byte appStatusBytes[] = (appStatusString != null ? appStatusString.getBytes("UTF-8") : null);
+        
+        int size = 26; // fixed header
+        if (statusBytes != null) size += 4 + statusBytes.length;
+        size += 1; // appStatus
+        if (appStatusBytes != null) size += 4 + appStatusBytes.length;
+        size += 4; // clusterRoundTripTime
+        if (m_exception != null) size += m_exception.getSerializedSize();
+        size += 2; // results length
+        for (VoltTable vt : results) {
+            size += vt.getSerializedSize();
+        } // FOR
+        size += 1; // debug flag
+        
+        final BBContainer c = pool.acquire(size + 4);
+        final ByteBuffer b = c.b;
+        b.clear();
+        b.putInt(size);
+        b.put((byte)0); // version
+        b.put((byte)this.restartCounter);
+        b.putLong(this.txn_id);
+        b.putLong(this.clientHandle);
+        b.put(this.singlepartition ? (byte)1 : (byte)0);
+        b.putInt(this.basePartition);
+        b.put((byte)this.speculative.ordinal());
+        b.put((byte)this.status.ordinal());
+        
+        byte presentFields = 0;
+        if (appStatusBytes != null) presentFields |= 1 << 7;
+        if (m_exception != null) presentFields |= 1 << 6;
+        if (statusBytes != null) presentFields |= 1 << 5;
+        b.put(presentFields);
+        
+        if (statusBytes != null) {
+            b.putInt(statusBytes.length);
+            b.put(statusBytes);
+        }
+        b.put(appStatus);
+        if (appStatusBytes != null) {
+            b.putInt(appStatusBytes.length);
+            b.put(appStatusBytes);
+        }
+        b.putInt(clusterRoundTripTime);
+        if (m_exception != null) {
+            m_exception.serializeToBuffer(b);
+        }
+        b.putShort((short)results.length);
+        for (VoltTable vt : results) {
+            vt.flattenToBuffer(b);
+        } // FOR
+        b.put((byte)0); // no debug handle
+        
+        assert(b.position() == size + 4) :
+            String.format("Expected %d bytes for %s but wrote %d", size + 4, this, b.position());
+        b.flip();
+        return (c);
+    }
+    
     @Override
     public String toString() {
         Map<String, Object> m = new LinkedHashMap<String, Object>();
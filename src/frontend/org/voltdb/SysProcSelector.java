@@ -37,4 +37,7 @@ public enum SysProcSelector {
     ANTICACHE,      // anti-cache manager information
     ANTICACHEEVICTIONS, // anti-cache eviction history
     ANTICACHEACCESS, // anti-cache evicted access history
+    ADMISSIONCONTROL, // per-partition admission control state
+    METRICS,        // always-on metrics registry snapshot
+    RESULTCACHE,    // fragment result cache hit rates
 }
@@ -1,12 +1,12 @@
 package org.voltdb;
 
-import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import org.apache.log4j.Logger;
 import org.voltdb.catalog.Procedure;
-import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.SortDirectionType;
+import org.voltdb.utils.ColumnarTableCodec;
+import org.voltdb.utils.HashReduceInputIterator;
 import org.voltdb.utils.Pair;
 import org.voltdb.utils.ReduceInputIterator;
 import org.voltdb.utils.VoltTableUtil;
@@ -38,6 +38,12 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
     // Thread-local data
     private MapReduceTransaction mr_ts;
     private VoltTable map_output;
+    private VoltTable combine_output;
+    
+    /**
+     * Whether this procedure overrides {@link #combine(Object, Iterator)}
+     */
+    private boolean has_combiner = false;
     
     private VoltTable reduce_input;
     private VoltTable reduce_output;
@@ -67,6 +73,19 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
      */
     public abstract void reduce(K key, Iterator<VoltTableRow> rows);
     
+    /**
+     * Optional map-side combiner. If a procedure overrides this method, then the
+     * MAP output at each partition is grouped by key and each group is passed
+     * to combine() before it is shuffled. Combined rows are emitted with
+     * {@link #combineEmit(Object[])} and must use the MapOutput schema.
+     * This should only be used when reduce() is associative and commutative. 
+     * @param key
+     * @param rows
+     */
+    public void combine(K key, Iterator<VoltTableRow> rows) {
+        // By default there is no combiner
+    }
+    
     // -----------------------------------------------------------------
     // INTERNAL METHODS
     // -----------------------------------------------------------------
@@ -79,6 +98,14 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
         this.mapInputQuery = this.getSQLStmt(catalogProc.getMapinputquery());
         assert (this.mapInputQuery != null) : "Missing MapInputQuery " + catalogProc.getMapinputquery();
         this.reduceInputQuery = this.getSQLStmt(catalogProc.getReduceinputquery());
+        
+        // Check whether the subclass has its own combiner
+        try {
+            this.has_combiner = (this.getClass().getMethod("combine", Object.class, Iterator.class)
+                                                .getDeclaringClass() != VoltMapReduceProcedure.class);
+        } catch (NoSuchMethodException ex) {
+            throw new RuntimeException("Unexpected missing combine() method in " + this.getClass(), ex);
+        }
     }
     
     /**
@@ -142,6 +169,11 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
                 this.map(mapResult[0].getRow());
             } // WHILE
             
+            // Shrink the MapOutput table before it gets shuffled
+            if (this.has_combiner && this.hstore_conf.site.mr_map_combine) {
+                this.combineMapOutput();
+            }
+            
             if (debug.val)
                 LOG.debug(String.format("MAP: %s generated %d results on partition %d",
                           this.mr_ts, this.map_output.getRowCount(), this.partitionId));
@@ -177,30 +209,35 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
             if (debug.val)
                 LOG.debug(String.format("<ReduceInputTable> Partition:%d\n %s", this.partitionId,this.reduce_input));
             
-            
-            // Sort the the MAP_OUTPUT table
-            // Build an "smart" iterator that loops through the MAP_OUTPUT table key-by-key
-            @SuppressWarnings("unchecked")
-            VoltTable sorted = VoltTableUtil.sort(this.reduce_input, Pair.of(0, SortDirectionType.ASC));
-            //VoltTable sorted = VoltTableUtil.sort(mr_ts.getReduceInputByPartition(this.partitionId), Pair.of(0, SortDirectionType.ASC));
-            assert(sorted != null);
-            if (debug.val)
-                LOG.debug(String.format("<Sorted_ReduceInputTable> Partition:%d\n %s", this.partitionId,sorted));
-            
             this.reduce_output = mr_ts.getReduceOutputByPartition(this.partitionId);
             assert(this.reduce_output != null);
-  
-            // Make a Hstore.PartitionResult
-            ReduceInputIterator<K> rows = new ReduceInputIterator<K>(sorted);
-
-            // Loop over that iterator and call runReduce
+            
             if (debug.val)
                 LOG.debug(String.format("REDUCE: About to process %d records for %s on partition %d",
-                          sorted.getRowCount(), this.mr_ts, this.partitionId));
+                          this.reduce_input.getRowCount(), this.mr_ts, this.partitionId));
             
-            while (rows.hasNext()) {
-                K key = rows.getKey();
-                this.reduce(key, rows); 
+            // Group the REDUCE input by key directly on the table's buffer 
+            if (this.hstore_conf.site.mr_reduce_hash_grouping) {
+                HashReduceInputIterator<K> rows = new HashReduceInputIterator<K>(this.reduce_input, 0);
+                while (rows.nextKey()) {
+                    this.reduce(rows.getKey(), rows);
+                } // WHILE
+            }
+            else {
+                // Sort the the MAP_OUTPUT table
+                // Build an "smart" iterator that loops through the MAP_OUTPUT table key-by-key
+                @SuppressWarnings("unchecked")
+                VoltTable sorted = VoltTableUtil.sort(this.reduce_input, Pair.of(0, SortDirectionType.ASC));
+                assert(sorted != null);
+                if (debug.val)
+                    LOG.debug(String.format("<Sorted_ReduceInputTable> Partition:%d\n %s", this.partitionId,sorted));
+      
+                // Make a Hstore.PartitionResult
+                ReduceInputIterator<K> rows = new ReduceInputIterator<K>(sorted);
+                while (rows.hasNext()) {
+                    K key = rows.getKey();
+                    this.reduce(key, rows); 
+                }
             }
             
             if (debug.val)
@@ -211,9 +248,10 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
                 LOG.debug(String.format("REDUCE: %s generated %d results on partition %d",
                           this.mr_ts, this.reduce_output.getRowCount(), this.partitionId));
             ByteString reduceOutData = null;
+            int compress_threshold = (this.hstore_conf.site.network_compress_tables ?
+                                            this.hstore_conf.site.network_compress_tables_threshold : -1);
             try {
-                ByteBuffer b = ByteBuffer.wrap(FastSerializer.serialize(reduce_output));
-                reduceOutData = ByteString.copyFrom(b.array()); 
+                reduceOutData = ByteString.copyFrom(ColumnarTableCodec.serialize(reduce_output, compress_threshold)); 
             } catch (Exception ex) {
                 throw new RuntimeException(String.format("Unexpected error when serializing %s reduceOutput data for partition %d",
                                                          mr_ts, this.partitionId), ex);
@@ -242,6 +280,16 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
         this.map_output.addRow(row);       
     }
 
+    /**
+     * Emit a row from combine(). This row will replace all of the rows
+     * for the key in the MapOutput table.
+     * @param row
+     */
+    public final void combineEmit(Object row[]) {
+        assert(this.combine_output != null) : "combineEmit() can only be called from combine()";
+        this.combine_output.addRow(row);
+    }
+    
     /**
      * 
      * @param row
@@ -250,6 +298,26 @@ public abstract class VoltMapReduceProcedure<K> extends VoltProcedure {
         this.reduce_output.addRow(row);
     }
     
+    /**
+     * Run the combiner over this partition's MapOutput table and
+     * replace it with the combined table in the txn handle.
+     */
+    private void combineMapOutput() {
+        int origCount = this.map_output.getRowCount();
+        this.combine_output = new VoltTable(this.map_output);
+        HashReduceInputIterator<K> rows = new HashReduceInputIterator<K>(this.map_output, 0);
+        while (rows.nextKey()) {
+            this.combine(rows.getKey(), rows);
+        } // WHILE
+        
+        this.map_output = this.combine_output;
+        this.combine_output = null;
+        this.mr_ts.setMapOutputByPartition(this.partitionId, this.map_output);
+        if (debug.val)
+            LOG.debug(String.format("COMBINE: %s reduced %d MAP output records to %d on partition %d",
+                      this.mr_ts, origCount, this.map_output.getRowCount(), this.partitionId));
+    }
+    
     @Override
     public void finish() {
 //        for (int i = 0; i < this.mr_ts.getSize(); i++) {
@@ -30,6 +30,8 @@ import org.voltdb.messaging.FastSerializable;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.TimestampType;
 import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
 
 /*
  * The primary representation of a result set (of tuples) or a temporary
@@ -125,6 +127,13 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
     int m_rowCount = -1;
     int m_colCount = -1;
 
+    /** If not null, then the backing buffers are acquired from this pool */
+    private DBBPool m_pool = null;
+    /** The pooled container for the current backing buffer */
+    private BBContainer m_container = null;
+    /** Lazily created appender for typed, non-boxing row construction */
+    private RowBuilder m_rowBuilder = null;
+
     /**
      * <p>Object that represents the name and schema for a {@link VoltTable} column.
      * Primarily used to construct in the constructor {@link VoltTable#VoltTable(ColumnInfo...)}
@@ -227,6 +236,21 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
         initializeFromColumns(columns, columns.length);
     }
 
+    /**
+     * Create an empty table from column schema whose backing buffers are
+     * acquired from the given {@link DBBPool}. When the table's buffer needs to
+     * grow, the old buffer is returned to the pool. The caller must invoke
+     * {@link #discardBuffer()} once the table is no longer needed.
+     *
+     * @param pool The pool to acquire (possibly direct) buffers from.
+     * @param columns An array of ColumnInfo objects, one per column
+     * in the desired order.
+     */
+    public VoltTable(DBBPool pool, ColumnInfo[] columns) {
+        m_pool = pool;
+        initializeFromColumns(columns, columns.length);
+    }
+
     /**
      * Create an empty table from column schema.
      * Note that while this accepts a varargs set of columns,
@@ -249,7 +273,7 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
     private void initializeFromColumns(ColumnInfo[] columns, int columnCount) {
         // allocate a 1K table backing for starters
         int allocationSize = 1024;
-        m_buffer = ByteBuffer.allocate(allocationSize);
+        m_buffer = allocateBuffer(allocationSize);
 
         // while not successful at initializing,
         //  use a bigger and bigger backing
@@ -305,8 +329,13 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
             }
             catch (BufferOverflowException e) {
                 // if too small buffer, grow
+                // make sure that we give back the pooled buffer that was too small
                 allocationSize *= 4;
-                m_buffer = ByteBuffer.allocate(allocationSize);
+                if (m_container != null) {
+                    m_container.discard();
+                    m_container = null;
+                }
+                m_buffer = allocateBuffer(allocationSize);
             }
         }
         assert(verifyTableInvariants());
@@ -564,6 +593,11 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
      */
     public final void add(VoltTableRow row) {
         assert(verifyTableInvariants());
+        // If the schemas match, then we can just copy the row's bytes
+        if (hasSameColumnTypes(row)) {
+            addRawRow(row);
+            return;
+        }
         final Object[] values = new Object[m_colCount];
         for (int i = 0; i < m_colCount; i++) {
             try {
@@ -586,6 +620,8 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
             throw new IllegalStateException("Table is read-only. Make a copy before changing.");
         }
         assert(verifyTableInvariants());
+        assert(m_rowBuilder == null || m_rowBuilder.m_rowPos == -1) :
+            "Trying to add a row while a RowBuilder row is in progress";
         if (m_colCount == 0) {
             throw new IllegalStateException("table has no columns defined");
         }
@@ -830,11 +866,359 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
     private final void expandBuffer() {
         final int end = m_buffer.position();
         assert(end > m_rowStart);
-        final ByteBuffer buf2 = ByteBuffer.allocate(m_buffer.capacity() * 2);
+        final BBContainer oldContainer = m_container;
+        final ByteBuffer buf2 = allocateBuffer(m_buffer.capacity() * 2);
         m_buffer.limit(end);
         m_buffer.position(0);
         buf2.put(m_buffer);
         m_buffer = buf2;
+        if (oldContainer != null) oldContainer.discard();
+    }
+
+    /**
+     * Make sure that there is enough room after the buffer's current
+     * position to write the given number of bytes.
+     */
+    private final void ensureCapacity(int bytes) {
+        while (m_buffer.capacity() - m_buffer.position() < bytes) {
+            expandBuffer();
+        }
+        m_buffer.limit(m_buffer.capacity());
+    }
+
+    /**
+     * Allocate a new backing buffer. If this table has a DBBPool, then the
+     * buffer will come from the pool and the container is remembered so that
+     * the buffer can be returned later on. The caller is responsible for
+     * discarding any previous container.
+     */
+    private final ByteBuffer allocateBuffer(int size) {
+        if (m_pool == null) {
+            return ByteBuffer.allocate(size);
+        }
+        m_container = m_pool.acquire(size);
+        m_container.b.clear();
+        return m_container.b;
+    }
+
+    /**
+     * Return this table's backing buffer to the DBBPool that it was acquired
+     * from. This is a no-op if the table was not created with a DBBPool.
+     * The table must not be used after this is called.
+     */
+    public final void discardBuffer() {
+        if (m_container != null) {
+            m_container.discard();
+            m_container = null;
+            m_buffer = null;
+        }
+    }
+
+    /**
+     * Returns true if the given row has the same column types as this table.
+     */
+    private final boolean hasSameColumnTypes(VoltTableRow row) {
+        if (row.getColumnCount() != m_colCount) return false;
+        for (int i = 0; i < m_colCount; i++) {
+            if (row.getColumnType(i) != getColumnType(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append the serialized bytes of the given row's active row to this table.
+     * The row must have the same column types as this table.
+     */
+    private final void addRawRow(VoltTableRow row) {
+        if (m_readOnly) {
+            throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+        }
+        assert(m_rowBuilder == null || m_rowBuilder.m_rowPos == -1) :
+            "Trying to add a row while a RowBuilder row is in progress";
+        if (row.m_activeRowIndex == INVALID_ROW_INDEX) {
+            throw new RuntimeException("VoltTableRow.advanceRow() must be called to advance to the first row before any access.");
+        }
+        // Grab the source buffer before we expand in case it's the same table
+        final ByteBuffer src = row.m_buffer;
+        final int srcPos = row.m_position - ROW_HEADER_SIZE;
+        final int length = src.getInt(srcPos) + ROW_HEADER_SIZE;
+
+        ensureCapacity(length);
+        final int pos = m_buffer.position();
+        if (src.hasArray() && m_buffer.hasArray()) {
+            System.arraycopy(src.array(), src.arrayOffset() + srcPos,
+                             m_buffer.array(), m_buffer.arrayOffset() + pos, length);
+        } else {
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                m_buffer.putLong(pos + i, src.getLong(srcPos + i));
+            }
+            for (; i < length; i++) {
+                m_buffer.put(pos + i, src.get(srcPos + i));
+            }
+        }
+        m_buffer.position(pos + length);
+        m_rowCount++;
+        m_buffer.putInt(m_rowStart, m_rowCount);
+        m_buffer.limit(m_buffer.position());
+        assert(verifyTableInvariants());
+    }
+
+    /**
+     * Returns the {@link RowBuilder} for this table. The same instance is
+     * returned every time.
+     * @return The table's RowBuilder
+     */
+    public final RowBuilder getRowBuilder() {
+        if (m_rowBuilder == null) {
+            m_rowBuilder = new RowBuilder();
+        }
+        return m_rowBuilder;
+    }
+
+    /**
+     * <p>Appends rows to a VoltTable without boxing the values. Each column value is
+     * written directly into the table's buffer, so the columns of a row must be set
+     * in order, starting from the first column. The row becomes visible
+     * once {@link #commit()} is called. Example:</p>
+     *
+     * <code>
+     * VoltTable.RowBuilder row = t.getRowBuilder();<br/>
+     * row.setLong(0, 15).setString(1, "sampleString").commit();
+     * </code>
+     */
+    public final class RowBuilder {
+        /** Start of the row currently being built (where its length goes), or -1 */
+        private int m_rowPos = -1;
+        private int m_nextColumn = 0;
+
+        private RowBuilder() {}
+
+        private VoltType nextColumn(int columnIndex, int bytes) {
+            if (columnIndex != m_nextColumn) {
+                rollback();
+                throw new IllegalArgumentException("Column " + columnIndex + " was set but the next column " +
+                                                   "in the row is " + m_nextColumn);
+            }
+            if (m_rowPos == -1) {
+                if (m_readOnly) {
+                    throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+                }
+                ensureCapacity(ROW_HEADER_SIZE + bytes);
+                m_rowPos = m_buffer.position();
+                m_buffer.position(m_rowPos + ROW_HEADER_SIZE);
+            } else {
+                ensureCapacity(bytes);
+            }
+            m_nextColumn++;
+            return VoltType.get(m_buffer.get(4 + 1 + 2 + columnIndex));//headerLength + status code + column count
+        }
+
+        // Same checks as VoltType.wouldCastOverflow() without boxing the value.
+        // Comparison to MIN_VALUEs are <= to avoid collisions with the NULL bit pattern
+        private void checkOverflow(VoltType type, long value, long min, long max) {
+            if (value <= min || value > max) {
+                rollback();
+                throw new VoltTypeException("Cast of " + value + " to " + type + " would overflow");
+            }
+        }
+
+        private VoltTypeException badType(int columnIndex, VoltType type, String javaType) {
+            rollback();
+            return new VoltTypeException("Value for column " + columnIndex + " is type " + javaType +
+                                         " when type " + type + " was expected.");
+        }
+
+        /**
+         * Set an integral or timestamp column.
+         */
+        public RowBuilder setLong(int columnIndex, long value) {
+            final VoltType type = nextColumn(columnIndex, 8);
+            switch (type) {
+            case TINYINT:
+                checkOverflow(type, value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+                m_buffer.put((byte)value);
+                break;
+            case SMALLINT:
+                checkOverflow(type, value, Short.MIN_VALUE, Short.MAX_VALUE);
+                m_buffer.putShort((short)value);
+                break;
+            case INTEGER:
+                checkOverflow(type, value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                m_buffer.putInt((int)value);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                m_buffer.putLong(value);
+                break;
+            default:
+                throw badType(columnIndex, type, "long");
+            }
+            return this;
+        }
+
+        /**
+         * Set a BOOLEAN column.
+         */
+        public RowBuilder setBoolean(int columnIndex, boolean value) {
+            final VoltType type = nextColumn(columnIndex, 1);
+            if (type != VoltType.BOOLEAN) {
+                throw badType(columnIndex, type, "boolean");
+            }
+            m_buffer.put(value ? (byte)1 : (byte)0);
+            return this;
+        }
+
+        /**
+         * Set a FLOAT column.
+         */
+        public RowBuilder setDouble(int columnIndex, double value) {
+            final VoltType type = nextColumn(columnIndex, 8);
+            if (type != VoltType.FLOAT) {
+                throw badType(columnIndex, type, "double");
+            }
+            m_buffer.putDouble(value);
+            return this;
+        }
+
+        /**
+         * Set a DECIMAL column.
+         */
+        public RowBuilder setDecimal(int columnIndex, BigDecimal value) {
+            final VoltType type = nextColumn(columnIndex, 16);
+            if (type != VoltType.DECIMAL) {
+                throw badType(columnIndex, type, "BigDecimal");
+            }
+            if (value == null) {
+                VoltDecimalHelper.serializeNull(m_buffer);
+            } else {
+                VoltDecimalHelper.serializeBigDecimal(value, m_buffer);
+            }
+            return this;
+        }
+
+        /**
+         * Set a STRING column. ASCII strings are written directly into the
+         * table's buffer without creating a temporary byte array.
+         */
+        public RowBuilder setString(int columnIndex, String value) {
+            if (value == null) {
+                return setNull(columnIndex);
+            }
+            final int len = value.length();
+            if (len > VoltType.MAX_VALUE_LENGTH) {
+                throw new VoltOverflowException(
+                        "Value in VoltTable.RowBuilder larger than allowed max " + VoltType.MAX_VALUE_LENGTH_STR);
+            }
+            for (int i = 0; i < len; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    try {
+                        return setString(columnIndex, value.getBytes(ROWDATA_ENCODING));
+                    } catch (UnsupportedEncodingException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+            final VoltType type = nextColumn(columnIndex, STRING_LEN_SIZE + len);
+            if (type != VoltType.STRING) {
+                throw badType(columnIndex, type, "String");
+            }
+            m_buffer.putInt(len);
+            for (int i = 0; i < len; i++) {
+                m_buffer.put((byte)value.charAt(i));
+            }
+            return this;
+        }
+
+        /**
+         * Set a STRING column from UTF-8 encoded bytes.
+         */
+        public RowBuilder setString(int columnIndex, byte[] value) {
+            if (value == null) {
+                return setNull(columnIndex);
+            }
+            if (value.length > VoltType.MAX_VALUE_LENGTH) {
+                throw new VoltOverflowException(
+                        "Value in VoltTable.RowBuilder larger than allowed max " + VoltType.MAX_VALUE_LENGTH_STR);
+            }
+            final VoltType type = nextColumn(columnIndex, STRING_LEN_SIZE + value.length);
+            if (type != VoltType.STRING) {
+                throw badType(columnIndex, type, "byte[]");
+            }
+            writeStringToBuffer(value, m_buffer);
+            return this;
+        }
+
+        /**
+         * Set a column of any type to SQL <tt>null</tt>.
+         */
+        public RowBuilder setNull(int columnIndex) {
+            final VoltType type = nextColumn(columnIndex, 16);
+            switch (type) {
+            case BOOLEAN:
+            case TINYINT:
+                m_buffer.put(VoltType.NULL_TINYINT);
+                break;
+            case SMALLINT:
+                m_buffer.putShort(VoltType.NULL_SMALLINT);
+                break;
+            case INTEGER:
+                m_buffer.putInt(VoltType.NULL_INTEGER);
+                break;
+            case TIMESTAMP:
+            case BIGINT:
+                m_buffer.putLong(VoltType.NULL_BIGINT);
+                break;
+            case FLOAT:
+                m_buffer.putDouble(VoltType.NULL_FLOAT);
+                break;
+            case STRING:
+                m_buffer.putInt(NULL_STRING_INDICATOR);
+                break;
+            case DECIMAL:
+                VoltDecimalHelper.serializeNull(m_buffer);
+                break;
+            default:
+                rollback();
+                throw new VoltTypeException("Unsupported type: " + type);
+            }
+            return this;
+        }
+
+        /**
+         * Finish the current row and append it to the table.
+         */
+        public void commit() {
+            if (m_nextColumn != m_colCount) {
+                rollback();
+                throw new IllegalStateException("Only " + m_nextColumn + " of " + m_colCount + " columns were set");
+            }
+            final int rowsize = m_buffer.position() - m_rowPos - ROW_HEADER_SIZE;
+            if (rowsize > VoltTableRow.MAX_TUPLE_LENGTH) {
+                rollback();
+                throw new VoltOverflowException(
+                        "Table row total length larger than allowed max " + VoltTableRow.MAX_TUPLE_LENGTH_STR);
+            }
+            m_buffer.putInt(m_rowPos, rowsize);
+            m_rowCount++;
+            m_buffer.putInt(m_rowStart, m_rowCount);
+            m_buffer.limit(m_buffer.position());
+            m_rowPos = -1;
+            m_nextColumn = 0;
+            assert(verifyTableInvariants());
+        }
+
+        /**
+         * Discard the current row without appending it to the table.
+         */
+        public void rollback() {
+            if (m_rowPos != -1) {
+                m_buffer.position(m_rowPos);
+                m_buffer.limit(m_rowPos);
+            }
+            m_rowPos = -1;
+            m_nextColumn = 0;
+        }
     }
 
     /**
@@ -915,6 +1299,30 @@ public class VoltTable extends VoltTableRow implements FastSerializable {
         assert(verifyTableInvariants());
     }
 
+    /**
+     * End users should not call this method.
+     * @return The number of bytes that writeExternal() will write for this table
+     */
+    public int getSerializedSize() {
+        return (4 + m_buffer.position());
+    }
+
+    /**
+     * End users should not call this method.
+     * Write this VoltTable directly into a ByteBuffer using the same layout
+     * as writeExternal(). The buffer must have at least getSerializedSize()
+     * bytes remaining.
+     */
+    public void flattenToBuffer(ByteBuffer buf) {
+        assert(verifyTableInvariants());
+        final ByteBuffer buffer = m_buffer.duplicate();
+        final int pos = buffer.position();
+        buffer.position(0);
+        buffer.limit(pos);
+        buf.putInt(pos);
+        buf.put(buffer);
+    }
+
     /**
      * Returns a {@link java.lang.String String} representation of this table.
      * Resulting string will contain schema and all data and will be formatted.
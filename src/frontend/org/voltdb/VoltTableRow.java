@@ -221,7 +221,103 @@ public abstract class VoltTableRow {
         }
         return true;
     }
-    
+
+    /**
+     * End users should not call this method.
+     * Returns the offset in the underlying buffer where the active row's data begins.
+     * @return The buffer offset of the active row.
+     */
+    public final int getActiveRowPosition() {
+        return m_position;
+    }
+
+    /**
+     * End users should not call this method.
+     * Make the row that begins at the given buffer offset the active row.
+     * Unlike {@link #advanceToRow(int)}, this can jump to any row in any order
+     * as long as the offset was obtained from {@link #getActiveRowPosition()}
+     * on a row backed by the same buffer.
+     * @param rowIndex The index of the row that starts at the given position.
+     * @param position The buffer offset of the row's data.
+     */
+    public final void moveToPosition(int rowIndex, int position) {
+        assert(rowIndex >= 0 && rowIndex < getRowCount());
+        m_activeRowIndex = rowIndex;
+        m_position = position;
+        m_hasCalculatedOffsets = false;
+        if (m_offsets == null)
+            m_offsets = new int[getColumnCount()];
+    }
+
+    /**
+     * Compute a hash of the serialized bytes of a column in the active row
+     * without deserializing the value. Values that are equal according to
+     * {@link #columnEquals(int, VoltTableRow)} will always have the same hash.
+     * FLOAT columns are normalized first so that -0.0 and 0.0 have the same hash.
+     * @param columnIndex Index of the column
+     * @return The hash of the column's raw bytes.
+     */
+    public final int hashColumn(int columnIndex) {
+        final int offset = getOffset(columnIndex);
+        if (getColumnType(columnIndex) == VoltType.FLOAT) {
+            final long bits = normalizeFloatBits(m_buffer.getDouble(offset));
+            return (int)(bits ^ (bits >>> 32));
+        }
+        final int length = getColumnLength(columnIndex, offset);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + m_buffer.get(offset + i);
+        }
+        return (hash);
+    }
+
+    /**
+     * Returns true if the serialized bytes of a column in the active row are
+     * the same as those of the same column in the other row's active row.
+     * Both rows must have the same schema. Note that this compares the raw
+     * bytes, so SQL nulls are equal to each other. The only exception is
+     * FLOAT columns, where -0.0 is equal to 0.0 and all NaNs are equal.
+     * @param columnIndex Index of the column
+     * @param other The row to compare against
+     * @return True if the column values are byte-for-byte identical.
+     */
+    public final boolean columnEquals(int columnIndex, VoltTableRow other) {
+        final int offset = getOffset(columnIndex);
+        final int otherOffset = other.getOffset(columnIndex);
+        if (getColumnType(columnIndex) == VoltType.FLOAT) {
+            return (normalizeFloatBits(m_buffer.getDouble(offset)) ==
+                    normalizeFloatBits(other.m_buffer.getDouble(otherOffset)));
+        }
+        final int length = getColumnLength(columnIndex, offset);
+        if (length != other.getColumnLength(columnIndex, otherOffset))
+            return (false);
+        for (int i = 0; i < length; i++) {
+            if (m_buffer.get(offset + i) != other.m_buffer.get(otherOffset + i))
+                return (false);
+        }
+        return (true);
+    }
+
+    /**
+     * Returns the bits of the given double with -0.0 turned into 0.0 and
+     * all NaNs collapsed into the canonical one.
+     */
+    private static final long normalizeFloatBits(double value) {
+        if (value == 0.0d) return (0l);
+        return (Double.doubleToLongBits(value));
+    }
+
+    private final int getColumnLength(int columnIndex, int offset) {
+        final VoltType type = getColumnType(columnIndex);
+        if (type == VoltType.STRING) {
+            final int strlen = m_buffer.getInt(offset);
+            if (strlen == VoltTable.NULL_STRING_INDICATOR)
+                return STRING_LEN_SIZE;
+            return strlen + STRING_LEN_SIZE;
+        }
+        return type.getLengthInBytesForFixedTypes();
+    }
+
     public Object get(int columnIndex) {
         return (this.get(columnIndex, this.getColumnType(columnIndex)));
     }
@@ -280,6 +280,32 @@ public final class CatalogMap<T extends CatalogType> implements Iterable<T>, Col
         return (true);
     }
 
+    /**
+     * Append a new child while loading a CatalogSnapshot. The snapshot stores
+     * the children in sorted order, so we can assign the relative index directly
+     * instead of re-numbering all of the siblings after each insert.
+     * @param name The name of the new instance to create
+     * @return The newly created CatalogType instance
+     */
+    T addSnapshotItem(String name) {
+        if (m_items.isEmpty() == false && m_items.lastKey().compareTo(name) >= 0)
+            throw new CatalogException("Catalog item '" + name + "' is out of order for " + m_parent);
+        T x = null;
+        try {
+            x = m_cls.newInstance();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        String childPath = m_path + "[" + name + "]";
+        x.setBaseValues(m_catalog, m_parent, childPath, name);
+        x.m_parentMap = this;
+
+        m_items.put(name, x);
+        x.m_relativeIndex = m_items.size();
+        m_fastArray = null;
+        return x;
+    }
+
     void updateVersioning() {
         if (m_subTreeVersion != m_catalog.m_currentCatalogVersion) {
             m_subTreeVersion = m_catalog.m_currentCatalogVersion;
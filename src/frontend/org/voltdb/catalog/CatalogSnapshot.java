@@ -0,0 +1,333 @@
+package org.voltdb.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding of an entire Catalog tree.
+ * <p>
+ * Loading a Catalog from its text form means parsing one "add" or "set" command per
+ * line and resolving every command's path through the catalog's path cache. A snapshot
+ * instead stores the tree in the order that it will be rebuilt: each node is written
+ * with its fields followed by its child collections, so the loader never has to look
+ * up a parent by its path. All of the names, field keys, string values, and reference
+ * paths are interned in a single string table at the front of the snapshot and the
+ * nodes just refer to them by their id. The children of each CatalogMap are written
+ * in the same sorted order that the map keeps them in, which means that they can be
+ * appended without re-numbering their siblings after every insert.
+ * <p>
+ * A snapshot also keeps the version numbers of every node, so loading one produces an
+ * exact copy of the original Catalog. This is what Catalog.deepCopy() uses.
+ * <p>
+ * Snapshots are an internal format. They are only meant to be read by the same build
+ * that wrote them and the text form is still the canonical representation of a catalog.
+ */
+public abstract class CatalogSnapshot {
+
+    private static final int MAGIC = 0x48534353; // "HSCS"
+    private static final short FORMAT_VERSION = 1;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    // Field value types
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_INT = 1;
+    private static final byte VALUE_TRUE = 2;
+    private static final byte VALUE_FALSE = 3;
+    private static final byte VALUE_STRING = 4;
+    private static final byte VALUE_REF = 5;
+
+    // ----------------------------------------------------------------------------
+    // SERIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the checksum of the given serialized text catalog. This can be
+     * stored in a snapshot to record which text catalog it was created from.
+     * @param serializedCatalog
+     * @return
+     */
+    public static long checksum(byte serializedCatalog[]) {
+        CRC32 crc = new CRC32();
+        crc.update(serializedCatalog);
+        return (crc.getValue());
+    }
+
+    /**
+     * Encode the given Catalog into a new snapshot
+     * @param catalog
+     * @return
+     */
+    public static byte[] serialize(Catalog catalog) {
+        return (serialize(catalog, 0L));
+    }
+
+    /**
+     * Encode the given Catalog into a new snapshot. The source checksum
+     * is stored in the header as is.
+     * @param catalog
+     * @param sourceChecksum
+     * @return
+     * @see CatalogSnapshot#checksum(byte[])
+     */
+    public static byte[] serialize(Catalog catalog, long sourceChecksum) {
+        Encoder encoder = new Encoder();
+        try {
+            encoder.writeVarInt(catalog.m_currentCatalogVersion);
+            encoder.writeVarInt(catalog.m_nodeVersion);
+            encoder.writeVarInt(catalog.m_subTreeVersion);
+            encoder.writeNode(catalog);
+            return (encoder.finish(sourceChecksum));
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to serialize catalog snapshot", ex);
+        }
+    }
+
+    /**
+     * Returns the checksum of the text catalog that the snapshot was created from.
+     * Returns zero if the snapshot was not created from a text catalog.
+     * @param snapshot
+     * @return
+     */
+    public static long getSourceChecksum(byte snapshot[]) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        readHeader(buffer);
+        return (buffer.getLong());
+    }
+
+    // ----------------------------------------------------------------------------
+    // DESERIALIZATION
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Create a new Catalog from the given snapshot
+     * @param snapshot
+     * @return
+     */
+    public static Catalog deserialize(byte snapshot[]) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        readHeader(buffer);
+        buffer.getLong(); // source checksum
+
+        // String table
+        int num_strings = readVarInt(buffer);
+        String strings[] = new String[num_strings];
+        for (int i = 0; i < num_strings; i++) {
+            int length = readVarInt(buffer);
+            strings[i] = new String(snapshot, buffer.position(), length, CHARSET);
+            buffer.position(buffer.position() + length);
+        } // FOR
+
+        Catalog catalog = new Catalog();
+        catalog.m_currentCatalogVersion = readVarInt(buffer);
+        int nodeVersion = readVarInt(buffer);
+        int subTreeVersion = readVarInt(buffer);
+        readNode(buffer, strings, catalog);
+        catalog.m_nodeVersion = nodeVersion;
+        catalog.m_subTreeVersion = subTreeVersion;
+        if (buffer.hasRemaining()) {
+            throw new CatalogException("Unexpected " + buffer.remaining() + " trailing bytes in catalog snapshot");
+        }
+        return (catalog);
+    }
+
+    private static void readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 14 || buffer.getInt() != MAGIC) {
+            throw new CatalogException("Invalid catalog snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != FORMAT_VERSION) {
+            throw new CatalogException("Unsupported catalog snapshot version " + version);
+        }
+    }
+
+    private static void readNode(ByteBuffer buffer, String strings[], CatalogType node) {
+        // Fields
+        int num_fields = readVarInt(buffer);
+        for (int i = 0; i < num_fields; i++) {
+            String field = strings[readVarInt(buffer)];
+            Object value = null;
+            byte type = buffer.get();
+            switch (type) {
+                case VALUE_NULL:
+                    break;
+                case VALUE_INT:
+                    value = Integer.valueOf(readVarInt(buffer));
+                    break;
+                case VALUE_TRUE:
+                    value = Boolean.TRUE;
+                    break;
+                case VALUE_FALSE:
+                    value = Boolean.FALSE;
+                    break;
+                case VALUE_STRING:
+                    value = strings[readVarInt(buffer)];
+                    break;
+                case VALUE_REF: {
+                    // References are resolved lazily, just like when the
+                    // catalog is loaded from its text form
+                    CatalogType.UnresolvedInfo uinfo = new CatalogType.UnresolvedInfo();
+                    uinfo.path = strings[readVarInt(buffer)];
+                    value = uinfo;
+                    break;
+                }
+                default:
+                    throw new CatalogException("Unexpected value type " + type + " for field '" + field + "' in " + node);
+            } // SWITCH
+            if (node.m_fields.containsKey(field) == false) {
+                throw new CatalogException("Unexpected field name '" + field + "' for " + node);
+            }
+            node.m_fields.put(field, value);
+        } // FOR
+        node.update();
+
+        // Children
+        int num_collections = readVarInt(buffer);
+        for (int i = 0; i < num_collections; i++) {
+            String collection = strings[readVarInt(buffer)];
+            CatalogMap<? extends CatalogType> map = node.m_childCollections.get(collection);
+            if (map == null) {
+                throw new CatalogException("Unexpected collection name '" + collection + "' for " + node);
+            }
+            int subTreeVersion = readVarInt(buffer);
+            int num_children = readVarInt(buffer);
+            for (int j = 0; j < num_children; j++) {
+                String name = strings[readVarInt(buffer)];
+                int childNodeVersion = readVarInt(buffer);
+                int childSubTreeVersion = readVarInt(buffer);
+                CatalogType child = map.addSnapshotItem(name);
+                readNode(buffer, strings, child);
+                child.m_nodeVersion = childNodeVersion;
+                child.m_subTreeVersion = childSubTreeVersion;
+            } // FOR
+            map.m_subTreeVersion = subTreeVersion;
+        } // FOR
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        // Undo the zig-zag encoding
+        return ((result >>> 1) ^ -(result & 1));
+    }
+
+    // ----------------------------------------------------------------------------
+    // ENCODER
+    // ----------------------------------------------------------------------------
+
+    private static class Encoder {
+        private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024 * 64);
+        private final DataOutputStream out = new DataOutputStream(this.bytes);
+
+        private int intern(String s) {
+            Integer id = this.stringIds.get(s);
+            if (id == null) {
+                id = this.strings.size();
+                this.strings.add(s);
+                this.stringIds.put(s, id);
+            }
+            return (id.intValue());
+        }
+
+        private void writeString(String s) throws IOException {
+            this.writeVarInt(this.intern(s));
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            this.writeVarInt(this.out, value);
+        }
+
+        private void writeVarInt(DataOutputStream out, int value) throws IOException {
+            // Zig-zag encode so that small negative numbers stay small
+            int v = (value << 1) ^ (value >> 31);
+            while ((v & ~0x7F) != 0) {
+                out.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            } // WHILE
+            out.writeByte(v);
+        }
+
+        private void writeNode(CatalogType node) throws IOException {
+            // Fields
+            this.writeVarInt(node.m_fields.size());
+            for (Entry<String, Object> e : node.m_fields.entrySet()) {
+                this.writeString(e.getKey());
+                Object value = e.getValue();
+                if (value == null) {
+                    this.out.writeByte(VALUE_NULL);
+                }
+                else if (value instanceof Integer) {
+                    this.out.writeByte(VALUE_INT);
+                    this.writeVarInt(((Integer)value).intValue());
+                }
+                else if (value instanceof Boolean) {
+                    this.out.writeByte(((Boolean)value).booleanValue() ? VALUE_TRUE : VALUE_FALSE);
+                }
+                else if (value instanceof String) {
+                    this.out.writeByte(VALUE_STRING);
+                    this.writeString((String)value);
+                }
+                else if (value instanceof CatalogType) {
+                    this.out.writeByte(VALUE_REF);
+                    this.writeString(((CatalogType)value).getPath());
+                }
+                else if (value instanceof CatalogType.UnresolvedInfo) {
+                    this.out.writeByte(VALUE_REF);
+                    this.writeString(((CatalogType.UnresolvedInfo)value).path);
+                }
+                else {
+                    throw new CatalogException("Unsupported field type '" + value + "'");
+                }
+            } // FOR
+
+            // Children
+            this.writeVarInt(node.m_childCollections.size());
+            for (Entry<String, CatalogMap<? extends CatalogType>> e : node.m_childCollections.entrySet()) {
+                CatalogMap<? extends CatalogType> map = e.getValue();
+                this.writeString(e.getKey());
+                this.writeVarInt(map.m_subTreeVersion);
+                this.writeVarInt(map.size());
+                for (CatalogType child : map) {
+                    this.writeString(child.getTypeName());
+                    this.writeVarInt(child.m_nodeVersion);
+                    this.writeVarInt(child.m_subTreeVersion);
+                    this.writeNode(child);
+                } // FOR
+            } // FOR
+        }
+
+        private byte[] finish(long sourceChecksum) throws IOException {
+            this.out.flush();
+            ByteArrayOutputStream result = new ByteArrayOutputStream(this.bytes.size() * 2);
+            DataOutputStream header = new DataOutputStream(result);
+            header.writeInt(MAGIC);
+            header.writeShort(FORMAT_VERSION);
+            header.writeLong(sourceChecksum);
+            this.writeVarInt(header, this.strings.size());
+            for (String s : this.strings) {
+                byte b[] = s.getBytes(CHARSET);
+                this.writeVarInt(header, b.length);
+                header.write(b);
+            } // FOR
+            this.bytes.writeTo(header);
+            header.flush();
+            return (result.toByteArray());
+        }
+    } // CLASS
+}
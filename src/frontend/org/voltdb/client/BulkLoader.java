@@ -0,0 +1,343 @@
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.voltdb.CatalogContext;
+import org.voltdb.StoredProcedureInvocationHints;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
+import org.voltdb.catalog.Table;
+import org.voltdb.sysprocs.LoadMultipartitionTable;
+import org.voltdb.sysprocs.LoadPartitionTable;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Client-side bulk loader for a single table. Rows are split up by partition on
+ * the client using the catalog's hasher and each partition's rows are sent
+ * directly to the site that owns that partition with @LoadPartitionTable once
+ * there are enough of them to fill a batch. These batches execute as
+ * single-partition transactions, so loading data for different partitions happens
+ * in parallel without going through the distributed transaction path.
+ * <p>
+ * The number of batches that can be outstanding at the same time is bounded so
+ * that the client does not run out of memory if the cluster falls behind.
+ * Replicated tables (and tables with a vertical partition) are still loaded
+ * with @LoadMultipartitionTable, but their batches are also pipelined.
+ * <p>
+ * Usage:
+ * <pre>
+ * BulkLoader loader = new BulkLoader(client, catalogContext, "WAREHOUSE", 10000, 16);
+ * for (...) loader.addRow(...);
+ * loader.drain();
+ * </pre>
+ * This class is not thread-safe.
+ */
+public class BulkLoader {
+    private static final Logger LOG = Logger.getLogger(BulkLoader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    private static final LoggerBoolean trace = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static final String PROC_PARTITION = VoltSystemProcedure.procCallName(LoadPartitionTable.class);
+    private static final String PROC_MULTIPARTITION = VoltSystemProcedure.procCallName(LoadMultipartitionTable.class);
+
+    private final Client client;
+    private final PartitionEstimator p_estimator;
+    private final Table catalog_tbl;
+    private final boolean partitioned;
+    private final int batchSize;
+    private final int maxOutstanding;
+    private final Semaphore window;
+
+    /**
+     * The batch that we are building for each partition. If the table is not
+     * partitioned, then there is only a single batch.
+     */
+    private final VoltTable batches[];
+
+    /** Scratch table for staging rows passed to {@link #addRow(Object...)} */
+    private VoltTable scratch = null;
+
+    /** Batches that were rejected by the cluster and need to be sent again */
+    private final Queue<BatchCallback> retries = new ConcurrentLinkedQueue<BatchCallback>();
+
+    private final AtomicLong loadedRows = new AtomicLong(0);
+    private final AtomicLong sentBatches = new AtomicLong(0);
+    private final AtomicLong rejectedBatches = new AtomicLong(0);
+    private volatile ClientResponse error = null;
+
+    /**
+     * Callback for a single batch. If the batch is rejected by the cluster,
+     * then it will be sent again.
+     */
+    private class BatchCallback implements ProcedureCallback {
+        private final int partition;
+        private final VoltTable batch;
+
+        BatchCallback(int partition, VoltTable batch) {
+            this.partition = partition;
+            this.batch = batch;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            Status status = clientResponse.getStatus();
+            if (status == Status.OK) {
+                loadedRows.addAndGet(this.batch.getRowCount());
+            }
+            // We can't resend the batch from here because we're in the
+            // client's network thread, so the loader thread will do it for us
+            else if (status == Status.ABORT_REJECT) {
+                if (debug.val)
+                    LOG.debug(String.format("Batch of %d %s rows for partition %d was rejected",
+                              this.batch.getRowCount(), catalog_tbl.getName(), this.partition));
+                rejectedBatches.incrementAndGet();
+                retries.add(this);
+            }
+            else if (error == null) {
+                LOG.warn(String.format("Failed to load %d rows for '%s': %s",
+                         this.batch.getRowCount(), catalog_tbl.getName(),
+                         clientResponse.getStatusString()));
+                error = clientResponse;
+            }
+            window.release();
+        }
+    }
+
+    /**
+     * Constructor
+     * @param client
+     * @param catalogContext
+     * @param tableName The name of the table to load
+     * @param batchSize The number of rows to send per partition in a single batch
+     * @param maxOutstanding The max number of batches that can be waiting for a response
+     */
+    public BulkLoader(Client client, CatalogContext catalogContext, String tableName, int batchSize, int maxOutstanding) {
+        assert(batchSize > 0);
+        assert(maxOutstanding > 0);
+        this.client = client;
+        this.catalog_tbl = catalogContext.getTableByName(tableName);
+        if (this.catalog_tbl == null) {
+            throw new IllegalArgumentException("Invalid table '" + tableName + "'");
+        }
+        this.partitioned = (this.catalog_tbl.getIsreplicated() == false &&
+                            CatalogUtil.getVerticalPartition(this.catalog_tbl) == null);
+        this.p_estimator = (this.partitioned ? new PartitionEstimator(catalogContext) : null);
+        this.batchSize = batchSize;
+        this.maxOutstanding = maxOutstanding;
+        this.window = new Semaphore(maxOutstanding);
+        this.batches = new VoltTable[this.partitioned ? catalogContext.numberOfPartitions : 1];
+    }
+
+    /**
+     * Add a new row to the table. The values must be in the same order as the
+     * table's columns.
+     * @param values
+     */
+    public void addRow(Object...values) {
+        if (this.partitioned == false) {
+            VoltTable vt = this.getBatch(0);
+            vt.addRow(values);
+            this.checkBatch(0, vt);
+            return;
+        }
+        // We don't know the partition until we have the row in a VoltTable,
+        // so we'll stage it in our scratch table first
+        if (this.scratch == null) {
+            this.scratch = CatalogUtil.getVoltTable(this.catalog_tbl);
+        }
+        this.scratch.addRow(values);
+        this.scratch.advanceToRow(0);
+        this.add(this.scratch);
+        this.scratch.clearRowData();
+    }
+
+    /**
+     * Add the current row of the given VoltTableRow to the table
+     * @param row
+     */
+    public void add(VoltTableRow row) {
+        int partition = 0;
+        if (this.partitioned) {
+            try {
+                partition = this.p_estimator.getTableRowPartition(this.catalog_tbl, row);
+            } catch (Exception ex) {
+                throw new RuntimeException("Failed to calculate partition for " + this.catalog_tbl.getName() + " row", ex);
+            }
+        }
+        VoltTable vt = this.getBatch(partition);
+        vt.add(row);
+        this.checkBatch(partition, vt);
+    }
+
+    /**
+     * Add all of the rows in the given VoltTable to the table.
+     * This will reset the VoltTable's row position.
+     * @param vt
+     */
+    public void load(VoltTable vt) {
+        vt.resetRowPosition();
+        while (vt.advanceRow()) {
+            this.add(vt);
+        } // WHILE
+        vt.resetRowPosition();
+    }
+
+    /**
+     * Send all of the partial batches to the cluster without waiting for them
+     * to finish.
+     */
+    public void flush() {
+        for (int i = 0; i < this.batches.length; i++) {
+            VoltTable vt = this.batches[i];
+            if (vt != null && vt.getRowCount() > 0) {
+                this.send(i, vt);
+                this.batches[i] = null;
+            }
+        } // FOR
+    }
+
+    /**
+     * Send all of the partial batches to the cluster and then block until all of the
+     * outstanding batches have been loaded.
+     * @throws ProcCallException If any batch failed to load
+     */
+    public void drain() throws ProcCallException {
+        this.flush();
+        try {
+            while (true) {
+                this.resendRejected();
+                if (this.window.tryAcquire(this.maxOutstanding, 100, TimeUnit.MILLISECONDS)) {
+                    this.window.release(this.maxOutstanding);
+                    if (this.retries.isEmpty()) break;
+                }
+            } // WHILE
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + this.catalog_tbl.getName() + " batches", ex);
+        }
+        if (this.error != null) {
+            throw new ProcCallException(this.error, "Failed to load data for '" + this.catalog_tbl.getName() + "'", null);
+        }
+    }
+
+    /**
+     * Returns the total number of rows that have been successfully loaded
+     */
+    public long getLoadedRowCount() {
+        return (this.loadedRows.get());
+    }
+
+    /**
+     * Returns the total number of batches that were sent to the cluster
+     */
+    public long getSentBatchCount() {
+        return (this.sentBatches.get());
+    }
+
+    /**
+     * Returns the number of times that a batch was rejected and had to be resent
+     */
+    public long getRejectedBatchCount() {
+        return (this.rejectedBatches.get());
+    }
+
+    /**
+     * Returns true if the rows are split up by partition and sent with @LoadPartitionTable
+     */
+    public boolean isPartitioned() {
+        return (this.partitioned);
+    }
+
+    // ----------------------------------------------------------------------------
+    // INTERNAL METHODS
+    // ----------------------------------------------------------------------------
+
+    private VoltTable getBatch(int partition) {
+        if (this.batches[partition] == null) {
+            this.batches[partition] = CatalogUtil.getVoltTable(this.catalog_tbl);
+        }
+        return (this.batches[partition]);
+    }
+
+    private void checkBatch(int partition, VoltTable vt) {
+        if (vt.getRowCount() >= this.batchSize) {
+            this.send(partition, vt);
+            this.batches[partition] = null;
+        }
+    }
+
+    private void send(int partition, VoltTable vt) {
+        this.resendRejected();
+        this.send(new BatchCallback(partition, vt));
+    }
+
+    private void resendRejected() {
+        BatchCallback callback = null;
+        while (this.error == null && (callback = this.retries.poll()) != null) {
+            this.send(callback);
+        } // WHILE
+    }
+
+    private void send(BatchCallback callback) {
+        final int partition = callback.partition;
+        final VoltTable vt = callback.batch;
+        if (this.error != null) {
+            throw new RuntimeException("Unable to send more data for '" + this.catalog_tbl.getName() + "' " +
+                                       "because a previous batch failed: " + this.error.getStatusString());
+        }
+        try {
+            this.window.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending " + this.catalog_tbl.getName() + " batch", ex);
+        }
+        if (trace.val)
+            LOG.trace(String.format("Sending %d %s rows for partition %d",
+                      vt.getRowCount(), this.catalog_tbl.getName(), partition));
+        try {
+            this.queue(partition, vt, callback);
+        } catch (IOException ex) {
+            this.window.release();
+            throw new RuntimeException("Failed to send batch for '" + this.catalog_tbl.getName() + "'", ex);
+        }
+        this.sentBatches.incrementAndGet();
+    }
+
+    private void queue(int partition, VoltTable vt, BatchCallback callback) throws IOException {
+        boolean queued = false;
+        while (queued == false) {
+            if (this.partitioned) {
+                StoredProcedureInvocationHints hints = new StoredProcedureInvocationHints();
+                hints.basePartition = partition;
+                queued = this.client.callProcedure(callback, PROC_PARTITION, hints,
+                                                   partition, this.catalog_tbl.getName(), vt);
+            } else {
+                queued = this.client.callProcedure(callback, PROC_MULTIPARTITION,
+                                                   this.catalog_tbl.getName(), vt);
+            }
+            if (queued == false) {
+                try {
+                    this.client.backpressureBarrier();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for backpressure", ex);
+                }
+            }
+        } // WHILE
+    }
+}
@@ -338,6 +338,9 @@ final class ClientImpl implements Client {
         }
         if (hints != null && hints.basePartition != HStoreConstants.NULL_PARTITION_ID) {
             invocation.setBasePartition(hints.basePartition);
+            if (m_partitionSiteXref != null) {
+                site_id = m_partitionSiteXref[hints.basePartition];
+            }
         }
 
         if (m_blockingQueue) {
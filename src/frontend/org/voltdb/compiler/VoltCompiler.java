@@ -56,6 +56,7 @@ import org.voltdb.TransactionIdManager;
 import org.voltdb.VoltSystemProcedure;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.CatalogMap;
+import org.voltdb.catalog.CatalogSnapshot;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.ColumnRef;
 import org.voltdb.catalog.Database;
@@ -92,6 +93,7 @@ import org.voltdb.sysprocs.GarbageCollection;
 import org.voltdb.sysprocs.GetCatalog;
 import org.voltdb.sysprocs.GetConfiguration;
 import org.voltdb.sysprocs.LoadMultipartitionTable;
+import org.voltdb.sysprocs.LoadPartitionTable;
 import org.voltdb.sysprocs.NoOp;
 import org.voltdb.sysprocs.MarkovUpdate;
 import org.voltdb.sysprocs.Quiesce;
@@ -422,6 +424,8 @@ public class VoltCompiler {
 
         try {
             m_jarBuilder.addEntry(CatalogUtil.CATALOG_FILENAME, catalogBytes);
+            m_jarBuilder.addEntry(CatalogUtil.CATALOG_SNAPSHOT_FILENAME,
+                                  CatalogSnapshot.serialize(catalog, CatalogSnapshot.checksum(catalogBytes)));
             m_jarBuilder.addEntry("project.xml", new File(projectFileURL));
             for (final Entry<String, String> e : m_ddlFilePaths.entrySet())
                 m_jarBuilder.addEntry(e.getKey(), new File(e.getValue()));
@@ -1284,6 +1288,7 @@ public class VoltCompiler {
         final Object[][] procedures = {
             // SysProcedure Class                   readonly    everysite
             {LoadMultipartitionTable.class,         false,      true},
+            {LoadPartitionTable.class,              false,      false},
             {DatabaseDump.class,                    true,       true},
             {MarkovUpdate.class,                    true,       true},
             {Shutdown.class,                        false,      true},
@@ -45,6 +45,7 @@
 package org.voltdb.network;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -68,52 +69,131 @@ public class NIOReadStream {
     }
 
     int getInt() {
-        // TODO: Optimize?
-        byte[] intbytes = new byte[4];
-        getBytes(intbytes);
+        if (m_totalAvailable < 4) {
+            throw new IllegalStateException("Requested 4 bytes; only have "
+                    + m_totalAvailable + " bytes; call tryRead() first");
+        }
+
+        // Fast path: the whole int is in the first buffer
+        SharedContainer first = firstReadBuffer();
+        if (first.b.remaining() >= 4) {
+            final int output = first.b.getInt();
+            consumed(first, 4);
+            return output;
+        }
+
+        // Otherwise it straddles two buffers, so we have to go byte-by-byte
         int output = 0;
-        for (int i = 0; i < intbytes.length; ++i) {
+        for (int i = 0; i < 4; ++i) {
+            first = firstReadBuffer();
             output <<= 8;
-            output |= (intbytes[i]) & 0xff;
+            output |= first.b.get() & 0xff;
+            consumed(first, 1);
         }
         return output;
     }
 
     void getBytes(byte[] output) {
-        if (m_totalAvailable < output.length) {
-            throw new IllegalStateException("Requested " + output.length + " bytes; only have "
+        getBytes(ByteBuffer.wrap(output));
+    }
+
+    /**
+     * Copy exactly output.remaining() bytes from the stream into the given buffer.
+     * The position of the output buffer is advanced past the bytes that were copied.
+     */
+    void getBytes(ByteBuffer output) {
+        if (m_totalAvailable < output.remaining()) {
+            throw new IllegalStateException("Requested " + output.remaining() + " bytes; only have "
                     + m_totalAvailable + " bytes; call tryRead() first");
         }
 
-        int bytesCopied = 0;
-        while (bytesCopied < output.length) {
-            BBContainer first = m_readBuffers.peekFirst();
-            if (first == null) {
-                // Steal the write buffer
-                m_writeBuffer.b.flip();
-                m_readBuffers.add(m_writeBuffer);
-                first = m_writeBuffer;
-                m_writeBuffer = null;
-            }
-            assert first.b.remaining() > 0;
+        while (output.hasRemaining()) {
+            SharedContainer first = firstReadBuffer();
 
             // Copy bytes from first into output
-            int bytesRemaining = first.b.remaining();
-            int bytesToCopy = output.length - bytesCopied;
-            if (bytesToCopy > bytesRemaining) bytesToCopy = bytesRemaining;
-            first.b.get(output, bytesCopied, bytesToCopy);
-            bytesCopied += bytesToCopy;
-            m_totalAvailable -= bytesToCopy;
-
-            if (first.b.remaining() == 0) {
-                // read an entire block: move it to the empty buffers list
-                m_readBuffers.poll();
-                first.discard();
-            }
+            int bytesToCopy = output.remaining();
+            if (bytesToCopy > first.b.remaining()) bytesToCopy = first.b.remaining();
+            final int limit = first.b.limit();
+            first.b.limit(first.b.position() + bytesToCopy);
+            output.put(first.b);
+            first.b.limit(limit);
+            consumed(first, bytesToCopy);
         }
+    }
+
+    /**
+     * Remove the next message of the given length from the stream. If the message
+     * is entirely contained in the first read buffer, then the returned container
+     * holds a slice of that buffer and no bytes are copied. Otherwise the message
+     * straddles two or more read buffers and it is copied into a buffer acquired
+     * from the given pool.
+     * <p>
+     * The buffer in the returned container always starts at position zero and its
+     * capacity is the length of the message. The caller must discard the container
+     * once it no longer needs the message so that the read buffer can be recycled.
+     * @param length
+     * @param pool
+     * @return
+     */
+    BBContainer getMessage(final int length, final DBBPool pool) {
+        if (m_totalAvailable < length) {
+            throw new IllegalStateException("Requested " + length + " bytes; only have "
+                    + m_totalAvailable + " bytes; call tryRead() first");
+        }
+
+        final SharedContainer first = firstReadBuffer();
+        if (first.b.remaining() >= length) {
+            final int position = first.b.position();
+            final int limit = first.b.limit();
+            first.b.limit(position + length);
+            final ByteBuffer slice = first.b.slice();
+            first.b.limit(limit);
+            first.b.position(position + length);
+
+            // The stream might discard the read buffer below, so we have
+            // to take our reference before that happens
+            first.retain();
+            consumed(first, length);
+            m_slicedMessages++;
+            return new MessageContainer(slice, (first.address == 0 ? 0 : first.address + position), first);
+        }
+
+        final BBContainer copy = pool.acquire(length);
+        copy.b.clear();
+        copy.b.limit(length);
+        getBytes(copy.b);
+        copy.b.flip();
+        m_copiedMessages++;
+        return new MessageContainer(copy.b.slice(), copy.address, copy);
+    }
+
+    /**
+     * Returns the read buffer that the next byte will come from. If all of the
+     * read buffers have been consumed, then we steal the write buffer.
+     */
+    private SharedContainer firstReadBuffer() {
+        SharedContainer first = m_readBuffers.peekFirst();
+        if (first == null) {
+            // Steal the write buffer
+            m_writeBuffer.b.flip();
+            m_readBuffers.add(m_writeBuffer);
+            first = m_writeBuffer;
+            m_writeBuffer = null;
+        }
+        assert first.b.remaining() > 0;
+        return first;
+    }
 
-        if (bytesCopied > 0) {
-            m_globalAvailable.addAndGet(0 - bytesCopied);
+    /**
+     * Account for bytes that were just removed from the first read buffer.
+     * If we read an entire block then we will release our reference to it.
+     */
+    private void consumed(final SharedContainer first, final int bytes) {
+        m_totalAvailable -= bytes;
+        m_globalAvailable.addAndGet(0 - bytes);
+        if (first.b.remaining() == 0) {
+            m_readBuffers.poll();
+            first.discard();
         }
     }
 
@@ -130,7 +210,7 @@ public class NIOReadStream {
         try {
             while (bytesRead < maxBytes && lastRead > 0) {
                 if (m_writeBuffer == null) {
-                    m_writeBuffer = pool.acquire(BUFFER_SIZE);
+                    m_writeBuffer = new SharedContainer(pool.acquire(BUFFER_SIZE));
                 }
 
                 lastRead = channel.read(m_writeBuffer.b);
@@ -168,7 +248,7 @@ public class NIOReadStream {
     }
 
     void shutdown() {
-        for (BBContainer c : m_readBuffers) {
+        for (SharedContainer c : m_readBuffers) {
             c.discard();
         }
         if (m_writeBuffer != null) {
@@ -179,14 +259,75 @@ public class NIOReadStream {
         m_numReadStreams.decrementAndGet();
     }
 
+    /**
+     * A pooled read buffer that can be shared with the messages that were sliced
+     * out of it. The stream holds one reference until it has consumed the whole
+     * buffer and each message holds another until it is discarded. The buffer only
+     * goes back to the pool once all of them are gone.
+     */
+    private static final class SharedContainer extends BBContainer {
+        private final BBContainer m_origin;
+        private final AtomicInteger m_refCount = new AtomicInteger(1);
+
+        SharedContainer(final BBContainer origin) {
+            super(origin.b, origin.address);
+            m_origin = origin;
+        }
+
+        void retain() {
+            m_refCount.incrementAndGet();
+        }
+
+        @Override
+        public void discard() {
+            if (m_refCount.decrementAndGet() == 0) {
+                m_origin.discard();
+            }
+        }
+    }
+
+    /**
+     * A message returned by getMessage(). Discarding it releases the buffer that it
+     * was sliced out of or copied into.
+     */
+    private static final class MessageContainer extends BBContainer {
+        private BBContainer m_owner;
+
+        MessageContainer(final ByteBuffer b, final long address, final BBContainer owner) {
+            super(b, address);
+            m_owner = owner;
+        }
+
+        @Override
+        public void discard() {
+            if (m_owner != null) {
+                m_owner.discard();
+                m_owner = null;
+            }
+        }
+    }
+
     static final int BUFFER_SIZE = 8192;
-    private final ArrayDeque<BBContainer> m_readBuffers = new ArrayDeque<BBContainer>();
-    private BBContainer m_writeBuffer = null;
+    private final ArrayDeque<SharedContainer> m_readBuffers = new ArrayDeque<SharedContainer>();
+    private SharedContainer m_writeBuffer = null;
     private int m_totalAvailable = 0;
     private AtomicInteger m_globalAvailable = new AtomicInteger(0);
     private AtomicInteger m_numReadStreams = new AtomicInteger(0);
     private AtomicLong m_bytesRead = new AtomicLong();
     private long m_lastBytesRead = 0;
+    private long m_slicedMessages = 0;
+    private long m_copiedMessages = 0;
+
+    /** @returns the number of messages handed out by getMessage() without copying */
+    long getSlicedMessages() {
+        return m_slicedMessages;
+    }
+
+    /** @returns the number of messages that getMessage() had to copy into a new buffer */
+    long getCopiedMessages() {
+        return m_copiedMessages;
+    }
+
     long getBytesRead(boolean interval) {
         if (interval) {
             final long bytesRead = m_bytesRead.get();
@@ -21,6 +21,8 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.nio.ByteBuffer;
 import java.io.IOException;
 
+import org.voltdb.utils.DBBPool.BBContainer;
+
 public abstract class VoltProtocolHandler implements InputHandler {
     /** VoltProtocolPorts each have a unique id */
     private static AtomicLong m_globalConnectionCounter = new AtomicLong(0);
@@ -30,10 +32,28 @@ public abstract class VoltProtocolHandler implements InputHandler {
     /** serial number of this VoltPort */
     private final long m_connectionId;
     private int m_nextLength;
+    /** if true, messages are slices of the pooled read buffers instead of copies */
+    private final boolean m_pooledMessages;
+    /** the container for the last pooled message that hasn't been claimed yet */
+    private BBContainer m_message;
 
     public VoltProtocolHandler() {
+        this(false);
+    }
+
+    /**
+     * If pooledMessages is true, then the ByteBuffer returned by retrieveNextMessage()
+     * is backed by the connection's pooled read buffers rather than a fresh heap
+     * buffer. A subclass that needs the message after handleMessage() returns must
+     * take ownership of it with claimMessage() and then discard the container when
+     * it is done. Otherwise the buffer is recycled on the next call to
+     * retrieveNextMessage().
+     * @param pooledMessages
+     */
+    public VoltProtocolHandler(boolean pooledMessages) {
         m_sequenceId = 0;
         m_connectionId = m_globalConnectionCounter.incrementAndGet();
+        m_pooledMessages = pooledMessages;
     }
 
     @Override
@@ -48,6 +68,12 @@ public abstract class VoltProtocolHandler implements InputHandler {
          */
         ByteBuffer result = null;
 
+        // Nobody claimed the last message, so it's safe to recycle its buffer
+        if (m_message != null) {
+            m_message.discard();
+            m_message = null;
+        }
+
         if (m_nextLength == 0 && inputStream.dataAvailable() > (Integer.SIZE/8)) {
             m_nextLength = inputStream.getInt();
             if (m_nextLength < 1) {
@@ -63,8 +89,13 @@ public abstract class VoltProtocolHandler implements InputHandler {
             assert m_nextLength > 0;
         }
         if (m_nextLength > 0 && inputStream.dataAvailable() >= m_nextLength) {
-            result = ByteBuffer.allocate(m_nextLength);
-            inputStream.getBytes(result.array());
+            if (m_pooledMessages) {
+                m_message = inputStream.getMessage(m_nextLength, VoltPort.m_pool.get());
+                result = m_message.b;
+            } else {
+                result = ByteBuffer.allocate(m_nextLength);
+                inputStream.getBytes(result.array());
+            }
             m_nextLength = 0;
             m_sequenceId++;
         }
@@ -81,6 +112,10 @@ public abstract class VoltProtocolHandler implements InputHandler {
 
     @Override
     public void stopped(Connection c) {
+        if (m_message != null) {
+            m_message.discard();
+            m_message = null;
+        }
     }
 
     @Override
@@ -100,4 +135,15 @@ public abstract class VoltProtocolHandler implements InputHandler {
         return m_nextLength;
     }
 
+    /**
+     * Take ownership of the container for the message that was just returned by
+     * retrieveNextMessage(). The caller is responsible for discarding it.
+     * Returns null if this handler does not use pooled messages.
+     */
+    protected BBContainer claimMessage() {
+        final BBContainer message = m_message;
+        m_message = null;
+        return message;
+    }
+
 }
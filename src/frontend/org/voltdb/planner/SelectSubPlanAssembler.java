@@ -27,13 +27,17 @@ import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Table;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
+import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.ReceivePlanNode;
 import org.voltdb.types.JoinType;
 
+import edu.brown.hstore.conf.HStoreConf;
+
 /**
  * For a select, delete or update plan, this class builds the part of the plan
  * which collects tuples from relations. Given the tables and the predicate
@@ -51,6 +55,9 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
     /** The list of all possible join orders, assembled by queueAllJoinOrders */
     ArrayDeque<Table[]> m_joinOrders = new ArrayDeque<Table[]>();
 
+    /** Whether we are allowed to generate plans that use HashJoinPlanNodes */
+    final boolean m_hashJoins;
+
     /**
      *
      * @param db The catalog's Database object.
@@ -61,6 +68,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                            boolean singlePartition, int partitionCount)
     {
         super(context, db, parsedStmt, singlePartition, partitionCount);
+        m_hashJoins = HStoreConf.singleton(true).global.hashjoin_enable;
         queueAllJoinOrders();
     }
 
@@ -174,11 +182,36 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         // for each access path
         for (AccessPath[] accessPath : listOfAccessPathCombos) {
             // get a plan
-            AbstractPlanNode scanPlan = getSelectSubPlanForAccessPath(joinOrder, accessPath);
+            AbstractPlanNode scanPlan = getSelectSubPlanForAccessPath(joinOrder, accessPath, false);
             m_plans.add(scanPlan);
+
+            // if any of the nested loop joins in that plan could be done with a hash
+            // table instead, then add another plan that does so and let the cost model
+            // choose between the two of them
+            if (m_hashJoins && canUseHashJoin(accessPath)) {
+                scanPlan = getSelectSubPlanForAccessPath(joinOrder, accessPath, true);
+                m_plans.add(scanPlan);
+            }
         }
     }
 
+    /**
+     * Returns true if at least one of the joins for the given access path set would
+     * use a NestLoopPlanNode and has an equality join clause that a HashJoinPlanNode
+     * could use as its key.
+     *
+     * @param accessPath An array of access paths for a specific join order.
+     */
+    private boolean canUseHashJoin(AccessPath[] accessPath) {
+        // the last table in the join order is never the outer table for a join
+        for (int i = 0; i < accessPath.length - 1; i++) {
+            if (accessPath[i].index == null && HashJoinPlanNode.hasEquiJoinClause(accessPath[i].joinExprs)) {
+                return (true);
+            }
+        } // FOR
+        return (false);
+    }
+
     /**
      * Given a specific join order and access path set for that join order, construct the plan
      * that gives the right tuples. This method is the meat of sub-plan-graph generation, but all
@@ -186,10 +219,12 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
      *
      * @param joinOrder An array of tables in a specific join order.
      * @param accessPath An array of access paths that match with the input tables.
+     * @param hashJoins Use a HashJoinPlanNode instead of a NestLoopPlanNode whenever the
+     * join clauses allow it.
      * @return A completed plan-sub-graph that should match the correct tuples from the
      * correct tables.
      */
-    private AbstractPlanNode getSelectSubPlanForAccessPath(Table[] joinOrder, AccessPath[] accessPath) {
+    private AbstractPlanNode getSelectSubPlanForAccessPath(Table[] joinOrder, AccessPath[] accessPath, boolean hashJoins) {
 
         // recursive stopping condition:
         //
@@ -204,7 +239,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         AccessPath[] subAccessPath = Arrays.copyOfRange(accessPath, 1, accessPath.length);
 
         // recursively call this method to get the plan for the tail of the join order
-        AbstractPlanNode subPlan = getSelectSubPlanForAccessPath(subJoinOrder, subAccessPath);
+        AbstractPlanNode subPlan = getSelectSubPlanForAccessPath(subJoinOrder, subAccessPath, hashJoins);
 
         // get all the clauses that join the applicable two tables
         ArrayList<AbstractExpression> joinClauses = accessPath[0].joinExprs;
@@ -291,10 +326,16 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             retval = nlijNode;
         }
         else {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode(m_context, PlanAssembler.getNextPlanNodeId());
+            AbstractJoinPlanNode nljNode = null;
+            if (hashJoins && HashJoinPlanNode.hasEquiJoinClause(joinClauses)) {
+                nljNode = new HashJoinPlanNode(m_context, PlanAssembler.getNextPlanNodeId());
+                nljNode.setJoinType(JoinType.INNER);
+            } else {
+                nljNode = new NestLoopPlanNode(m_context, PlanAssembler.getNextPlanNodeId());
+                nljNode.setJoinType(JoinType.LEFT);
+            }
             if ((joinClauses != null) && (joinClauses.size() > 0))
                 nljNode.setPredicate(ExpressionUtil.combine(joinClauses));
-            nljNode.setJoinType(JoinType.LEFT);
 
             // combine the tails plan graph with the new head node
             nljNode.addAndLinkChild(nljAccessPlan);
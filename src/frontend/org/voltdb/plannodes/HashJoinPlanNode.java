@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2010 VoltDB L.L.C.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.Collection;
+
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.planner.PlanStatistics;
+import org.voltdb.planner.PlannerContext;
+import org.voltdb.planner.StatsField;
+import org.voltdb.types.ExpressionType;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * Join two input tables by building a hash table on one of them and then probing
+ * it with the tuples from the other one. The join keys are the equality
+ * clauses in the predicate between a column from each of the two tables.
+ * The EE picks the smaller input to build the hash table on when the node
+ * is executed and then evaluates the entire predicate on every match, so the
+ * output is exactly the same as a NestLoopPlanNode with the same predicate.
+ * Like the NestLoopPlanNode, the output columns are all of the columns from the
+ * first child followed by all of the columns from the second child.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    /**
+     * @param id
+     */
+    public HashJoinPlanNode(PlannerContext context, Integer id) {
+        super(context, id);
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_children.size() != 2) {
+            throw new Exception("ERROR: " + this + " has " + m_children.size() + " children instead of 2");
+        }
+        if (m_predicate == null) {
+            throw new Exception("ERROR: " + this + " does not have a join predicate");
+        }
+    }
+
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        boolean result = super.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+
+        // Every tuple from both sides gets hashed once, either to build
+        // the hash table or to probe it
+        long hashed = 0;
+        for (AbstractPlanNode child : m_children) {
+            hashed += child.m_estimatedOutputTupleCount;
+        } // FOR
+        stats.incrementStatistic(0, StatsField.TUPLES_READ, hashed);
+        stats.incrementStatistic(0, StatsField.HASH_VALUES_COMPUTED, hashed);
+        return (result);
+    }
+
+    /**
+     * Returns true if the given expression is an equality comparison between
+     * columns of the same type from two different tables. These are the clauses
+     * that the EE can use as the keys for the hash table.
+     * @param expr
+     * @return
+     */
+    public static boolean isEquiJoinClause(AbstractExpression expr) {
+        if (expr == null || expr.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+            return (false);
+        }
+        AbstractExpression left = expr.getLeft();
+        AbstractExpression right = expr.getRight();
+        if ((left instanceof TupleValueExpression) == false || (right instanceof TupleValueExpression) == false) {
+            return (false);
+        }
+        String leftTable = ((TupleValueExpression)left).getTableName();
+        String rightTable = ((TupleValueExpression)right).getTableName();
+        return (leftTable != null && leftTable.equalsIgnoreCase(rightTable) == false &&
+                left.getValueType() == right.getValueType());
+    }
+
+    /**
+     * Returns true if at least one of the given join clauses can be used
+     * as a key for a HashJoinPlanNode.
+     * @param joinClauses
+     * @return
+     */
+    public static boolean hasEquiJoinClause(Collection<AbstractExpression> joinClauses) {
+        if (joinClauses != null) {
+            for (AbstractExpression expr : joinClauses) {
+                if (isEquiJoinClause(expr)) return (true);
+            } // FOR
+        }
+        return (false);
+    }
+}
@@ -17,9 +17,17 @@
 
 package org.voltdb.plannodes;
 
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.planner.PlanStatistics;
 import org.voltdb.planner.PlannerContext;
+import org.voltdb.planner.StatsField;
 import org.voltdb.types.PlanNodeType;
 
+import edu.brown.hstore.conf.HStoreConf;
+
 /**
  *
  */
@@ -36,4 +44,19 @@ public class NestLoopPlanNode extends AbstractJoinPlanNode {
         return PlanNodeType.NESTLOOP;
     }
 
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        boolean result = super.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+
+        // The inner table gets scanned once for every tuple in the outer table
+        // We only charge for this when hash joins are enabled so that the plans
+        // for existing queries don't change otherwise
+        if (HStoreConf.singleton(true).global.hashjoin_enable && m_children.size() == 2) {
+            long outer = m_children.get(0).m_estimatedOutputTupleCount;
+            long inner = m_children.get(1).m_estimatedOutputTupleCount;
+            stats.incrementStatistic(0, StatsField.TUPLES_READ, outer * inner);
+        }
+        return (result);
+    }
+
 }
@@ -0,0 +1,116 @@
+package org.voltdb.sysprocs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.DependencySet;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Table;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Load a VoltTable whose rows all belong to a single partition directly into
+ * that partition as a single-partition transaction. The caller is responsible
+ * for splitting the rows up by partition ahead of time (see
+ * {@link org.voltdb.client.BulkLoader}). Unlike @LoadMultipartitionTable, this
+ * does not need to lock the other partitions in the cluster or ship any data
+ * between sites.
+ * <p>
+ * Replicated tables and tables with a vertical partition must still be loaded
+ * with @LoadMultipartitionTable.
+ */
+@ProcInfo(
+    partitionParam = 0,
+    singlePartition = true
+)
+public class LoadPartitionTable extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(LoadPartitionTable.class);
+    private static final LoggerBoolean debug = new LoggerBoolean();
+    static {
+        LoggerUtil.attachObserver(LOG, debug);
+    }
+
+    public static final ColumnInfo ResultsColumns[] = {
+        new ColumnInfo("PARTITION", VoltType.INTEGER),
+        new ColumnInfo("TABLE", VoltType.STRING),
+        new ColumnInfo("TUPLES", VoltType.BIGINT),
+    };
+
+    @Override
+    public void initImpl() {
+        executor.registerPlanFragment(SysProcFragmentId.PF_loadPartition, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(Long txn_id,
+                                             Map<Integer, List<VoltTable>> dependencies,
+                                             int fragmentId,
+                                             ParameterSet params,
+                                             PartitionExecutor.SystemProcedureExecutionContext context) {
+        assert(fragmentId == SysProcFragmentId.PF_loadPartition);
+        throw new IllegalAccessError("Invalid invocation of " + this.getClass() + ".executePlanFragment()");
+    }
+
+    public VoltTable[] run(int partition, String tableName, VoltTable table) {
+        assert(table != null) :
+            "VoltTable to be loaded into " + tableName + " is null in txn #" + this.getTransactionId();
+        if (partition != this.partitionId) {
+            String msg = String.format("Trying to load data for partition %d at partition %d",
+                                       partition, this.partitionId);
+            throw new VoltAbortException(msg);
+        }
+
+        Table catalog_tbl = catalogContext.database.getTables().getIgnoreCase(tableName);
+        if (catalog_tbl == null) {
+            throw new VoltAbortException("Table '" + tableName + "' does not exist");
+        }
+        else if (catalog_tbl.getIsreplicated()) {
+            throw new VoltAbortException("Replicated table '" + catalog_tbl.getName() + "' must be loaded " +
+                                         "with @" + LoadMultipartitionTable.class.getSimpleName());
+        }
+        else if (CatalogUtil.getVerticalPartition(catalog_tbl) != null) {
+            throw new VoltAbortException("Table '" + catalog_tbl.getName() + "' has a vertical partition and " +
+                                         "must be loaded with @" + LoadMultipartitionTable.class.getSimpleName());
+        }
+
+        // Make sure that the client did not give us any rows for another partition.
+        // This is cheap compared to actually loading the rows into the EE
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            int p = -1;
+            try {
+                p = this.p_estimator.getTableRowPartition(catalog_tbl, table);
+            } catch (Exception ex) {
+                throw new VoltAbortException("Failed to calculate partition for " + catalog_tbl.getName() + " row");
+            }
+            if (p != this.partitionId) {
+                String msg = String.format("Row #%d for table '%s' belongs to partition %d, not partition %d",
+                                           table.getActiveRowIndex(), catalog_tbl.getName(), p, this.partitionId);
+                throw new VoltAbortException(msg);
+            }
+        } // WHILE
+        table.resetRowPosition();
+
+        if (debug.val)
+            LOG.debug(String.format("Loading %d tuples for table '%s' at partition %d in txn #%d",
+                      table.getRowCount(), catalog_tbl.getName(), this.partitionId, this.getTransactionId()));
+        this.executor.loadTable(this.getTransactionState(),
+                                catalogContext.cluster.getName(),
+                                catalogContext.database.getName(),
+                                catalog_tbl.getName(), table, 0);
+
+        VoltTable result = new VoltTable(ResultsColumns);
+        result.addRow(this.partitionId, catalog_tbl.getName(), table.getRowCount());
+        return new VoltTable[]{ result };
+    }
+}
@@ -103,6 +103,9 @@ public class Statistics extends VoltSystemProcedure {
         addStatsFragments(SysProcSelector.SITEPROFILER, SysProcFragmentId.PF_siteProfilerData, SysProcFragmentId.PF_siteProfilerAggregator);
         addStatsFragments(SysProcSelector.PLANNERPROFILER, SysProcFragmentId.PF_plannerProfilerData, SysProcFragmentId.PF_plannerProfilerAggregator);
         addStatsFragments(SysProcSelector.ANTICACHE, SysProcFragmentId.PF_anticacheProfilerData, SysProcFragmentId.PF_anticacheProfilerAggregator);
+        addStatsFragments(SysProcSelector.ADMISSIONCONTROL, SysProcFragmentId.PF_admissionControlData, SysProcFragmentId.PF_admissionControlAggregator);
+        addStatsFragments(SysProcSelector.METRICS, SysProcFragmentId.PF_metricsData, SysProcFragmentId.PF_metricsAggregator);
+        addStatsFragments(SysProcSelector.RESULTCACHE, SysProcFragmentId.PF_resultCacheData, SysProcFragmentId.PF_resultCacheAggregator);
     } // STATIC
     
     @Override
@@ -146,7 +149,10 @@ public class Statistics extends VoltSystemProcedure {
             case SysProcFragmentId.PF_specexecProfilerData:
             case SysProcFragmentId.PF_siteProfilerData:
             case SysProcFragmentId.PF_plannerProfilerData:
-            case SysProcFragmentId.PF_anticacheProfilerData: {
+            case SysProcFragmentId.PF_anticacheProfilerData:
+            case SysProcFragmentId.PF_admissionControlData:
+            case SysProcFragmentId.PF_metricsData:
+            case SysProcFragmentId.PF_resultCacheData: {
                 assert(params.toArray().length == 2);
                 final boolean interval =
                     ((Byte)params.toArray()[0]).byteValue() == 0 ? false : true;
@@ -187,7 +193,10 @@ public class Statistics extends VoltSystemProcedure {
             case SysProcFragmentId.PF_specexecProfilerAggregator:
             case SysProcFragmentId.PF_siteProfilerAggregator:
             case SysProcFragmentId.PF_plannerProfilerAggregator:
-            case SysProcFragmentId.PF_anticacheProfilerAggregator: {
+            case SysProcFragmentId.PF_anticacheProfilerAggregator:
+            case SysProcFragmentId.PF_admissionControlAggregator:
+            case SysProcFragmentId.PF_metricsAggregator:
+            case SysProcFragmentId.PF_resultCacheAggregator: {
                 // Do a reverse look up to find the input dependency id
                 int dataFragmentId = -1;
                 for (Integer id : STATS_DATA.keySet()) {
@@ -284,22 +293,21 @@ public class Statistics extends VoltSystemProcedure {
                     try {
                         final Map<Long, Pair<String,long[]>> stats = executor.getHStoreSite().getVoltNetwork().getIOStats(interval);
     
-                        final Integer hostId = executor.getHStoreSite().getSiteId();
+                        final int hostId = executor.getHStoreSite().getSiteId();
                         final String hostname = executor.getHStoreSite().getSiteName();
+                        final VoltTable.RowBuilder row = result.getRowBuilder();
                         for (Map.Entry<Long, Pair<String, long[]>> e : stats.entrySet()) {
-                            final Long connectionId = e.getKey();
-                            final String remoteHostname = e.getValue().getFirst();
                             final long counters[] = e.getValue().getSecond();
-                            result.addRow(
-                                          now,
-                                          hostId,
-                                          hostname,
-                                          connectionId,
-                                          remoteHostname,
-                                          counters[0],
-                                          counters[1],
-                                          counters[2],
-                                          counters[3]);
+                            row.setLong(0, now)
+                               .setLong(1, hostId)
+                               .setString(2, hostname)
+                               .setLong(3, e.getKey())
+                               .setString(4, e.getValue().getFirst())
+                               .setLong(5, counters[0])
+                               .setLong(6, counters[1])
+                               .setLong(7, counters[2])
+                               .setLong(8, counters[3])
+                               .commit();
                         }
                     } catch (Exception e) {
                         HOST_LOG.warn("Error retrieving stats", e);
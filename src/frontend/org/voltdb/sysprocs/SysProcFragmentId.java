@@ -59,6 +59,12 @@ public class SysProcFragmentId {
     public static final int PF_plannerProfilerAggregator = 37;
     public static final int PF_anticacheProfilerData = 38;
     public static final int PF_anticacheProfilerAggregator = 39;
+    public static final int PF_admissionControlData = 40;
+    public static final int PF_admissionControlAggregator = 41;
+    public static final int PF_metricsData = 42;
+    public static final int PF_metricsAggregator = 43;
+    public static final int PF_resultCacheData = 44;
+    public static final int PF_resultCacheAggregator = 45;
 
     // @Shutdown
     public static final int PF_shutdownCommand = 50;
@@ -97,6 +103,9 @@ public class SysProcFragmentId {
     public static final int PF_loadDistribute = 70;
     public static final int PF_loadAggregate = 71;
     
+    // @LoadPartitionTable
+    public static final int PF_loadPartition = 72;
+    
     // @SnapshotRestoreLocal
     public static final int PF_SRLloadDistribute = 75;
     public static final int PF_SRLloadAggregate = 76;
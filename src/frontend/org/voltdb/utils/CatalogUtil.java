@@ -47,6 +47,12 @@ public abstract class CatalogUtil {
 
     public static final String CATALOG_FILENAME = "catalog.txt";
 
+    /**
+     * Binary CatalogSnapshot of the catalog in CATALOG_FILENAME.
+     * This is only used to load the catalog faster.
+     */
+    public static final String CATALOG_SNAPSHOT_FILENAME = "catalog.bin";
+
     /**
      * 
      * @param from_column
@@ -132,19 +138,37 @@ public abstract class CatalogUtil {
         return CatalogUtil.getVoltTable(catalogColumns);
     }
     
+    /**
+     *
+     * @param catalogTable
+     * @param pool
+     * @return An empty table with the same schema as a given catalog table whose
+     * backing buffers are acquired from the given pool. The caller must invoke
+     * VoltTable.discardBuffer() once the table is no longer needed.
+     */
+    public static VoltTable getVoltTable(Table catalogTable, DBBPool pool) {
+        assert(catalogTable != null) : "Unexpected null catalog table";
+        List<Column> catalogColumns = CatalogUtil.getSortedCatalogItems(catalogTable.getColumns(), "index");
+        return new VoltTable(pool, CatalogUtil.getColumnInfos(catalogColumns));
+    }
+    
     /**
     *
     * @param catalogTable
     * @return An empty table with the same schema as a given catalog table.
     */
     public static VoltTable getVoltTable(Collection<Column> catalogColumns) {
-       VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[catalogColumns.size()];
-       int i = 0;
-       for (Column catCol : catalogColumns) {
-           columns[i++] = new VoltTable.ColumnInfo(catCol.getTypeName(), VoltType.get((byte)catCol.getType()));
-       }
-       return new VoltTable(columns);
+       return new VoltTable(CatalogUtil.getColumnInfos(catalogColumns));
    }
+    
+    private static VoltTable.ColumnInfo[] getColumnInfos(Collection<Column> catalogColumns) {
+        VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[catalogColumns.size()];
+        int i = 0;
+        for (Column catCol : catalogColumns) {
+            columns[i++] = new VoltTable.ColumnInfo(catCol.getTypeName(), VoltType.get((byte)catCol.getType()));
+        }
+        return (columns);
+    }
 
     /**
      * Given a set of catalog items, return a sorted list of them, sorted by
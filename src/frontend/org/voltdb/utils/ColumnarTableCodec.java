@@ -0,0 +1,451 @@
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.types.VoltDecimalHelper;
+
+/**
+ * Column-oriented wire encoding for large VoltTables that are shipped between sites.
+ * The rows of the table are pivoted into one block per column and each block is
+ * encoded according to the column's type:
+ * <ul>
+ *  <li>Integral and timestamp columns are delta-encoded as zig-zag varints</li>
+ *  <li>String columns are dictionary-encoded if there are few distinct values,
+ *      otherwise they are written as varint length-prefixed bytes</li>
+ *  <li>Everything else is written in its fixed-width form</li>
+ * </ul>
+ * The column blocks are then compressed together with Snappy.
+ * <p>
+ * The encoded bytes start with a negative magic number so they can never be
+ * confused with a regular serialized VoltTable (whose first int is the positive
+ * length of the table's buffer). Use {@link #deserialize(ByteBuffer)} on the
+ * receiving side to handle either format.
+ */
+public abstract class ColumnarTableCodec {
+
+    /** Marker written at the front of every encoded table */
+    public static final int MAGIC = 0xC01CDEC1;
+
+    private static final byte ENC_PLAIN = 0;
+    private static final byte ENC_DELTA = 1;
+    private static final byte ENC_DICTIONARY = 2;
+
+    /**
+     * Returns true if the given table is big enough that it should be encoded
+     * with this codec before sending it over the network
+     * @param vt
+     * @param threshold Minimum size of the table in bytes
+     * @return
+     */
+    public static boolean shouldEncode(VoltTable vt, int threshold) {
+        return (threshold >= 0 && vt.getUnderlyingBufferSize() >= threshold && vt.getRowCount() > 0);
+    }
+
+    /**
+     * Returns true if the serialized bytes in the buffer were created by
+     * {@link #encode(VoltTable)}. The buffer's position is not changed.
+     * @param buffer
+     * @return
+     */
+    public static boolean isEncoded(ByteBuffer buffer) {
+        return (buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == MAGIC);
+    }
+
+    /**
+     * Serialize the given table. If the table is at least threshold bytes, then
+     * it will be encoded with this codec. Otherwise it will use the regular
+     * VoltTable serialization. A negative threshold disables encoding.
+     * @param vt
+     * @param threshold
+     * @return
+     * @throws IOException
+     */
+    public static byte[] serialize(VoltTable vt, int threshold) throws IOException {
+        if (shouldEncode(vt, threshold)) {
+            return (encode(vt));
+        }
+        return (FastSerializer.serialize(vt));
+    }
+
+    /**
+     * Deserialize a VoltTable that was created by either {@link #serialize(VoltTable, int)}
+     * or the regular VoltTable serialization.
+     * @param buffer
+     * @return
+     * @throws IOException
+     */
+    public static VoltTable deserialize(ByteBuffer buffer) throws IOException {
+        if (isEncoded(buffer)) {
+            return (decode(buffer));
+        }
+        return (FastDeserializer.deserialize(buffer, VoltTable.class));
+    }
+
+    // ----------------------------------------------------------------------------
+    // ENCODING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Encode the given table into its compressed columnar form.
+     * The table's row position is restored before this returns.
+     * @param vt
+     * @return
+     * @throws IOException
+     */
+    public static byte[] encode(VoltTable vt) throws IOException {
+        final int numRows = vt.getRowCount();
+        final int rowIndex = vt.getActiveRowIndex();
+        final int rowPosition = vt.getActiveRowPosition();
+        byte body[] = null;
+        try {
+            body = encodeColumns(vt, numRows);
+        } finally {
+            // Put the caller's cursor back where it was
+            if (rowIndex >= 0 && rowIndex < numRows) {
+                vt.moveToPosition(rowIndex, rowPosition);
+            } else if (rowIndex >= numRows) {
+                vt.advanceToRow(rowIndex);
+            } else {
+                vt.resetRowPosition();
+            }
+        }
+        
+        byte compressed[] = CompressionService.compressBytes(body);
+        ByteBuffer result = ByteBuffer.allocate(4 + compressed.length);
+        result.putInt(MAGIC);
+        result.put(compressed);
+        return (result.array());
+    }
+    
+    private static byte[] encodeColumns(VoltTable vt, int numRows) throws IOException {
+        final int numCols = vt.getColumnCount();
+        FastSerializer fs = new FastSerializer();
+
+        // Schema
+        fs.writeByte(vt.getStatusCode());
+        fs.writeShort(numCols);
+        for (int col = 0; col < numCols; col++) {
+            fs.writeByte(vt.getColumnType(col).getValue());
+            fs.writeString(vt.getColumnName(col));
+        } // FOR
+        fs.writeInt(numRows);
+
+        // Column Blocks
+        for (int col = 0; col < numCols; col++) {
+            VoltType type = vt.getColumnType(col);
+            vt.resetRowPosition();
+            switch (type) {
+                case TINYINT:
+                case SMALLINT:
+                case INTEGER:
+                case BIGINT:
+                case TIMESTAMP: {
+                    fs.writeByte(ENC_DELTA);
+                    long prev = 0;
+                    while (vt.advanceRow()) {
+                        long val = (type == VoltType.TIMESTAMP ? vt.getTimestampAsLong(col) : vt.getLong(col));
+                        writeVarLong(fs, zigzag(val - prev));
+                        prev = val;
+                    } // WHILE
+                    break;
+                }
+                case BOOLEAN: {
+                    fs.writeByte(ENC_PLAIN);
+                    while (vt.advanceRow()) {
+                        // getLong() gives us the raw byte, including the null value
+                        fs.writeByte((int)vt.getLong(col));
+                    } // WHILE
+                    break;
+                }
+                case FLOAT: {
+                    fs.writeByte(ENC_PLAIN);
+                    while (vt.advanceRow()) {
+                        fs.writeDouble(vt.getDouble(col));
+                    } // WHILE
+                    break;
+                }
+                case DECIMAL: {
+                    fs.writeByte(ENC_PLAIN);
+                    while (vt.advanceRow()) {
+                        BigDecimal val = vt.getDecimalAsBigDecimal(col);
+                        if (vt.wasNull()) {
+                            VoltDecimalHelper.serializeNull(fs);
+                        } else {
+                            VoltDecimalHelper.serializeBigDecimal(val, fs);
+                        }
+                    } // WHILE
+                    break;
+                }
+                case STRING:
+                    encodeStrings(fs, vt, col, numRows);
+                    break;
+                default:
+                    throw new IOException("Unsupported column type " + type + " for " + vt.getColumnName(col));
+            } // SWITCH
+        } // FOR
+        return (fs.getBytes());
+    }
+
+    private static void encodeStrings(FastSerializer fs, VoltTable vt, int col, int numRows) throws IOException {
+        // Build up the dictionary. We give up once it's clear that it's not going to help
+        final int maxEntries = numRows / 2;
+        Map<ByteBuffer, Integer> dictionary = new HashMap<ByteBuffer, Integer>();
+        int codes[] = new int[numRows];
+        int row = 0;
+        while (vt.advanceRow()) {
+            byte val[] = vt.getStringAsBytes(col);
+            if (val == null) {
+                codes[row++] = -1;
+                continue;
+            }
+            ByteBuffer key = ByteBuffer.wrap(val);
+            Integer idx = dictionary.get(key);
+            if (idx == null) {
+                if (dictionary.size() >= maxEntries) {
+                    dictionary = null;
+                    break;
+                }
+                idx = dictionary.size();
+                dictionary.put(key, idx);
+            }
+            codes[row++] = idx.intValue();
+        } // WHILE
+
+        // Dictionary Encoding
+        // The null value is always the last entry in the dictionary
+        if (dictionary != null) {
+            fs.writeByte(ENC_DICTIONARY);
+            ByteBuffer entries[] = new ByteBuffer[dictionary.size()];
+            for (Map.Entry<ByteBuffer, Integer> e : dictionary.entrySet()) {
+                entries[e.getValue().intValue()] = e.getKey();
+            } // FOR
+            writeVarLong(fs, entries.length + 1);
+            for (ByteBuffer entry : entries) {
+                writeVarLong(fs, entry.remaining() + 1);
+                fs.write(entry.array(), entry.arrayOffset(), entry.remaining());
+            } // FOR
+            writeVarLong(fs, 0);
+            for (int i = 0; i < numRows; i++) {
+                writeVarLong(fs, codes[i] == -1 ? entries.length : codes[i]);
+            } // FOR
+        }
+        // Plain Encoding
+        else {
+            fs.writeByte(ENC_PLAIN);
+            vt.resetRowPosition();
+            while (vt.advanceRow()) {
+                byte val[] = vt.getStringAsBytes(col);
+                if (val == null) {
+                    writeVarLong(fs, 0);
+                } else {
+                    writeVarLong(fs, val.length + 1);
+                    fs.write(val);
+                }
+            } // WHILE
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // DECODING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Decode a table that was created by {@link #encode(VoltTable)}
+     * @param buffer
+     * @return
+     * @throws IOException
+     */
+    public static VoltTable decode(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Buffer does not contain an encoded VoltTable");
+        }
+        byte compressed[] = new byte[buffer.remaining()];
+        buffer.get(compressed);
+        ByteBuffer in = ByteBuffer.wrap(CompressionService.decompressBytes(compressed));
+
+        // Schema
+        final byte status = in.get();
+        final int numCols = in.getShort();
+        VoltTable.ColumnInfo columns[] = new VoltTable.ColumnInfo[numCols];
+        VoltType types[] = new VoltType[numCols];
+        for (int col = 0; col < numCols; col++) {
+            types[col] = VoltType.get(in.get());
+            String name = FastDeserializer.readString(in);
+            columns[col] = new VoltTable.ColumnInfo(name, types[col]);
+        } // FOR
+        final int numRows = in.getInt();
+
+        // Column Blocks
+        long longs[][] = new long[numCols][];
+        double doubles[][] = new double[numCols][];
+        BigDecimal decimals[][] = new BigDecimal[numCols][];
+        byte strings[][][] = new byte[numCols][][];
+        int stringCodes[][] = new int[numCols][];
+        for (int col = 0; col < numCols; col++) {
+            final byte encoding = in.get();
+            switch (types[col]) {
+                case TINYINT:
+                case SMALLINT:
+                case INTEGER:
+                case BIGINT:
+                case TIMESTAMP: {
+                    assert(encoding == ENC_DELTA);
+                    long vals[] = longs[col] = new long[numRows];
+                    long prev = 0;
+                    for (int row = 0; row < numRows; row++) {
+                        prev += unzigzag(readVarLong(in));
+                        vals[row] = prev;
+                    } // FOR
+                    break;
+                }
+                case BOOLEAN: {
+                    assert(encoding == ENC_PLAIN);
+                    long vals[] = longs[col] = new long[numRows];
+                    for (int row = 0; row < numRows; row++) {
+                        vals[row] = in.get();
+                    } // FOR
+                    break;
+                }
+                case FLOAT: {
+                    assert(encoding == ENC_PLAIN);
+                    double vals[] = doubles[col] = new double[numRows];
+                    for (int row = 0; row < numRows; row++) {
+                        vals[row] = in.getDouble();
+                    } // FOR
+                    break;
+                }
+                case DECIMAL: {
+                    assert(encoding == ENC_PLAIN);
+                    BigDecimal vals[] = decimals[col] = new BigDecimal[numRows];
+                    for (int row = 0; row < numRows; row++) {
+                        vals[row] = VoltDecimalHelper.deserializeBigDecimal(in);
+                    } // FOR
+                    break;
+                }
+                case STRING: {
+                    if (encoding == ENC_DICTIONARY) {
+                        byte entries[][] = strings[col] = new byte[(int)readVarLong(in)][];
+                        for (int i = 0; i < entries.length; i++) {
+                            entries[i] = readBytes(in);
+                        } // FOR
+                        int codes[] = stringCodes[col] = new int[numRows];
+                        for (int row = 0; row < numRows; row++) {
+                            codes[row] = (int)readVarLong(in);
+                        } // FOR
+                    } else {
+                        assert(encoding == ENC_PLAIN);
+                        byte vals[][] = strings[col] = new byte[numRows][];
+                        for (int row = 0; row < numRows; row++) {
+                            vals[row] = readBytes(in);
+                        } // FOR
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException("Unsupported column type " + types[col] + " for column #" + col);
+            } // SWITCH
+        } // FOR
+
+        // Pivot the columns back into rows
+        VoltTable vt = new VoltTable(columns);
+        vt.setStatusCode(status);
+        VoltTable.RowBuilder builder = vt.getRowBuilder();
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                VoltType type = types[col];
+                switch (type) {
+                    case TINYINT:
+                    case SMALLINT:
+                    case INTEGER:
+                    case BIGINT:
+                    case TIMESTAMP:
+                        if (isNull(type, longs[col][row])) builder.setNull(col);
+                        else builder.setLong(col, longs[col][row]);
+                        break;
+                    case BOOLEAN:
+                        if (longs[col][row] == VoltType.NULL_TINYINT) builder.setNull(col);
+                        else builder.setBoolean(col, longs[col][row] != 0);
+                        break;
+                    case FLOAT:
+                        builder.setDouble(col, doubles[col][row]);
+                        break;
+                    case DECIMAL:
+                        builder.setDecimal(col, decimals[col][row]);
+                        break;
+                    case STRING:
+                        if (stringCodes[col] != null) builder.setString(col, strings[col][stringCodes[col][row]]);
+                        else builder.setString(col, strings[col][row]);
+                        break;
+                    default:
+                        assert(false) : "Unexpected " + type;
+                } // SWITCH
+            } // FOR
+            builder.commit();
+        } // FOR
+        return (vt);
+    }
+
+    private static boolean isNull(VoltType type, long val) {
+        switch (type) {
+            case TINYINT:
+                return (val == VoltType.NULL_TINYINT);
+            case SMALLINT:
+                return (val == VoltType.NULL_SMALLINT);
+            case INTEGER:
+                return (val == VoltType.NULL_INTEGER);
+            default:
+                return (val == VoltType.NULL_BIGINT);
+        } // SWITCH
+    }
+
+    // ----------------------------------------------------------------------------
+    // VARINT HELPERS
+    // ----------------------------------------------------------------------------
+
+    private static long zigzag(long val) {
+        return ((val << 1) ^ (val >> 63));
+    }
+
+    private static long unzigzag(long val) {
+        return ((val >>> 1) ^ -(val & 1));
+    }
+
+    private static void writeVarLong(FastSerializer fs, long val) throws IOException {
+        while ((val & ~0x7FL) != 0) {
+            fs.writeByte((int)((val & 0x7F) | 0x80));
+            val >>>= 7;
+        } // WHILE
+        fs.writeByte((int)val);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long val = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            val |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (val);
+    }
+
+    /**
+     * Read a varint length-prefixed byte array. A length of zero is null.
+     */
+    private static byte[] readBytes(ByteBuffer in) {
+        int len = (int)readVarLong(in);
+        if (len == 0) return (null);
+        byte val[] = new byte[len - 1];
+        in.get(val);
+        return (val);
+    }
+}
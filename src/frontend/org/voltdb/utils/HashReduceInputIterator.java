@@ -0,0 +1,183 @@
+package org.voltdb.utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
+
+/**
+ * Groups the rows of a VoltTable by a key column using a hash table built
+ * directly over the table's serialized buffer. Unlike sorting the table with
+ * {@link VoltTableUtil#sort(VoltTable, Pair...)}, this never materializes the rows
+ * as Object arrays: the key bytes are hashed and compared in place and each group
+ * is just a chain of row offsets into the original buffer.
+ * <p>
+ * Usage:
+ * <pre>
+ * HashReduceInputIterator&lt;K&gt; groups = new HashReduceInputIterator&lt;K&gt;(table, 0);
+ * while (groups.nextKey()) {
+ *     reduce(groups.getKey(), groups);
+ * }
+ * </pre>
+ * Groups are returned in the order that their first row appears in the table.
+ * The VoltTableRow returned by {@link #next()} is a flyweight that is repositioned
+ * on every call, so callers must not hold on to it.
+ */
+public class HashReduceInputIterator<K> implements Iterator<VoltTableRow> {
+
+    private static final int NULL_ROW = -1;
+
+    private final VoltTable table;
+    private final int keyColumn;
+
+    /** The row that we hand out to the caller */
+    private final VoltTableRow cursor;
+
+    // Per-row information
+    private final int rowPositions[];
+    private final int rowNext[];
+
+    // Per-group information
+    private int groupFirst[];
+    private int groupLast[];
+    private int groupHash[];
+    private int numGroups = 0;
+
+    /** Open-addressing hash table of group offsets (+1 so that zero means empty) */
+    private int buckets[];
+
+    private int currentGroup = -1;
+    private int nextRow = NULL_ROW;
+
+    public HashReduceInputIterator(VoltTable table, int keyColumn) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.cursor = table.cloneRow();
+
+        final int numRows = table.getRowCount();
+        this.rowPositions = new int[numRows];
+        this.rowNext = new int[numRows];
+
+        int capacity = 16;
+        while (capacity < numRows * 2) capacity <<= 1;
+        this.buckets = new int[capacity];
+        this.groupFirst = new int[Math.max(8, numRows / 4)];
+        this.groupLast = new int[this.groupFirst.length];
+        this.groupHash = new int[this.groupFirst.length];
+
+        this.build();
+    }
+
+    private void build() {
+        final VoltTableRow row = this.table.cloneRow();
+        final VoltTableRow probe = this.table.cloneRow();
+        final int mask = this.buckets.length - 1;
+
+        row.resetRowPosition();
+        int rowIdx = 0;
+        while (row.advanceRow()) {
+            this.rowPositions[rowIdx] = row.getActiveRowPosition();
+            this.rowNext[rowIdx] = NULL_ROW;
+
+            int hash = row.hashColumn(this.keyColumn);
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            int group = -1;
+            while (this.buckets[slot] != 0) {
+                int g = this.buckets[slot] - 1;
+                if (this.groupHash[g] == hash) {
+                    int first = this.groupFirst[g];
+                    probe.moveToPosition(first, this.rowPositions[first]);
+                    if (row.columnEquals(this.keyColumn, probe)) {
+                        group = g;
+                        break;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            } // WHILE
+
+            if (group == -1) {
+                group = this.addGroup(rowIdx, hash);
+                this.buckets[slot] = group + 1;
+            } else {
+                this.rowNext[this.groupLast[group]] = rowIdx;
+                this.groupLast[group] = rowIdx;
+            }
+            rowIdx++;
+        } // WHILE
+        assert(rowIdx == this.rowPositions.length);
+    }
+
+    private int addGroup(int rowIdx, int hash) {
+        if (this.numGroups == this.groupFirst.length) {
+            int newSize = this.groupFirst.length * 2;
+            this.groupFirst = Arrays.copyOf(this.groupFirst, newSize);
+            this.groupLast = Arrays.copyOf(this.groupLast, newSize);
+            this.groupHash = Arrays.copyOf(this.groupHash, newSize);
+        }
+        int group = this.numGroups++;
+        this.groupFirst[group] = rowIdx;
+        this.groupLast[group] = rowIdx;
+        this.groupHash[group] = hash;
+        return (group);
+    }
+
+    /**
+     * Returns the number of distinct keys in the table
+     * @return
+     */
+    public int getKeyCount() {
+        return (this.numGroups);
+    }
+
+    /**
+     * Advance to the next key group. After this returns true,
+     * {@link #getKey()} will return the group's key and this iterator
+     * will return all of the rows with that key.
+     * @return False if there are no more keys
+     */
+    public boolean nextKey() {
+        if (this.currentGroup + 1 >= this.numGroups) {
+            this.currentGroup = this.numGroups;
+            this.nextRow = NULL_ROW;
+            return (false);
+        }
+        this.currentGroup++;
+        this.nextRow = this.groupFirst[this.currentGroup];
+        return (true);
+    }
+
+    /**
+     * Returns the key of the current group
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public K getKey() {
+        assert(this.currentGroup >= 0 && this.currentGroup < this.numGroups);
+        int first = this.groupFirst[this.currentGroup];
+        this.cursor.moveToPosition(first, this.rowPositions[first]);
+        return (K) this.cursor.get(this.keyColumn);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (this.nextRow != NULL_ROW);
+    }
+
+    @Override
+    public VoltTableRow next() {
+        if (this.nextRow == NULL_ROW) {
+            throw new NoSuchElementException();
+        }
+        int rowIdx = this.nextRow;
+        this.cursor.moveToPosition(rowIdx, this.rowPositions[rowIdx]);
+        this.nextRow = this.rowNext[rowIdx];
+        return (this.cursor);
+    }
+
+    @Override
+    public void remove() {
+        throw new NotImplementedException("Cannot remove from a VoltTable");
+    }
+}
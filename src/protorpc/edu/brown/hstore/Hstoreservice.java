@@ -2381,6 +2381,13 @@ public final class Hstoreservice {
       return prefetchParams_.get(index);
     }
     
+    // optional bool snapshot_read = 9;
+    public static final int SNAPSHOT_READ_FIELD_NUMBER = 9;
+    private boolean hasSnapshotRead;
+    private boolean snapshotRead_ = false;
+    public boolean hasSnapshotRead() { return hasSnapshotRead; }
+    public boolean getSnapshotRead() { return snapshotRead_; }
+    
     private void initFields() {
     }
     public final boolean isInitialized() {
@@ -2424,6 +2431,9 @@ public final class Hstoreservice {
       for (com.google.protobuf.ByteString element : getPrefetchParamsList()) {
         output.writeBytes(8, element);
       }
+      if (hasSnapshotRead()) {
+        output.writeBool(9, getSnapshotRead());
+      }
       getUnknownFields().writeTo(output);
     }
     
@@ -2480,6 +2490,10 @@ public final class Hstoreservice {
         size += dataSize;
         size += 1 * getPrefetchParamsList().size();
       }
+      if (hasSnapshotRead()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBoolSize(9, getSnapshotRead());
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -2683,6 +2697,9 @@ public final class Hstoreservice {
           }
           result.prefetchParams_.addAll(other.prefetchParams_);
         }
+        if (other.hasSnapshotRead()) {
+          setSnapshotRead(other.getSnapshotRead());
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -2751,6 +2768,10 @@ public final class Hstoreservice {
               addPrefetchParams(input.readBytes());
               break;
             }
+            case 72: {
+              setSnapshotRead(input.readBool());
+              break;
+            }
           }
         }
       }
@@ -2974,6 +2995,24 @@ public final class Hstoreservice {
         return this;
       }
       
+      // optional bool snapshot_read = 9;
+      public boolean hasSnapshotRead() {
+        return result.hasSnapshotRead();
+      }
+      public boolean getSnapshotRead() {
+        return result.getSnapshotRead();
+      }
+      public Builder setSnapshotRead(boolean value) {
+        result.hasSnapshotRead = true;
+        result.snapshotRead_ = value;
+        return this;
+      }
+      public Builder clearSnapshotRead() {
+        result.hasSnapshotRead = false;
+        result.snapshotRead_ = false;
+        return this;
+      }
+      
       // @@protoc_insertion_point(builder_scope:edu.brown.hstore.TransactionInitRequest)
     }
     
@@ -17582,148 +17621,148 @@ public final class Hstoreservice {
       "data\030\003 \003(\014\022(\n\006status\030\004 \002(\0162\030.edu.brown.h" +
       "store.Status\022\r\n\005error\030\005 \001(\014\"W\n\rQueryEsti" +
       "mate\022\024\n\010stmt_ids\030\001 \003(\005B\002\020\001\022\031\n\rstmt_count" +
-      "ers\030\002 \003(\005B\002\020\001\022\025\n\rtime_estimate\030\003 \001(\005\"\375\001\n" +
+      "ers\030\002 \003(\005B\002\020\001\022\025\n\rtime_estimate\030\003 \001(\005\"\224\002\n" +
       "\026TransactionInitRequest\022\033\n\023last_transact" +
       "ion_id\030\001 \001(\003\022\026\n\016transaction_id\030\002 \002(\003\022\026\n\016",
       "base_partition\030\003 \002(\005\022\024\n\014procedure_id\030\004 \002" +
       "(\005\022\026\n\npartitions\030\005 \003(\005B\002\020\001\022\023\n\013proc_param" +
       "s\030\006 \001(\014\022:\n\022prefetch_fragments\030\007 \003(\0132\036.ed" +
       "u.brown.hstore.WorkFragment\022\027\n\017prefetch_" +
-      "params\030\010 \003(\014\"\254\001\n\027TransactionInitResponse" +
-      "\022\026\n\016transaction_id\030\001 \002(\003\022\026\n\npartitions\030\002" +
-      " \003(\005B\002\020\001\022(\n\006status\030\003 \002(\0162\030.edu.brown.hst" +
-      "ore.Status\022\030\n\020reject_partition\030\004 \001(\005\022\035\n\025" +
-      "reject_transaction_id\030\005 \001(\003\"\245\002\n\026Transact" +
-      "ionWorkRequest\022\033\n\023last_transaction_id\030\001 ",
-      "\001(\003\022\026\n\016transaction_id\030\002 \002(\003\022\030\n\020source_pa" +
-      "rtition\030\003 \002(\005\0221\n\tfragments\030\004 \003(\0132\036.edu.b" +
-      "rown.hstore.WorkFragment\022\024\n\014procedure_id" +
-      "\030\005 \002(\005\022\016\n\006params\030\006 \003(\014\022\033\n\017attached_dep_i" +
-      "d\030\007 \003(\005B\002\020\001\022\025\n\rattached_data\030\010 \003(\014\022\032\n\016do" +
-      "ne_partition\030\t \003(\005B\002\020\001\022\023\n\013proc_params\030\n " +
-      "\001(\014\"\212\001\n\027TransactionWorkResponse\022\026\n\016trans" +
-      "action_id\030\001 \002(\003\022-\n\007results\030\002 \003(\0132\034.edu.b" +
-      "rown.hstore.WorkResult\022(\n\006status\030\003 \002(\0162\030" +
-      ".edu.brown.hstore.Status\"\215\002\n\031Transaction",
-      "PrefetchResult\022\033\n\023last_transaction_id\030\001 " +
-      "\001(\003\022\026\n\016transaction_id\030\002 \002(\003\022\030\n\020source_pa" +
-      "rtition\030\003 \002(\005\022,\n\006result\030\004 \002(\0132\034.edu.brow" +
-      "n.hstore.WorkResult\022(\n\006status\030\005 \002(\0162\030.ed" +
-      "u.brown.hstore.Status\022\030\n\014stmt_counter\030\006 " +
-      "\003(\005B\002\020\001\022\027\n\013fragment_id\030\007 \003(\005B\002\020\001\022\026\n\npara" +
-      "m_hash\030\010 \003(\005B\002\020\001\"V\n\"TransactionPrefetchA" +
-      "cknowledgement\022\026\n\016transaction_id\030\001 \002(\003\022\030" +
-      "\n\020target_partition\030\002 \002(\005\"\241\001\n\025Transaction" +
-      "MapRequest\022\033\n\023last_transaction_id\030\001 \001(\003\022",
-      "\026\n\016transaction_id\030\002 \002(\003\022\025\n\rclient_handle" +
-      "\030\003 \002(\003\022\026\n\016base_partition\030\004 \002(\005\022\024\n\014proced" +
-      "ure_id\030\005 \002(\005\022\016\n\006params\030\006 \002(\014\"r\n\026Transact" +
-      "ionMapResponse\022\026\n\016transaction_id\030\001 \002(\003\022\026" +
-      "\n\npartitions\030\002 \003(\005B\002\020\001\022(\n\006status\030\003 \002(\0162\030" +
-      ".edu.brown.hstore.Status\"2\n\030TransactionR" +
-      "educeRequest\022\026\n\016transaction_id\030\001 \002(\003\"\234\002\n" +
-      "\031TransactionReduceResponse\022\026\n\016transactio" +
-      "n_id\030\001 \002(\003\022I\n\007results\030\002 \003(\01328.edu.brown." +
-      "hstore.TransactionReduceResponse.ReduceR",
-      "esult\022(\n\006status\030\003 \002(\0162\030.edu.brown.hstore" +
-      ".Status\032r\n\014ReduceResult\022\024\n\014partition_id\030" +
-      "\001 \002(\005\022\014\n\004data\030\002 \002(\014\022(\n\006status\030\003 \002(\0162\030.ed" +
-      "u.brown.hstore.Status\022\024\n\005error\030\004 \001(\010:\005fa" +
-      "lse\"K\n\031TransactionPrepareRequest\022\026\n\016tran" +
-      "saction_id\030\001 \002(\003\022\026\n\npartitions\030\002 \003(\005B\002\020\001" +
-      "\"v\n\032TransactionPrepareResponse\022\026\n\016transa" +
-      "ction_id\030\001 \002(\003\022\026\n\npartitions\030\002 \003(\005B\002\020\001\022(" +
-      "\n\006status\030\003 \002(\0162\030.edu.brown.hstore.Status" +
-      "\"t\n\030TransactionFinishRequest\022\026\n\016transact",
-      "ion_id\030\001 \002(\003\022\026\n\npartitions\030\002 \003(\005B\002\020\001\022(\n\006" +
-      "status\030\003 \002(\0162\030.edu.brown.hstore.Status\"K" +
-      "\n\031TransactionFinishResponse\022\026\n\016transacti" +
-      "on_id\030\001 \002(\003\022\026\n\npartitions\030\002 \003(\005B\002\020\001\"T\n\032T" +
-      "ransactionRedirectRequest\022\023\n\013sender_site" +
-      "\030\001 \002(\005\022\014\n\004work\030\002 \002(\014\022\023\n\013orig_txn_id\030\003 \001(" +
-      "\003\"B\n\033TransactionRedirectResponse\022\023\n\013send" +
-      "er_site\030\001 \002(\005\022\016\n\006output\030\002 \002(\014\"F\n\027Transac" +
-      "tionDebugRequest\022\023\n\013sender_site\030\001 \002(\005\022\026\n" +
-      "\016transaction_id\030\002 \002(\003\"h\n\030TransactionDebu",
-      "gResponse\022\023\n\013sender_site\030\001 \002(\005\022(\n\006status" +
-      "\030\002 \002(\0162\030.edu.brown.hstore.Status\022\r\n\005debu" +
-      "g\030\003 \002(\t\"`\n\017SendDataRequest\022\026\n\016transactio" +
-      "n_id\030\001 \002(\003\022\023\n\013sender_site\030\002 \002(\005\022\022\n\006dep_i" +
-      "d\030\003 \003(\005B\002\020\001\022\014\n\004data\030\004 \003(\014\"\201\001\n\020SendDataRe" +
-      "sponse\022\026\n\016transaction_id\030\001 \002(\003\022\026\n\npartit" +
-      "ions\030\002 \003(\005B\002\020\001\022\023\n\013sender_site\030\003 \002(\005\022(\n\006s" +
-      "tatus\030\004 \002(\0162\030.edu.brown.hstore.Status\"=\n" +
-      "\021InitializeRequest\022\023\n\013sender_site\030\001 \002(\005\022" +
-      "\023\n\013instance_id\030\002 \002(\003\"S\n\022InitializeRespon",
-      "se\022\023\n\013sender_site\030\001 \002(\005\022(\n\006status\030\002 \002(\0162" +
-      "\030.edu.brown.hstore.Status\"<\n\026ShutdownPre" +
-      "pareRequest\022\023\n\013sender_site\030\001 \002(\005\022\r\n\005erro" +
-      "r\030\002 \001(\014\".\n\027ShutdownPrepareResponse\022\023\n\013se" +
-      "nder_site\030\001 \002(\005\";\n\017ShutdownRequest\022\023\n\013se" +
-      "nder_site\030\001 \002(\005\022\023\n\013exit_status\030\002 \002(\005\"\'\n\020" +
-      "ShutdownResponse\022\023\n\013sender_site\030\001 \002(\005\"D\n" +
-      "\020HeartbeatRequest\022\023\n\013sender_site\030\001 \002(\005\022\033" +
-      "\n\023last_transaction_id\030\002 \002(\003\"R\n\021Heartbeat" +
-      "Response\022\023\n\013sender_site\030\001 \002(\005\022(\n\006status\030",
-      "\002 \002(\0162\030.edu.brown.hstore.Status\"\267\001\n\022Unev" +
-      "ictDataRequest\022\023\n\013sender_site\030\001 \002(\005\022\026\n\016t" +
-      "ransaction_id\030\002 \002(\003\022\024\n\014partition_id\030\003 \002(" +
-      "\005\022\020\n\010table_id\030\004 \002(\005\022\025\n\tblock_ids\030\005 \003(\005B\002" +
-      "\020\001\022\031\n\rtuple_offsets\030\006 \003(\005B\002\020\001\022\032\n\022new_tra" +
-      "nsaction_id\030\007 \002(\003\"\202\001\n\023UnevictDataRespons" +
-      "e\022\023\n\013sender_site\030\001 \002(\005\022(\n\006status\030\002 \002(\0162\030" +
-      ".edu.brown.hstore.Status\022\026\n\016transaction_" +
-      "id\030\003 \002(\003\022\024\n\014partition_id\030\004 \002(\005\"4\n\017TimeSy" +
-      "ncRequest\022\023\n\013sender_site\030\001 \002(\005\022\014\n\004t0_s\030\002",
-      " \002(\003\"Q\n\020TimeSyncResponse\022\023\n\013sender_site\030" +
-      "\001 \002(\005\022\014\n\004t0_s\030\002 \002(\003\022\014\n\004t0_r\030\003 \002(\003\022\014\n\004t1_" +
-      "s\030\004 \002(\003*\320\001\n\006Status\022\006\n\002OK\020\000\022\016\n\nABORT_USER" +
-      "\020\001\022\022\n\016ABORT_GRACEFUL\020\002\022\024\n\020ABORT_UNEXPECT" +
-      "ED\020\003\022\031\n\025ABORT_CONNECTION_LOST\020\004\022\024\n\020ABORT" +
-      "_MISPREDICT\020\005\022\021\n\rABORT_RESTART\020\006\022\020\n\014ABOR" +
-      "T_REJECT\020\007\022\027\n\023ABORT_EVICTEDACCESS\020\010\022\025\n\021A" +
-      "BORT_SPECULATIVE\020\t2\326\014\n\rHStoreService\022f\n\017" +
-      "TransactionInit\022(.edu.brown.hstore.Trans" +
-      "actionInitRequest\032).edu.brown.hstore.Tra",
-      "nsactionInitResponse\022f\n\017TransactionWork\022" +
-      "(.edu.brown.hstore.TransactionWorkReques" +
-      "t\032).edu.brown.hstore.TransactionWorkResp" +
-      "onse\022x\n\023TransactionPrefetch\022+.edu.brown." +
-      "hstore.TransactionPrefetchResult\0324.edu.b" +
-      "rown.hstore.TransactionPrefetchAcknowled" +
-      "gement\022c\n\016TransactionMap\022\'.edu.brown.hst" +
-      "ore.TransactionMapRequest\032(.edu.brown.hs" +
-      "tore.TransactionMapResponse\022l\n\021Transacti" +
-      "onReduce\022*.edu.brown.hstore.TransactionR",
-      "educeRequest\032+.edu.brown.hstore.Transact" +
-      "ionReduceResponse\022o\n\022TransactionPrepare\022" +
-      "+.edu.brown.hstore.TransactionPrepareReq" +
-      "uest\032,.edu.brown.hstore.TransactionPrepa" +
-      "reResponse\022l\n\021TransactionFinish\022*.edu.br" +
-      "own.hstore.TransactionFinishRequest\032+.ed" +
-      "u.brown.hstore.TransactionFinishResponse" +
-      "\022r\n\023TransactionRedirect\022,.edu.brown.hsto" +
-      "re.TransactionRedirectRequest\032-.edu.brow" +
-      "n.hstore.TransactionRedirectResponse\022i\n\020",
-      "TransactionDebug\022).edu.brown.hstore.Tran" +
-      "sactionDebugRequest\032*.edu.brown.hstore.T" +
-      "ransactionDebugResponse\022Q\n\010SendData\022!.ed" +
-      "u.brown.hstore.SendDataRequest\032\".edu.bro" +
-      "wn.hstore.SendDataResponse\022W\n\nInitialize" +
-      "\022#.edu.brown.hstore.InitializeRequest\032$." +
-      "edu.brown.hstore.InitializeResponse\022f\n\017S" +
-      "hutdownPrepare\022(.edu.brown.hstore.Shutdo" +
-      "wnPrepareRequest\032).edu.brown.hstore.Shut" +
-      "downPrepareResponse\022Q\n\010Shutdown\022!.edu.br",
-      "own.hstore.ShutdownRequest\032\".edu.brown.h" +
-      "store.ShutdownResponse\022T\n\tHeartbeat\022\".ed" +
-      "u.brown.hstore.HeartbeatRequest\032#.edu.br" +
-      "own.hstore.HeartbeatResponse\022Z\n\013UnevictD" +
-      "ata\022$.edu.brown.hstore.UnevictDataReques" +
-      "t\032%.edu.brown.hstore.UnevictDataResponse" +
-      "\022Q\n\010TimeSync\022!.edu.brown.hstore.TimeSync" +
-      "Request\032\".edu.brown.hstore.TimeSyncRespo" +
-      "nse"
+      "params\030\010 \003(\014\022\025\n\rsnapshot_read\030\t \001(\010\"\254\001\n\027" +
+      "TransactionInitResponse\022\026\n\016transaction_i" +
+      "d\030\001 \002(\003\022\026\n\npartitions\030\002 \003(\005B\002\020\001\022(\n\006statu" +
+      "s\030\003 \002(\0162\030.edu.brown.hstore.Status\022\030\n\020rej" +
+      "ect_partition\030\004 \001(\005\022\035\n\025reject_transactio" +
+      "n_id\030\005 \001(\003\"\245\002\n\026TransactionWorkRequest\022\033\n",
+      "\023last_transaction_id\030\001 \001(\003\022\026\n\016transactio" +
+      "n_id\030\002 \002(\003\022\030\n\020source_partition\030\003 \002(\005\0221\n\t" +
+      "fragments\030\004 \003(\0132\036.edu.brown.hstore.WorkF" +
+      "ragment\022\024\n\014procedure_id\030\005 \002(\005\022\016\n\006params\030" +
+      "\006 \003(\014\022\033\n\017attached_dep_id\030\007 \003(\005B\002\020\001\022\025\n\rat" +
+      "tached_data\030\010 \003(\014\022\032\n\016done_partition\030\t \003(" +
+      "\005B\002\020\001\022\023\n\013proc_params\030\n \001(\014\"\212\001\n\027Transacti" +
+      "onWorkResponse\022\026\n\016transaction_id\030\001 \002(\003\022-" +
+      "\n\007results\030\002 \003(\0132\034.edu.brown.hstore.WorkR" +
+      "esult\022(\n\006status\030\003 \002(\0162\030.edu.brown.hstore",
+      ".Status\"\215\002\n\031TransactionPrefetchResult\022\033\n" +
+      "\023last_transaction_id\030\001 \001(\003\022\026\n\016transactio" +
+      "n_id\030\002 \002(\003\022\030\n\020source_partition\030\003 \002(\005\022,\n\006" +
+      "result\030\004 \002(\0132\034.edu.brown.hstore.WorkResu" +
+      "lt\022(\n\006status\030\005 \002(\0162\030.edu.brown.hstore.St" +
+      "atus\022\030\n\014stmt_counter\030\006 \003(\005B\002\020\001\022\027\n\013fragme" +
+      "nt_id\030\007 \003(\005B\002\020\001\022\026\n\nparam_hash\030\010 \003(\005B\002\020\001\"" +
+      "V\n\"TransactionPrefetchAcknowledgement\022\026\n" +
+      "\016transaction_id\030\001 \002(\003\022\030\n\020target_partitio" +
+      "n\030\002 \002(\005\"\241\001\n\025TransactionMapRequest\022\033\n\023las",
+      "t_transaction_id\030\001 \001(\003\022\026\n\016transaction_id" +
+      "\030\002 \002(\003\022\025\n\rclient_handle\030\003 \002(\003\022\026\n\016base_pa" +
+      "rtition\030\004 \002(\005\022\024\n\014procedure_id\030\005 \002(\005\022\016\n\006p" +
+      "arams\030\006 \002(\014\"r\n\026TransactionMapResponse\022\026\n" +
+      "\016transaction_id\030\001 \002(\003\022\026\n\npartitions\030\002 \003(" +
+      "\005B\002\020\001\022(\n\006status\030\003 \002(\0162\030.edu.brown.hstore" +
+      ".Status\"2\n\030TransactionReduceRequest\022\026\n\016t" +
+      "ransaction_id\030\001 \002(\003\"\234\002\n\031TransactionReduc" +
+      "eResponse\022\026\n\016transaction_id\030\001 \002(\003\022I\n\007res" +
+      "ults\030\002 \003(\01328.edu.brown.hstore.Transactio",
+      "nReduceResponse.ReduceResult\022(\n\006status\030\003" +
+      " \002(\0162\030.edu.brown.hstore.Status\032r\n\014Reduce" +
+      "Result\022\024\n\014partition_id\030\001 \002(\005\022\014\n\004data\030\002 \002" +
+      "(\014\022(\n\006status\030\003 \002(\0162\030.edu.brown.hstore.St" +
+      "atus\022\024\n\005error\030\004 \001(\010:\005false\"K\n\031Transactio" +
+      "nPrepareRequest\022\026\n\016transaction_id\030\001 \002(\003\022" +
+      "\026\n\npartitions\030\002 \003(\005B\002\020\001\"v\n\032TransactionPr" +
+      "epareResponse\022\026\n\016transaction_id\030\001 \002(\003\022\026\n" +
+      "\npartitions\030\002 \003(\005B\002\020\001\022(\n\006status\030\003 \002(\0162\030." +
+      "edu.brown.hstore.Status\"t\n\030TransactionFi",
+      "nishRequest\022\026\n\016transaction_id\030\001 \002(\003\022\026\n\np" +
+      "artitions\030\002 \003(\005B\002\020\001\022(\n\006status\030\003 \002(\0162\030.ed" +
+      "u.brown.hstore.Status\"K\n\031TransactionFini" +
+      "shResponse\022\026\n\016transaction_id\030\001 \002(\003\022\026\n\npa" +
+      "rtitions\030\002 \003(\005B\002\020\001\"T\n\032TransactionRedirec" +
+      "tRequest\022\023\n\013sender_site\030\001 \002(\005\022\014\n\004work\030\002 " +
+      "\002(\014\022\023\n\013orig_txn_id\030\003 \001(\003\"B\n\033TransactionR" +
+      "edirectResponse\022\023\n\013sender_site\030\001 \002(\005\022\016\n\006" +
+      "output\030\002 \002(\014\"F\n\027TransactionDebugRequest\022" +
+      "\023\n\013sender_site\030\001 \002(\005\022\026\n\016transaction_id\030\002",
+      " \002(\003\"h\n\030TransactionDebugResponse\022\023\n\013send" +
+      "er_site\030\001 \002(\005\022(\n\006status\030\002 \002(\0162\030.edu.brow" +
+      "n.hstore.Status\022\r\n\005debug\030\003 \002(\t\"`\n\017SendDa" +
+      "taRequest\022\026\n\016transaction_id\030\001 \002(\003\022\023\n\013sen" +
+      "der_site\030\002 \002(\005\022\022\n\006dep_id\030\003 \003(\005B\002\020\001\022\014\n\004da" +
+      "ta\030\004 \003(\014\"\201\001\n\020SendDataResponse\022\026\n\016transac" +
+      "tion_id\030\001 \002(\003\022\026\n\npartitions\030\002 \003(\005B\002\020\001\022\023\n" +
+      "\013sender_site\030\003 \002(\005\022(\n\006status\030\004 \002(\0162\030.edu" +
+      ".brown.hstore.Status\"=\n\021InitializeReques" +
+      "t\022\023\n\013sender_site\030\001 \002(\005\022\023\n\013instance_id\030\002 ",
+      "\002(\003\"S\n\022InitializeResponse\022\023\n\013sender_site" +
+      "\030\001 \002(\005\022(\n\006status\030\002 \002(\0162\030.edu.brown.hstor" +
+      "e.Status\"<\n\026ShutdownPrepareRequest\022\023\n\013se" +
+      "nder_site\030\001 \002(\005\022\r\n\005error\030\002 \001(\014\".\n\027Shutdo" +
+      "wnPrepareResponse\022\023\n\013sender_site\030\001 \002(\005\";" +
+      "\n\017ShutdownRequest\022\023\n\013sender_site\030\001 \002(\005\022\023" +
+      "\n\013exit_status\030\002 \002(\005\"\'\n\020ShutdownResponse\022" +
+      "\023\n\013sender_site\030\001 \002(\005\"D\n\020HeartbeatRequest" +
+      "\022\023\n\013sender_site\030\001 \002(\005\022\033\n\023last_transactio" +
+      "n_id\030\002 \002(\003\"R\n\021HeartbeatResponse\022\023\n\013sende",
+      "r_site\030\001 \002(\005\022(\n\006status\030\002 \002(\0162\030.edu.brown" +
+      ".hstore.Status\"\267\001\n\022UnevictDataRequest\022\023\n" +
+      "\013sender_site\030\001 \002(\005\022\026\n\016transaction_id\030\002 \002" +
+      "(\003\022\024\n\014partition_id\030\003 \002(\005\022\020\n\010table_id\030\004 \002" +
+      "(\005\022\025\n\tblock_ids\030\005 \003(\005B\002\020\001\022\031\n\rtuple_offse" +
+      "ts\030\006 \003(\005B\002\020\001\022\032\n\022new_transaction_id\030\007 \002(\003" +
+      "\"\202\001\n\023UnevictDataResponse\022\023\n\013sender_site\030" +
+      "\001 \002(\005\022(\n\006status\030\002 \002(\0162\030.edu.brown.hstore" +
+      ".Status\022\026\n\016transaction_id\030\003 \002(\003\022\024\n\014parti" +
+      "tion_id\030\004 \002(\005\"4\n\017TimeSyncRequest\022\023\n\013send",
+      "er_site\030\001 \002(\005\022\014\n\004t0_s\030\002 \002(\003\"Q\n\020TimeSyncR" +
+      "esponse\022\023\n\013sender_site\030\001 \002(\005\022\014\n\004t0_s\030\002 \002" +
+      "(\003\022\014\n\004t0_r\030\003 \002(\003\022\014\n\004t1_s\030\004 \002(\003*\320\001\n\006Statu" +
+      "s\022\006\n\002OK\020\000\022\016\n\nABORT_USER\020\001\022\022\n\016ABORT_GRACE" +
+      "FUL\020\002\022\024\n\020ABORT_UNEXPECTED\020\003\022\031\n\025ABORT_CON" +
+      "NECTION_LOST\020\004\022\024\n\020ABORT_MISPREDICT\020\005\022\021\n\r" +
+      "ABORT_RESTART\020\006\022\020\n\014ABORT_REJECT\020\007\022\027\n\023ABO" +
+      "RT_EVICTEDACCESS\020\010\022\025\n\021ABORT_SPECULATIVE\020" +
+      "\t2\326\014\n\rHStoreService\022f\n\017TransactionInit\022(" +
+      ".edu.brown.hstore.TransactionInitRequest",
+      "\032).edu.brown.hstore.TransactionInitRespo" +
+      "nse\022f\n\017TransactionWork\022(.edu.brown.hstor" +
+      "e.TransactionWorkRequest\032).edu.brown.hst" +
+      "ore.TransactionWorkResponse\022x\n\023Transacti" +
+      "onPrefetch\022+.edu.brown.hstore.Transactio" +
+      "nPrefetchResult\0324.edu.brown.hstore.Trans" +
+      "actionPrefetchAcknowledgement\022c\n\016Transac" +
+      "tionMap\022\'.edu.brown.hstore.TransactionMa" +
+      "pRequest\032(.edu.brown.hstore.TransactionM" +
+      "apResponse\022l\n\021TransactionReduce\022*.edu.br",
+      "own.hstore.TransactionReduceRequest\032+.ed" +
+      "u.brown.hstore.TransactionReduceResponse" +
+      "\022o\n\022TransactionPrepare\022+.edu.brown.hstor" +
+      "e.TransactionPrepareRequest\032,.edu.brown." +
+      "hstore.TransactionPrepareResponse\022l\n\021Tra" +
+      "nsactionFinish\022*.edu.brown.hstore.Transa" +
+      "ctionFinishRequest\032+.edu.brown.hstore.Tr" +
+      "ansactionFinishResponse\022r\n\023TransactionRe" +
+      "direct\022,.edu.brown.hstore.TransactionRed" +
+      "irectRequest\032-.edu.brown.hstore.Transact",
+      "ionRedirectResponse\022i\n\020TransactionDebug\022" +
+      ").edu.brown.hstore.TransactionDebugReque" +
+      "st\032*.edu.brown.hstore.TransactionDebugRe" +
+      "sponse\022Q\n\010SendData\022!.edu.brown.hstore.Se" +
+      "ndDataRequest\032\".edu.brown.hstore.SendDat" +
+      "aResponse\022W\n\nInitialize\022#.edu.brown.hsto" +
+      "re.InitializeRequest\032$.edu.brown.hstore." +
+      "InitializeResponse\022f\n\017ShutdownPrepare\022(." +
+      "edu.brown.hstore.ShutdownPrepareRequest\032" +
+      ").edu.brown.hstore.ShutdownPrepareRespon",
+      "se\022Q\n\010Shutdown\022!.edu.brown.hstore.Shutdo" +
+      "wnRequest\032\".edu.brown.hstore.ShutdownRes" +
+      "ponse\022T\n\tHeartbeat\022\".edu.brown.hstore.He" +
+      "artbeatRequest\032#.edu.brown.hstore.Heartb" +
+      "eatResponse\022Z\n\013UnevictData\022$.edu.brown.h" +
+      "store.UnevictDataRequest\032%.edu.brown.hst" +
+      "ore.UnevictDataResponse\022Q\n\010TimeSync\022!.ed" +
+      "u.brown.hstore.TimeSyncRequest\032\".edu.bro" +
+      "wn.hstore.TimeSyncResponse"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -17759,7 +17798,7 @@ public final class Hstoreservice {
           internal_static_edu_brown_hstore_TransactionInitRequest_fieldAccessorTable = new
             com.google.protobuf.GeneratedMessage.FieldAccessorTable(
               internal_static_edu_brown_hstore_TransactionInitRequest_descriptor,
-              new java.lang.String[] { "LastTransactionId", "TransactionId", "BasePartition", "ProcedureId", "Partitions", "ProcParams", "PrefetchFragments", "PrefetchParams", },
+              new java.lang.String[] { "LastTransactionId", "TransactionId", "BasePartition", "ProcedureId", "Partitions", "ProcParams", "PrefetchFragments", "PrefetchParams", "SnapshotRead", },
               edu.brown.hstore.Hstoreservice.TransactionInitRequest.class,
               edu.brown.hstore.Hstoreservice.TransactionInitRequest.Builder.class);
           internal_static_edu_brown_hstore_TransactionInitResponse_descriptor =
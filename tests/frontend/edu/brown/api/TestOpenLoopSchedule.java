@@ -0,0 +1,64 @@
+package edu.brown.api;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestOpenLoopSchedule extends TestCase {
+
+    private static final double TXNS_PER_MS = 3.0;
+    private static final int NUM_TXNS = 100000;
+    
+    private final Random rand = new Random(1);
+
+    /**
+     * testConstant
+     */
+    public void testConstant() throws Exception {
+        long start = 1000;
+        OpenLoopSchedule schedule = new OpenLoopSchedule(ArrivalDistributionType.CONSTANT, TXNS_PER_MS, rand, start);
+        assertEquals(start, schedule.peek());
+        assertEquals(start, schedule.next());
+        long last = start;
+        for (int i = 1; i < NUM_TXNS; i++) {
+            long next = schedule.next();
+            long interval = next - last;
+            assertTrue(Long.toString(interval), Math.abs(interval - 333333) <= 1);
+            last = next;
+        } // FOR
+        assertEquals(NUM_TXNS, schedule.getCount());
+        
+        // The rounding errors should not add up over time
+        double expected = start + (NUM_TXNS - 1) * (1000000d / TXNS_PER_MS);
+        assertEquals(expected, last, 1.0);
+    }
+    
+    /**
+     * testPoisson
+     */
+    public void testPoisson() throws Exception {
+        OpenLoopSchedule schedule = new OpenLoopSchedule(ArrivalDistributionType.POISSON, TXNS_PER_MS, rand, 0);
+        long last = schedule.next();
+        boolean different = false;
+        for (int i = 1; i < NUM_TXNS; i++) {
+            long next = schedule.next();
+            assertTrue(next >= last);
+            if (next - last != 333333) different = true;
+            last = next;
+        } // FOR
+        assertTrue(different);
+        
+        // The average inter-arrival time should be close to what we asked for
+        double mean = last / (double)(NUM_TXNS - 1);
+        assertEquals(1000000d / TXNS_PER_MS, mean, 1000000d / TXNS_PER_MS * 0.02);
+    }
+    
+    /**
+     * testGet
+     */
+    public void testGet() throws Exception {
+        assertEquals(ArrivalDistributionType.CONSTANT, ArrivalDistributionType.get("constant"));
+        assertEquals(ArrivalDistributionType.POISSON, ArrivalDistributionType.get("POISSON"));
+        assertNull(ArrivalDistributionType.get("xxx"));
+    }
+}
@@ -0,0 +1,58 @@
+package edu.brown.designer.partitioners;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import edu.brown.designer.partitioners.BranchAndBoundPartitioner.SharedUpperBound;
+
+public class TestSharedUpperBound extends TestCase {
+
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_UPDATES = 10000;
+
+    /**
+     * testUpdate
+     */
+    public void testUpdate() throws Exception {
+        SharedUpperBound bound = new SharedUpperBound(100.0);
+        assertEquals(100.0, bound.get());
+
+        // Higher costs should never replace the bound
+        assertFalse(bound.update(150.0));
+        assertFalse(bound.update(100.0));
+        assertEquals(100.0, bound.get());
+
+        assertTrue(bound.update(42.5));
+        assertEquals(42.5, bound.get());
+        assertTrue(bound.update(0.0));
+        assertEquals(0.0, bound.get());
+        assertFalse(bound.update(1.0));
+    }
+
+    /**
+     * testConcurrentUpdates
+     */
+    public void testConcurrentUpdates() throws Exception {
+        final SharedUpperBound bound = new SharedUpperBound(Double.MAX_VALUE);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int offset = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = NUM_UPDATES; j > 0; j--) {
+                        bound.update(j * NUM_THREADS + offset);
+                    } // FOR
+                }
+            };
+            threads.add(t);
+            t.start();
+        } // FOR
+        for (Thread t : threads) t.join();
+
+        // The lowest value that anybody tried was NUM_THREADS + 0
+        assertEquals((double) NUM_THREADS, bound.get());
+    }
+}
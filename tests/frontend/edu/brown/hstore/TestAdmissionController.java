@@ -0,0 +1,110 @@
+package edu.brown.hstore;
+
+import edu.brown.BaseTestCase;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.utils.PartitionSet;
+
+public class TestAdmissionController extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int MAX_WINDOW = 64;
+    private static final int MIN_WINDOW = 4;
+    private static final int TARGET = 5;
+    private static final int INTERVAL = 100;
+
+    private final PartitionSet partitions = new PartitionSet();
+    private AdmissionController controller;
+    private long now = 1000;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        HStoreConf hstore_conf = HStoreConf.singleton(true);
+        hstore_conf.site.network_incoming_limit_txns = MAX_WINDOW;
+        hstore_conf.site.network_admission_min_window = MIN_WINDOW;
+        hstore_conf.site.network_admission_target = TARGET;
+        hstore_conf.site.network_admission_interval = INTERVAL;
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            this.partitions.add(p);
+        } // FOR
+        this.controller = new AdmissionController(hstore_conf, this.partitions, NUM_PARTITIONS);
+    }
+
+    /**
+     * Feed the given delay to the partition for an entire interval
+     */
+    private void congest(int partition, long delay) {
+        long start = this.now;
+        while (this.now - start <= INTERVAL) {
+            this.controller.sample(partition, delay, this.now);
+            this.now += 10;
+        } // WHILE
+    }
+
+    /**
+     * testAdmitWindow
+     */
+    public void testAdmitWindow() throws Exception {
+        int partition = 0;
+        for (int i = 0; i < MAX_WINDOW; i++) {
+            assertTrue(this.controller.admit(partition));
+        } // FOR
+        assertFalse(this.controller.admit(partition));
+        assertEquals(MAX_WINDOW, this.controller.getInFlight(partition));
+        assertEquals(1, this.controller.getRejectedCount(partition));
+
+        // The other partitions should not care
+        assertTrue(this.controller.admit(partition+1));
+
+        this.controller.release(partition);
+        assertTrue(this.controller.admit(partition));
+    }
+
+    /**
+     * testCongestion
+     */
+    public void testCongestion() throws Exception {
+        int hot = 1;
+        int cold = 2;
+
+        // If only some of the txns are slow, then there isn't a standing queue
+        for (int i = 0; i < 3; i++) {
+            this.controller.sample(hot, TARGET * 10, this.now);
+            this.controller.sample(hot, 0, this.now);
+            this.now += INTERVAL;
+        } // FOR
+        assertEquals(MAX_WINDOW, this.controller.getWindow(hot));
+        assertFalse(this.controller.isDropping(hot));
+
+        // But if all of them are slow, then we should keep cutting the window
+        int lastWindow = this.controller.getWindow(hot);
+        for (int i = 0; i < 10; i++) {
+            this.congest(hot, TARGET * 10);
+            assertTrue(this.controller.isDropping(hot));
+            int window = this.controller.getWindow(hot);
+            assertTrue(window + " < " + lastWindow, window < lastWindow || window == MIN_WINDOW);
+            lastWindow = window;
+        } // FOR
+        assertEquals(MIN_WINDOW, this.controller.getWindow(hot));
+        assertTrue(this.controller.getCongestionCount(hot) > 0);
+        for (int i = 0; i < MIN_WINDOW; i++) {
+            assertTrue(this.controller.admit(hot));
+        } // FOR
+        assertFalse(this.controller.admit(hot));
+
+        // The cold partition should be left alone
+        this.congest(cold, 0);
+        assertEquals(MAX_WINDOW, this.controller.getWindow(cold));
+        assertFalse(this.controller.isDropping(cold));
+        assertEquals(0, this.controller.getCongestionCount(cold));
+
+        // Once the queue goes away, the window should grow back
+        this.congest(hot, 0);
+        assertFalse(this.controller.isDropping(hot));
+        assertTrue(this.controller.getWindow(hot) > MIN_WINDOW);
+        for (int i = 0; i < MAX_WINDOW; i++) {
+            this.congest(hot, 0);
+        } // FOR
+        assertEquals(MAX_WINDOW, this.controller.getWindow(hot));
+    }
+}
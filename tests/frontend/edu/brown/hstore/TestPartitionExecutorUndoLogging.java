@@ -0,0 +1,109 @@
+package edu.brown.hstore;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltProcedure;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.utils.EstTime;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.UpdateLocation;
+import edu.brown.benchmark.tm1.procedures.UpdateSubscriberData;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.estimators.remote.RemoteEstimatorState;
+import edu.brown.hstore.txns.LocalTransaction;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+
+/**
+ * Make sure that the PartitionExecutor only executes txns without undo logging
+ * when there is no way for them to abort.
+ */
+public class TestPartitionExecutorUndoLogging extends BaseTestCase {
+
+    private static final int BASE_PARTITION = 0;
+
+    HStoreSite hstore_site;
+    HStoreConf hstore_conf;
+    PartitionExecutor.Debug executorDebug;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+
+        this.hstore_conf = HStoreConf.singleton();
+        this.hstore_conf.site.exec_no_undo_logging = true;
+        this.hstore_conf.site.exec_no_undo_logging_all = false;
+        this.hstore_conf.site.exec_force_undo_logging_all = false;
+        this.hstore_conf.site.anticache_enable = false;
+
+        Site catalog_site = CollectionUtil.first(catalogContext.sites);
+        this.hstore_site = new MockHStoreSite(catalog_site.getId(), catalogContext, this.hstore_conf);
+        this.executorDebug = this.hstore_site.getPartitionExecutor(BASE_PARTITION).getDebugContext();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.hstore_conf.site.exec_no_undo_logging = false;
+        this.hstore_conf.site.anticache_enable = false;
+    }
+
+    private LocalTransaction makeTransaction(Class<? extends VoltProcedure> procClass, boolean predict_canAbort) {
+        Procedure catalog_proc = this.getProcedure(procClass);
+        Long txnId = this.hstore_site.getTransactionIdManager(BASE_PARTITION).getNextUniqueTransactionId();
+        LocalTransaction ts = new LocalTransaction(this.hstore_site);
+        ts.init(txnId, EstTime.currentTimeMillis(), -1, BASE_PARTITION,
+                catalogContext.getPartitionSetSingleton(BASE_PARTITION),
+                false, predict_canAbort, catalog_proc, new ParameterSet(), null);
+        return (ts);
+    }
+
+    private boolean isUndoDisabled(LocalTransaction ts) {
+        long undoToken = this.executorDebug.calculateNextUndoToken(ts, false);
+        assertFalse(undoToken == HStoreConstants.NULL_UNDO_LOGGING_TOKEN);
+        return (undoToken == HStoreConstants.DISABLE_UNDO_LOGGING_TOKEN);
+    }
+
+    /**
+     * testNonAbortableTransaction
+     */
+    public void testNonAbortableTransaction() throws Exception {
+        LocalTransaction ts = this.makeTransaction(UpdateLocation.class, false);
+        assertTrue(this.isUndoDisabled(ts));
+    }
+
+    /**
+     * testAbortableTransaction
+     */
+    public void testAbortableTransaction() throws Exception {
+        // UpdateSubscriberData throws a VoltAbortException when it can't find the
+        // subscriber, so when it aborts we need to be able to roll back its writes
+        LocalTransaction ts = this.makeTransaction(UpdateSubscriberData.class, true);
+        assertFalse(this.isUndoDisabled(ts));
+
+        this.hstore_conf.site.exec_no_undo_logging = false;
+        ts = this.makeTransaction(UpdateLocation.class, false);
+        assertFalse(this.isUndoDisabled(ts));
+    }
+
+    /**
+     * testMispredictableTransaction
+     */
+    public void testMispredictableTransaction() throws Exception {
+        // If the txn was routed by a TransactionEstimator, then it could still
+        // get aborted because of a misprediction
+        LocalTransaction ts = this.makeTransaction(UpdateLocation.class, false);
+        ts.setEstimatorState(new RemoteEstimatorState.Factory(catalogContext).makeObjectImpl());
+        assertFalse(this.isUndoDisabled(ts));
+    }
+
+    /**
+     * testAntiCache
+     */
+    public void testAntiCache() throws Exception {
+        // Any txn could be aborted if it touches evicted data
+        this.hstore_conf.site.anticache_enable = true;
+        LocalTransaction ts = this.makeTransaction(UpdateLocation.class, false);
+        assertFalse(this.isUndoDisabled(ts));
+    }
+}
@@ -26,6 +26,8 @@ import edu.brown.hstore.conf.HStoreConf;
 import edu.brown.hstore.txns.AbstractTransaction;
 import edu.brown.hstore.txns.LocalTransaction;
 import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.EventObservable;
+import edu.brown.utils.EventObserver;
 import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProjectType;
 import edu.brown.utils.StringUtil;
@@ -35,6 +37,7 @@ public class TestPartitionLockQueue extends BaseTestCase {
 
     private static final int NUM_TXNS = 10;
     private static final int TXN_DELAY = 500;
+    private static final int EPOCH_INTERVAL = 50;
     private static final Class<? extends VoltProcedure> TARGET_PROCEDURE = DeleteCallForwarding.class;
     private static final Random random = new Random(0);
     
@@ -105,10 +108,83 @@ public class TestPartitionLockQueue extends BaseTestCase {
         return (added);
     }
     
+    private TransactionEpochManager initEpochQueue(int numSites) {
+        final TransactionEpochManager epochManager = new TransactionEpochManager(0, numSites, EPOCH_INTERVAL);
+        this.queue = new PartitionLockQueue(0, TXN_DELAY, NUM_TXNS * 10, 1.0, epochManager);
+        this.queueDbg = this.queue.getDebugContext();
+        epochManager.getClosedEpochObservable().addObserver(new EventObserver<Long>() {
+            @Override
+            public void update(EventObservable<Long> o, Long arg) {
+                queue.epochClosed();
+            }
+        });
+        return (epochManager);
+    }
+    
     // --------------------------------------------------------------------------------------------
     // TEST CASES
     // --------------------------------------------------------------------------------------------
     
+    /**
+     * testEpochOrdering
+     */
+    @Test
+    public void testEpochOrdering() throws Exception {
+        TransactionEpochManager epochManager = this.initEpochQueue(2);
+        List<AbstractTransaction> added = new ArrayList<AbstractTransaction>(this.loadQueue(NUM_TXNS));
+        assertEquals(NUM_TXNS, this.queue.size());
+        long lastEpoch = epochManager.getEpoch(CollectionUtil.last(added).getTransactionId());
+        
+        // Nothing should come out until the epoch is closed at every site,
+        // no matter how long we wait
+        assertNull(this.queue.poll());
+        ThreadUtil.sleep(EPOCH_INTERVAL * 2);
+        assertNull(this.queue.poll());
+        long watermark = TransactionIdManager.makeIdFromComponents((lastEpoch + 1) * EPOCH_INTERVAL, 0, 0);
+        epochManager.updateSiteWatermark(1, watermark);
+        assertEquals(TransactionEpochManager.NULL_EPOCH, epochManager.getClosedEpoch());
+        assertNull(this.queue.poll());
+        assertEquals(QueueState.BLOCKED_SAFETY, this.queueDbg.checkQueueState());
+        
+        // Once our site closes it too, all of the txns should come out 
+        // right away in the order of their txnIds
+        epochManager.closeLocalEpoch();
+        assertTrue(epochManager.getClosedEpoch() >= lastEpoch);
+        assertEquals(QueueState.UNBLOCKED, this.queueDbg.checkQueueState());
+        for (AbstractTransaction ts : added) {
+            assertEquals(ts, this.queue.poll());
+        } // FOR
+        assertNull(this.queue.poll());
+        assertEquals(QueueState.BLOCKED_EMPTY, this.queueDbg.checkQueueState());
+    }
+    
+    /**
+     * testEpochBlockUntilClosed
+     */
+    @Test
+    public void testEpochBlockUntilClosed() throws Exception {
+        TransactionEpochManager epochManager = this.initEpochQueue(2);
+        Collection<AbstractTransaction> added = this.loadQueue(1);
+        AbstractTransaction expected = CollectionUtil.first(added);
+        
+        BlockingTakeThread t = new BlockingTakeThread();
+        t.start();
+        
+        // The thread should still be blocked even though we have gone 
+        // well past the epoch because the other site hasn't closed it yet
+        ThreadUtil.sleep(EPOCH_INTERVAL * 4);
+        epochManager.closeLocalEpoch();
+        assertNull(t.result.get());
+        assertEquals(1, t.latch.getCount());
+        
+        // Closing the epoch should wake the thread up without waiting for a timeout
+        long watermark = epochManager.getWatermark(0);
+        epochManager.updateSiteWatermark(1, watermark);
+        boolean result = t.latch.await(EPOCH_INTERVAL * 2, TimeUnit.MILLISECONDS);
+        assertTrue(result);
+        assertEquals(expected, t.result.get());
+    }
+    
     /**
      * testBlockUntilReady
      */
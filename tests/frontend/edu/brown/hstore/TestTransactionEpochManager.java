@@ -0,0 +1,114 @@
+package edu.brown.hstore;
+
+import junit.framework.TestCase;
+
+import org.voltdb.TransactionIdManager;
+
+import edu.brown.utils.EventObservable;
+import edu.brown.utils.EventObserver;
+import edu.brown.utils.ThreadUtil;
+
+public class TestTransactionEpochManager extends TestCase {
+
+    private static final int NUM_SITES = 3;
+    private static final int EPOCH_INTERVAL = 20;
+
+    TransactionIdManager idManager;
+    TransactionEpochManager epochManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.idManager = new TransactionIdManager(0);
+        this.epochManager = new TransactionEpochManager(0, NUM_SITES, EPOCH_INTERVAL);
+    }
+
+    private Long registerTransaction() {
+        Long txnId = null;
+        this.epochManager.beginRegistration();
+        try {
+            txnId = this.idManager.getNextUniqueTransactionId();
+        } finally {
+            this.epochManager.finishRegistration(txnId);
+        }
+        return (txnId);
+    }
+
+    private long getWatermark(long epoch) {
+        return (TransactionIdManager.makeIdFromComponents((epoch + 1) * EPOCH_INTERVAL, 0, 0));
+    }
+
+    /**
+     * testGetEpoch
+     */
+    public void testGetEpoch() throws Exception {
+        Long txnId = this.idManager.getNextUniqueTransactionId();
+        long timestamp = TransactionIdManager.getTimestampFromTransactionId(txnId);
+        long epoch = this.epochManager.getEpoch(txnId);
+        assertEquals(timestamp / EPOCH_INTERVAL, epoch);
+        assertEquals(epoch + 1, this.epochManager.getEpoch(this.getWatermark(epoch)));
+        assertEquals(epoch, this.epochManager.getEpoch(this.getWatermark(epoch) - 1));
+    }
+
+    /**
+     * testSiteWatermarks
+     */
+    public void testSiteWatermarks() throws Exception {
+        final long notified[] = { TransactionEpochManager.NULL_EPOCH };
+        this.epochManager.getClosedEpochObservable().addObserver(new EventObserver<Long>() {
+            @Override
+            public void update(EventObservable<Long> o, Long arg) {
+                notified[0] = arg;
+            }
+        });
+
+        // The closed epoch is the smallest one across all of the sites
+        long epoch = this.epochManager.getEpoch(this.idManager.getNextUniqueTransactionId()) - 10;
+        for (int site_id = 0; site_id < NUM_SITES; site_id++) {
+            assertEquals(TransactionEpochManager.NULL_EPOCH, this.epochManager.getClosedEpoch());
+            this.epochManager.updateSiteWatermark(site_id, this.getWatermark(epoch + site_id));
+            assertEquals(epoch + site_id, this.epochManager.getDebugContext().getSiteEpoch(site_id));
+        } // FOR
+        assertEquals(epoch, this.epochManager.getClosedEpoch());
+        assertEquals(epoch, notified[0]);
+
+        // Epochs never go backwards
+        this.epochManager.updateSiteWatermark(0, this.getWatermark(epoch - 5));
+        this.epochManager.updateSiteWatermark(0, -1);
+        assertEquals(epoch, this.epochManager.getDebugContext().getSiteEpoch(0));
+        assertEquals(epoch, this.epochManager.getClosedEpoch());
+
+        this.epochManager.updateSiteWatermark(0, this.getWatermark(epoch + 5));
+        assertEquals(epoch + 1, this.epochManager.getClosedEpoch());
+        assertEquals(epoch + 1, notified[0]);
+        assertEquals(this.getWatermark(epoch + 5), this.epochManager.getWatermark(0));
+    }
+
+    /**
+     * testPendingTransactions
+     */
+    public void testPendingTransactions() throws Exception {
+        this.epochManager = new TransactionEpochManager(0, 1, EPOCH_INTERVAL);
+        Long txnId = this.registerTransaction();
+        assertEquals(1, this.epochManager.getDebugContext().getPendingCount());
+
+        // We can't close the txn's epoch until it has been sent out,
+        // even though our clock has moved past it
+        ThreadUtil.sleep(EPOCH_INTERVAL * 2);
+        long watermark = this.epochManager.closeLocalEpoch();
+        assertEquals(this.epochManager.getEpoch(txnId) - 1, this.epochManager.getClosedEpoch());
+        assertFalse(this.epochManager.isClosed(txnId));
+        assertTrue(watermark <= txnId);
+
+        this.epochManager.transactionSent(txnId);
+        assertEquals(0, this.epochManager.getDebugContext().getPendingCount());
+        watermark = this.epochManager.closeLocalEpoch();
+        assertTrue(this.epochManager.isClosed(txnId));
+        assertTrue(watermark > txnId);
+
+        // Any new txn must be in an epoch that is still open
+        Long nextTxnId = this.registerTransaction();
+        assertFalse(this.epochManager.isClosed(nextTxnId));
+        this.epochManager.closeLocalEpoch();
+        assertFalse(this.epochManager.isClosed(nextTxnId));
+    }
+}
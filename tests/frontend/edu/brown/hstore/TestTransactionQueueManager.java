@@ -8,6 +8,7 @@ import org.junit.Test;
 import org.voltdb.TransactionIdManager;
 import org.voltdb.VoltProcedure;
 import org.voltdb.benchmark.tpcc.procedures.neworder;
+import org.voltdb.benchmark.tpcc.procedures.slev;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Site;
 
@@ -102,13 +103,18 @@ public class TestTransactionQueueManager extends BaseTestCase {
     // --------------------------------------------------------------------------------------------
     
     private LocalTransaction createTransaction(Long txn_id, PartitionSet partitions, final MockCallback callback) {
+        return (this.createTransaction(txn_id, partitions, callback, TARGET_PROCEDURE));
+    }
+    
+    private LocalTransaction createTransaction(Long txn_id, PartitionSet partitions, final MockCallback callback,
+                                               Class<? extends VoltProcedure> procClass) {
         LocalTransaction ts = new LocalTransaction(this.hstore_site) {
             @Override
             public MockCallback getInitCallback() {
                 return (callback);
             }
         };
-        Procedure catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+        Procedure catalog_proc = this.getProcedure(procClass);
         ts.testInit(txn_id, 0, partitions, catalog_proc);
         callback.init(ts, partitions);
         this.txns.put(txn_id, ts);
@@ -362,4 +368,58 @@ public class TestTransactionQueueManager extends BaseTestCase {
         }
         assertTrue(dbg.isLockQueuesEmpty());
     }
+    
+    /**
+     * A snapshot read txn should only need to get the lock for its base partition.
+     * It should get released at its other partitions even though another txn
+     * is holding their locks.
+     * @throws Exception
+     */
+    @Test
+    public void testSnapshotRead() throws Exception {
+        final Long txn_id0 = this.idManager.getNextUniqueTransactionId();
+        final Long txn_id1 = this.idManager.getNextUniqueTransactionId();
+        final PartitionSet partitions0 = new PartitionSet(1, 2, 3);
+        final PartitionSet partitions1 = catalogContext.getAllPartitionIds();
+        final MockCallback inner_callback0 = new MockCallback();
+        final MockCallback inner_callback1 = new MockCallback();
+        final LocalTransaction txn0 = this.createTransaction(txn_id0, partitions0, inner_callback0);
+        final LocalTransaction txn1 = this.createTransaction(txn_id1, partitions1, inner_callback1, slev.class);
+        txn1.setSnapshotRead(true);
+        assertTrue(txn1.isSnapshotRead());
+        assertFalse(txn1.isSnapshotReadPartition(0));
+        assertTrue(txn1.isSnapshotReadPartition(1));
+        
+        // The first txn holds the locks for all of the partitions except
+        // for the snapshot txn's base partition
+        assertTrue(this.addToQueue(txn0, inner_callback0));
+        ThreadUtil.sleep(TXN_DELAY);
+        assertTrue(this.checkAllQueues());
+        assertTrue("callback0", inner_callback0.lock.tryAcquire());
+        
+        // The snapshot txn should only get put in the lock queue for its base partition
+        this.queueManager.queueTransactionInit(txn1);
+        int tries = 10;
+        while (dbg.getInitQueueSize() > 0 && tries-- > 0) {
+            ThreadUtil.sleep(TXN_DELAY / 10);
+        } // WHILE
+        ThreadUtil.sleep(TXN_DELAY);
+        assertEquals(new PartitionSet(0), this.findTxnInQueues(txn1));
+        assertTrue(inner_callback1.getReceivedPartitions().containsAll(partitions0));
+        
+        // So once it gets the lock for its base partition, it should be 
+        // released even though the first txn is still running
+        this.checkQueues(new PartitionSet(0));
+        assertTrue("callback1", inner_callback1.lock.tryAcquire());
+        for (int partition : partitions0) {
+            assertTrue(txn1.isMarkedReleased(partition));
+        } // FOR
+        for (int partition : partitions1) {
+            this.queueManager.lockQueueFinished(txn1, Status.OK, partition);
+        } // FOR
+        for (int partition : partitions0) {
+            this.queueManager.lockQueueFinished(txn0, Status.OK, partition);
+        } // FOR
+        assertTrue(dbg.isLockQueuesEmpty());
+    }
 }
@@ -0,0 +1,199 @@
+package edu.brown.hstore.estimators.markov;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.markov.MarkovEdge;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.markov.MarkovVertex;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+
+public class TestMarkovLearner extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 5;
+
+    private MarkovLearner learner;
+    private MarkovGraph graph;
+    private MarkovVertex start;
+    private MarkovVertex commit;
+    private MarkovVertex left;
+    private MarkovVertex right;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+        this.learner = new MarkovLearner(catalogContext, HStoreConf.singleton(true));
+
+        Procedure catalog_proc = this.getProcedure("InsertCallForwarding");
+        Statement catalog_stmt = catalog_proc.getStatements().get("update");
+        assertNotNull(catalog_stmt);
+
+        this.graph = new MarkovGraph(catalog_proc);
+        this.graph.initialize();
+        this.start = this.graph.getStartVertex();
+        this.commit = this.graph.getCommitVertex();
+        this.left = new MarkovVertex(catalog_stmt, MarkovVertex.Type.QUERY, 0, new PartitionSet(0), new PartitionSet());
+        this.right = new MarkovVertex(catalog_stmt, MarkovVertex.Type.QUERY, 0, new PartitionSet(1, 2), new PartitionSet());
+        this.graph.addVertex(this.left);
+        this.graph.addVertex(this.right);
+
+        // Start with both sides being equally likely
+        for (int i = 0; i < 10; i++) {
+            this.queuePath(this.left);
+            this.queuePath(this.right);
+        } // FOR
+        assertEquals(20, this.learner.processQueue());
+        assertEquals(1, this.learner.publish());
+    }
+
+    private void queuePath(MarkovVertex v) {
+        List<MarkovVertex> vertices = new ArrayList<MarkovVertex>();
+        vertices.add(this.start);
+        vertices.add(v);
+        vertices.add(this.commit);
+        List<MarkovEdge> edges = new ArrayList<MarkovEdge>();
+        edges.add(this.graph.addToEdge(this.start, v));
+        edges.add(this.graph.addToEdge(v, this.commit));
+        assertTrue(this.learner.queue(this.graph, vertices, edges));
+    }
+
+    /**
+     * testPublish
+     */
+    @Test
+    public void testPublish() throws Exception {
+        MarkovEdge left_e = this.graph.findEdge(this.start, this.left);
+        MarkovEdge right_e = this.graph.findEdge(this.start, this.right);
+        assertEquals(0.5f, left_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(0.5f, right_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(0.5f, this.start.getDoneProbability(0), MarkovGraph.PROBABILITY_EPSILON);
+        int recomputes = this.graph.getRecomputeCount();
+
+        // Shift the workload over to the right side. Nothing should change
+        // until the learner publishes the graph
+        for (int i = 0; i < 30; i++) {
+            this.queuePath(this.right);
+        } // FOR
+        assertEquals(30, this.learner.getPendingCount());
+        assertEquals(0.5f, right_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(30, this.learner.processQueue());
+        assertEquals(0, this.learner.getPendingCount());
+        assertEquals(0.5f, right_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        float before[][] = this.start.probabilities;
+
+        assertEquals(1, this.learner.publish());
+        assertEquals(recomputes+1, this.graph.getRecomputeCount());
+        assertNotSame(before, this.start.probabilities);
+        assertEquals(0.2f, left_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(0.8f, right_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        assertEquals(0.8f, this.start.getDoneProbability(0), MarkovGraph.PROBABILITY_EPSILON);
+
+        // Nothing changed, so there is nothing to publish
+        assertEquals(0, this.learner.publish());
+    }
+
+    /**
+     * testShadowProbabilities
+     */
+    @Test
+    public void testShadowProbabilities() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            this.queuePath(this.left);
+        } // FOR
+        this.learner.processQueue();
+        this.learner.publish();
+
+        // The shadow tables should be exactly the same as if we computed
+        // the probabilities in place
+        Map<MarkovVertex, float[][]> expected = new HashMap<MarkovVertex, float[][]>();
+        for (MarkovVertex v : this.graph.getVertices()) {
+            float copy[][] = new float[v.probabilities.length][];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = v.probabilities[i].clone();
+            } // FOR
+            expected.put(v, copy);
+        } // FOR
+        this.graph.calculateProbabilities(catalogContext.getAllPartitionIds());
+        for (MarkovVertex v : this.graph.getVertices()) {
+            float copy[][] = expected.get(v);
+            for (int i = 0; i < copy.length; i++) {
+                for (int j = 0; j < copy[i].length; j++) {
+                    assertEquals(v + "[" + i + "][" + j + "]", v.probabilities[i][j], copy[i][j], MarkovGraph.PROBABILITY_EPSILON);
+                } // FOR
+            } // FOR
+        } // FOR
+    }
+
+    /**
+     * testPrepareShutdown
+     */
+    @Test
+    public void testPrepareShutdown() throws Exception {
+        Thread t = new Thread(this.learner);
+        t.setDaemon(true);
+        t.start();
+        
+        // Everything in the queue should get published before we shutdown, 
+        // even if the learner isn't due to publish yet
+        MarkovEdge right_e = this.graph.findEdge(this.start, this.right);
+        int recomputes = this.graph.getRecomputeCount();
+        for (int i = 0; i < 30; i++) {
+            this.queuePath(this.right);
+        } // FOR
+        this.learner.prepareShutdown(false);
+        assertTrue(this.learner.isShuttingDown());
+        t.join(10000);
+        assertFalse(t.isAlive());
+        assertEquals(0, this.learner.getPendingCount());
+        assertEquals(recomputes+1, this.graph.getRecomputeCount());
+        assertEquals(0.8f, right_e.getProbability(), MarkovGraph.PROBABILITY_EPSILON);
+        
+        // Nobody should be able to queue anything once we've been stopped
+        List<MarkovVertex> vertices = new ArrayList<MarkovVertex>();
+        List<MarkovEdge> edges = new ArrayList<MarkovEdge>();
+        assertFalse(this.learner.queue(this.graph, vertices, edges));
+    }
+    
+    /**
+     * testConcurrentModification
+     */
+    @Test
+    public void testConcurrentModification() throws Exception {
+        // If somebody adds a new vertex while we are recomputing the probabilities,
+        // then the new probabilities should not get published
+        final Statement catalog_stmt = this.left.getCatalogItem();
+        final MarkovVertex added = new MarkovVertex(catalog_stmt, MarkovVertex.Type.QUERY, 1, new PartitionSet(3), new PartitionSet());
+        MarkovVertex v = new MarkovVertex(catalog_stmt, MarkovVertex.Type.QUERY, 0, new PartitionSet(4), new PartitionSet()) {
+            @Override
+            protected MarkovVertex createShadow() {
+                if (graph.containsVertex(added) == false) graph.addVertex(added);
+                return (super.createShadow());
+            }
+        };
+        this.graph.addVertex(v);
+        for (int i = 0; i < 30; i++) {
+            this.queuePath(v);
+        } // FOR
+        this.learner.processQueue();
+        float before[][] = this.start.probabilities;
+        int recomputes = this.graph.getRecomputeCount();
+        assertEquals(0, this.learner.publish());
+        assertSame(before, this.start.probabilities);
+        assertEquals(recomputes, this.graph.getRecomputeCount());
+        
+        // It should work the next time around
+        assertEquals(1, this.learner.publish());
+        assertNotSame(before, this.start.probabilities);
+        assertEquals(recomputes+1, this.graph.getRecomputeCount());
+    }
+}
@@ -1,7 +1,9 @@
 package edu.brown.hstore.specexec;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.voltdb.ParameterSet;
 import org.voltdb.SQLStmt;
@@ -17,6 +19,7 @@ import org.voltdb.types.TimestampType;
 
 import edu.brown.BaseTestCase;
 import edu.brown.benchmark.seats.procedures.NewReservation;
+import edu.brown.benchmark.seats.procedures.UpdateReservation;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.catalog.special.CountedStatement;
 import edu.brown.hstore.HStoreCoordinator;
@@ -210,4 +213,70 @@ public class TestPrefetchQueryPlanner extends BaseTestCase {
 
     }
 
+    /**
+     * testCanPrefetch
+     */
+    public void testCanPrefetch() throws Exception {
+        Procedure catalog_proc = this.getProcedure(TARGET_PREFETCH_PROCEDURE);
+        Statement catalog_stmt = this.getStatement(catalog_proc, TARGET_PREFETCH_STATEMENT);
+        CountedStatement counted_stmt = new CountedStatement(catalog_stmt, 0);
+        assertTrue(PrefetchQueryPlanner.canPrefetch(catalogContext, counted_stmt, 0d));
+        
+        // ParameterMapping coefficients can never be greater than one
+        assertFalse(PrefetchQueryPlanner.canPrefetch(catalogContext, counted_stmt, 1.1d));
+        
+        // We don't know anything about an invocation that never happens
+        counted_stmt = new CountedStatement(catalog_stmt, 1000);
+        assertFalse(PrefetchQueryPlanner.canPrefetch(catalogContext, counted_stmt, 0d));
+    }
+    
+    /**
+     * testMarkAutoPrefetchable
+     */
+    public void testMarkAutoPrefetchable() throws Exception {
+        // The SEATS project already marks some of its Statements as prefetchable,
+        // so we need to clear them out first and then put them back at the end
+        Set<Statement> orig_stmts = new HashSet<Statement>();
+        Set<Procedure> orig_procs = new HashSet<Procedure>();
+        for (Procedure catalog_proc : catalogContext.getRegularProcedures()) {
+            if (catalog_proc.getPrefetchable()) orig_procs.add(catalog_proc);
+            catalog_proc.setPrefetchable(false);
+            for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
+                if (catalog_stmt.getPrefetchable()) orig_stmts.add(catalog_stmt);
+                catalog_stmt.setPrefetchable(false);
+            } // FOR
+        } // FOR
+        
+        try {
+            int num_stmts = PrefetchQueryPlanner.markAutoPrefetchable(catalogContext);
+            assertTrue(num_stmts > 0);
+            int num_marked = 0;
+            for (Procedure catalog_proc : catalogContext.getRegularProcedures()) {
+                for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
+                    if (catalog_stmt.getPrefetchable() == false) continue;
+                    assertTrue(catalog_proc.getName(), catalog_proc.getPrefetchable());
+                    assertTrue(catalog_stmt.fullName(), catalog_stmt.getReadonly());
+                    assertFalse(catalog_stmt.fullName(), catalog_stmt.getReplicatedonly());
+                    assertTrue(catalog_stmt.fullName(),
+                               PrefetchQueryPlanner.canPrefetch(catalogContext, new CountedStatement(catalog_stmt, 0), 0d));
+                    num_marked++;
+                } // FOR
+            } // FOR
+            assertEquals(num_stmts, num_marked);
+            
+            // We can't figure out the input parameters for this one
+            Procedure catalog_proc = this.getProcedure(UpdateReservation.class);
+            assertFalse(this.getStatement(catalog_proc, "GetSeats").getPrefetchable());
+            
+            // Calling it again shouldn't find anything new
+            assertEquals(0, PrefetchQueryPlanner.markAutoPrefetchable(catalogContext));
+        } finally {
+            for (Procedure catalog_proc : catalogContext.getRegularProcedures()) {
+                catalog_proc.setPrefetchable(orig_procs.contains(catalog_proc));
+                for (Statement catalog_stmt : catalog_proc.getStatements().values()) {
+                    catalog_stmt.setPrefetchable(orig_stmts.contains(catalog_stmt));
+                } // FOR
+            } // FOR
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package edu.brown.hstore.util;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.PlanFragment;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.Table;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.TM1Constants;
+import edu.brown.benchmark.tm1.procedures.GetAccessData;
+import edu.brown.benchmark.tm1.procedures.GetSubscriberData;
+import edu.brown.benchmark.tm1.procedures.UpdateLocation;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+
+/**
+ * TestFragmentResultCache
+ */
+public class TestFragmentResultCache extends BaseTestCase {
+
+    private static final long MAX_BYTES = 1024 * 1024;
+    private static final int PARTITION_ID = 0;
+
+    FragmentResultCache cache;
+    PlanFragment readFragment;
+    PlanFragment otherFragment;
+    PlanFragment writeFragment;
+    int tableId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.cache = new FragmentResultCache(catalogContext, MAX_BYTES, TM1Constants.TABLENAME_SUBSCRIBER);
+
+        Table catalog_tbl = this.getTable(TM1Constants.TABLENAME_SUBSCRIBER);
+        this.tableId = catalog_tbl.getRelativeIndex();
+
+        Procedure catalog_proc = this.getProcedure(GetSubscriberData.class);
+        Statement catalog_stmt = this.getStatement(catalog_proc, "GetData");
+        this.readFragment = CollectionUtil.first(catalog_stmt.getFragments());
+
+        catalog_proc = this.getProcedure(GetAccessData.class);
+        catalog_stmt = CollectionUtil.first(catalog_proc.getStatements());
+        this.otherFragment = CollectionUtil.first(catalog_stmt.getFragments());
+
+        catalog_proc = this.getProcedure(UpdateLocation.class);
+        catalog_stmt = this.getStatement(catalog_proc, "update");
+        this.writeFragment = CollectionUtil.first(catalog_stmt.getFragments());
+    }
+
+    private VoltTable makeResult(long value) {
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("S_ID", VoltType.BIGINT));
+        vt.addRow(value);
+        return (vt);
+    }
+
+    private boolean put(long fragmentId, ParameterSet params, VoltTable result) {
+        long versions[] = this.cache.getVersions(fragmentId);
+        assertNotNull(versions);
+        return (this.cache.put(fragmentId, PARTITION_ID, params, result, versions));
+    }
+
+    /**
+     * testIsCacheable
+     */
+    public void testIsCacheable() throws Exception {
+        assertTrue(this.cache.isCacheableTable(this.tableId));
+        assertTrue(this.cache.isCacheable(this.readFragment.getId()));
+        assertFalse(this.cache.isCacheable(this.otherFragment.getId()));
+        assertFalse(this.cache.isCacheable(this.writeFragment.getId()));
+
+        // Nothing is cacheable if we don't tell it about any tables
+        FragmentResultCache empty = new FragmentResultCache(catalogContext, MAX_BYTES);
+        assertFalse(empty.isCacheableTable(this.tableId));
+        assertFalse(empty.isCacheable(this.readFragment.getId()));
+    }
+
+    /**
+     * testGetPut
+     */
+    public void testGetPut() throws Exception {
+        long fragmentId = this.readFragment.getId();
+        ParameterSet params = new ParameterSet(1234l);
+        assertNull(this.cache.get(fragmentId, PARTITION_ID, params));
+        assertTrue(this.put(fragmentId, params, this.makeResult(1234l)));
+        assertEquals(1, this.cache.size());
+        assertTrue(this.cache.getBytes() > 0);
+
+        // Modifying the original parameters shouldn't change the key
+        params.toArray()[0] = 9999l;
+        assertNull(this.cache.get(fragmentId, PARTITION_ID, params));
+
+        VoltTable vt = this.cache.get(fragmentId, PARTITION_ID, new ParameterSet(1234l));
+        assertNotNull(vt);
+        assertEquals(1, vt.getRowCount());
+        assertEquals(1234l, vt.asScalarLong());
+
+        // Make sure that we can read it more than once
+        vt = this.cache.get(fragmentId, PARTITION_ID, new ParameterSet(1234l));
+        assertNotNull(vt);
+        assertEquals(1234l, vt.asScalarLong());
+
+        // Different partition
+        assertNull(this.cache.get(fragmentId, PARTITION_ID + 1, new ParameterSet(1234l)));
+
+        assertEquals(2, this.cache.getHits());
+        assertEquals(3, this.cache.getMisses());
+        assertEquals(1, this.cache.getInserts());
+    }
+
+    /**
+     * testInvalidation
+     */
+    public void testInvalidation() throws Exception {
+        long fragmentId = this.readFragment.getId();
+        ParameterSet params = new ParameterSet(1234l);
+        assertTrue(this.put(fragmentId, params, this.makeResult(1234l)));
+
+        // While somebody is writing to the table, we shouldn't
+        // be able to get anything out of the cache or put anything into it
+        long versions[] = this.cache.getVersions(fragmentId);
+        this.cache.beginWrite(this.tableId);
+        assertNull(this.cache.getVersions(fragmentId));
+        assertFalse(this.cache.put(fragmentId, PARTITION_ID, new ParameterSet(1l), this.makeResult(1l), versions));
+        assertNull(this.cache.get(fragmentId, PARTITION_ID, params));
+        this.cache.finishWrite(this.tableId);
+        assertEquals(1, this.cache.getInvalidations());
+        assertEquals(0, this.cache.size());
+        assertEquals(0, this.cache.getBytes());
+
+        // Results that were computed before the write finished are stale
+        assertFalse(this.cache.put(fragmentId, PARTITION_ID, params, this.makeResult(1234l), versions));
+        assertTrue(this.put(fragmentId, params, this.makeResult(5678l)));
+        assertEquals(5678l, this.cache.get(fragmentId, PARTITION_ID, params).asScalarLong());
+
+        this.cache.clear();
+        assertEquals(0, this.cache.size());
+        assertNull(this.cache.get(fragmentId, PARTITION_ID, params));
+    }
+
+    /**
+     * testEviction
+     */
+    public void testEviction() throws Exception {
+        long fragmentId = this.readFragment.getId();
+        int entrySize = this.makeResult(0).getTableDataReference().limit() + 128;
+        int capacity = 4;
+        this.cache = new FragmentResultCache(catalogContext, entrySize * capacity, TM1Constants.TABLENAME_SUBSCRIBER);
+
+        // Make the first key popular so that it doesn't get evicted
+        ParameterSet hot = new ParameterSet(0l);
+        for (int i = 0; i < 5; i++) {
+            this.cache.get(fragmentId, PARTITION_ID, hot);
+        } // FOR
+        assertTrue(this.put(fragmentId, hot, this.makeResult(0l)));
+        for (long i = 1; i < capacity; i++) {
+            ParameterSet params = new ParameterSet(i);
+            this.cache.get(fragmentId, PARTITION_ID, params);
+            assertTrue(this.put(fragmentId, params, this.makeResult(i)));
+        } // FOR
+        assertEquals(capacity, this.cache.size());
+        assertEquals(0, this.cache.getEvictions());
+
+        // Something that has only been asked for once should be able to
+        // evict the least recently used entry if it isn't any more popular
+        assertNotNull(this.cache.get(fragmentId, PARTITION_ID, hot));
+        ParameterSet params = new ParameterSet(100l);
+        this.cache.get(fragmentId, PARTITION_ID, params);
+        assertTrue(this.put(fragmentId, params, this.makeResult(100l)));
+        assertEquals(capacity, this.cache.size());
+        assertEquals(1, this.cache.getEvictions());
+        assertNotNull(this.cache.get(fragmentId, PARTITION_ID, hot));
+
+        // But something that has never been asked for is not allowed to push
+        // out the popular one when that's the least recently used entry
+        for (long i = 1; i < capacity; i++) {
+            this.cache.get(fragmentId, PARTITION_ID, new ParameterSet(i));
+        } // FOR
+        this.cache.get(fragmentId, PARTITION_ID, params);
+        ParameterSet cold = new ParameterSet(200l);
+        assertFalse(this.put(fragmentId, cold, this.makeResult(200l)));
+        assertEquals(1, this.cache.getRejected());
+        assertNotNull(this.cache.get(fragmentId, PARTITION_ID, hot));
+    }
+
+    /**
+     * testFrequencySketch
+     */
+    public void testFrequencySketch() throws Exception {
+        FragmentResultCache.FrequencySketch sketch = new FragmentResultCache.FrequencySketch(64);
+        assertEquals(0, sketch.frequency(12345));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(12345);
+        } // FOR
+        assertTrue(sketch.frequency(12345) >= 5);
+
+        // The counters saturate at 15
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(12345);
+        } // FOR
+        assertTrue(sketch.frequency(12345) <= 15);
+
+        // Eventually old counts should age out
+        for (int i = 0; i < 64 * 10; i++) {
+            sketch.increment(i * 7919);
+        } // FOR
+        assertTrue(sketch.frequency(12345) < 15);
+    }
+}
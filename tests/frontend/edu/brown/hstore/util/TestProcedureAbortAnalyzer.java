@@ -0,0 +1,110 @@
+package edu.brown.hstore.util;
+
+import org.voltdb.VoltProcedure.VoltAbortException;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.types.QueryType;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.procedures.DeleteCallForwarding;
+import edu.brown.benchmark.tm1.procedures.GetSubscriberData;
+import edu.brown.benchmark.tm1.procedures.InsertCallForwarding;
+import edu.brown.benchmark.tm1.procedures.UpdateLocation;
+import edu.brown.benchmark.tm1.procedures.UpdateSubscriberData;
+import edu.brown.markov.EstimationThresholds;
+import edu.brown.markov.MarkovGraph;
+import edu.brown.utils.ProjectType;
+
+/**
+ * TestProcedureAbortAnalyzer
+ */
+public class TestProcedureAbortAnalyzer extends BaseTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+    }
+
+    /**
+     * testReadClass
+     */
+    public void testReadClass() throws Exception {
+        String internalName = UpdateSubscriberData.class.getName().replace('.', '/');
+        ProcedureAbortAnalyzer.ClassInfo info = ProcedureAbortAnalyzer.readClass(internalName);
+        assertNotNull(info);
+        assertNull(info.superName);
+        assertTrue(info.constructed.toString(),
+                   info.constructed.contains(VoltAbortException.class.getName().replace('.', '/')));
+        assertNull(ProcedureAbortAnalyzer.readClass("edu/brown/DoesNotExist"));
+    }
+
+    /**
+     * testCanUserAbort
+     */
+    public void testCanUserAbort() throws Exception {
+        // Declaring that run() throws a VoltAbortException doesn't count
+        assertFalse(ProcedureAbortAnalyzer.canUserAbort(this.getProcedure(GetSubscriberData.class)));
+        assertTrue(ProcedureAbortAnalyzer.canUserAbort(this.getProcedure(UpdateSubscriberData.class)));
+        
+        // UpdateLocation has an assert in it, so it can only abort if asserts are enabled
+        boolean asserts = false;
+        assert(asserts = true);
+        assertEquals(asserts, ProcedureAbortAnalyzer.canUserAbort(this.getProcedure(UpdateLocation.class)));
+        assertTrue(ProcedureAbortAnalyzer.canUserAbort(this.getProcedure(DeleteCallForwarding.class)));
+
+        // We never trust sysprocs
+        for (Procedure catalog_proc : catalogContext.procedures) {
+            if (catalog_proc.getSystemproc()) {
+                assertTrue(catalog_proc.getName(), ProcedureAbortAnalyzer.canUserAbort(catalog_proc));
+            }
+        } // FOR
+    }
+
+    /**
+     * testCanViolateConstraints
+     */
+    public void testCanViolateConstraints() throws Exception {
+        Procedure catalog_proc = this.getProcedure(GetSubscriberData.class);
+        assertFalse(ProcedureAbortAnalyzer.canViolateConstraints(catalog_proc));
+
+        // Inserting into CALL_FORWARDING can violate its primary key
+        catalog_proc = this.getProcedure(InsertCallForwarding.class);
+        assertTrue(ProcedureAbortAnalyzer.canViolateConstraints(catalog_proc));
+        for (Statement catalog_stmt : catalog_proc.getStatements()) {
+            QueryType qtype = QueryType.get(catalog_stmt.getQuerytype());
+            assertEquals(catalog_stmt.fullName(), qtype == QueryType.INSERT,
+                         ProcedureAbortAnalyzer.canViolateConstraints(catalog_stmt));
+        } // FOR
+    }
+
+    /**
+     * testIsNonAborting
+     */
+    public void testIsNonAborting() throws Exception {
+        assertTrue(ProcedureAbortAnalyzer.isNonAborting(this.getProcedure(GetSubscriberData.class)));
+        assertFalse(ProcedureAbortAnalyzer.isNonAborting(this.getProcedure(UpdateSubscriberData.class)));
+        assertFalse(ProcedureAbortAnalyzer.isNonAborting(this.getProcedure(InsertCallForwarding.class)));
+    }
+
+    /**
+     * testIsAbortProbabilityNegligible
+     */
+    public void testIsAbortProbabilityNegligible() throws Exception {
+        EstimationThresholds thresholds = new EstimationThresholds();
+        MarkovGraph markov = new MarkovGraph(this.getProcedure(UpdateLocation.class)).initialize();
+        assertFalse(ProcedureAbortAnalyzer.isAbortProbabilityNegligible(null, thresholds));
+        
+        // We can't trust a model that hasn't seen enough txns yet
+        assertFalse(ProcedureAbortAnalyzer.isAbortProbabilityNegligible(markov, thresholds));
+        
+        long needed = (long)Math.ceil(1.0d / thresholds.getAbortThreshold());
+        for (long i = 0; i < needed; i++) {
+            markov.getStartVertex().incrementTotalHits();
+        } // FOR
+        assertTrue(ProcedureAbortAnalyzer.isAbortProbabilityNegligible(markov, thresholds));
+        
+        markov.getAbortVertex().incrementTotalHits();
+        markov.getAbortVertex().incrementTotalHits();
+        assertFalse(ProcedureAbortAnalyzer.isAbortProbabilityNegligible(markov, thresholds));
+    }
+}
@@ -0,0 +1,206 @@
+package edu.brown.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+public class TestRingBufferAppender extends TestCase {
+
+    private static final int RING_SIZE = 64;
+    private static final int NUM_THREADS = 4;
+
+    class MockAppender extends AppenderSkeleton {
+        final List<String> messages = new ArrayList<String>();
+        final List<String> threads = new ArrayList<String>();
+        @Override
+        protected void append(LoggingEvent event) {
+            this.messages.add(event.getRenderedMessage());
+            this.threads.add(Thread.currentThread().getName());
+        }
+        @Override
+        public void close() {
+            // Nothing
+        }
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+
+    Logger logger = Logger.getLogger(TestRingBufferAppender.class);
+    RingBufferAppender appender;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.appender = new RingBufferAppender(RING_SIZE);
+        this.appender.setName("TEST");
+        this.appender.setStoreThreadName(true);
+        this.appender.setLayout(new PatternLayout("%m"));
+        this.logger.removeAllAppenders();
+        this.logger.setAdditivity(false);
+        this.logger.setLevel(Level.DEBUG);
+        this.logger.addAppender(this.appender);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.logger.removeAllAppenders();
+        this.appender.close();
+    }
+
+    /**
+     * testLatestMessages
+     */
+    public void testLatestMessages() throws Exception {
+        int total = RING_SIZE * 3 + 5;
+        for (int i = 0; i < total; i++) {
+            this.logger.debug("MSG" + i);
+        } // FOR
+        assertEquals(total, this.appender.getLoggedLines());
+
+        String messages[] = this.appender.getLogMessages();
+        assertEquals(RING_SIZE, messages.length);
+        for (int i = 0; i < messages.length; i++) {
+            assertEquals("MSG" + (total - RING_SIZE + i), messages[i]);
+        } // FOR
+        LoggingEvent events[] = this.appender.getLogEvents();
+        assertEquals(Thread.currentThread().getName(), events[0].getThreadName());
+        assertEquals(Level.DEBUG, events[0].getLevel());
+    }
+
+    /**
+     * testConcurrentAppends
+     */
+    public void testConcurrentAppends() throws Exception {
+        final int perThread = RING_SIZE * 10;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            final int id = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        logger.info(new FormattedMessage("THREAD%d-%d", id, j));
+                    } // FOR
+                }
+            };
+            threads.add(t);
+            t.start();
+        } // FOR
+        for (Thread t : threads) t.join();
+
+        assertEquals(NUM_THREADS * perThread, this.appender.getLoggedLines());
+        String messages[] = this.appender.getLogMessages();
+        assertEquals(RING_SIZE, messages.length);
+        for (String msg : messages) {
+            assertTrue(msg, msg.startsWith("THREAD"));
+        } // FOR
+    }
+
+    /**
+     * testConsistentRecords
+     */
+    public void testConsistentRecords() throws Exception {
+        // Each event that we read back out while the threads are still
+        // logging must have all of its fields from the same append
+        final int perThread = RING_SIZE * 100;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        logger.info(this.getName());
+                    } // FOR
+                }
+            };
+            t.setName("WRITER" + i);
+            threads.add(t);
+        } // FOR
+        for (Thread t : threads) t.start();
+        
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread t : threads) running = running || t.isAlive();
+            for (LoggingEvent event : this.appender.getLogEvents()) {
+                assertEquals(event.getThreadName(), event.getRenderedMessage());
+            } // FOR
+        } // WHILE
+        assertEquals(NUM_THREADS * perThread, this.appender.getLoggedLines());
+        assertEquals(RING_SIZE, this.appender.getLogEvents().length);
+    }
+
+    /**
+     * testDrain
+     */
+    public void testDrain() throws Exception {
+        MockAppender mock = new MockAppender();
+        this.appender.setFlushInterval(10000);
+        this.appender.addAppender(mock);
+        assertTrue(this.appender.isAttached(mock));
+
+        for (int i = 0; i < 10; i++) {
+            this.logger.debug("MSG" + i);
+        } // FOR
+        assertEquals(10, this.appender.drain());
+        assertEquals(0, this.appender.drain());
+        assertEquals(10, mock.messages.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("MSG" + i, mock.messages.get(i));
+        } // FOR
+        assertEquals(0, this.appender.getDroppedLines());
+
+        // If we log more than the ring holds before it gets drained,
+        // then we should only get the latest ones
+        mock.messages.clear();
+        int total = RING_SIZE + 10;
+        for (int i = 0; i < total; i++) {
+            this.logger.debug("NEXT" + i);
+        } // FOR
+        assertEquals(RING_SIZE, this.appender.drain());
+        assertEquals(10, this.appender.getDroppedLines());
+        assertEquals("NEXT10", mock.messages.get(0));
+        assertEquals("NEXT" + (total - 1), mock.messages.get(RING_SIZE - 1));
+    }
+
+    /**
+     * testBackgroundDrain
+     */
+    public void testBackgroundDrain() throws Exception {
+        MockAppender mock = new MockAppender();
+        this.appender.setFlushInterval(1);
+        this.appender.addAppender(mock);
+        this.logger.debug("BACKGROUND");
+
+        // The background thread should pick it up on its own
+        for (int i = 0; i < 1000 && mock.messages.isEmpty(); i++) {
+            Thread.sleep(5);
+        } // FOR
+        this.appender.close();
+        assertEquals(1, mock.messages.size());
+        assertEquals("BACKGROUND", mock.messages.get(0));
+        assertFalse(Thread.currentThread().getName().equals(mock.threads.get(0)));
+    }
+
+    /**
+     * testFormattedMessage
+     */
+    public void testFormattedMessage() throws Exception {
+        // The arguments are not converted to Strings until the message is rendered
+        StringBuilder mutable = new StringBuilder("before");
+        FormattedMessage msg = new FormattedMessage("%s-%d-%s", mutable, 42, Level.DEBUG);
+        assertSame(mutable, msg.getArguments()[0]);
+        mutable.append("after");
+        assertEquals("%s-%d-%s", msg.getFormat());
+        assertEquals("beforeafter-42-DEBUG", msg.toString());
+        assertSame(msg.toString(), msg.toString());
+    }
+}
@@ -0,0 +1,233 @@
+package edu.brown.markov;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.utils.PartitionSet;
+import edu.brown.utils.ProjectType;
+
+public class TestCompiledMarkovGraph extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 5;
+
+    final Integer[][] partitions = {
+            { 2, 4 },
+            { 3, 4 },
+            { 0, 2 },
+            { 1, 4 },
+            { 0 },
+    };
+    final MarkovVertex[] vertices = new MarkovVertex[this.partitions.length];
+
+    private Procedure catalog_proc;
+    private Statement catalog_stmt;
+    private MarkovGraph graph;
+    private MarkovVertex start;
+    private MarkovVertex commit;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        this.addPartitions(NUM_PARTITIONS);
+
+        this.catalog_proc = this.getProcedure("InsertCallForwarding");
+        this.catalog_stmt = this.catalog_proc.getStatements().get("update");
+        assertNotNull(this.catalog_stmt);
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.vertices[i] = new MarkovVertex(this.catalog_stmt,
+                                                MarkovVertex.Type.QUERY,
+                                                i,
+                                                new PartitionSet(this.partitions[i]),
+                                                new PartitionSet());
+        } // FOR
+
+        this.graph = new MarkovGraph(this.catalog_proc);
+        this.graph.setCompileInterval(0);
+        this.graph.initialize();
+        this.start = this.graph.getStartVertex();
+        this.commit = this.graph.getCommitVertex();
+        for (MarkovVertex v : this.vertices) {
+            this.graph.addVertex(v);
+        } // FOR
+        for (int i = 0; i < 10; i++) {
+            this.graph.addToEdge(this.start, this.vertices[0]);
+            this.graph.addToEdge(this.vertices[0], this.vertices[1]);
+            this.graph.addToEdge(this.vertices[1], this.commit);
+        } // FOR
+        for (int i = 0; i < 30; i++) {
+            this.graph.addToEdge(this.start, this.vertices[2]);
+            this.graph.addToEdge(this.vertices[2], this.vertices[3]);
+            this.graph.addToEdge(this.vertices[3], this.commit);
+        } // FOR
+        for (int i = 0; i < 20; i++) {
+            this.graph.addToEdge(this.start, this.vertices[4]);
+            this.graph.addToEdge(this.vertices[4], this.commit);
+        } // FOR
+        this.graph.calculateProbabilities(catalogContext.getAllPartitionIds());
+    }
+
+    /**
+     * testStructure
+     */
+    @Test
+    public void testStructure() throws Exception {
+        CompiledMarkovGraph compiled = this.graph.getCompiledGraph();
+        assertNotNull(compiled);
+        assertSame(compiled, this.graph.getCompiledGraph());
+        assertEquals(this.graph.getVertexCount(), compiled.getVertexCount());
+        assertEquals(this.graph.getEdgeCount(), compiled.getEdgeCount());
+        assertEquals(0, compiled.indexOf(this.start));
+
+        for (MarkovVertex v : this.graph.getVertices()) {
+            int idx = compiled.indexOf(v);
+            assertTrue(v.toString(), idx >= 0);
+            assertSame(v, compiled.getVertex(idx));
+
+            // The successors have to be the same as the real graph, and they
+            // need to be sorted by their probabilities
+            Set<MarkovVertex> expected = new HashSet<MarkovVertex>(this.graph.getSuccessors(v));
+            Set<MarkovVertex> actual = new HashSet<MarkovVertex>();
+            float last = Float.MAX_VALUE;
+            for (int offset = compiled.getEdgeStart(idx); offset < compiled.getEdgeEnd(idx); offset++) {
+                MarkovEdge e = compiled.getEdge(offset);
+                assertSame(e, this.graph.findEdge(v, compiled.getEdgeTargetVertex(offset)));
+                assertEquals(e.getProbability(), compiled.getEdgeProbability(offset));
+                assertTrue(compiled.getEdgeProbability(offset) <= last);
+                last = compiled.getEdgeProbability(offset);
+                actual.add(compiled.getEdgeTargetVertex(offset));
+            } // FOR
+            assertEquals(v.toString(), expected, actual);
+        } // FOR
+    }
+
+    /**
+     * testFindEdge
+     */
+    @Test
+    public void testFindEdge() throws Exception {
+        CompiledMarkovGraph compiled = this.graph.getCompiledGraph();
+        int start_idx = compiled.indexOf(this.start);
+        for (int i = 0; i < this.vertices.length; i++) {
+            MarkovVertex v = this.vertices[i];
+            int offset = compiled.findEdge(start_idx, this.catalog_stmt, i,
+                                           v.getPartitions(), v.getPastPartitions());
+            if (this.graph.findEdge(this.start, v) == null) {
+                assertEquals(v.toString(), -1, offset);
+            } else {
+                assertTrue(v.toString(), offset >= 0);
+                assertSame(v, compiled.getEdgeTargetVertex(offset));
+            }
+        } // FOR
+
+        // Wrong partitions
+        int offset = compiled.findEdge(start_idx, this.catalog_stmt, 0,
+                                       new PartitionSet(1, 2, 3), new PartitionSet());
+        assertEquals(-1, offset);
+    }
+
+    /**
+     * testInvalidate
+     */
+    @Test
+    public void testInvalidate() throws Exception {
+        CompiledMarkovGraph compiled = this.graph.getCompiledGraph();
+        assertNotNull(compiled);
+
+        // Incrementing the hits on an existing edge does not change anything
+        // until we recompute the probabilities
+        this.graph.addToEdge(this.vertices[4], this.commit);
+        assertSame(compiled, this.graph.getCompiledGraph());
+        this.graph.calculateProbabilities(catalogContext.getAllPartitionIds());
+        assertNotSame(compiled, this.graph.getCompiledGraph());
+
+        // Adding a new vertex should make us recompile
+        compiled = this.graph.getCompiledGraph();
+        MarkovVertex v = new MarkovVertex(this.catalog_stmt,
+                                          MarkovVertex.Type.QUERY,
+                                          1,
+                                          new PartitionSet(3),
+                                          new PartitionSet(0));
+        this.graph.addVertex(v);
+        assertEquals(-1, compiled.indexOf(v));
+        CompiledMarkovGraph new_compiled = this.graph.getCompiledGraph();
+        assertNotSame(compiled, new_compiled);
+        assertTrue(new_compiled.indexOf(v) >= 0);
+
+        // Same thing for a new edge
+        compiled = new_compiled;
+        this.graph.addToEdge(this.vertices[4], v);
+        new_compiled = this.graph.getCompiledGraph();
+        assertNotSame(compiled, new_compiled);
+        int idx = new_compiled.indexOf(this.vertices[4]);
+        List<MarkovVertex> targets = new ArrayList<MarkovVertex>();
+        for (int offset = new_compiled.getEdgeStart(idx); offset < new_compiled.getEdgeEnd(idx); offset++) {
+            targets.add(new_compiled.getEdgeTargetVertex(offset));
+        } // FOR
+        Collection<MarkovVertex> expected = this.graph.getSuccessors(this.vertices[4]);
+        assertEquals(expected.size(), targets.size());
+        assertTrue(targets.containsAll(expected));
+    }
+
+    /**
+     * testCompileInterval
+     */
+    @Test
+    public void testCompileInterval() throws Exception {
+        CompiledMarkovGraph compiled = this.graph.getCompiledGraph();
+        assertNotNull(compiled);
+        this.graph.setCompileInterval(Long.MAX_VALUE);
+        
+        // We shouldn't recompile the graph until the interval has passed
+        MarkovVertex v = new MarkovVertex(this.catalog_stmt,
+                                          MarkovVertex.Type.QUERY,
+                                          1,
+                                          new PartitionSet(3),
+                                          new PartitionSet(0));
+        this.graph.addVertex(v);
+        this.graph.addToEdge(this.vertices[4], v);
+        assertSame(compiled, this.graph.getCompiledGraph());
+        assertEquals(-1, compiled.indexOf(v));
+        
+        this.graph.setCompileInterval(0);
+        CompiledMarkovGraph new_compiled = this.graph.getCompiledGraph();
+        assertNotSame(compiled, new_compiled);
+        assertTrue(new_compiled.getVersion() > compiled.getVersion());
+        assertTrue(new_compiled.indexOf(v) >= 0);
+        assertSame(new_compiled, this.graph.getCompiledGraph());
+    }
+    
+    /**
+     * testIndexOf
+     */
+    @Test
+    public void testIndexOf() throws Exception {
+        // Make sure that the vertex index still works when there are a lot of collisions
+        for (int i = 0; i < 1000; i++) {
+            MarkovVertex v = new MarkovVertex(this.catalog_stmt,
+                                              MarkovVertex.Type.QUERY,
+                                              i + this.vertices.length,
+                                              new PartitionSet(i % NUM_PARTITIONS),
+                                              new PartitionSet());
+            this.graph.addVertex(v);
+            this.graph.addToEdge(this.start, v);
+        } // FOR
+        CompiledMarkovGraph compiled = this.graph.getCompiledGraph();
+        assertEquals(this.graph.getVertexCount(), compiled.getVertexCount());
+        Set<Integer> seen = new HashSet<Integer>();
+        for (MarkovVertex v : this.graph.getVertices()) {
+            int idx = compiled.indexOf(v);
+            assertTrue(v.toString(), idx >= 0);
+            assertSame(v, compiled.getVertex(idx));
+            assertTrue(seen.add(idx));
+        } // FOR
+        assertEquals(-1, compiled.indexOf(MarkovUtil.getSpecialVertex(catalogContext.database, MarkovVertex.Type.START)));
+    }
+}
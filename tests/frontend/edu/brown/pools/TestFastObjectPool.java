@@ -0,0 +1,184 @@
+package edu.brown.pools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+
+public class TestFastObjectPool extends TestCase {
+
+    private static final int MAGAZINE_SIZE = 8;
+    private static final int MAX_IDLE = 20;
+
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicInteger destroyed = new AtomicInteger(0);
+    private FastObjectPool<Object> pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.pool = new FastObjectPool<Object>(new BasePoolableObjectFactory() {
+            @Override
+            public Object makeObject() throws Exception {
+                created.incrementAndGet();
+                return (new Object());
+            }
+            @Override
+            public void destroyObject(Object obj) throws Exception {
+                destroyed.incrementAndGet();
+            }
+        }, MAX_IDLE, 0, MAGAZINE_SIZE);
+    }
+
+    /**
+     * testReuse
+     */
+    public void testReuse() throws Exception {
+        assertEquals(MAGAZINE_SIZE, this.pool.getMagazineSize());
+        Object obj = this.pool.borrowObject();
+        assertEquals(1, this.pool.getNumActive());
+        this.pool.returnObject(obj);
+        assertEquals(0, this.pool.getNumActive());
+        assertEquals(1, this.pool.getNumIdle());
+
+        // We should get back the same object from our magazine
+        assertSame(obj, this.pool.borrowObject());
+        assertEquals(1, this.created.get());
+    }
+
+    /**
+     * testSpillToDepot
+     */
+    public void testSpillToDepot() throws Exception {
+        int count = MAGAZINE_SIZE * 4;
+        List<Object> objs = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            objs.add(this.pool.borrowObject());
+        } // FOR
+        assertEquals(count, this.pool.getNumActive());
+        for (Object obj : objs) {
+            this.pool.returnObject(obj);
+        } // FOR
+        assertEquals(0, this.pool.getNumActive());
+
+        // Everything that didn't fit in the magazine or the depot gets destroyed
+        assertEquals(count, this.pool.getNumIdle() + this.destroyed.get());
+        assertTrue(this.pool.getNumIdle() <= MAX_IDLE + MAGAZINE_SIZE);
+
+        // Another thread should be able to get the objects that were spilled
+        final List<Object> borrowed = new ArrayList<Object>();
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    borrowed.add(pool.borrowObject());
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            };
+        };
+        t.start();
+        t.join();
+        assertEquals(1, borrowed.size());
+        assertTrue(objs.contains(borrowed.get(0)));
+        assertEquals(count, this.created.get());
+    }
+
+    /**
+     * testConcurrent
+     */
+    public void testConcurrent() throws Exception {
+        final int numThreads = 4;
+        final int rounds = 10000;
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        final AtomicInteger errors = new AtomicInteger(0);
+        for (int i = 0; i < numThreads; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        Object objs[] = new Object[3];
+                        for (int r = 0; r < rounds; r++) {
+                            for (int j = 0; j < objs.length; j++) {
+                                objs[j] = pool.borrowObject();
+                            } // FOR
+                            for (int j = 0; j < objs.length; j++) {
+                                pool.returnObject(objs[j]);
+                            } // FOR
+                        } // FOR
+                    } catch (Throwable ex) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latch.countDown();
+                    }
+                };
+            }.start();
+        } // FOR
+        latch.await();
+        assertEquals(0, errors.get());
+        assertEquals(0, this.pool.getNumActive());
+        assertEquals(this.created.get(), this.pool.getNumIdle() + this.destroyed.get());
+        // Each thread should only need to create enough objects for itself
+        assertTrue(this.created.get() <= numThreads * 3);
+    }
+
+    /**
+     * testDeadThreadMagazines
+     */
+    public void testDeadThreadMagazines() throws Exception {
+        // Each thread borrows some objects and then dies without giving
+        // back one of them. Its magazine should not stick around.
+        final int numThreads = 10;
+        final int count = MAGAZINE_SIZE / 2;
+        final List<Object> leftover = new ArrayList<Object>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread() {
+                public void run() {
+                    try {
+                        Object objs[] = new Object[count];
+                        for (int j = 0; j < count; j++) {
+                            objs[j] = pool.borrowObject();
+                        } // FOR
+                        for (int j = 1; j < count; j++) {
+                            pool.returnObject(objs[j]);
+                        } // FOR
+                        leftover.add(objs[0]);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                };
+            };
+            t.start();
+            t.join();
+        } // FOR
+        assertEquals(numThreads, leftover.size());
+        assertEquals(numThreads, this.pool.getNumActive());
+        assertEquals(this.created.get() - numThreads, this.pool.getNumIdle() + this.destroyed.get());
+        
+        // Only our own thread's magazine should be left. Everything that the
+        // dead threads had cached is now in the shared pool.
+        this.pool.borrowObject();
+        assertEquals(1, this.pool.getDebugContext().getMagazineCount());
+        assertTrue(this.pool.getNumIdle() <= MAX_IDLE + MAGAZINE_SIZE);
+        
+        // The objects that the dead threads never returned can still come back
+        for (Object obj : leftover) {
+            this.pool.returnObject(obj);
+        } // FOR
+        assertEquals(1, this.pool.getNumActive());
+    }
+    
+    /**
+     * testClear
+     */
+    public void testClear() throws Exception {
+        Object obj = this.pool.borrowObject();
+        this.pool.returnObject(obj);
+        assertEquals(1, this.pool.getNumIdle());
+        this.pool.clear();
+        assertEquals(0, this.pool.getNumIdle());
+        assertEquals(1, this.destroyed.get());
+    }
+}
@@ -0,0 +1,170 @@
+package edu.brown.profilers;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import edu.brown.profilers.MetricsRegistry.MetricType;
+import edu.brown.profilers.MetricsRegistry.Row;
+import edu.brown.profilers.MetricsRegistry.Snapshot;
+import edu.brown.utils.FileUtil;
+
+/**
+ * Tests for MetricsRegistry
+ */
+public class TestMetricsRegistry extends TestCase {
+
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_UPDATES = 10000;
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    /**
+     * testStripes
+     */
+    public void testStripes() {
+        assertEquals(MetricsRegistry.DEFAULT_STRIPES, this.metrics.getStripeCount());
+        assertEquals(8, new MetricsRegistry(5).getStripeCount());
+        assertEquals(1, new MetricsRegistry(1).getStripeCount());
+    }
+
+    /**
+     * testCounter
+     */
+    public void testCounter() throws Exception {
+        final MetricsRegistry.Counter counter = this.metrics.counter("test.counter");
+        assertSame(counter, this.metrics.counter("test.counter"));
+
+        final CountDownLatch latch = new CountDownLatch(NUM_THREADS);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < NUM_UPDATES; j++) {
+                        counter.increment();
+                    } // FOR
+                    latch.countDown();
+                }
+            };
+            threads.add(t);
+            t.start();
+        } // FOR
+        latch.await();
+        assertEquals(NUM_THREADS * NUM_UPDATES, counter.get());
+    }
+
+    /**
+     * testBuckets
+     */
+    public void testBuckets() {
+        assertEquals(0, MetricsRegistry.getBucket(0));
+        assertEquals(1, MetricsRegistry.getBucket(1));
+        assertEquals(2, MetricsRegistry.getBucket(2));
+        assertEquals(2, MetricsRegistry.getBucket(3));
+        assertEquals(11, MetricsRegistry.getBucket(1024));
+        assertEquals(63, MetricsRegistry.getBucket(Long.MAX_VALUE));
+        for (long value : new long[]{ 0, 1, 7, 8, 1000, 123456789l }) {
+            int bucket = MetricsRegistry.getBucket(value);
+            assertTrue(value <= MetricsRegistry.getBucketUpperBound(bucket));
+            if (bucket > 0) assertTrue(value > MetricsRegistry.getBucketUpperBound(bucket - 1));
+        } // FOR
+    }
+
+    /**
+     * testHistogram
+     */
+    public void testHistogram() {
+        MetricsRegistry.Histogram h = this.metrics.histogram("test.histogram");
+        for (int i = 1; i <= 100; i++) {
+            h.record(i);
+        } // FOR
+        h.record(-5);
+
+        long buckets[] = h.getBuckets();
+        long total = 0;
+        for (long b : buckets) total += b;
+        assertEquals(101, total);
+        assertEquals(1, buckets[0]);
+        assertEquals(100, h.getMax());
+        assertEquals(5050, h.getSum());
+
+        // The percentiles are only accurate to within a factor of two
+        long p50 = MetricsRegistry.getPercentile(buckets, 0.50);
+        assertTrue(Long.toString(p50), p50 >= 50 && p50 < 100);
+        assertEquals(127, MetricsRegistry.getPercentile(buckets, 0.99));
+        assertEquals(0, MetricsRegistry.getPercentile(new long[MetricsRegistry.NUM_BUCKETS], 0.5));
+    }
+
+    /**
+     * testSnapshot
+     */
+    public void testSnapshot() throws Exception {
+        MetricsRegistry.Counter counter = this.metrics.counter("b.counter");
+        MetricsRegistry.Histogram h = this.metrics.histogram("c.histogram");
+        final long gaugeValue[] = { 7 };
+        this.metrics.gauge("a.gauge", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return (gaugeValue[0]);
+            }
+        });
+        counter.add(10);
+        h.record(4);
+        h.record(4);
+
+        Snapshot first = this.metrics.snapshot();
+        assertSame(first, this.metrics.getLastSnapshot());
+        assertEquals(3, first.rows.size());
+        assertEquals("a.gauge", first.rows.get(0).name);
+        assertEquals(MetricType.GAUGE, first.rows.get(0).type);
+        assertEquals(7, first.rows.get(0).value);
+        assertEquals(10, first.get("b.counter").value);
+        assertEquals(10, first.get("b.counter").interval);
+
+        Row row = first.get("c.histogram");
+        assertEquals(MetricType.HISTOGRAM, row.type);
+        assertEquals(2, row.value);
+        assertEquals(4.0, row.mean, 0.001);
+        assertEquals(4, row.max);
+
+        counter.add(5);
+        gaugeValue[0] = 3;
+        Snapshot second = this.metrics.snapshot();
+        assertEquals(15, second.get("b.counter").value);
+        assertEquals(5, second.get("b.counter").interval);
+        assertEquals(-4, second.get("a.gauge").interval);
+        assertEquals(0, second.get("c.histogram").interval);
+        assertNull(second.get("missing"));
+    }
+
+    /**
+     * testExport
+     */
+    public void testExport() throws Exception {
+        this.metrics.counter("counter").add(42);
+        this.metrics.histogram("histogram").record(3);
+        Snapshot snapshot = this.metrics.snapshot();
+
+        StringWriter out = new StringWriter();
+        MetricsRegistry.export(out, "hstore.site", snapshot);
+        String lines[] = out.toString().split("\n");
+        assertEquals(6, lines.length);
+        long seconds = snapshot.timestamp / 1000;
+        assertEquals("hstore.site.counter 42 " + seconds, lines[0]);
+        assertEquals("hstore.site.histogram.count 1 " + seconds, lines[1]);
+        for (String line : lines) {
+            assertEquals(line, 3, line.split(" ").length);
+        } // FOR
+
+        // Each snapshot should be appended to the file
+        File file = new File(FileUtil.getTempDirectory(), "metrics.txt");
+        MetricsRegistry.export(file, "hstore.site", snapshot);
+        MetricsRegistry.export(file, "hstore.site", snapshot);
+        assertEquals(lines.length * 2, FileUtil.readFile(file).split("\n").length);
+    }
+}
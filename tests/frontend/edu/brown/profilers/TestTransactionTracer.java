@@ -0,0 +1,143 @@
+package edu.brown.profilers;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import edu.brown.profilers.TransactionTracer.Span;
+import edu.brown.utils.FileUtil;
+
+/**
+ * Tests for TransactionTracer
+ */
+public class TestTransactionTracer extends TestCase {
+
+    private static final int SAMPLING = 4;
+    private static final int BUFFER_SIZE = 32;
+    private static final int NUM_TXNS = 1000;
+
+    private File tempDir;
+    private TransactionTracer tracer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.tempDir = FileUtil.getTempDirectory();
+        this.tracer = new TransactionTracer(0, SAMPLING, BUFFER_SIZE, this.tempDir.getAbsolutePath());
+    }
+
+    private Long getSampledTxnId(long first) {
+        for (long txnId = first; txnId < first + NUM_TXNS; txnId++) {
+            if (this.tracer.isSampled(txnId)) return (txnId);
+        } // FOR
+        fail("Failed to find a sampled txnId");
+        return (null);
+    }
+
+    private JSONArray getSpans(File file) throws Exception {
+        JSONObject json = new JSONObject(FileUtil.readFile(file));
+        JSONArray events = json.getJSONArray("traceEvents");
+        JSONArray spans = new JSONArray();
+        for (int i = 0, cnt = events.length(); i < cnt; i++) {
+            JSONObject event = events.getJSONObject(i);
+            if (event.getString("ph").equals("X")) spans.put(event);
+        } // FOR
+        return (spans);
+    }
+
+    /**
+     * testSampling
+     */
+    public void testSampling() throws Exception {
+        // Every site needs to make the same decision for the same txn
+        TransactionTracer other = new TransactionTracer(1, SAMPLING, BUFFER_SIZE, this.tempDir.getAbsolutePath());
+        int sampled = 0;
+        for (long txnId = 0; txnId < NUM_TXNS; txnId++) {
+            boolean expected = this.tracer.isSampled(txnId);
+            assertEquals(expected, other.isSampled(txnId));
+            if (expected) {
+                sampled++;
+                assertTrue(this.tracer.start(txnId) != TransactionTracer.NOT_SAMPLED);
+            } else {
+                assertEquals(TransactionTracer.NOT_SAMPLED, this.tracer.start(txnId));
+            }
+        } // FOR
+        assertTrue(Integer.toString(sampled), sampled > NUM_TXNS / (SAMPLING * 2));
+        assertTrue(Integer.toString(sampled), sampled < NUM_TXNS / (SAMPLING / 2));
+        assertFalse(this.tracer.isSampled(null));
+    }
+
+    /**
+     * testExport
+     */
+    public void testExport() throws Exception {
+        Long txnId = this.getSampledTxnId(1000);
+        long start = this.tracer.start(txnId);
+        this.tracer.stop(Span.WORK, txnId, 3, start);
+        this.tracer.stop(Span.FINISH, txnId, 3, this.tracer.start(txnId));
+        this.tracer.stop(Span.EXEC, txnId, 3, TransactionTracer.NOT_SAMPLED);
+
+        File file = new File(this.tempDir, "trace.json");
+        assertEquals(2, this.tracer.export(file));
+        JSONArray spans = this.getSpans(file);
+        assertEquals(2, spans.length());
+        assertEquals(Span.WORK.name(), spans.getJSONObject(0).getString("name"));
+        assertEquals(Span.FINISH.name(), spans.getJSONObject(1).getString("name"));
+        for (int i = 0; i < spans.length(); i++) {
+            JSONObject args = spans.getJSONObject(i).getJSONObject("args");
+            assertEquals(txnId.longValue(), args.getLong("txnId"));
+            assertEquals(3, args.getInt("partition"));
+            assertTrue(spans.getJSONObject(i).getLong("dur") >= 0);
+        } // FOR
+    }
+
+    /**
+     * testOverwrite
+     */
+    public void testOverwrite() throws Exception {
+        Long txnId = this.getSampledTxnId(5000);
+        int total = BUFFER_SIZE * 3;
+        for (int i = 0; i < total; i++) {
+            this.tracer.stop(Span.WORK, txnId, i, this.tracer.start(txnId));
+        } // FOR
+
+        // We should only have the most recent spans
+        File file = new File(this.tempDir, "overwrite.json");
+        this.tracer.export(file);
+        JSONArray spans = this.getSpans(file);
+        assertTrue(spans.length() > 0);
+        assertTrue(spans.length() <= BUFFER_SIZE);
+        JSONObject last = spans.getJSONObject(spans.length() - 1);
+        assertEquals(total - 1, last.getJSONObject("args").getInt("partition"));
+        JSONObject first = spans.getJSONObject(0);
+        assertTrue(first.getJSONObject("args").getInt("partition") >= total - BUFFER_SIZE);
+    }
+
+    /**
+     * testMerge
+     */
+    public void testMerge() throws Exception {
+        Long txnId = this.getSampledTxnId(10000);
+        TransactionTracer other = new TransactionTracer(1, SAMPLING, BUFFER_SIZE, this.tempDir.getAbsolutePath());
+        this.tracer.stop(Span.EXEC, txnId, 0, this.tracer.start(txnId));
+        other.stop(Span.WORK, txnId, 1, other.start(txnId));
+
+        File files[] = {
+            new File(this.tempDir, "site0.json"),
+            new File(this.tempDir, "site1.json"),
+            new File(this.tempDir, "merged.json"),
+        };
+        this.tracer.export(files[0]);
+        other.export(files[1]);
+        TransactionTracer.main(new String[]{ files[2].getAbsolutePath(),
+                                             files[0].getAbsolutePath(),
+                                             files[1].getAbsolutePath() });
+        JSONArray spans = this.getSpans(files[2]);
+        assertEquals(2, spans.length());
+        assertEquals(0, spans.getJSONObject(0).getInt("pid"));
+        assertEquals(1, spans.getJSONObject(1).getInt("pid"));
+    }
+}
@@ -28,6 +28,24 @@ public class TestHistogramUtil extends TestCase {
         }
     }
     
+    /**
+     * testPercentile
+     */
+    @Test
+    public void testPercentile() throws Exception {
+        Histogram<Integer> h = new ObjectHistogram<Integer>();
+        assertNull(HistogramUtil.percentile(h, 0.5));
+        for (int i = 1; i <= 100; i++) {
+            h.put(i);
+        } // FOR
+        h.put(1000, 10);
+        assertEquals(1, HistogramUtil.percentile(h, 0.001).intValue());
+        assertEquals(55, HistogramUtil.percentile(h, 0.5).intValue());
+        assertEquals(100, HistogramUtil.percentile(h, 100 / 110d).intValue());
+        assertEquals(1000, HistogramUtil.percentile(h, 0.99).intValue());
+        assertEquals(1000, HistogramUtil.percentile(h, 1.0).intValue());
+    }
+    
     /**
      * testNormalize
      */
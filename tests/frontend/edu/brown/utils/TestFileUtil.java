@@ -20,4 +20,20 @@ public class TestFileUtil extends TestCase {
         // System.err.println("Found = " + path);
     }
     
+    /**
+     * testCopyFile
+     */
+    public void testCopyFile() throws Exception {
+        String contents = "Squirrels are the rats of the tree world";
+        File source = FileUtil.writeStringToTempFile(contents, "txt", true);
+        File dest = FileUtil.getTempFile("txt", true);
+        FileUtil.copyFile(source, dest);
+        assertEquals(contents, FileUtil.readFile(dest).trim());
+        
+        // Make sure that we overwrite whatever was there before
+        FileUtil.writeStringToFile(source, "xyz");
+        FileUtil.copyFile(source, dest);
+        assertEquals("xyz", FileUtil.readFile(dest).trim());
+    }
+    
 }
@@ -342,4 +342,105 @@ public class TestPartitionSet extends TestCase {
             assertEquals(expected, actual);
         } // FOR
     }
+    
+    /**
+     * testNextPartition
+     */
+    public void testNextPartition() {
+        this.initialize(rand.nextInt(NUM_PARTITIONS));
+        pset.add(HStoreConstants.NULL_PARTITION_ID);
+        Set<Integer> expected = new TreeSet<Integer>(set);
+        Set<Integer> actual = new TreeSet<Integer>();
+        for (int p = pset.nextPartition(0); p != -1; p = pset.nextPartition(p+1)) {
+            assertTrue(Integer.toString(p), actual.add(p));
+        } // FOR
+        assertEquals(expected, actual);
+        assertEquals(-1, pset.nextPartition(NUM_PARTITIONS * 10));
+        
+        PartitionSet ps = new PartitionSet(3, 64, 130);
+        assertEquals(3, ps.nextPartition(0));
+        assertEquals(64, ps.nextPartition(4));
+        assertEquals(64, ps.nextPartition(64));
+        assertEquals(130, ps.nextPartition(65));
+        assertEquals(-1, ps.nextPartition(131));
+        assertEquals(3, ps.get());
+    }
+    
+    /**
+     * testSetAlgebra
+     */
+    public void testSetAlgebra() {
+        PartitionSet pset0 = new PartitionSet(1, 2, 65, 200);
+        PartitionSet pset1 = new PartitionSet(2, 3, 65, HStoreConstants.NULL_PARTITION_ID);
+        assertTrue(pset0.intersects(pset1));
+        assertFalse(pset0.intersects(new PartitionSet(0, 64, 300)));
+        
+        PartitionSet union = new PartitionSet(pset0);
+        union.addAll(pset1);
+        assertEquals(new PartitionSet(HStoreConstants.NULL_PARTITION_ID, 1, 2, 3, 65, 200), union);
+        assertTrue(union.containsAll(pset0));
+        assertTrue(union.containsAll(pset1));
+        assertFalse(pset0.containsAll(union));
+        assertFalse(pset0.containsAll(pset1));
+        assertTrue(pset0.containsAll(new PartitionSet()));
+        
+        PartitionSet intersect = new PartitionSet(pset0);
+        intersect.retainAll(pset1);
+        assertEquals(new PartitionSet(2, 65), intersect);
+        assertEquals(2, intersect.values().length);
+        
+        PartitionSet diff = new PartitionSet(union);
+        assertTrue(diff.removeAll(pset0));
+        assertEquals(new PartitionSet(HStoreConstants.NULL_PARTITION_ID, 3), diff);
+        assertFalse(diff.removeAll(pset0));
+        
+        // Make sure the cached values get updated
+        int values[] = pset0.values();
+        pset0.addAll(new PartitionSet(500));
+        assertEquals(values.length + 1, pset0.values().length);
+        pset0.retainAll(new PartitionSet(500));
+        assertEquals(1, pset0.values().length);
+        assertEquals(500, pset0.values()[0]);
+    }
+    
+    /**
+     * testEqualsHashCode
+     */
+    public void testEqualsHashCode() {
+        PartitionSet pset0 = new PartitionSet(1, 2, 3);
+        PartitionSet pset1 = new PartitionSet(1, 2, 3, 250);
+        pset1.remove(250);
+        assertEquals(pset0, pset1);
+        assertEquals(pset0.hashCode(), pset1.hashCode());
+        assertEquals(pset0, new HashSet<Integer>(pset1));
+        
+        pset1.add(HStoreConstants.NULL_PARTITION_ID);
+        assertFalse(pset0.equals(pset1));
+        assertFalse(pset0.hashCode() == pset1.hashCode());
+    }
+    
+    /**
+     * testImmutable
+     */
+    public void testImmutable() {
+        PartitionSet ps = new PartitionSet(1, 2).setImmutable();
+        assertTrue(ps.isImmutable());
+        assertTrue(ps.contains(1));
+        boolean failed = false;
+        try {
+            ps.add(3);
+        } catch (AssertionError ex) {
+            failed = true;
+        }
+        // We can only check this if asserts are enabled
+        boolean asserts = false;
+        assert(asserts = true);
+        assertEquals(asserts, failed);
+        
+        // Copies should be mutable
+        PartitionSet copy = new PartitionSet(ps);
+        assertFalse(copy.isImmutable());
+        copy.add(3);
+        assertEquals(3, copy.size());
+    }
 }
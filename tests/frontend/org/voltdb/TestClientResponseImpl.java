@@ -4,9 +4,11 @@ import java.nio.ByteBuffer;
 
 import junit.framework.TestCase;
 
+import org.voltdb.exceptions.ServerFaultException;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
 
 import edu.brown.hstore.Hstoreservice.Status;
 
@@ -78,4 +80,42 @@ public class TestClientResponseImpl extends TestCase {
         } // FOR
     }
     
+    /**
+     * testSerialize
+     */
+    public void testSerialize() throws Exception {
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.BIGINT),
+                                     new VoltTable.ColumnInfo("B", VoltType.STRING));
+        vt.addRow(1l, "one");
+        vt.addRow(2l, "two");
+        ClientResponseImpl responses[] = {
+            cr,
+            new ClientResponseImpl(txn_id, client_handle, 2, Status.OK, new VoltTable[]{ vt, vt }, null),
+            new ClientResponseImpl(txn_id, client_handle, 3, Status.ABORT_UNEXPECTED, Byte.MAX_VALUE, "App\u00e9",
+                                   results, statusString, new ServerFaultException("Fail", (Long)txn_id)),
+        };
+        for (ClientResponseImpl response : responses) {
+            response.setRestartCounter(3);
+            response.setClusterRoundtrip(99);
+            
+            // The direct serialization should produce the exact same
+            // bytes that the FastSerializer would have sent
+            FastSerializer fs = new FastSerializer(buffer_pool);
+            ByteBuffer expected = fs.writeObjectForMessaging(response).b;
+            BBContainer c = response.asDeferredSerialization().serialize(buffer_pool);
+            assertEquals(0, c.b.position());
+            assertEquals(expected.remaining(), c.b.remaining());
+            assertEquals(expected, c.b);
+            
+            c.b.getInt();
+            ClientResponseImpl clone = new FastDeserializer(c.b).readObject(ClientResponseImpl.class);
+            assertEquals(response.getStatus(), clone.getStatus());
+            assertEquals(response.getStatusString(), clone.getStatusString());
+            assertEquals(response.getAppStatusString(), clone.getAppStatusString());
+            assertEquals(response.getResults().length, clone.getResults().length);
+            assertEquals(3, clone.getRestartCounter());
+            c.discard();
+        } // FOR
+    }
+    
 }
@@ -32,6 +32,7 @@ import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.messaging.FastSerializableTestUtil;
 import org.voltdb.types.TimestampType;
 import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.DBBPool;
 
 public class TestVoltTable extends TestCase {
     private VoltTable LONG_FIVE;
@@ -641,4 +642,184 @@ public class TestVoltTable extends TestCase {
         }
         assertEquals(rowcounter, content.length);
     }
+    /**
+     * testRowBuilder
+     */
+    public void testRowBuilder() {
+        t = new VoltTable(new ColumnInfo("a", VoltType.TINYINT),
+                          new ColumnInfo("b", VoltType.INTEGER),
+                          new ColumnInfo("c", VoltType.BIGINT),
+                          new ColumnInfo("d", VoltType.FLOAT),
+                          new ColumnInfo("e", VoltType.STRING),
+                          new ColumnInfo("f", VoltType.DECIMAL),
+                          new ColumnInfo("g", VoltType.BOOLEAN));
+        VoltTable expected = t.clone(1024);
+        VoltTable.RowBuilder row = t.getRowBuilder();
+        assertSame(row, t.getRowBuilder());
+
+        BigDecimal dec = new BigDecimal("1234.567890123456");
+        row.setLong(0, 7).setLong(1, -5).setLong(2, 1L << 40).setDouble(3, 1.5)
+           .setString(4, "hello").setDecimal(5, dec).setBoolean(6, true).commit();
+        expected.addRow(7, -5, 1L << 40, 1.5, "hello", dec, true);
+        row.setNull(0).setNull(1).setNull(2).setNull(3).setNull(4).setNull(5).setNull(6).commit();
+        expected.addRow(null, null, null, null, null, null, null);
+        row.setLong(0, 1).setLong(1, 2).setLong(2, 3).setDouble(3, 4.0)
+           .setString(4, "\u00e9t\u00e9").setDecimal(5, null).setBoolean(6, false).commit();
+        expected.addRow(1, 2, 3, 4.0, "\u00e9t\u00e9", null, false);
+
+        assertEquals(3, t.getRowCount());
+        assertTrue(t.hasSameContents(expected));
+
+        VoltTableRow r = t.fetchRow(1);
+        for (int i = 0; i < t.getColumnCount(); i++) {
+            r.get(i, t.getColumnType(i));
+            assertTrue(r.wasNull());
+        } // FOR
+        assertEquals("\u00e9t\u00e9", t.fetchRow(2).getString(4));
+
+        // Make sure that it survives serialization
+        VoltTable t2 = FastSerializableTestUtil.roundTrip(t);
+        assertTrue(t2.hasSameContents(expected));
+    }
+
+    /**
+     * testRowBuilderErrors
+     */
+    public void testRowBuilderErrors() {
+        t = new VoltTable(new ColumnInfo("a", VoltType.TINYINT),
+                          new ColumnInfo("b", VoltType.STRING));
+        VoltTable.RowBuilder row = t.getRowBuilder();
+
+        // Out of order
+        row.setLong(0, 1);
+        try {
+            row.setString(0, "x");
+            fail();
+        } catch (IllegalArgumentException e) {}
+        assertEquals(0, t.getRowCount());
+
+        // Overflow
+        try {
+            row.setLong(0, 128);
+            fail();
+        } catch (VoltTypeException e) {}
+        try {
+            row.setLong(0, Byte.MIN_VALUE);
+            fail();
+        } catch (VoltTypeException e) {}
+
+        // Wrong type
+        try {
+            row.setLong(0, 1).setLong(1, 2);
+            fail();
+        } catch (VoltTypeException e) {}
+
+        // Missing columns
+        try {
+            row.setLong(0, 1).commit();
+            fail();
+        } catch (IllegalStateException e) {}
+        assertEquals(0, t.getRowCount());
+
+        // The table should still be usable after all of that
+        row.setLong(0, 1).setString(1, "ok").commit();
+        t.addRow(2, "ok2");
+        assertEquals(2, t.getRowCount());
+        assertEquals(1, t.fetchRow(0).getLong(0));
+        assertEquals("ok2", t.fetchRow(1).getString(1));
+    }
+
+    /**
+     * testRowBuilderExpand
+     */
+    public void testRowBuilderExpand() {
+        t = new VoltTable(new ColumnInfo("id", VoltType.BIGINT),
+                          new ColumnInfo("name", VoltType.STRING));
+        VoltTable.RowBuilder row = t.getRowBuilder();
+        final int num_rows = 10000;
+        for (int i = 0; i < num_rows; i++) {
+            row.setLong(0, i).setString(1, "row" + i).commit();
+        } // FOR
+        assertEquals(num_rows, t.getRowCount());
+        int i = 0;
+        while (t.advanceRow()) {
+            assertEquals(i, t.getLong(0));
+            assertEquals("row" + i, t.getString(1));
+            i++;
+        } // WHILE
+        assertEquals(num_rows, i);
+    }
+
+    /**
+     * testAddRawRow
+     */
+    public void testAddRawRow() {
+        t = new VoltTable(new ColumnInfo("id", VoltType.INTEGER),
+                          new ColumnInfo("name", VoltType.STRING));
+        for (int i = 0; i < 100; i++) {
+            t.addRow(i, (i % 3 == 0 ? null : "name" + i));
+        } // FOR
+
+        // Same schema, different table
+        VoltTable t2 = t.clone(16);
+        t.resetRowPosition();
+        while (t.advanceRow()) {
+            t2.add(t);
+        } // WHILE
+        assertTrue(t2.hasSameContents(t));
+
+        // Same schema, same table
+        t2.add(t2.fetchRow(1));
+        assertEquals(t.getRowCount() + 1, t2.getRowCount());
+        assertEquals(1, t2.fetchRow(t.getRowCount()).getLong(0));
+        assertEquals("name1", t2.fetchRow(t.getRowCount()).getString(1));
+
+        // Different schema goes through the slow path
+        VoltTable t3 = new VoltTable(new ColumnInfo("id", VoltType.BIGINT),
+                                     new ColumnInfo("name", VoltType.STRING));
+        t3.add(t.fetchRow(5));
+        assertEquals(5, t3.fetchRow(0).getLong(0));
+        assertEquals("name5", t3.fetchRow(0).getString(1));
+    }
+
+    /**
+     * testPooledBuffer
+     */
+    public void testPooledBuffer() {
+        DBBPool pool = new DBBPool(false, false);
+        t = new VoltTable(pool, new ColumnInfo[] {
+                new ColumnInfo("id", VoltType.BIGINT),
+                new ColumnInfo("name", VoltType.STRING) });
+        VoltTable expected = t.clone(1024);
+        VoltTable.RowBuilder row = t.getRowBuilder();
+        for (int i = 0; i < 1000; i++) {
+            row.setLong(0, i).setString(1, "pooled" + i).commit();
+            expected.addRow(i, "pooled" + i);
+        } // FOR
+        assertTrue(t.hasSameContents(expected));
+        assertTrue(FastSerializableTestUtil.roundTrip(t).hasSameContents(expected));
+        t.discardBuffer();
+        assertEquals(0, pool.bytesLoanedLocally());
+        pool.clear();
+    }
+    
+    /**
+     * testPooledBufferRetry
+     */
+    public void testPooledBufferRetry() {
+        // The schema is too big for the first buffer, so we have to make sure
+        // that the one that was too small goes back to the pool
+        DBBPool pool = new DBBPool(false, false);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 2000; i++) name.append("x");
+        t = new VoltTable(pool, new ColumnInfo[] {
+                new ColumnInfo("id", VoltType.BIGINT),
+                new ColumnInfo(name.toString(), VoltType.STRING) });
+        assertEquals(name.toString(), t.getColumnName(1));
+        t.addRow(1, "one");
+        assertEquals(1, t.getRowCount());
+        t.discardBuffer();
+        assertEquals(0, pool.bytesLoanedLocally());
+        pool.clear();
+    }
 }
@@ -0,0 +1,99 @@
+package org.voltdb.catalog;
+
+import junit.framework.TestCase;
+
+public class TestCatalogSnapshot extends TestCase {
+
+    private Catalog catalog;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.catalog = new Catalog();
+        this.catalog.execute(LoadCatalogToString.THE_CATALOG);
+    }
+
+    private void compareVersions(CatalogType expected, CatalogType actual) {
+        assertEquals(expected.getPath(), actual.getPath());
+        assertEquals(expected.getPath(), expected.getNodeVersion(), actual.getNodeVersion());
+        assertEquals(expected.getPath(), expected.getSubTreeVersion(), actual.getSubTreeVersion());
+        assertEquals(expected.getPath(), expected.getRelativeIndex(), actual.getRelativeIndex());
+        for (String field : expected.getChildFields()) {
+            CatalogMap<? extends CatalogType> expectedMap = expected.getChildren(field);
+            CatalogMap<? extends CatalogType> actualMap = actual.getChildren(field);
+            assertEquals(expectedMap.getSubTreeVersion(), actualMap.getSubTreeVersion());
+            assertEquals(expectedMap.size(), actualMap.size());
+            for (CatalogType child : expectedMap) {
+                CatalogType other = actualMap.get(child.getTypeName());
+                assertNotNull(child.getPath(), other);
+                this.compareVersions(child, other);
+            } // FOR
+        } // FOR
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() {
+        byte snapshot[] = CatalogSnapshot.serialize(this.catalog);
+        assertTrue(snapshot.length < LoadCatalogToString.THE_CATALOG.length());
+
+        Catalog clone = CatalogSnapshot.deserialize(snapshot);
+        assertNotSame(this.catalog, clone);
+        assertEquals(this.catalog.serialize(), clone.serialize());
+        assertEquals(this.catalog.getCatalogVersion(), clone.getCatalogVersion());
+        this.compareVersions(this.catalog, clone);
+
+        // References should point at the objects in the new catalog
+        for (Table catalog_tbl : clone.getClusters().get("cluster").getDatabases().get("database").getTables()) {
+            Column catalog_col = catalog_tbl.getPartitioncolumn();
+            if (catalog_col != null) {
+                assertSame(clone, catalog_col.getCatalog());
+                assertSame(catalog_tbl, catalog_col.getParent());
+            }
+        } // FOR
+
+        // The child arrays should come out in the same order
+        Database expected = this.catalog.getClusters().get("cluster").getDatabases().get("database");
+        Database actual = clone.getClusters().get("cluster").getDatabases().get("database");
+        Table expectedTables[] = expected.getTables().values();
+        Table actualTables[] = actual.getTables().values();
+        assertEquals(expectedTables.length, actualTables.length);
+        for (int i = 0; i < expectedTables.length; i++) {
+            assertEquals(expectedTables[i].getName(), actualTables[i].getName());
+        } // FOR
+    }
+
+    /**
+     * testDeepCopy
+     */
+    public void testDeepCopy() {
+        Catalog copy = this.catalog.deepCopy();
+        this.compareVersions(this.catalog, copy);
+
+        // Modifying the copy should not change the original
+        String before = this.catalog.serialize();
+        copy.execute("add /clusters[cluster]/databases[database] tables FOO");
+        assertEquals(before, this.catalog.serialize());
+        assertNotNull(copy.getItemForRef("/clusters[cluster]/databases[database]/tables[FOO]"));
+        assertNull(this.catalog.getItemForRef("/clusters[cluster]/databases[database]/tables[FOO]"));
+    }
+
+    /**
+     * testSourceChecksum
+     */
+    public void testSourceChecksum() throws Exception {
+        byte text[] = this.catalog.serialize().getBytes("UTF-8");
+        long checksum = CatalogSnapshot.checksum(text);
+        byte snapshot[] = CatalogSnapshot.serialize(this.catalog, checksum);
+        assertEquals(checksum, CatalogSnapshot.getSourceChecksum(snapshot));
+        assertEquals(0, CatalogSnapshot.getSourceChecksum(CatalogSnapshot.serialize(this.catalog)));
+
+        try {
+            CatalogSnapshot.deserialize(text);
+            fail("Loaded a text catalog as a snapshot");
+        } catch (CatalogException ex) {
+            // Expected
+        }
+    }
+}
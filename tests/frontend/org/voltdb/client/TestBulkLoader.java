@@ -0,0 +1,160 @@
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocationHints;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.benchmark.tpcc.TPCCConstants;
+import org.voltdb.catalog.Table;
+import org.voltdb.sysprocs.LoadMultipartitionTable;
+import org.voltdb.sysprocs.LoadPartitionTable;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.utils.ProjectType;
+
+public class TestBulkLoader extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int NUM_ROWS = 1000;
+    private static final int BATCH_SIZE = 50;
+    private static final Random rand = new Random(0);
+
+    /**
+     * Fake client that records every invocation and responds to it right away.
+     */
+    private class LoaderClient extends MockVoltClient {
+        final List<Object[]> invocations = new ArrayList<Object[]>();
+        final List<Integer> basePartitions = new ArrayList<Integer>();
+        int rejectCount = 0;
+
+        @Override
+        public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters) {
+            return (this.callProcedure(callback, procName, null, parameters));
+        }
+        @Override
+        public boolean callProcedure(ProcedureCallback callback, String procName, StoredProcedureInvocationHints hints, Object... parameters) {
+            Status status = Status.OK;
+            if (this.rejectCount > 0) {
+                this.rejectCount--;
+                status = Status.ABORT_REJECT;
+            } else {
+                this.calledName = procName;
+                this.invocations.add(parameters);
+                this.basePartitions.add(hints != null ? hints.basePartition : HStoreConstants.NULL_PARTITION_ID);
+            }
+            callback.clientCallback(new ClientResponseImpl(-1, -1, -1, status, HStoreConstants.EMPTY_RESULT, ""));
+            return (true);
+        }
+    }
+
+    private LoaderClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+        this.client = new LoaderClient();
+    }
+
+    private VoltTable generateTable(Table catalog_tbl, int num_rows) {
+        VoltTable vt = CatalogUtil.getVoltTable(catalog_tbl);
+        for (int i = 0; i < num_rows; i++) {
+            Object row[] = new Object[catalog_tbl.getColumns().size()];
+            for (int j = 0; j < row.length; j++) {
+                VoltType vtype = VoltType.get(catalog_tbl.getColumns().get(j).getType());
+                row[j] = VoltTypeUtil.getRandomValue(vtype, rand);
+            } // FOR
+            vt.addRow(row);
+        } // FOR
+        return (vt);
+    }
+
+    /**
+     * testPartitionedLoad
+     */
+    public void testPartitionedLoad() throws Exception {
+        Table catalog_tbl = this.getTable(TPCCConstants.TABLENAME_CUSTOMER);
+        VoltTable vt = this.generateTable(catalog_tbl, NUM_ROWS);
+
+        BulkLoader loader = new BulkLoader(this.client, catalogContext, catalog_tbl.getName(), BATCH_SIZE, 4);
+        assertTrue(loader.isPartitioned());
+        loader.load(vt);
+        loader.drain();
+        assertEquals(NUM_ROWS, loader.getLoadedRowCount());
+        assertEquals(VoltSystemProcedure.procCallName(LoadPartitionTable.class), this.client.calledName);
+
+        int total = 0;
+        for (int i = 0; i < this.client.invocations.size(); i++) {
+            Object params[] = this.client.invocations.get(i);
+            int partition = (Integer)params[0];
+            assertEquals(partition, this.client.basePartitions.get(i).intValue());
+            assertEquals(catalog_tbl.getName(), params[1]);
+
+            // Every row in the batch must belong to the batch's partition
+            VoltTable batch = (VoltTable)params[2];
+            assertTrue(batch.getRowCount() <= BATCH_SIZE);
+            while (batch.advanceRow()) {
+                assertEquals(partition, p_estimator.getTableRowPartition(catalog_tbl, batch));
+            } // WHILE
+            total += batch.getRowCount();
+        } // FOR
+        assertEquals(NUM_ROWS, total);
+    }
+
+    /**
+     * testAddRow
+     */
+    public void testAddRow() throws Exception {
+        Table catalog_tbl = this.getTable(TPCCConstants.TABLENAME_CUSTOMER);
+        VoltTable vt = this.generateTable(catalog_tbl, NUM_ROWS);
+
+        BulkLoader loader = new BulkLoader(this.client, catalogContext, catalog_tbl.getName(), BATCH_SIZE, 4);
+        vt.resetRowPosition();
+        while (vt.advanceRow()) {
+            loader.addRow(vt.getRowArray());
+        } // WHILE
+        loader.drain();
+        assertEquals(NUM_ROWS, loader.getLoadedRowCount());
+    }
+
+    /**
+     * testRejectedBatch
+     */
+    public void testRejectedBatch() throws Exception {
+        Table catalog_tbl = this.getTable(TPCCConstants.TABLENAME_CUSTOMER);
+        VoltTable vt = this.generateTable(catalog_tbl, NUM_ROWS);
+
+        this.client.rejectCount = 3;
+        BulkLoader loader = new BulkLoader(this.client, catalogContext, catalog_tbl.getName(), BATCH_SIZE, 4);
+        loader.load(vt);
+        loader.drain();
+        assertEquals(3, loader.getRejectedBatchCount());
+        assertEquals(NUM_ROWS, loader.getLoadedRowCount());
+    }
+
+    /**
+     * testReplicatedLoad
+     */
+    public void testReplicatedLoad() throws Exception {
+        Table catalog_tbl = this.getTable(TPCCConstants.TABLENAME_ITEM);
+        assertTrue(catalog_tbl.getIsreplicated());
+        VoltTable vt = this.generateTable(catalog_tbl, NUM_ROWS);
+
+        BulkLoader loader = new BulkLoader(this.client, catalogContext, catalog_tbl.getName(), BATCH_SIZE, 4);
+        assertFalse(loader.isPartitioned());
+        loader.load(vt);
+        loader.drain();
+        assertEquals(NUM_ROWS, loader.getLoadedRowCount());
+        assertEquals(VoltSystemProcedure.procCallName(LoadMultipartitionTable.class), this.client.calledName);
+        assertEquals(NUM_ROWS / BATCH_SIZE, this.client.invocations.size());
+    }
+}
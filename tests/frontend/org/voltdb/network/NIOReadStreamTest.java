@@ -56,6 +56,7 @@ import org.voltdb.network.NIOReadStream;
 import junit.framework.TestCase;
 import java.io.IOException;
 import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
 
 public class NIOReadStreamTest extends TestCase {
     MockReadableByteChannel channel;
@@ -210,6 +211,65 @@ public class NIOReadStreamTest extends TestCase {
         assertEquals(-1, stream.fillFrom(channel, 42));
     }*/
 
+    public void testReadIntStraddle() throws IOException {
+        // Leave two bytes at the end of the first buffer so that the int
+        // has to be put together from both of them
+        channel.nextRead = new byte[NIOReadStream.BUFFER_SIZE + 2];
+        channel.nextRead[NIOReadStream.BUFFER_SIZE - 2] = 1;
+        channel.nextRead[NIOReadStream.BUFFER_SIZE - 1] = 2;
+        channel.nextRead[NIOReadStream.BUFFER_SIZE] = 3;
+        channel.nextRead[NIOReadStream.BUFFER_SIZE + 1] = 4;
+        assertEquals(NIOReadStream.BUFFER_SIZE + 2, stream.read(channel, NIOReadStream.BUFFER_SIZE + 2, pool));
+        stream.getBytes(new byte[NIOReadStream.BUFFER_SIZE - 2]);
+        assertEquals(0x01020304, stream.getInt());
+        assertStreamIsEmpty();
+    }
+
+    public void testGetMessageSlice() throws IOException {
+        channel.nextRead = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+        assertEquals(8, stream.read(channel, 8, pool));
+
+        BBContainer first = stream.getMessage(3, pool);
+        BBContainer second = stream.getMessage(5, pool);
+        assertEquals(2, stream.getSlicedMessages());
+        assertEquals(0, stream.getCopiedMessages());
+        assertStreamIsEmpty();
+
+        // Each message should look like it is in its own buffer
+        assertEquals(0, first.b.position());
+        assertEquals(3, first.b.capacity());
+        assertEquals(1, first.b.get(0));
+        assertEquals(3, first.b.get(2));
+        assertEquals(5, second.b.capacity());
+        assertEquals(4, second.b.get(0));
+
+        // The messages are still valid after the stream has let go of the buffer
+        stream.shutdown();
+        first.discard();
+        assertEquals(8, second.b.get(4));
+        second.discard();
+        second.discard();
+        stream = new NIOReadStream();
+    }
+
+    public void testGetMessageCopy() throws IOException {
+        final int SIZE = NIOReadStream.BUFFER_SIZE + 100;
+        channel.nextRead = new byte[SIZE];
+        channel.nextRead[0] = 42;
+        channel.nextRead[SIZE-1] = 79;
+        assertEquals(SIZE, stream.read(channel, SIZE, pool));
+
+        BBContainer message = stream.getMessage(SIZE, pool);
+        assertEquals(0, stream.getSlicedMessages());
+        assertEquals(1, stream.getCopiedMessages());
+        assertStreamIsEmpty();
+        assertEquals(0, message.b.position());
+        assertEquals(SIZE, message.b.capacity());
+        assertEquals(42, message.b.get(0));
+        assertEquals(79, message.b.get(SIZE-1));
+        message.discard();
+    }
+
     private void assertStreamIsEmpty() throws IOException {
         assertEquals(0, stream.read(channel, Integer.MAX_VALUE, pool));
         assertEquals(0, stream.dataAvailable());
@@ -0,0 +1,116 @@
+package org.voltdb.planner;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+
+import org.voltdb.VoltType;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.ComparisonExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+import org.voltdb.plannodes.NestLoopIndexPlanNode;
+import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.ExpressionType;
+
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.plannodes.PlanNodeUtil;
+
+public class TestPlansJoin extends TestCase {
+
+    private PlannerTestAideDeCamp aide;
+
+    private AbstractPlanNode compile(String sql, int paramCount) {
+        AbstractPlanNode pn = null;
+        try {
+            pn = aide.compile(sql, paramCount);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            fail();
+        }
+        assertNotNull(pn);
+        return pn;
+    }
+
+    private TupleValueExpression makeColumn(String table, String column, VoltType type) {
+        TupleValueExpression expr = new TupleValueExpression();
+        expr.setTableName(table);
+        expr.setColumnName(column);
+        expr.setValueType(type);
+        return (expr);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        HStoreConf.singleton(true).global.hashjoin_enable = true;
+        aide = new PlannerTestAideDeCamp(TestPlansJoin.class.getResource("testplans-join-ddl.sql"), "testplansjoin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        aide.tearDown();
+        HStoreConf.singleton(true).global.hashjoin_enable = false;
+    }
+
+    /**
+     * testIsEquiJoinClause
+     */
+    public void testIsEquiJoinClause() {
+        AbstractExpression expr = new ComparisonExpression(ExpressionType.COMPARE_EQUAL,
+                                                           makeColumn("R1", "R1_A", VoltType.INTEGER),
+                                                           makeColumn("R2", "R2_A", VoltType.INTEGER));
+        assertTrue(HashJoinPlanNode.isEquiJoinClause(expr));
+
+        // Same table
+        expr = new ComparisonExpression(ExpressionType.COMPARE_EQUAL,
+                                        makeColumn("R1", "R1_A", VoltType.INTEGER),
+                                        makeColumn("R1", "R1_PKEY", VoltType.INTEGER));
+        assertFalse(HashJoinPlanNode.isEquiJoinClause(expr));
+
+        // Different types
+        expr = new ComparisonExpression(ExpressionType.COMPARE_EQUAL,
+                                        makeColumn("R1", "R1_A", VoltType.INTEGER),
+                                        makeColumn("R2", "R2_B", VoltType.STRING));
+        assertFalse(HashJoinPlanNode.isEquiJoinClause(expr));
+
+        // Not an equality
+        expr = new ComparisonExpression(ExpressionType.COMPARE_LESSTHAN,
+                                        makeColumn("R1", "R1_A", VoltType.INTEGER),
+                                        makeColumn("R2", "R2_A", VoltType.INTEGER));
+        assertFalse(HashJoinPlanNode.isEquiJoinClause(expr));
+    }
+
+    /**
+     * testHashJoin
+     */
+    public void testHashJoin() {
+        AbstractPlanNode pn = compile("SELECT R1_B, R2_B FROM R1, R2 WHERE R1_A = R2_A", 0);
+        Collection<HashJoinPlanNode> nodes = PlanNodeUtil.getPlanNodes(pn, HashJoinPlanNode.class);
+        assertEquals(pn.toJSONString(), 1, nodes.size());
+        HashJoinPlanNode hj = nodes.iterator().next();
+        assertEquals(2, hj.getChildPlanNodeCount());
+        assertNotNull(hj.getPredicate());
+    }
+
+    /**
+     * testIndexJoin
+     */
+    public void testIndexJoin() {
+        // The primary key index on the inner table is cheaper than a hash join
+        AbstractPlanNode pn = compile("SELECT R1_B, R2_B FROM R1, R2 WHERE R1_A = R2_PKEY", 0);
+        assertTrue(pn.toJSONString(), PlanNodeUtil.getPlanNodes(pn, HashJoinPlanNode.class).isEmpty());
+        assertFalse(pn.toJSONString(), PlanNodeUtil.getPlanNodes(pn, NestLoopIndexPlanNode.class).isEmpty());
+    }
+
+    /**
+     * testHashJoinDisabled
+     */
+    public void testHashJoinDisabled() {
+        HStoreConf.singleton(true).global.hashjoin_enable = false;
+        AbstractPlanNode pn = compile("SELECT R1_B, R2_B FROM R1, R2 WHERE R1_A = R2_A", 0);
+        assertTrue(pn.toJSONString(), PlanNodeUtil.getPlanNodes(pn, HashJoinPlanNode.class).isEmpty());
+        assertFalse(pn.toJSONString(), PlanNodeUtil.getPlanNodes(pn, NestLoopPlanNode.class).isEmpty());
+    }
+}
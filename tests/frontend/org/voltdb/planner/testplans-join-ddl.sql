@@ -0,0 +1,13 @@
+CREATE TABLE R1 (
+	R1_PKEY INTEGER NOT NULL,
+	R1_A INTEGER NOT NULL,
+	R1_B VARCHAR(10) NOT NULL,
+	PRIMARY KEY (R1_PKEY)
+);
+
+CREATE TABLE R2 (
+	R2_PKEY INTEGER NOT NULL,
+	R2_A INTEGER NOT NULL,
+	R2_B VARCHAR(10) NOT NULL,
+	PRIMARY KEY (R2_PKEY)
+);
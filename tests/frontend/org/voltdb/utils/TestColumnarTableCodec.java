@@ -0,0 +1,133 @@
+package org.voltdb.utils;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.types.TimestampType;
+
+import junit.framework.TestCase;
+
+public class TestColumnarTableCodec extends TestCase {
+
+    static final VoltTable.ColumnInfo[] SCHEMA = new VoltTable.ColumnInfo[] {
+        new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+        new VoltTable.ColumnInfo("TINY", VoltType.TINYINT),
+        new VoltTable.ColumnInfo("SMALL", VoltType.SMALLINT),
+        new VoltTable.ColumnInfo("INT", VoltType.INTEGER),
+        new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+        new VoltTable.ColumnInfo("PAYLOAD", VoltType.STRING),
+        new VoltTable.ColumnInfo("PRICE", VoltType.FLOAT),
+        new VoltTable.ColumnInfo("AMOUNT", VoltType.DECIMAL),
+        new VoltTable.ColumnInfo("CREATED", VoltType.TIMESTAMP),
+        new VoltTable.ColumnInfo("FLAG", VoltType.BOOLEAN),
+    };
+    static final String NAMES[] = { "Jason00", "David01", "Tomas77", "été", "" };
+
+    static final int NUM_ROWS = 5000;
+    static final Random rand = new Random(0);
+
+    private final VoltTable table = new VoltTable(SCHEMA);
+
+    @Override
+    protected void setUp() throws Exception {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            boolean nulls = (i % 17 == 0);
+            this.table.addRow(1000000l + i,
+                              (nulls ? null : (byte)(i % 100)),
+                              (nulls ? null : (short)rand.nextInt(Short.MAX_VALUE)),
+                              (nulls ? null : rand.nextInt()),
+                              (nulls ? null : NAMES[rand.nextInt(NAMES.length)]),
+                              (nulls ? null : "payload-" + rand.nextLong()),
+                              (nulls ? null : rand.nextDouble()),
+                              (nulls ? null : new BigDecimal(rand.nextInt(100000)).movePointLeft(2)),
+                              (nulls ? null : new TimestampType(1000000000l + i * 1000l)),
+                              (nulls ? null : rand.nextBoolean()));
+        } // FOR
+        this.table.setStatusCode((byte)3);
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() throws Exception {
+        byte encoded[] = ColumnarTableCodec.encode(this.table);
+        assertTrue(ColumnarTableCodec.isEncoded(ByteBuffer.wrap(encoded)));
+
+        VoltTable clone = ColumnarTableCodec.deserialize(ByteBuffer.wrap(encoded));
+        assertNotNull(clone);
+        assertEquals(this.table.getRowCount(), clone.getRowCount());
+        assertEquals(this.table.getStatusCode(), clone.getStatusCode());
+        for (int col = 0; col < SCHEMA.length; col++) {
+            assertEquals(this.table.getColumnName(col), clone.getColumnName(col));
+            assertEquals(this.table.getColumnType(col), clone.getColumnType(col));
+        } // FOR
+        // The tables must be byte-for-byte identical
+        assertTrue(this.table.hasSameContents(clone));
+    }
+
+    /**
+     * testRowPosition
+     */
+    public void testRowPosition() throws Exception {
+        // Encoding a table in the middle of iterating over it should
+        // leave the caller right where they were
+        this.table.resetRowPosition();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(this.table.advanceRow());
+        } // FOR
+        long expected = this.table.getLong(0);
+        ColumnarTableCodec.encode(this.table);
+        assertEquals(9, this.table.getActiveRowIndex());
+        assertEquals(expected, this.table.getLong(0));
+        assertTrue(this.table.advanceRow());
+        assertEquals(expected + 1, this.table.getLong(0));
+        
+        this.table.resetRowPosition();
+        ColumnarTableCodec.encode(this.table);
+        assertEquals(-1, this.table.getActiveRowIndex());
+        assertTrue(this.table.advanceRow());
+        assertEquals(1000000l, this.table.getLong(0));
+    }
+
+    /**
+     * testCompression
+     */
+    public void testCompression() throws Exception {
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                                     new VoltTable.ColumnInfo("NAME", VoltType.STRING));
+        for (int i = 0; i < NUM_ROWS; i++) {
+            vt.addRow(i, NAMES[i % NAMES.length]);
+        } // FOR
+        byte plain[] = FastSerializer.serialize(vt);
+        byte encoded[] = ColumnarTableCodec.encode(vt);
+        assertTrue(encoded.length + " >= " + plain.length, encoded.length * 4 < plain.length);
+        assertTrue(vt.hasSameContents(ColumnarTableCodec.decode(ByteBuffer.wrap(encoded))));
+    }
+
+    /**
+     * testThreshold
+     */
+    public void testThreshold() throws Exception {
+        int size = this.table.getUnderlyingBufferSize();
+
+        byte bytes[] = ColumnarTableCodec.serialize(this.table, size + 1);
+        assertFalse(ColumnarTableCodec.isEncoded(ByteBuffer.wrap(bytes)));
+        assertTrue(this.table.hasSameContents(ColumnarTableCodec.deserialize(ByteBuffer.wrap(bytes))));
+
+        bytes = ColumnarTableCodec.serialize(this.table, -1);
+        assertFalse(ColumnarTableCodec.isEncoded(ByteBuffer.wrap(bytes)));
+
+        bytes = ColumnarTableCodec.serialize(this.table, size);
+        assertTrue(ColumnarTableCodec.isEncoded(ByteBuffer.wrap(bytes)));
+        assertTrue(this.table.hasSameContents(ColumnarTableCodec.deserialize(ByteBuffer.wrap(bytes))));
+
+        // Empty tables are never encoded
+        VoltTable empty = new VoltTable(SCHEMA);
+        bytes = ColumnarTableCodec.serialize(empty, 0);
+        assertFalse(ColumnarTableCodec.isEncoded(ByteBuffer.wrap(bytes)));
+    }
+}
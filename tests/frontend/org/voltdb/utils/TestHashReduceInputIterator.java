@@ -0,0 +1,133 @@
+package org.voltdb.utils;
+
+import java.util.Random;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
+import org.voltdb.VoltType;
+
+import edu.brown.statistics.Histogram;
+import edu.brown.statistics.ObjectHistogram;
+
+import junit.framework.TestCase;
+
+public class TestHashReduceInputIterator extends TestCase {
+
+    static final VoltTable.ColumnInfo[] SCHEMA = new VoltTable.ColumnInfo[] {
+        new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+        new VoltTable.ColumnInfo("COUNTER", VoltType.BIGINT),
+    };
+    static final String NAMES[] = { "Jason00", "David01", "Tomas77", "Andy", "" };
+
+    static final int NUM_ROWS = 1000;
+    static final Random rand = new Random(0);
+
+    private final VoltTable table = new VoltTable(SCHEMA);
+    private final Histogram<String> expectedCounts = new ObjectHistogram<String>();
+    private final Histogram<String> expectedSums = new ObjectHistogram<String>();
+
+    @Override
+    protected void setUp() throws Exception {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            String name = NAMES[rand.nextInt(NAMES.length)];
+            long ct = rand.nextInt(10);
+            this.table.addRow(name, ct);
+            this.expectedCounts.put(name);
+            this.expectedSums.put(name, ct);
+        } // FOR
+        assertEquals(NUM_ROWS, this.table.getRowCount());
+    }
+
+    /**
+     * testGrouping
+     */
+    public void testGrouping() throws Exception {
+        HashReduceInputIterator<String> rows = new HashReduceInputIterator<String>(this.table, 0);
+        assertEquals(this.expectedCounts.getValueCount(), rows.getKeyCount());
+
+        Histogram<String> actualCounts = new ObjectHistogram<String>();
+        Histogram<String> actualSums = new ObjectHistogram<String>();
+        int keys = 0;
+        while (rows.nextKey()) {
+            String key = rows.getKey();
+            assertNotNull(key);
+            assertFalse(actualCounts.contains(key));
+            keys++;
+            while (rows.hasNext()) {
+                VoltTableRow r = rows.next();
+                assertEquals(key, r.getString(0));
+                actualCounts.put(key);
+                actualSums.put(key, r.getLong(1));
+            } // WHILE
+        } // WHILE
+        assertEquals(rows.getKeyCount(), keys);
+        assertFalse(rows.nextKey());
+
+        for (String key : this.expectedCounts.values()) {
+            assertEquals(key, this.expectedCounts.get(key), actualCounts.get(key));
+            assertEquals(key, this.expectedSums.get(key), actualSums.get(key));
+        } // FOR
+    }
+
+    /**
+     * testFirstAppearanceOrder
+     */
+    public void testFirstAppearanceOrder() throws Exception {
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                                     new VoltTable.ColumnInfo("VAL", VoltType.INTEGER));
+        long keys[] = { 5, 3, 5, 9, 3, 1 };
+        for (int i = 0; i < keys.length; i++) {
+            vt.addRow(keys[i], i);
+        } // FOR
+
+        HashReduceInputIterator<Long> rows = new HashReduceInputIterator<Long>(vt, 0);
+        long expected[] = { 5, 3, 9, 1 };
+        int expectedRows[][] = { { 0, 2 }, { 1, 4 }, { 3 }, { 5 } };
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(rows.nextKey());
+            assertEquals(expected[i], rows.getKey().longValue());
+            for (int rowIdx : expectedRows[i]) {
+                assertTrue(rows.hasNext());
+                VoltTableRow r = rows.next();
+                assertEquals(rowIdx, r.getActiveRowIndex());
+                assertEquals(rowIdx, r.getLong(1));
+            } // FOR
+            assertFalse(rows.hasNext());
+        } // FOR
+        assertFalse(rows.nextKey());
+    }
+
+    /**
+     * testEmptyTable
+     */
+    public void testEmptyTable() throws Exception {
+        HashReduceInputIterator<String> rows = new HashReduceInputIterator<String>(new VoltTable(SCHEMA), 0);
+        assertEquals(0, rows.getKeyCount());
+        assertFalse(rows.nextKey());
+        assertFalse(rows.hasNext());
+    }
+
+    /**
+     * testFloatKeys
+     */
+    public void testFloatKeys() throws Exception {
+        // -0.0 and 0.0 are the same key even though their bytes are different
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("KEY", VoltType.FLOAT),
+                                     new VoltTable.ColumnInfo("VAL", VoltType.INTEGER));
+        double keys[] = { 0.0d, -0.0d, 1.5d, 0.0d, -1.5d };
+        for (int i = 0; i < keys.length; i++) {
+            vt.addRow(keys[i], i);
+        } // FOR
+
+        HashReduceInputIterator<Double> rows = new HashReduceInputIterator<Double>(vt, 0);
+        assertEquals(3, rows.getKeyCount());
+        assertTrue(rows.nextKey());
+        assertEquals(0.0d, rows.getKey().doubleValue(), 0.0d);
+        int ctr = 0;
+        while (rows.hasNext()) {
+            assertEquals(0.0d, rows.next().getDouble(0), 0.0d);
+            ctr++;
+        } // WHILE
+        assertEquals(3, ctr);
+    }
+}